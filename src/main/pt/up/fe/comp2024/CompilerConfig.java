@@ -1,7 +1,13 @@
 package pt.up.fe.comp2024;
 
+import pt.up.fe.comp2024.utils.Diagnostics;
+
 import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 
@@ -10,14 +16,46 @@ public class CompilerConfig {
     private static final String INPUT_FILE = "inputFile";
     private static final String OPTIMIZE = "optimize";
     private static final String REGISTER = "registerAllocation";
+    private static final String TYPED_AST = "typedAst";
+    private static final String FAST_LEXER = "fastLexer";
+    private static final String ERROR_RECOVERY = "errorRecovery";
+    private static final String PASS_STATS = "passStats";
+    private static final String PARALLEL_ANALYSIS = "parallelAnalysis";
+    private static final String CLASSPATH = "classpath";
+    private static final String DIAGNOSTICS = "diagnostics";
+    private static final String JSON_DIAGNOSTICS = "jsonDiagnostics";
+    private static final String MAX_ERRORS = "maxErrors";
+    private static final String VALIDATE_ONLY = "validateOnly";
+
+    /**
+     * Where the classes of the libraries the test programs import are compiled to.
+     */
+    private static final String DEFAULT_CLASSPATH = "libs-jmm/compiled";
 
 
     static Map<String, String> shortToLong = new HashMap<>();
 
+    /**
+     * Options that are spelled out, such as '-max-errors=N'.
+     */
+    static Map<String, String> longOptions = new HashMap<>();
+
     static {
         shortToLong.put("i", CompilerConfig.INPUT_FILE);
         shortToLong.put("o", CompilerConfig.OPTIMIZE);
         shortToLong.put("r", CompilerConfig.REGISTER);
+        shortToLong.put("t", CompilerConfig.TYPED_AST);
+        shortToLong.put("l", CompilerConfig.FAST_LEXER);
+        shortToLong.put("e", CompilerConfig.ERROR_RECOVERY);
+        shortToLong.put("s", CompilerConfig.PASS_STATS);
+        shortToLong.put("p", CompilerConfig.PARALLEL_ANALYSIS);
+        shortToLong.put("c", CompilerConfig.CLASSPATH);
+        shortToLong.put("d", CompilerConfig.DIAGNOSTICS);
+        shortToLong.put("j", CompilerConfig.JSON_DIAGNOSTICS);
+        shortToLong.put("v", CompilerConfig.VALIDATE_ONLY);
+
+        longOptions.put("max-errors", CompilerConfig.MAX_ERRORS);
+        longOptions.put("validate-only", CompilerConfig.VALIDATE_ONLY);
     }
 
 
@@ -33,7 +71,174 @@ public class CompilerConfig {
     }
 
     public static boolean getOptimize(Map<String, String> config) {
-        return Boolean.parseBoolean(config.getOrDefault(OPTIMIZE, "false"));
+        return getOptimizationLevel(config) > 0;
+    }
+
+    /**
+     * '-o' alone enables level 1, '-o=N' selects level N. Level 2 also removes unused methods and fields.
+     */
+    public static int getOptimizationLevel(Map<String, String> config) {
+        var optimize = config.getOrDefault(OPTIMIZE, "false");
+
+        if (optimize.equalsIgnoreCase("true")) {
+            return 1;
+        }
+
+        if (optimize.equalsIgnoreCase("false")) {
+            return 0;
+        }
+
+        int level;
+        try {
+            level = Integer.parseInt(optimize);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Option '-o' expects an optimization level, got '" + optimize + "'");
+        }
+        if (level < 0) {
+            throw new IllegalArgumentException("Option '-o' expects an optimization level of 0 or more, got '"
+                    + optimize + "'");
+        }
+        return level;
+    }
+
+    /**
+     * The parser builds the AST as compact typed nodes by default, see {@link pt.up.fe.comp2024.ast.TypedNode}.
+     * '-t=false' makes it build a tree of {@link pt.up.fe.comp.jmm.ast.JmmNodeImpl} instead, as the converter of the
+     * library does.
+     */
+    public static boolean getTypedAst(Map<String, String> config) {
+        return Boolean.parseBoolean(config.getOrDefault(TYPED_AST, "true"));
+    }
+
+    /**
+     * '-l' makes the parser read the tokens with the hand-written lexer, see
+     * {@link pt.up.fe.comp2024.parser.FastJavammLexer}.
+     */
+    public static boolean getFastLexer(Map<String, String> config) {
+        return Boolean.parseBoolean(config.getOrDefault(FAST_LEXER, "false"));
+    }
+
+    /**
+     * '-e' keeps compiling after syntax errors: the parser reports all of them and returns the members that parsed
+     * cleanly, so that semantic analysis can report the errors in those as well.
+     */
+    public static boolean getErrorRecovery(Map<String, String> config) {
+        return Boolean.parseBoolean(config.getOrDefault(ERROR_RECOVERY, "false"));
+    }
+
+    /**
+     * '-s' writes the time and the number of visited nodes of each analysis pass to standard error, as diagnostics of
+     * the info level.
+     */
+    public static boolean getPassStats(Map<String, String> config) {
+        return Boolean.parseBoolean(config.getOrDefault(PASS_STATS, "false"));
+    }
+
+    /**
+     * '-p' analyses the methods in parallel, one thread per processor, '-p=N' uses N threads.
+     *
+     * @return the number of threads of the semantic analysis, 1 when the methods are analysed one after the other
+     */
+    public static int getAnalysisThreads(Map<String, String> config) {
+        var threads = config.getOrDefault(PARALLEL_ANALYSIS, "false");
+
+        if (threads.equalsIgnoreCase("true")) {
+            return Runtime.getRuntime().availableProcessors();
+        }
+
+        if (threads.equalsIgnoreCase("false")) {
+            return 1;
+        }
+
+        int count;
+        try {
+            count = Integer.parseInt(threads);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Option '-p' expects a number of threads, got '" + threads + "'");
+        }
+        if (count < 1) {
+            throw new IllegalArgumentException("Option '-p' expects a number of threads of 1 or more, got '"
+                    + threads + "'");
+        }
+        return count;
+    }
+
+    /**
+     * '-c=PATHS' lists the directories of class files and the jars the imports are resolved against, separated as in
+     * the classpath of the JVM. Without it, the classes in libs-jmm/compiled are used, if that directory exists.
+     */
+    public static List<Path> getClasspath(Map<String, String> config) {
+        var classpath = config.get(CLASSPATH);
+        if (classpath == null) {
+            var defaultClasspath = Path.of(DEFAULT_CLASSPATH);
+            return Files.isDirectory(defaultClasspath) ? List.of(defaultClasspath) : List.of();
+        }
+
+        return Arrays.stream(classpath.split(File.pathSeparator))
+                .filter(entry -> !entry.isBlank())
+                .map(Path::of)
+                .toList();
+    }
+
+    /**
+     * '-d' writes the messages of the compiler about its work to standard error, all of them, '-d=LEVEL' only those
+     * of the level, one of off, error, warn, info and debug, and the levels above it. See {@link Diagnostics}.
+     */
+    public static Diagnostics.Level getDiagnostics(Map<String, String> config) {
+        var level = config.getOrDefault(DIAGNOSTICS, "false");
+
+        if (level.equalsIgnoreCase("true")) {
+            return Diagnostics.Level.DEBUG;
+        }
+
+        if (level.equalsIgnoreCase("false")) {
+            return Diagnostics.Level.OFF;
+        }
+
+        return switch (level.toLowerCase()) {
+            case "off" -> Diagnostics.Level.OFF;
+            case "error" -> Diagnostics.Level.ERROR;
+            case "warn" -> Diagnostics.Level.WARN;
+            case "info" -> Diagnostics.Level.INFO;
+            case "debug" -> Diagnostics.Level.DEBUG;
+            default -> throw new IllegalArgumentException(
+                    "Option '-d' expects one of off, error, warn, info, debug, got '" + level + "'");
+        };
+    }
+
+    /**
+     * '-j' writes the messages of '-d' and the reports of the compilation as one JSON object per line.
+     */
+    public static boolean getJsonDiagnostics(Map<String, String> config) {
+        return Boolean.parseBoolean(config.getOrDefault(JSON_DIAGNOSTICS, "false"));
+    }
+
+    /**
+     * '-max-errors=N' stops the semantic analysis once the passes have reported N errors, and reports only those.
+     *
+     * @return the number of errors, 0 to report all of them
+     */
+    public static int getMaxErrors(Map<String, String> config) {
+        var value = config.getOrDefault(MAX_ERRORS, "0");
+
+        int maxErrors;
+        try {
+            maxErrors = Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Option '-max-errors' expects a number of errors, got '" + value + "'");
+        }
+        if (maxErrors < 0) {
+            throw new IllegalArgumentException("Option '-max-errors' expects a number of errors, got '" + value + "'");
+        }
+        return maxErrors;
+    }
+
+    /**
+     * '-v' or '-validate-only' only checks the input: the compilation stops after the semantic analysis, without
+     * printing the AST or generating code.
+     */
+    public static boolean getValidateOnly(Map<String, String> config) {
+        return Boolean.parseBoolean(config.getOrDefault(VALIDATE_ONLY, "false"));
     }
 
     public static int getRegisterAllocation(Map<String, String> config) {
@@ -72,6 +277,15 @@ public class CompilerConfig {
                 throw new RuntimeException("Arguments should start with '-'");
             }
 
+            // the name of a long option is followed by '=' or ends the argument
+            int equalSignIndex = arg.indexOf('=');
+            String longOption = arg.substring(1, equalSignIndex == -1 ? arg.length() : equalSignIndex);
+            if (longOptions.containsKey(longOption)) {
+                String value = equalSignIndex == -1 ? "true" : arg.substring(equalSignIndex + 1);
+                config.put(longOptions.get(longOption), value);
+                continue;
+            }
+
             String shortOption = arg.substring(1, 2);
             if (!isShortOpt(shortOption)) {
                 throw new RuntimeException("Unrecognized option '-" + shortOption + "'");
@@ -106,6 +320,9 @@ public class CompilerConfig {
         // Verify if values are valid
         getOptimize(config);
         getRegisterAllocation(config);
+        getAnalysisThreads(config);
+        getDiagnostics(config);
+        getMaxErrors(config);
 
         return config;
     }
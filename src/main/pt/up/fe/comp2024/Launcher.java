@@ -5,11 +5,15 @@ import pt.up.fe.comp.jmm.analysis.JmmSemanticsResult;
 import pt.up.fe.comp.jmm.jasmin.JasminResult;
 import pt.up.fe.comp.jmm.ollir.OllirResult;
 import pt.up.fe.comp.jmm.parser.JmmParserResult;
+import pt.up.fe.comp.jmm.report.ReportType;
 import pt.up.fe.comp2024.analysis.JmmAnalysisImpl;
+import pt.up.fe.comp2024.ast.NodeUtils;
 import pt.up.fe.comp2024.backend.JasminBackendImpl;
 import pt.up.fe.comp2024.optimization.JmmOptimizationImpl;
 import pt.up.fe.comp2024.parser.JmmParserImpl;
-import pt.up.fe.specs.util.SpecsIo;
+import pt.up.fe.comp2024.utils.DeepStack;
+import pt.up.fe.comp2024.utils.Diagnostics;
+import pt.up.fe.comp2024.utils.ReportUtils;
 import pt.up.fe.specs.util.SpecsSystem;
 
 import java.util.Map;
@@ -19,32 +23,50 @@ public class Launcher {
     public static void main(String[] args) {
         SpecsSystem.programStandardInit();
 
+        // the stages recurse into nested expressions, give them a stack deep enough for generated programs
+        DeepStack.run(() -> compile(args));
+    }
+
+    private static void compile(String[] args) {
         Map<String, String> config = CompilerConfig.parseArgs(args);
+        Diagnostics.configure(config);
 
         var inputFile = CompilerConfig.getInputFile(config).orElseThrow();
         if (!inputFile.isFile()) {
             throw new RuntimeException("Option '-i' expects a path to an existing input file, got '" + args[0] + "'.");
         }
-        String code = SpecsIo.read(inputFile);
 
-        // Parsing stage
+        // Parsing stage, the file is read by the lexer through a memory mapping
         JmmParserImpl parser = new JmmParserImpl();
-        JmmParserResult parserResult = parser.parse(code, config);
+        JmmParserResult parserResult = parser.parse(inputFile, config);
+        if (CompilerConfig.getErrorRecovery(config) && TestUtils.getNumErrors(parserResult.getReports()) > 0) {
+            reportAllErrors(parserResult, CompilerConfig.getJsonDiagnostics(config));
+        }
         TestUtils.noErrors(parserResult.getReports());
 
-        // Print AST
-        System.out.println(parserResult.getRootNode().toTree());
+        // Print AST, unless the input is only validated
+        boolean validateOnly = CompilerConfig.getValidateOnly(config);
+        if (!validateOnly) {
+            System.out.println(NodeUtils.toTree(parserResult.getRootNode()));
+        }
 
         // Semantic Analysis stage
         JmmAnalysisImpl sema = new JmmAnalysisImpl();
         JmmSemanticsResult semanticsResult = sema.semanticAnalysis(parserResult);
+        if (CompilerConfig.getPassStats(config)) {
+            Diagnostics.info(() -> sema.getPassManager().formatStats());
+        }
         TestUtils.noErrors(semanticsResult.getReports());
-
+        if (validateOnly) {
+            return;
+        }
 
         // Optimization stage
         JmmOptimizationImpl ollirGen = new JmmOptimizationImpl();
+        semanticsResult = ollirGen.optimize(semanticsResult);
         OllirResult ollirResult = ollirGen.toOllir(semanticsResult);
         TestUtils.noErrors(ollirResult.getReports());
+        ollirResult = ollirGen.optimize(ollirResult);
 
         // Print OLLIR code
         System.out.println(ollirResult.getOllirCode());
@@ -58,4 +80,21 @@ public class Launcher {
         System.out.println(jasminResult.getJasminCode());
     }
 
+    /**
+     * Reports the syntax errors together with the semantic errors of the members that parsed cleanly, then stops.
+     *
+     * @param json true to report each error as a JSON object on a line of its own
+     */
+    private static void reportAllErrors(JmmParserResult parserResult, boolean json) {
+        var reports = parserResult.getRootNode() == null ? parserResult.getReports()
+                : new JmmAnalysisImpl().semanticAnalysis(parserResult).getReports();
+
+        var errors = reports.stream()
+                .filter(report -> report.getType() == ReportType.ERROR)
+                .toList();
+        errors.forEach(error -> System.err.println(json ? ReportUtils.toJson(error) : error));
+
+        throw new RuntimeException("Found " + errors.size() + " error(s)");
+    }
+
 }
@@ -5,6 +5,7 @@ import pt.up.fe.comp.jmm.ast.JmmNode;
 import pt.up.fe.comp.jmm.report.Report;
 
 import java.util.List;
+import java.util.Set;
 
 /**
  * Represents an analysis pass.
@@ -20,4 +21,15 @@ public interface AnalysisPass {
      */
     List<Report> analyze(JmmNode root, SymbolTable table);
 
-}
\ No newline at end of file
+    /**
+     * @return the passes that must have run, without reports, before this one
+     */
+    default Set<Class<? extends AnalysisPass>> getDependencies() {
+        return Set.of();
+    }
+
+    default String getName() {
+        return getClass().getSimpleName();
+    }
+
+}
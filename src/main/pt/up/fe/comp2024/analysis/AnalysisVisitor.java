@@ -2,24 +2,70 @@ package pt.up.fe.comp2024.analysis;
 
 import pt.up.fe.comp.jmm.analysis.table.SymbolTable;
 import pt.up.fe.comp.jmm.ast.JmmNode;
-import pt.up.fe.comp.jmm.ast.PreorderJmmVisitor;
 import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp2024.ast.IterativePreorderJmmVisitor;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.function.BiFunction;
 
 /**
- *
+ * Analysis pass that visits nodes of the kinds it adds visits for.
+ * <p>
+ * The kinds are recorded as the visits are added, so that the {@link PassManager} can visit the tree once for several
+ * of these passes, giving each node only to the passes that visit its kind. Nodes of other kinds get the default visit,
+ * which does nothing.
  */
-public abstract class AnalysisVisitor extends PreorderJmmVisitor<SymbolTable, Void> implements AnalysisPass {
+public abstract class AnalysisVisitor extends IterativePreorderJmmVisitor<SymbolTable, Void> implements AnalysisPass {
 
     private List<Report> reports;
 
+    // no initializer, visits are added by the super constructor, before the fields of this class are initialized
+    private Set<String> visitedKinds;
+
     public AnalysisVisitor() {
         reports = new ArrayList<>();
         setDefaultValue(() -> null);
     }
 
+    @Override
+    public void addVisit(String kind, BiFunction<JmmNode, SymbolTable, Void> method) {
+        super.addVisit(kind, method);
+
+        if (visitedKinds == null) {
+            visitedKinds = new HashSet<>();
+        }
+        visitedKinds.add(kind);
+    }
+
+    /**
+     * @return the names of the kinds this pass adds visits for
+     */
+    public Set<String> getVisitedKinds() {
+        return visitedKinds == null ? Set.of() : Collections.unmodifiableSet(visitedKinds);
+    }
+
+    /**
+     * Creates an instance of this pass for a single method declaration, so that the {@link PassManager} can analyse the
+     * methods in parallel, each with its own instance and reports. Those instances are given the nodes of their method,
+     * this one is given the nodes outside the methods.
+     *
+     * @return a new instance, or null if the pass needs to see all the methods in one instance
+     */
+    protected AnalysisVisitor newMethodVisitor() {
+        return null;
+    }
+
+    /**
+     * Visits only the given node, not its children.
+     */
+    void visitNode(JmmNode node, SymbolTable table) {
+        getVisit(node).apply(node, table);
+    }
+
     protected void addReport(Report report) {
         reports.add(report);
     }
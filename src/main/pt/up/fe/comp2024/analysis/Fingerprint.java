@@ -0,0 +1,74 @@
+package pt.up.fe.comp2024.analysis;
+
+import pt.up.fe.comp.jmm.ast.JmmNode;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Set;
+
+/**
+ * 64-bit FNV-1a hash of parts of a tree and of the values they depend on, to tell which parts changed between two
+ * versions of a program.
+ */
+class Fingerprint {
+
+    private static final long OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long PRIME = 0x100000001b3L;
+
+    // not a char of the values, so that "ab", "c" and "a", "bc" are different
+    private static final char SEPARATOR = '\uffff';
+
+    private static final Set<String> LINE_ATTRIBUTES = Set.of("lineStart", "lineEnd");
+
+    private long hash = OFFSET_BASIS;
+
+    Fingerprint add(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            addChar(value.charAt(i));
+        }
+        addChar(SEPARATOR);
+        return this;
+    }
+
+    Fingerprint add(long value) {
+        return add(Long.toString(value));
+    }
+
+    private void addChar(char c) {
+        hash ^= c;
+        hash *= PRIME;
+    }
+
+    /**
+     * Adds the kind and attributes of every node of the tree.
+     *
+     * @param firstLine subtracted from the lines of the nodes, so that moving the tree to other lines keeps the hash
+     */
+    Fingerprint addTree(JmmNode root, int firstLine) {
+        var pending = new ArrayDeque<JmmNode>();
+        pending.push(root);
+        while (!pending.isEmpty()) {
+            var node = pending.pop();
+
+            add(node.getKind());
+            var attributes = new ArrayList<>(node.getAttributes());
+            attributes.sort(null);
+            for (var attribute : attributes) {
+                add(attribute);
+                var value = node.get(attribute);
+                add(LINE_ATTRIBUTES.contains(attribute) ? Integer.toString(Integer.parseInt(value) - firstLine) : value);
+            }
+
+            var children = node.getChildren();
+            add(children.size());
+            for (int i = children.size() - 1; i >= 0; i--) {
+                pending.push(children.get(i));
+            }
+        }
+        return this;
+    }
+
+    long get() {
+        return hash;
+    }
+}
@@ -0,0 +1,205 @@
+package pt.up.fe.comp2024.analysis;
+
+import pt.up.fe.comp.jmm.analysis.JmmAnalysis;
+import pt.up.fe.comp.jmm.analysis.JmmSemanticsResult;
+import pt.up.fe.comp.jmm.analysis.table.SymbolTable;
+import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp.jmm.parser.JmmParserResult;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp2024.CompilerConfig;
+import pt.up.fe.comp2024.ast.Kind;
+import pt.up.fe.comp2024.ast.NodeUtils;
+import pt.up.fe.comp2024.classpath.ClasspathIndex;
+import pt.up.fe.comp2024.symboltable.JmmSymbolTable;
+import pt.up.fe.comp2024.symboltable.JmmSymbolTableBuilder;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Semantic analysis of successive versions of the same program, as an editor or a watch mode produce them, that only
+ * analyses again the methods that changed.
+ * <p>
+ * Each method has a fingerprint, a hash of its subtree, with lines counted from the start of the method, and of the
+ * signatures of the methods it calls. The methods whose fingerprint did not change keep their reports, moved to the
+ * lines the method is now at, and the symbol table is updated in place for the methods whose subtree changed. The
+ * nodes outside the methods are visited every time, which is cheap, but a change there, such as a new field, import or
+ * method, makes the whole class be analysed again, as do overloaded methods and changes to the compiled
+ * classes of the classpath.
+ */
+public class IncrementalAnalysis implements JmmAnalysis {
+
+    private final Supplier<List<? extends AnalysisPass>> passes;
+
+    private JmmSymbolTable table;
+    private long classFingerprint;
+    private List<MethodState> methods = List.of();
+
+    private PassManager passManager;
+    private int analysedMethods;
+
+    public IncrementalAnalysis() {
+        this(JmmAnalysisImpl::newPasses);
+    }
+
+    /**
+     * @param passes creates the passes of each analysis, which must all be able to analyse methods on their own
+     */
+    public IncrementalAnalysis(Supplier<List<? extends AnalysisPass>> passes) {
+        this.passes = passes;
+    }
+
+    @Override
+    public JmmSemanticsResult semanticAnalysis(JmmParserResult parserResult) {
+        var root = parserResult.getRootNode();
+        var methodNodes = PassManager.getMethods(root);
+
+        var newClassFingerprint = classFingerprint(root);
+        // the same index while the compiled classes do not change
+        var classpath = ClasspathIndex.load(CompilerConfig.getClasspath(parserResult.getConfig()));
+        // overloads are keyed by their parameters, which an edit of the method may change
+        boolean reuse = table != null && newClassFingerprint == classFingerprint && !hasRepeatedNames(methodNodes)
+                && classpath == table.getClasspath();
+        if (reuse) {
+            // the types belong to the nodes of the previous tree
+            table.getExprTypes().clear();
+        } else {
+            table = JmmSymbolTableBuilder.build(root);
+            table.setClasspath(classpath);
+        }
+
+        // the table first, the fingerprints include the signatures of the methods each one calls
+        List<Long> trees = new ArrayList<>();
+        for (int i = 0; i < methodNodes.size(); i++) {
+            var method = methodNodes.get(i);
+            var tree = new Fingerprint().addTree(method, NodeUtils.getLine(method)).get();
+            trees.add(tree);
+
+            if (reuse && tree != methods.get(i).tree) {
+                JmmSymbolTableBuilder.updateMethod(table, method);
+            }
+        }
+
+        Map<JmmNode, List<List<Report>>> methodReports = new IdentityHashMap<>();
+        List<Long> fingerprints = new ArrayList<>();
+        analysedMethods = 0;
+        for (int i = 0; i < methodNodes.size(); i++) {
+            var method = methodNodes.get(i);
+            var fingerprint = methodFingerprint(method, trees.get(i), table);
+            fingerprints.add(fingerprint);
+
+            if (reuse && fingerprint == methods.get(i).fingerprint) {
+                var previous = methods.get(i);
+                methodReports.put(method, moveReports(previous.reports, NodeUtils.getLine(method) - previous.line));
+            } else {
+                analysedMethods++;
+                table.getExprTypes().annotate(method, table);
+            }
+        }
+
+        passManager = new PassManager(passes.get());
+        passManager.setMaxErrors(CompilerConfig.getMaxErrors(parserResult.getConfig()));
+        var reports = passManager.run(root, table, methodReports);
+
+        List<MethodState> newMethods = new ArrayList<>();
+        for (int i = 0; i < methodNodes.size(); i++) {
+            var method = methodNodes.get(i);
+            newMethods.add(new MethodState(trees.get(i), fingerprints.get(i), NodeUtils.getLine(method),
+                    methodReports.getOrDefault(method, List.of())));
+        }
+        methods = newMethods;
+        classFingerprint = newClassFingerprint;
+
+        return new JmmSemanticsResult(parserResult, table, reports);
+    }
+
+    /**
+     * @return the number of methods analysed by the last analysis, the others kept their reports
+     */
+    public int getAnalysedMethods() {
+        return analysedMethods;
+    }
+
+    /**
+     * @return the manager that ran the passes of the last analysis
+     */
+    public PassManager getPassManager() {
+        return passManager;
+    }
+
+    private static boolean hasRepeatedNames(List<JmmNode> methodNodes) {
+        var names = new HashSet<String>();
+        return !methodNodes.stream().allMatch(method -> names.add(method.get("name")));
+    }
+
+    /**
+     * Hash of the imports, the class declaration, the fields and the names of the methods.
+     */
+    private static long classFingerprint(JmmNode root) {
+        var fingerprint = new Fingerprint();
+        for (var child : root.getChildren()) {
+            if (!Kind.CLASS_DECLARATION.check(child)) {
+                fingerprint.addTree(child, 0);
+                continue;
+            }
+
+            // the class ends at a different line whenever a method grows
+            fingerprint.add(child.get("name")).add(child.getOptional("sname").orElse(""));
+            for (var member : child.getChildren()) {
+                if (Kind.METHOD_DECLARATION.check(member)) {
+                    fingerprint.add(member.get("name"));
+                } else {
+                    fingerprint.addTree(member, 0);
+                }
+            }
+        }
+        return fingerprint.get();
+    }
+
+    private static long methodFingerprint(JmmNode method, long tree, SymbolTable table) {
+        var fingerprint = new Fingerprint().add(tree);
+
+        for (var call : NodeUtils.getDescendants(method, Kind.METHOD_CALL)) {
+            var name = call.get("value");
+            fingerprint.add(name);
+            if (table.getMethods().contains(name)) {
+                fingerprint.add(table.getReturnType(name).toString()).add(table.getParameters(name).toString());
+            }
+        }
+        return fingerprint.get();
+    }
+
+    private static List<List<Report>> moveReports(List<List<Report>> traversals, int lines) {
+        List<List<Report>> moved = new ArrayList<>();
+        for (var reports : traversals) {
+            List<Report> movedReports = new ArrayList<>();
+            for (var report : reports) {
+                movedReports.add(lines == 0 || report.getLine() < 0 ? report : moveReport(report, lines));
+            }
+            moved.add(movedReports);
+        }
+        return moved;
+    }
+
+    private static Report moveReport(Report report, int lines) {
+        var moved = new Report(report.getType(), report.getStage(), report.getLine() + lines, report.getColumn(),
+                report.getMessage());
+        report.getException().ifPresent(moved::setException);
+        return moved;
+    }
+
+    /**
+     * What is kept of each method between analyses.
+     *
+     * @param tree        the hash of the subtree of the method
+     * @param fingerprint the hash of the subtree and of the signatures it depends on
+     * @param line        the line the method started at
+     * @param reports     the reports of the method in each traversal
+     */
+    private record MethodState(long tree, long fingerprint, int line, List<List<Report>> reports) {
+    }
+}
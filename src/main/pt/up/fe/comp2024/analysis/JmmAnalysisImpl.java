@@ -6,55 +6,73 @@ import pt.up.fe.comp.jmm.analysis.table.SymbolTable;
 import pt.up.fe.comp.jmm.ast.JmmNode;
 import pt.up.fe.comp.jmm.parser.JmmParserResult;
 import pt.up.fe.comp.jmm.report.Report;
-import pt.up.fe.comp.jmm.report.Stage;
+import pt.up.fe.comp2024.CompilerConfig;
 import pt.up.fe.comp2024.analysis.passes.UndeclaredVariable;
+import pt.up.fe.comp2024.classpath.ClasspathIndex;
 import pt.up.fe.comp2024.symboltable.JmmSymbolTableBuilder;
+import pt.up.fe.comp2024.utils.Diagnostics;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
 public class JmmAnalysisImpl implements JmmAnalysis {
 
 
-    private final List<AnalysisPass> analysisPasses;
+    private final PassManager passManager;
 
     public JmmAnalysisImpl() {
 
-        this.analysisPasses = List.of(new UndeclaredVariable());
+        this.passManager = new PassManager(newPasses());
 
     }
 
+    /**
+     * @return new instances of the analysis passes, in the order they are registered
+     */
+    static List<AnalysisPass> newPasses() {
+        return List.of(new UndeclaredVariable());
+    }
+
+    /**
+     * @return the manager that runs the passes, with the statistics of the last analysis
+     */
+    public PassManager getPassManager() {
+        return passManager;
+    }
+
     @Override
     public JmmSemanticsResult semanticAnalysis(JmmParserResult parserResult) {
 
         JmmNode rootNode = parserResult.getRootNode();
 
-        SymbolTable table = JmmSymbolTableBuilder.build(rootNode);
-
-        List<Report> reports = new ArrayList<>();
-
-        // Visit all nodes in the AST
-        for (var analysisPass : analysisPasses) {
-
-            try {
-                var passReports = analysisPass.analyze(rootNode, table);
-                if(!passReports.isEmpty()) {
-                    reports.addAll(passReports);
-                    break;
-                }
-            } catch (Exception e) {
-                reports.add(Report.newError(Stage.SEMANTIC,
-                        -1,
-                        -1,
-                        "Problem while executing analysis pass '" + analysisPass.getClass() + "'",
-                        e)
-                );
-                break;
-            }
+        var table = JmmSymbolTableBuilder.build(rootNode);
+        table.setClasspath(ClasspathIndex.load(CompilerConfig.getClasspath(parserResult.getConfig())));
 
-        }
-        System.out.println(reports);
+        // type every expression once, the passes and the code generators look the types up
+        table.getExprTypes().annotate(rootNode, table);
+
+        // Visit all nodes in the AST, once for all the passes that can share a traversal, up to the limit of errors
+        passManager.setMaxErrors(CompilerConfig.getMaxErrors(parserResult.getConfig()));
+        List<Report> reports = new ArrayList<>(analyze(rootNode, table,
+                CompilerConfig.getAnalysisThreads(parserResult.getConfig())));
+        Diagnostics.reports(Diagnostics.Level.DEBUG, reports);
 
         return new JmmSemanticsResult(parserResult, table, reports);
     }
+
+    private List<Report> analyze(JmmNode rootNode, SymbolTable table, int threads) {
+        if (threads <= 1) {
+            passManager.setPool(null);
+            return passManager.run(rootNode, table);
+        }
+
+        var pool = new ForkJoinPool(threads);
+        try {
+            passManager.setPool(pool);
+            return passManager.run(rootNode, table);
+        } finally {
+            pool.shutdown();
+        }
+    }
 }
@@ -0,0 +1,557 @@
+package pt.up.fe.comp2024.analysis;
+
+import pt.up.fe.comp.jmm.analysis.table.SymbolTable;
+import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp.jmm.report.ReportType;
+import pt.up.fe.comp.jmm.report.Stage;
+import pt.up.fe.comp2024.ast.Kind;
+import pt.up.fe.comp2024.ast.KindDispatch;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Runs analysis passes in the order their dependencies ask for, visiting the tree as few times as possible.
+ * <p>
+ * Consecutive {@link AnalysisVisitor} passes that do not depend on each other share a single preorder traversal, in
+ * which each node is given to the passes that visit its kind, in the order the passes were registered. A pass that
+ * depends on another starts a new traversal, and so does any other kind of pass, which walks the tree on its own.
+ * <p>
+ * With a pool, see {@link #setPool(ForkJoinPool)}, a traversal whose passes can all be split per method visits the
+ * nodes outside the methods first and then each method in a task of its own, with new instances of the passes. The
+ * reports of the traversal are then sorted in source order, so they do not depend on the order the tasks finish in.
+ * <p>
+ * As with running the passes one after the other, the analysis stops after the first traversal that produces reports.
+ * With a limit on the errors, see {@link #setMaxErrors(int)}, the walks also stop as soon as the passes have reported
+ * that many, in every task, and only that many are returned. The time spent in each pass and the number of nodes given to it are kept, see {@link #getStats()}.
+ */
+public class PassManager {
+
+    private static final Comparator<Report> SOURCE_ORDER = Comparator.comparingInt(Report::getLine)
+            .thenComparingInt(Report::getColumn);
+
+    private final List<List<AnalysisPass>> traversals;
+    private final Map<AnalysisPass, PassStats> stats = new HashMap<>();
+
+    private ForkJoinPool pool;
+    private int maxErrors = 0;
+
+    /**
+     * @param passes the passes in the order they run when they do not depend on each other
+     */
+    public PassManager(List<? extends AnalysisPass> passes) {
+        this.traversals = groupTraversals(sortByDependencies(passes));
+    }
+
+    /**
+     * Orders the passes so that each comes after its dependencies, keeping the given order otherwise.
+     */
+    private static List<AnalysisPass> sortByDependencies(List<? extends AnalysisPass> passes) {
+        Map<Class<?>, AnalysisPass> byClass = new HashMap<>();
+        for (var pass : passes) {
+            byClass.put(pass.getClass(), pass);
+        }
+        for (var pass : passes) {
+            for (var dependency : pass.getDependencies()) {
+                if (!byClass.containsKey(dependency)) {
+                    throw new IllegalArgumentException("Pass " + pass.getName() + " depends on "
+                            + dependency.getSimpleName() + ", which is not registered");
+                }
+            }
+        }
+
+        var sorted = new LinkedHashSet<AnalysisPass>();
+        while (sorted.size() < passes.size()) {
+            // the first pass whose dependencies have all been placed
+            var next = passes.stream()
+                    .filter(pass -> !sorted.contains(pass))
+                    .filter(pass -> pass.getDependencies().stream().allMatch(dep -> sorted.contains(byClass.get(dep))))
+                    .findFirst()
+                    .orElseThrow(() -> new IllegalArgumentException("Cyclic dependencies between the passes "
+                            + passes.stream().filter(pass -> !sorted.contains(pass)).map(AnalysisPass::getName).toList()));
+            sorted.add(next);
+        }
+
+        return new ArrayList<>(sorted);
+    }
+
+    private static List<List<AnalysisPass>> groupTraversals(List<AnalysisPass> passes) {
+        List<List<AnalysisPass>> traversals = new ArrayList<>();
+        List<AnalysisPass> current = null;
+
+        for (var pass : passes) {
+            boolean fuses = current != null && pass instanceof AnalysisVisitor
+                    && current.get(0) instanceof AnalysisVisitor
+                    && current.stream().noneMatch(previous -> pass.getDependencies().contains(previous.getClass()));
+
+            if (!fuses) {
+                current = new ArrayList<>();
+                traversals.add(current);
+            }
+            current.add(pass);
+        }
+
+        return traversals;
+    }
+
+    /**
+     * @param pool the pool the methods are analysed in, or null to analyse them one after the other
+     */
+    public void setPool(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * @param maxErrors the number of errors after which the analysis stops, or 0 to find all the errors of the first
+     *                  traversal that has any
+     */
+    public void setMaxErrors(int maxErrors) {
+        this.maxErrors = maxErrors;
+    }
+
+    /**
+     * @return the passes of each traversal, in the order they run
+     */
+    public List<List<String>> getTraversals() {
+        return traversals.stream()
+                .map(passes -> passes.stream().map(AnalysisPass::getName).toList())
+                .toList();
+    }
+
+    /**
+     * Runs the passes over the tree.
+     *
+     * @param root
+     * @param table
+     * @return the reports of the passes up to the first traversal that produced any, with at most the maximum number of
+     * errors
+     */
+    public List<Report> run(JmmNode root, SymbolTable table) {
+        return run(root, table, null);
+    }
+
+    /**
+     * Runs the passes over the tree with each method analysed on its own, as with a pool, reusing the reports that
+     * were kept for some of the methods.
+     *
+     * @param root
+     * @param table
+     * @param methodReports the reports of each method, one list per traversal; the methods that are not in the map or
+     *                      that have no reports for a traversal are analysed, and their reports added to the map
+     * @return the reports of the passes up to the first traversal that produced any, with at most the maximum number of
+     * errors; the methods whose walk was stopped by the limit are not added to the map
+     * @throws IllegalStateException if a method has to be analysed and one of the passes cannot be split per method
+     */
+    public List<Report> run(JmmNode root, SymbolTable table, Map<JmmNode, List<List<Report>>> methodReports) {
+        stats.clear();
+        var budget = new ErrorBudget(maxErrors);
+        List<Report> reports = new ArrayList<>();
+
+        for (int i = 0; i < traversals.size(); i++) {
+            var passes = traversals.get(i);
+            if (passes.get(0) instanceof AnalysisVisitor) {
+                reports.addAll(traverse(root, table, passes, i, methodReports, budget));
+            } else if (methodReports != null) {
+                throw new IllegalStateException("Pass " + passes.get(0).getName() + " cannot analyse methods on their own");
+            } else {
+                reports.addAll(runAlone(root, table, passes.get(0), i));
+            }
+
+            if (!reports.isEmpty()) {
+                break;
+            }
+        }
+
+        return budget.truncate(reports);
+    }
+
+    private List<Report> runAlone(JmmNode root, SymbolTable table, AnalysisPass pass, int traversal) {
+        var passStats = new PassStats(pass.getName(), traversal);
+        stats.put(pass, passStats);
+
+        long start = System.nanoTime();
+        try {
+            return pass.analyze(root, table);
+        } catch (Exception e) {
+            return List.of(newPassError(pass, e));
+        } finally {
+            passStats.nanos += System.nanoTime() - start;
+        }
+    }
+
+    private List<Report> traverse(JmmNode root, SymbolTable table, List<AnalysisPass> passes, int traversal,
+                                  Map<JmmNode, List<List<Report>>> methodReports, ErrorBudget budget) {
+        List<AnalysisVisitor> visitors = passes.stream().map(pass -> (AnalysisVisitor) pass).toList();
+        List<PassStats> visitorStats = new ArrayList<>();
+        for (var pass : passes) {
+            var passStats = new PassStats(pass.getName(), traversal);
+            visitorStats.add(passStats);
+            stats.put(pass, passStats);
+        }
+
+        // the instances for the methods visit the same kinds as the visitors they were created from
+        var visitorsByKind = new KindDispatch<int[]>();
+
+        var methods = getMethods(root);
+        var analysed = methods.stream()
+                .filter(method -> methodReports == null || !methodReports.containsKey(method)
+                        || methodReports.get(method).size() <= traversal)
+                .toList();
+        var methodWalks = pool == null && methodReports == null ? null
+                : newMethodWalks(analysed, visitors, visitorsByKind, budget);
+
+        if (methodWalks == null) {
+            if (methodReports != null) {
+                throw new IllegalStateException("One of the passes " + getTraversals().get(traversal)
+                        + " cannot analyse methods on their own");
+            }
+
+            var walk = new Walk(visitors, root, visitorsByKind, budget);
+            walk.run(table, Set.of());
+            walk.addStats(visitorStats);
+            return walk.getReports();
+        }
+
+        // the nodes outside the methods here, each method in a walk of its own
+        var classWalk = new Walk(visitors, root, visitorsByKind, budget);
+        Set<JmmNode> skipped = Collections.newSetFromMap(new IdentityHashMap<>());
+        skipped.addAll(methods);
+        classWalk.run(table, skipped);
+
+        runWalks(methodWalks, table);
+
+        classWalk.addStats(visitorStats);
+        methodWalks.forEach(walk -> walk.addStats(visitorStats));
+
+        Map<JmmNode, Walk> walksByMethod = new IdentityHashMap<>();
+        methodWalks.forEach(walk -> walksByMethod.put(walk.root, walk));
+
+        List<Report> reports = new ArrayList<>(classWalk.getReports());
+        for (var method : methods) {
+            var walk = walksByMethod.get(method);
+            if (walk == null) {
+                reports.addAll(methodReports.get(method).get(traversal));
+                continue;
+            }
+
+            reports.addAll(walk.getReports());
+            // a stopped walk may have missed reports, the method is analysed again next time
+            if (methodReports != null && walk.isComplete()) {
+                methodReports.computeIfAbsent(method, key -> new ArrayList<>()).add(walk.getReports());
+            }
+        }
+
+        // the methods finish in any order, their reports do not depend on it
+        reports.sort(SOURCE_ORDER);
+        return reports;
+    }
+
+    private void runWalks(List<Walk> walks, SymbolTable table) {
+        if (pool == null) {
+            walks.forEach(walk -> walk.run(table, Set.of()));
+            return;
+        }
+
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (var walk : walks) {
+            tasks.add(() -> {
+                walk.run(table, Set.of());
+                return null;
+            });
+        }
+        for (var task : pool.invokeAll(tasks)) {
+            try {
+                task.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while analysing the methods", e);
+            } catch (ExecutionException e) {
+                throw new RuntimeException("Could not analyse a method", e.getCause());
+            }
+        }
+    }
+
+    /**
+     * @return a walk with new instances of the visitors for each method, or null if one of the visitors cannot be split
+     */
+    private static List<Walk> newMethodWalks(List<JmmNode> methods, List<AnalysisVisitor> visitors,
+                                             KindDispatch<int[]> visitorsByKind, ErrorBudget budget) {
+        List<Walk> walks = new ArrayList<>();
+        for (var method : methods) {
+            List<AnalysisVisitor> methodVisitors = new ArrayList<>();
+            for (var visitor : visitors) {
+                var methodVisitor = visitor.newMethodVisitor();
+                if (methodVisitor == null) {
+                    return null;
+                }
+                methodVisitors.add(methodVisitor);
+            }
+            walks.add(new Walk(methodVisitors, method, visitorsByKind, budget));
+        }
+        return walks;
+    }
+
+    static List<JmmNode> getMethods(JmmNode root) {
+        // methods are members of the class, which is a child of the program
+        return root.getChildren().stream()
+                .filter(Kind.CLASS_DECLARATION::check)
+                .flatMap(classDecl -> classDecl.getChildren().stream())
+                .filter(Kind.METHOD_DECLARATION::check)
+                .toList();
+    }
+
+    private static Report newPassError(AnalysisPass pass, Exception e) {
+        return Report.newError(Stage.SEMANTIC, -1, -1,
+                "Problem while executing analysis pass '" + pass.getClass() + "'", e);
+    }
+
+    /**
+     * @return the time and number of visited nodes of each pass that ran in the last analysis, in the order they ran
+     */
+    public List<PassStats> getStats() {
+        return traversals.stream()
+                .flatMap(List::stream)
+                .filter(stats::containsKey)
+                .map(stats::get)
+                .toList();
+    }
+
+    public String formatStats() {
+        return getStats().stream()
+                .map(PassStats::toString)
+                .collect(Collectors.joining("\n"));
+    }
+
+    /**
+     * One preorder walk of a subtree, giving each node to the visitors that visit its kind.
+     */
+    private static class Walk {
+
+        private final List<AnalysisVisitor> visitors;
+        private final JmmNode root;
+
+        private final long[] visits;
+        private final long[] nanos;
+
+        // visitors that threw are not given any more nodes
+        private final boolean[] failed;
+        private final List<Report> failures = new ArrayList<>();
+
+        // nodes of the same kind have the same hierarchy, so they go to the same visitors
+        private final KindDispatch<int[]> visitorsByKind;
+
+        // the errors of all the walks of an analysis, each walk stops once there are enough
+        private final ErrorBudget budget;
+        private final int[] counted;
+        private boolean complete = false;
+
+        Walk(List<AnalysisVisitor> visitors, JmmNode root, KindDispatch<int[]> visitorsByKind, ErrorBudget budget) {
+            this.visitors = visitors;
+            this.root = root;
+            this.visitorsByKind = visitorsByKind;
+            this.budget = budget;
+            this.visits = new long[visitors.size()];
+            this.nanos = new long[visitors.size()];
+            this.failed = new boolean[visitors.size()];
+            this.counted = new int[visitors.size()];
+        }
+
+        /**
+         * @param skipped nodes that are left out of the walk, along with their descendants
+         */
+        void run(SymbolTable table, Set<JmmNode> skipped) {
+            var pending = new ArrayDeque<JmmNode>();
+            pending.push(root);
+            while (!pending.isEmpty()) {
+                if (budget.isExhausted()) {
+                    return;
+                }
+
+                var node = pending.pop();
+                if (skipped.contains(node)) {
+                    continue;
+                }
+
+                var nodeVisitors = visitorsByKind.get(node, kindNode ->
+                        IntStream.range(0, visitors.size())
+                                .filter(i -> kindNode.getHierarchy().stream()
+                                        .anyMatch(visitors.get(i).getVisitedKinds()::contains))
+                                .toArray());
+
+                for (int i : nodeVisitors) {
+                    if (failed[i]) {
+                        continue;
+                    }
+
+                    long start = System.nanoTime();
+                    try {
+                        visitors.get(i).visitNode(node, table);
+                    } catch (Exception e) {
+                        failed[i] = true;
+                        failures.add(newPassError(visitors.get(i), e));
+                        budget.count(failures, failures.size() - 1);
+                    }
+                    nanos[i] += System.nanoTime() - start;
+                    visits[i]++;
+
+                    var visitorReports = visitors.get(i).getReports();
+                    if (visitorReports.size() > counted[i]) {
+                        budget.count(visitorReports, counted[i]);
+                        counted[i] = visitorReports.size();
+                    }
+                }
+
+                // children are taken after the visits, which may change them
+                var children = node.getChildren();
+                for (int i = children.size() - 1; i >= 0; i--) {
+                    pending.push(children.get(i));
+                }
+            }
+
+            complete = true;
+        }
+
+        /**
+         * @return true if the walk visited the whole subtree, false if it stopped on the limit of errors
+         */
+        boolean isComplete() {
+            return complete;
+        }
+
+        /**
+         * @return the reports of the visitors, in the order of the visitors, followed by their failures
+         */
+        List<Report> getReports() {
+            List<Report> reports = new ArrayList<>();
+            for (var visitor : visitors) {
+                reports.addAll(visitor.getReports());
+            }
+            reports.addAll(failures);
+            return reports;
+        }
+
+        void addStats(List<PassStats> stats) {
+            for (int i = 0; i < visitors.size(); i++) {
+                stats.get(i).visits += visits[i];
+                stats.get(i).nanos += nanos[i];
+            }
+        }
+    }
+
+    /**
+     * Number of errors the walks of one analysis have reported, shared by the walks of all the tasks.
+     */
+    private static class ErrorBudget {
+
+        private final int maxErrors;
+        private final AtomicInteger errors = new AtomicInteger();
+
+        /**
+         * @param maxErrors the number of errors that stops the walks, or 0 for no limit
+         */
+        ErrorBudget(int maxErrors) {
+            this.maxErrors = maxErrors;
+        }
+
+        boolean isExhausted() {
+            return maxErrors > 0 && errors.get() >= maxErrors;
+        }
+
+        /**
+         * Counts the errors among the reports, from the given index on.
+         */
+        void count(List<Report> reports, int from) {
+            if (maxErrors <= 0) {
+                return;
+            }
+
+            int newErrors = 0;
+            for (int i = from; i < reports.size(); i++) {
+                if (reports.get(i).getType() == ReportType.ERROR) {
+                    newErrors++;
+                }
+            }
+            errors.addAndGet(newErrors);
+        }
+
+        /**
+         * Walks in other tasks may report a few errors before they see the limit, those past it are left out.
+         *
+         * @return the reports up to the last error allowed
+         */
+        List<Report> truncate(List<Report> reports) {
+            if (maxErrors <= 0) {
+                return reports;
+            }
+
+            int errors = 0;
+            for (int i = 0; i < reports.size(); i++) {
+                if (reports.get(i).getType() == ReportType.ERROR && ++errors == maxErrors) {
+                    return new ArrayList<>(reports.subList(0, i + 1));
+                }
+            }
+            return reports;
+        }
+    }
+
+    /**
+     * Work done by one pass in the last analysis.
+     */
+    public static class PassStats {
+
+        private final String pass;
+        private final int traversal;
+        private long visits;
+        private long nanos;
+
+        PassStats(String pass, int traversal) {
+            this.pass = pass;
+            this.traversal = traversal;
+        }
+
+        public String getPass() {
+            return pass;
+        }
+
+        /**
+         * @return the index of the traversal the pass ran in, passes with the same index shared it
+         */
+        public int getTraversal() {
+            return traversal;
+        }
+
+        /**
+         * @return the number of nodes given to the pass, 0 for passes that walk the tree on their own
+         */
+        public long getVisits() {
+            return visits;
+        }
+
+        /**
+         * @return the time spent in the pass, added over the threads when methods were analysed in parallel
+         */
+        public long getNanos() {
+            return nanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s: traversal %d, %d nodes, %.3f ms", pass, traversal, visits, nanos / 1_000_000.0);
+        }
+    }
+}
@@ -11,6 +11,9 @@ import pt.up.fe.comp2024.analysis.AnalysisVisitor;
 import pt.up.fe.comp2024.ast.Kind;
 import pt.up.fe.comp2024.ast.NodeUtils;
 import pt.up.fe.comp2024.ast.TypeUtils;
+import pt.up.fe.comp2024.symboltable.JmmSymbolTable;
+import pt.up.fe.comp2024.symboltable.MethodSignature;
+import pt.up.fe.comp2024.utils.Diagnostics;
 import pt.up.fe.specs.util.SpecsCheck;
 
 import java.util.*;
@@ -24,7 +27,8 @@ public class UndeclaredVariable extends AnalysisVisitor {
 
     private String currentMethod;
     private Set<String> declaredFields = new HashSet<>();
-    private Set<String> declaredMethods = new HashSet<>();
+    // the name of each method, followed by the types of its parameters
+    private Set<List<Object>> declaredMethods = new HashSet<>();
 
     private Set<String> importedClasses = new HashSet<>();
 
@@ -34,6 +38,15 @@ public class UndeclaredVariable extends AnalysisVisitor {
 
 
 
+    /**
+     * Apart from the duplicate imports, fields and methods, which are checked outside the methods, each method is
+     * checked on its own.
+     */
+    @Override
+    protected AnalysisVisitor newMethodVisitor() {
+        return new UndeclaredVariable();
+    }
+
     @Override
     public void buildVisitor() {
         addVisit(Kind.METHOD_DECL, this::visitMethodDecl);
@@ -87,7 +100,7 @@ public class UndeclaredVariable extends AnalysisVisitor {
 
         String[] importParts = importName.split("\\.");
         String className = importParts[importParts.length - 1];
-        System.out.println(className);
+        Diagnostics.debug(() -> "Import of class " + className);
 
         if (importedClasses.contains(className)) {
             String message = "Duplicate import declaration: " + className;
@@ -132,6 +145,24 @@ public class UndeclaredVariable extends AnalysisVisitor {
     }
 
     private Void dealClassDecl(JmmNode node, SymbolTable table){
+        // checked here and not when visiting each method, which may be analysed on its own
+        for (JmmNode method : node.getChildren("MethodDeclaration")) {
+            String methodName = method.get("name");
+            // overloads are methods with the same name and different parameters
+            List<Object> signature = List.of(methodName, MethodSignature.getParamTypes(method));
+            if (declaredMethods.contains(signature)) {
+                String message = "Duplicate method declaration: " + methodName;
+                addReport(Report.newError(
+                        Stage.SEMANTIC,
+                        NodeUtils.getLine(method),
+                        NodeUtils.getColumn(method),
+                        message, null)
+                );
+            } else {
+                declaredMethods.add(signature);
+            }
+        }
+
         for (JmmNode field : node.getChildren("VarDeclaration")) {
             String fieldName = field.get("name");
             if (declaredFields.contains(fieldName)) {
@@ -281,8 +312,7 @@ public class UndeclaredVariable extends AnalysisVisitor {
 
 
     private Void visitMethodDecl(JmmNode method, SymbolTable table) {
-        currentMethod = method.get("name");
-        String methodName = method.get("name");
+        currentMethod = JmmSymbolTable.getMethodKey(table, method);
         List<JmmNode> params=method.getChildren("ParamDeclaration");
         Set <String> paramsSet = new HashSet<>();
         localVariables.clear();
@@ -304,19 +334,6 @@ public class UndeclaredVariable extends AnalysisVisitor {
         }
 
 
-        if (declaredMethods.contains(methodName)) {
-            String message = "Duplicate method declaration: " + methodName;
-            addReport(Report.newError(
-                    Stage.SEMANTIC,
-                    NodeUtils.getLine(method),
-                    NodeUtils.getColumn(method),
-                    message, null)
-            );
-        } else {
-            declaredMethods.add(methodName);
-        }
-
-
         for (JmmNode param : params) {
             if (paramsSet.contains(param.get("name"))) {
                 String message = "Duplicate parameter name";
@@ -367,7 +384,7 @@ public class UndeclaredVariable extends AnalysisVisitor {
         }
 
         // check if method is imported or extended
-        if (table.getMethods().contains(currentMethod) || table.getImports().contains(currentMethod)) {
+        if (table.getMethods().contains(method.get("name")) || table.getImports().contains(currentMethod)) {
             return null;
         } else {
             String message = "Method not declared";
@@ -388,20 +405,15 @@ public class UndeclaredVariable extends AnalysisVisitor {
         // Check if exists a parameter or variable declaration with the same name as the variable reference
         var varRefName = varRefExpr.get("name");
 
-        // Check if the variable is a local variable
-        if (table.getLocalVariables(currentMethod).stream()
-                .anyMatch(varDecl -> varDecl.getName().equals(varRefName))) {
-            return null;
-        }
+        var symbol = JmmSymbolTable.resolve(table, currentMethod, varRefName);
 
-        // Check if the variable is a parameter
-        if (table.getParameters(currentMethod).stream()
-                .anyMatch(param -> param.getName().equals(varRefName))) {
+        // Check if the variable is a local variable or a parameter
+        if (symbol.isPresent() && !symbol.get().isField()) {
             return null;
         }
 
         // Check if the variable is a field
-        if (table.getFields().stream().anyMatch(field -> field.getName().equals(varRefName))) {
+        if (symbol.isPresent()) {
             if (isCurrentMethodStatic) {
                 String message = "Cannot access instance field '" + varRefName + "' from static method '" + currentMethod + "'.";
                 addReport(Report.newError(
@@ -697,9 +709,11 @@ public class UndeclaredVariable extends AnalysisVisitor {
             return null;
         }
 
-        if (rhsNode.getKind().equals("MethodCall")) {
+        // unless the class file says what it returns, a method of an imported class is assumed to fit
+        if (rhsNode.getKind().equals("MethodCall") && TypeUtils.getImportedReturnType(rhsNode, table).isEmpty()) {
             var aux3 = rhsNode.getJmmChild(0);
-            if (table.getImports().contains(TypeUtils.getExprType(aux3, table).getName())) {
+            var receiverType = TypeUtils.getExprType(aux3, table);
+            if (receiverType != null && table.getImports().contains(receiverType.getName())) {
                 return null;
             }
         }
@@ -743,6 +757,19 @@ public class UndeclaredVariable extends AnalysisVisitor {
 
     private Void visitMethodCall (JmmNode method, SymbolTable table){
 
+        String calledName = method.get("value");
+        if (JmmSymbolTable.isOverloaded(table, calledName) && TypeUtils.isCallOnClass(method, table)
+                && TypeUtils.getCallTarget(method, table).isEmpty()) {
+            String message = "No single overload of method '" + calledName + "' accepts the arguments of the call";
+            addReport(Report.newError(
+                    Stage.SEMANTIC,
+                    NodeUtils.getLine(method),
+                    NodeUtils.getColumn(method),
+                    message, null)
+            );
+            return null;
+        }
+
         if (method.getChild(0).getKind().equals("This")) {
             return null;
         }
@@ -774,14 +801,8 @@ public class UndeclaredVariable extends AnalysisVisitor {
 
         String methodName = method.get("value");
 
-        for (String importedClass : table.getImports()) {
-            String[] parts = importedClass.split("\\.");
-
-            String lastPart = parts[parts.length - 1];
-
-            if (lastPart.equals(methodName)) {
-                return null;
-            }
+        if (JmmSymbolTable.isImported(table, methodName)) {
+            return null;
         }
 
         if(!table.getMethods().contains(method.get("value")) && !table.getImports().contains(method.get("value"))){
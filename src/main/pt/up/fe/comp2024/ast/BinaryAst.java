@@ -0,0 +1,589 @@
+package pt.up.fe.comp2024.ast;
+
+import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp.jmm.ast.JmmNodeImpl;
+import pt.up.fe.comp.jmm.ast.NodePosition;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Compact binary form of a JmmNode tree, to cache parse results on disk and to hand them between processes.
+ * <p>
+ * Layout, all integers are unsigned LEB128 varints unless said otherwise:
+ * <pre>
+ * magic "JMMB" | version (2 bytes) | flags (1 byte) | fingerprint of {@link Kind} (4 bytes)
+ * strings:     count, then the UTF-8 length and bytes of each
+ * hierarchies: count, then for each the number of names and their string indexes
+ * nodes, in preorder: kind, hierarchy, positions, attributes, children
+ * CRC32 of everything before it (4 bytes)
+ * </pre>
+ * A kind is its ordinal plus one, or 0 followed by the string index of a kind that is not in {@link Kind}. Positions
+ * start with a byte that tells which of the four the node has, followed by the difference of each to the same position
+ * of the last node that had it, in zigzag encoding. In preorder the positions of a tree read from a file only move a
+ * few characters from node to node, so most take a single byte. Attribute values are strings, booleans, ints, null, or
+ * lists of those.
+ * <p>
+ * The reader decodes straight from a {@link ByteBuffer}, which can be a mapping of the file, and rebuilds the tree as
+ * typed nodes if it was written from typed nodes. Both directions walk the tree with an explicit stack.
+ */
+public class BinaryAst {
+
+    public static final int VERSION = 1;
+
+    private static final byte[] MAGIC = {'J', 'M', 'M', 'B'};
+    private static final int HEADER_SIZE = MAGIC.length + 2 + 1 + 4;
+    private static final int CHECKSUM_SIZE = 4;
+
+    private static final int FLAG_TYPED = 1;
+
+    private static final int TAG_STRING = 0;
+    private static final int TAG_TRUE = 1;
+    private static final int TAG_FALSE = 2;
+    private static final int TAG_NULL = 3;
+    private static final int TAG_INT = 4;
+    private static final int TAG_LIST = 5;
+
+    private static final NodePosition[] POSITIONS = {NodePosition.LINE_START, NodePosition.COL_START,
+            NodePosition.LINE_END, NodePosition.COL_END};
+
+    private static final Kind[] KINDS = Kind.values();
+
+    /**
+     * Ordinals are only meaningful for the same list of kinds, files written by a build with other kinds are rejected.
+     */
+    private static final int KIND_FINGERPRINT = kindFingerprint();
+
+    // Writing
+
+    public static byte[] write(JmmNode root) {
+        return new Writer().write(root);
+    }
+
+    public static void write(JmmNode root, Path file) throws IOException {
+        Files.write(file, write(root));
+    }
+
+    // Reading
+
+    public static JmmNode read(byte[] bytes) {
+        return read(ByteBuffer.wrap(bytes));
+    }
+
+    /**
+     * Reads a tree from the remaining bytes of the buffer, without changing its position.
+     */
+    public static JmmNode read(ByteBuffer buffer) {
+        return new Reader(buffer.slice()).read();
+    }
+
+    /**
+     * Reads a tree through a memory mapping of the file.
+     */
+    public static JmmNode read(Path file) throws IOException {
+        try (var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return read(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    private static int kindFingerprint() {
+        var crc = new CRC32();
+        for (var kind : KINDS) {
+            crc.update(kind.getNodeName().getBytes(StandardCharsets.UTF_8));
+            crc.update(0);
+        }
+        return (int) crc.getValue();
+    }
+
+    private static class Writer {
+
+        private final Output body = new Output();
+        private final Map<String, Integer> strings = new HashMap<>();
+        private final List<String> stringTable = new ArrayList<>();
+        private final Map<List<String>, Integer> hierarchies = new HashMap<>();
+        private final List<List<String>> hierarchyTable = new ArrayList<>();
+        private final int[] previousPositions = new int[POSITIONS.length];
+
+        byte[] write(JmmNode root) {
+            var pending = new ArrayDeque<JmmNode>();
+            pending.push(root);
+            while (!pending.isEmpty()) {
+                var node = pending.pop();
+                writeNode(node);
+
+                var children = node.getChildren();
+                for (int i = children.size() - 1; i >= 0; i--) {
+                    pending.push(children.get(i));
+                }
+            }
+
+            var out = new Output();
+            out.writeBytes(MAGIC, MAGIC.length);
+            out.writeByte(VERSION >>> 8);
+            out.writeByte(VERSION);
+            out.writeByte(root instanceof TypedJmmNode ? FLAG_TYPED : 0);
+            out.writeInt(KIND_FINGERPRINT);
+
+            out.writeVarint(stringTable.size());
+            for (var string : stringTable) {
+                var bytes = string.getBytes(StandardCharsets.UTF_8);
+                out.writeVarint(bytes.length);
+                out.writeBytes(bytes, bytes.length);
+            }
+
+            out.writeVarint(hierarchyTable.size());
+            for (var hierarchy : hierarchyTable) {
+                out.writeVarint(hierarchy.size());
+                for (var name : hierarchy) {
+                    out.writeVarint(strings.get(name));
+                }
+            }
+
+            out.writeBytes(body.bytes, body.size);
+
+            var crc = new CRC32();
+            crc.update(out.bytes, 0, out.size);
+            out.writeInt((int) crc.getValue());
+
+            return Arrays.copyOf(out.bytes, out.size);
+        }
+
+        private void writeNode(JmmNode node) {
+            var kind = Kind.fromStringOrNull(node.getKind());
+            if (kind == null) {
+                body.writeVarint(0);
+                body.writeVarint(string(node.getKind()));
+            } else {
+                body.writeVarint(kind.ordinal() + 1);
+            }
+            body.writeVarint(hierarchy(node));
+
+            List<String> attributes = new ArrayList<>();
+            for (var attribute : node.getAttributes()) {
+                if (toPosition(attribute) == null || positionOf(node, attribute) == -1) {
+                    attributes.add(attribute);
+                }
+            }
+            writePositions(node);
+
+            body.writeVarint(attributes.size());
+            for (var attribute : attributes) {
+                body.writeVarint(string(attribute));
+                writeValue(attribute, node.getObject(attribute));
+            }
+
+            body.writeVarint(node.getNumChildren());
+        }
+
+        private void writePositions(JmmNode node) {
+            int present = 0;
+            var positions = new int[POSITIONS.length];
+            for (int i = 0; i < POSITIONS.length; i++) {
+                positions[i] = positionOf(node, POSITIONS[i].getKey());
+                if (positions[i] != -1) {
+                    present |= 1 << i;
+                }
+            }
+
+            body.writeByte(present);
+            for (int i = 0; i < POSITIONS.length; i++) {
+                if (positions[i] != -1) {
+                    body.writeVarint(zigzag(positions[i] - previousPositions[i]));
+                    previousPositions[i] = positions[i];
+                }
+            }
+        }
+
+        /**
+         * @return the position, or -1 if the node does not have it or it is not a valid position
+         */
+        private int positionOf(JmmNode node, String attribute) {
+            var value = node.getOptionalObject(attribute);
+            if (value.isEmpty()) {
+                return -1;
+            }
+            try {
+                int position = Integer.parseInt(value.get().toString());
+                return position >= 0 ? position : -1;
+            } catch (NumberFormatException e) {
+                return -1;
+            }
+        }
+
+        private void writeValue(String attribute, Object value) {
+            if (value == null) {
+                body.writeByte(TAG_NULL);
+            } else if (value instanceof String string) {
+                body.writeByte(TAG_STRING);
+                body.writeVarint(string(string));
+            } else if (value instanceof Boolean bool) {
+                body.writeByte(bool ? TAG_TRUE : TAG_FALSE);
+            } else if (value instanceof Integer number) {
+                body.writeByte(TAG_INT);
+                body.writeVarint(zigzag(number));
+            } else if (value instanceof List<?> list) {
+                body.writeByte(TAG_LIST);
+                body.writeVarint(list.size());
+                for (var element : list) {
+                    writeValue(attribute, element);
+                }
+            } else {
+                throw new IllegalArgumentException("Cannot serialize attribute '" + attribute + "' of class "
+                        + value.getClass().getName());
+            }
+        }
+
+        private int string(String string) {
+            return strings.computeIfAbsent(string, key -> {
+                stringTable.add(key);
+                return stringTable.size() - 1;
+            });
+        }
+
+        private int hierarchy(JmmNode node) {
+            List<String> hierarchy = List.copyOf(node.getHierarchy());
+            return hierarchies.computeIfAbsent(hierarchy, key -> {
+                key.forEach(this::string);
+                hierarchyTable.add(key);
+                return hierarchyTable.size() - 1;
+            });
+        }
+    }
+
+    private static class Reader {
+
+        private final ByteBuffer buffer;
+        private String[] strings;
+        private List<List<String>> hierarchies;
+        private boolean typed;
+        private final int[] previousPositions = new int[POSITIONS.length];
+
+        Reader(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        JmmNode read() {
+            readHeader();
+
+            strings = new String[readCount()];
+            for (int i = 0; i < strings.length; i++) {
+                strings[i] = readUtf8(readCount());
+            }
+
+            int numHierarchies = readCount();
+            hierarchies = new ArrayList<>(numHierarchies);
+            for (int i = 0; i < numHierarchies; i++) {
+                var names = new String[readCount()];
+                for (int j = 0; j < names.length; j++) {
+                    names[j] = readString();
+                }
+                hierarchies.add(List.of(names));
+            }
+
+            return typed ? readTree(new TypedTreeBuilder()).asJmmNode() : readTree(new ImplTreeBuilder());
+        }
+
+        private void readHeader() {
+            if (buffer.remaining() < HEADER_SIZE + CHECKSUM_SIZE) {
+                throw new IllegalArgumentException("Not a binary AST, only " + buffer.remaining() + " bytes");
+            }
+            for (var magic : MAGIC) {
+                if (buffer.get() != magic) {
+                    throw new IllegalArgumentException("Not a binary AST, wrong magic number");
+                }
+            }
+
+            int version = (buffer.get() & 0xFF) << 8 | buffer.get() & 0xFF;
+            if (version != VERSION) {
+                throw new IllegalArgumentException("Binary AST has version " + version + ", expected " + VERSION);
+            }
+
+            int end = buffer.limit() - CHECKSUM_SIZE;
+            var crc = new CRC32();
+            crc.update(buffer.duplicate().position(0).limit(end));
+            if ((int) crc.getValue() != buffer.getInt(end)) {
+                throw new IllegalArgumentException("Binary AST is corrupted, checksum does not match");
+            }
+            // nothing after the nodes is read
+            buffer.limit(end);
+
+            typed = (buffer.get() & FLAG_TYPED) != 0;
+            if (buffer.getInt() != KIND_FINGERPRINT) {
+                throw new IllegalArgumentException("Binary AST was written with different node kinds");
+            }
+        }
+
+        private <N> N readTree(TreeBuilder<N> builder) {
+            N root = null;
+            // parents that still expect children, with how many
+            var parents = new ArrayDeque<N>();
+            var remaining = new ArrayDeque<int[]>();
+
+            do {
+                var node = readNode(builder);
+                int numChildren = readCount();
+
+                if (root == null) {
+                    root = node;
+                } else {
+                    builder.addChild(parents.peek(), node);
+                    if (--remaining.peek()[0] == 0) {
+                        parents.pop();
+                        remaining.pop();
+                    }
+                }
+
+                if (numChildren > 0) {
+                    parents.push(node);
+                    remaining.push(new int[]{numChildren});
+                }
+            } while (!parents.isEmpty());
+
+            if (buffer.hasRemaining()) {
+                throw new IllegalArgumentException("Binary AST has " + buffer.remaining() + " bytes after the tree");
+            }
+
+            return root;
+        }
+
+        private <N> N readNode(TreeBuilder<N> builder) {
+            int kindIndex = readCount();
+            String kindName;
+            Kind kind = null;
+            if (kindIndex == 0) {
+                kindName = readString();
+            } else {
+                if (kindIndex > KINDS.length) {
+                    throw new IllegalArgumentException("Binary AST has unknown kind " + kindIndex);
+                }
+                kind = KINDS[kindIndex - 1];
+                kindName = kind.getNodeName();
+            }
+
+            int hierarchy = readCount();
+            if (hierarchy >= hierarchies.size()) {
+                throw new IllegalArgumentException("Binary AST has unknown hierarchy " + hierarchy);
+            }
+
+            var node = builder.newNode(kind, kindName, hierarchies.get(hierarchy));
+
+            int present = buffer.get();
+            for (int i = 0; i < POSITIONS.length; i++) {
+                if ((present & 1 << i) != 0) {
+                    previousPositions[i] += unzigzag(readVarint());
+                    builder.setPosition(node, POSITIONS[i], previousPositions[i]);
+                }
+            }
+
+            int numAttributes = readCount();
+            for (int i = 0; i < numAttributes; i++) {
+                var name = readString();
+                builder.putAttribute(node, name, readValue());
+            }
+
+            return node;
+        }
+
+        private Object readValue() {
+            int tag = buffer.get();
+            return switch (tag) {
+                case TAG_STRING -> readString();
+                case TAG_TRUE -> Boolean.TRUE;
+                case TAG_FALSE -> Boolean.FALSE;
+                case TAG_NULL -> null;
+                case TAG_INT -> unzigzag(readVarint());
+                case TAG_LIST -> {
+                    int size = readCount();
+                    List<Object> list = new ArrayList<>(size);
+                    for (int i = 0; i < size; i++) {
+                        list.add(readValue());
+                    }
+                    yield list;
+                }
+                default -> throw new IllegalArgumentException("Binary AST has unknown value tag " + tag);
+            };
+        }
+
+        private String readString() {
+            int index = readCount();
+            if (index >= strings.length) {
+                throw new IllegalArgumentException("Binary AST has unknown string " + index);
+            }
+            return strings[index];
+        }
+
+        private String readUtf8(int length) {
+            if (length > buffer.remaining()) {
+                throw new IllegalArgumentException("Binary AST is truncated");
+            }
+
+            String string;
+            if (buffer.hasArray()) {
+                string = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length,
+                        StandardCharsets.UTF_8);
+                buffer.position(buffer.position() + length);
+            } else {
+                var bytes = new byte[length];
+                buffer.get(bytes);
+                string = new String(bytes, StandardCharsets.UTF_8);
+            }
+            // each string is in the table once, equal names of the tree already share an instance
+            return string;
+        }
+
+        /**
+         * @return a varint that is a size or an index, never negative
+         */
+        private int readCount() {
+            int value = readVarint();
+            if (value < 0) {
+                throw new IllegalArgumentException("Binary AST has negative count " + value);
+            }
+            return value;
+        }
+
+        private int readVarint() {
+            int value = 0;
+            for (int shift = 0; shift < 35; shift += 7) {
+                int current = buffer.get();
+                value |= (current & 0x7F) << shift;
+                if ((current & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IllegalArgumentException("Binary AST has a malformed varint");
+        }
+    }
+
+    private interface TreeBuilder<N> {
+
+        N newNode(Kind kind, String kindName, List<String> hierarchy);
+
+        void setPosition(N node, NodePosition position, int value);
+
+        void putAttribute(N node, String name, Object value);
+
+        void addChild(N parent, N child);
+    }
+
+    private static class ImplTreeBuilder implements TreeBuilder<JmmNodeImpl> {
+
+        @Override
+        public JmmNodeImpl newNode(Kind kind, String kindName, List<String> hierarchy) {
+            var node = new JmmNodeImpl(kindName);
+            node.setHierarchy(hierarchy);
+            return node;
+        }
+
+        @Override
+        public void setPosition(JmmNodeImpl node, NodePosition position, int value) {
+            node.put(position.getKey(), Integer.toString(value));
+        }
+
+        @Override
+        public void putAttribute(JmmNodeImpl node, String name, Object value) {
+            node.putObject(name, value);
+        }
+
+        @Override
+        public void addChild(JmmNodeImpl parent, JmmNodeImpl child) {
+            parent.add(child);
+        }
+    }
+
+    private static class TypedTreeBuilder implements TreeBuilder<TypedNode> {
+
+        @Override
+        public TypedNode newNode(Kind kind, String kindName, List<String> hierarchy) {
+            if (kind == null) {
+                throw new IllegalArgumentException("Binary AST has typed node of unknown kind " + kindName);
+            }
+            return new TypedNode(kind, hierarchy);
+        }
+
+        @Override
+        public void setPosition(TypedNode node, NodePosition position, int value) {
+            node.setPosition(position, value);
+        }
+
+        @Override
+        public void putAttribute(TypedNode node, String name, Object value) {
+            node.putAttribute(name, value);
+        }
+
+        @Override
+        public void addChild(TypedNode parent, TypedNode child) {
+            parent.addChild(child);
+        }
+    }
+
+    private static int zigzag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    private static int unzigzag(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static NodePosition toPosition(String attribute) {
+        for (var position : POSITIONS) {
+            if (position.getKey().equals(attribute)) {
+                return position;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Growable byte array.
+     */
+    private static class Output {
+
+        private byte[] bytes = new byte[256];
+        private int size = 0;
+
+        void writeByte(int value) {
+            ensure(1);
+            bytes[size++] = (byte) value;
+        }
+
+        void writeBytes(byte[] source, int length) {
+            ensure(length);
+            System.arraycopy(source, 0, bytes, size, length);
+            size += length;
+        }
+
+        void writeInt(int value) {
+            writeByte(value >>> 24);
+            writeByte(value >>> 16);
+            writeByte(value >>> 8);
+            writeByte(value);
+        }
+
+        void writeVarint(int value) {
+            while ((value & ~0x7F) != 0) {
+                writeByte((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            writeByte(value);
+        }
+
+        private void ensure(int extra) {
+            if (size + extra > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + extra));
+            }
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package pt.up.fe.comp2024.ast;
+
+import pt.up.fe.comp.jmm.analysis.table.SymbolTable;
+import pt.up.fe.comp.jmm.analysis.table.Type;
+import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp2024.symboltable.JmmSymbolTable;
+
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Side table with the {@link Type} of each expression node, so that the type of an expression is computed once and then
+ * looked up, by the analysis and the code generators alike. Calls keep the method they invoke in the same way, as
+ * choosing among overloads needs the types of all the arguments.
+ * <p>
+ * Nodes are keyed by identity, JmmNode implementations keep the equality of Object. The table can be read and filled by
+ * several threads, as when methods are analysed in parallel. The table belongs to a {@link JmmSymbolTable} and is valid
+ * for the tree the symbol table was built from; passes that change the tree build a new symbol table afterwards.
+ */
+public class ExprTypes {
+
+    /**
+     * Stored for expressions without a type, such as undeclared variables, the map does not take null values.
+     */
+    private static final Type NO_TYPE = new Type("<none>", false);
+
+    private final Map<JmmNode, Type> types = new ConcurrentHashMap<>();
+    private final Map<JmmNode, Optional<String>> callTargets = new ConcurrentHashMap<>();
+
+    /**
+     * Types every expression of the tree in one pass, children before their parents, so that the type of a method
+     * receiver or of a parenthesized expression is always found in the table.
+     *
+     * @param root
+     * @param table
+     */
+    public void annotate(JmmNode root, SymbolTable table) {
+        var pending = new ArrayDeque<Frame>();
+        pending.push(new Frame(root, null));
+
+        while (!pending.isEmpty()) {
+            var frame = pending.peek();
+            var node = frame.node;
+
+            if (!frame.expanded) {
+                frame.expanded = true;
+                var method = Kind.METHOD_DECLARATION.check(node) ? JmmSymbolTable.getMethodKey(table, node) : frame.method;
+                var children = node.getChildren();
+                for (int i = children.size() - 1; i >= 0; i--) {
+                    pending.push(new Frame(children.get(i), method));
+                }
+                continue;
+            }
+
+            pending.pop();
+            if (types.containsKey(node) || !TypeUtils.TYPED_KINDS.contains(Kind.of(node))) {
+                continue;
+            }
+
+            try {
+                types.put(node, wrap(TypeUtils.computeExprType(node, table, frame.method)));
+            } catch (RuntimeException e) {
+                // leave the node out, the analysis that asks for its type reports the problem where it is found
+            }
+        }
+    }
+
+    /**
+     * @return the type of the expression, computed now if it is not in the table yet
+     */
+    public Type get(JmmNode expr, SymbolTable table) {
+        var type = types.get(expr);
+        if (type != null) {
+            return unwrap(type);
+        }
+
+        // two threads may both compute the type, they find the same one
+        type = TypeUtils.computeExprType(expr, table, null);
+        types.put(expr, wrap(type));
+        return type;
+    }
+
+    /**
+     * @return the method the call invokes, as {@link TypeUtils#getCallTarget(JmmNode, SymbolTable)} finds it, chosen
+     * now if it is not in the table yet
+     */
+    public Optional<String> getCallTarget(JmmNode methodCall, SymbolTable table) {
+        var target = callTargets.get(methodCall);
+        if (target == null) {
+            target = TypeUtils.computeCallTarget(methodCall, table);
+            callTargets.put(methodCall, target);
+        }
+        return target;
+    }
+
+    private static Type wrap(Type type) {
+        return type == null ? NO_TYPE : type;
+    }
+
+    private static Type unwrap(Type type) {
+        return type == NO_TYPE ? null : type;
+    }
+
+    /**
+     * Forgets every type, for when the table is kept for a new version of the tree.
+     */
+    public void clear() {
+        types.clear();
+        callTargets.clear();
+    }
+
+    /**
+     * @return the number of nodes with a type in the table
+     */
+    public int size() {
+        return types.size();
+    }
+
+    private static class Frame {
+
+        private final JmmNode node;
+        private final String method;
+        private boolean expanded;
+
+        Frame(JmmNode node, String method) {
+            this.node = node;
+            this.method = method;
+        }
+    }
+}
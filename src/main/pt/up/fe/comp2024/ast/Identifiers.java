@@ -0,0 +1,109 @@
+package pt.up.fe.comp2024.ast;
+
+import pt.up.fe.comp.jmm.ast.JmmNode;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Interner of the identifiers of one compilation, such as the names of classes, methods and variables.
+ * <p>
+ * Each distinct name gets a compact id, counting from 0 in the order the names are first seen, and a single String
+ * instance, so that tables can be keyed by the id and equal names compare by reference. Unlike
+ * {@link String#intern()}, the names are not kept in a table shared by the whole JVM and are freed with the
+ * compilation.
+ * <p>
+ * The parser creates one for each tree it builds and interns the names of the tree in it, the symbol table of the tree
+ * then keys its names by the same ids, see {@link #of(JmmNode)}.
+ * <p>
+ * Names can be looked up by several threads, as when methods are analysed in parallel, while new ones are added.
+ */
+public class Identifiers {
+
+    public static final int NO_ID = -1;
+
+    /**
+     * The identifiers of each tree, by its root. Keys are weak, the identifiers are freed with the tree.
+     */
+    private static final Map<JmmNode, Identifiers> BY_ROOT = Collections.synchronizedMap(new WeakHashMap<>());
+
+    private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+
+    private volatile String[] names = new String[16];
+    private int size = 0;
+
+    /**
+     * @param root
+     * @return the identifiers the names of the tree were interned in, new ones for a tree the parser did not build
+     */
+    public static Identifiers of(JmmNode root) {
+        return BY_ROOT.computeIfAbsent(root, tree -> new Identifiers());
+    }
+
+    /**
+     * Records the identifiers the names of a tree were interned in, for {@link #of(JmmNode)}.
+     */
+    public static void attach(JmmNode root, Identifiers identifiers) {
+        BY_ROOT.put(root, identifiers);
+    }
+
+    /**
+     * @return the id of the name, a new one if the name was not seen before
+     */
+    public int getId(String name) {
+        var id = ids.get(name);
+        if (id != null) {
+            return id;
+        }
+        return add(name);
+    }
+
+    private synchronized int add(String name) {
+        var id = ids.get(name);
+        if (id != null) {
+            return id;
+        }
+
+        if (size == names.length) {
+            names = Arrays.copyOf(names, size * 2);
+        }
+        // the name is stored before the id is published, whoever finds the id finds the name
+        names[size] = name;
+        ids.put(name, size);
+        return size++;
+    }
+
+    /**
+     * @return the id of the name, or {@link #NO_ID} if the name was not seen, which no table keyed by these ids has
+     */
+    public int find(String name) {
+        var id = ids.get(name);
+        return id == null ? NO_ID : id;
+    }
+
+    /**
+     * @return the single instance of the name, the given one if the name was not seen before
+     */
+    public String intern(String name) {
+        if (name == null) {
+            return null;
+        }
+        // the id first, adding the name may replace the array
+        int id = getId(name);
+        return names[id];
+    }
+
+    public String getName(int id) {
+        return names[id];
+    }
+
+    /**
+     * @return the number of names, one more than the largest id
+     */
+    public int size() {
+        return ids.size();
+    }
+}
@@ -0,0 +1,87 @@
+package pt.up.fe.comp2024.ast;
+
+import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp.jmm.ast.PreorderJmmVisitor;
+import pt.up.fe.specs.util.SpecsCheck;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiFunction;
+
+/**
+ * Same traversal as {@link PreorderJmmVisitor}, first the node and then each of its children, but with an explicit stack
+ * instead of one Java frame per level, so that trees as deep as a chain of thousands of binary operators can be visited
+ * without a larger thread stack.
+ * <p>
+ * The children of a node are taken after the node is visited, so a visit can still change them, and the results of the
+ * children are reduced as usual.
+ */
+public abstract class IterativePreorderJmmVisitor<D, R> extends PreorderJmmVisitor<D, R> {
+
+    // no initializer, visits are added by the super constructor, before the fields of this class are initialized
+    private KindDispatch<BiFunction<JmmNode, D, R>> visits;
+
+    /**
+     * Same visit method as the one found through the hierarchy of the node, looked up by the ordinal of its kind.
+     */
+    @Override
+    protected BiFunction<JmmNode, D, R> getVisit(JmmNode node) {
+        if (visits == null) {
+            visits = new KindDispatch<>();
+        }
+        return visits.get(node, super::getVisit);
+    }
+
+    @Override
+    public R visit(JmmNode jmmNode, D data) {
+        SpecsCheck.checkNotNull(jmmNode, () -> "Node should not be null");
+
+        var frames = new ArrayDeque<Frame<R>>();
+        frames.push(enter(jmmNode, data));
+
+        while (true) {
+            var frame = frames.peek();
+
+            if (frame.next < frame.children.size()) {
+                frames.push(enter(frame.children.get(frame.next++), data));
+                continue;
+            }
+
+            frames.pop();
+            var reduceFunction = getReduce();
+            // No reduce function, just return result of the node
+            var result = reduceFunction == null ? frame.nodeResult
+                    : reduceFunction.apply(frame.nodeResult, frame.childrenResults);
+
+            if (frames.isEmpty()) {
+                return result;
+            }
+
+            var parent = frames.peek();
+            if (parent.childrenResults != null) {
+                parent.childrenResults.add(result);
+            }
+        }
+    }
+
+    private Frame<R> enter(JmmNode node, D data) {
+        var nodeResult = getVisit(node).apply(node, data);
+        var children = node.getChildren();
+        return new Frame<>(nodeResult, children, getReduce() == null ? null : new ArrayList<>(children.size()));
+    }
+
+    private static class Frame<R> {
+
+        private final R nodeResult;
+        private final List<JmmNode> children;
+        private final List<R> childrenResults;
+        private int next = 0;
+
+        Frame(R nodeResult, List<JmmNode> children, List<R> childrenResults) {
+            this.nodeResult = nodeResult;
+            this.children = children;
+            this.childrenResults = childrenResults;
+        }
+    }
+}
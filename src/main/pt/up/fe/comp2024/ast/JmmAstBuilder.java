@@ -0,0 +1,60 @@
+package pt.up.fe.comp2024.ast;
+
+import org.antlr.v4.runtime.Parser;
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.tree.ParseTree;
+import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp.jmm.ast.JmmNodeImpl;
+import pt.up.fe.comp.jmm.ast.NodePosition;
+
+/**
+ * Builds a {@link JmmNodeImpl} tree from the ANTLR parse tree, the same tree the converter of the library builds, but
+ * without recursion, so that machine-generated programs with very deep expressions can be converted.
+ */
+public class JmmAstBuilder extends ParseTreeConverter<JmmNodeImpl> {
+
+    private final Identifiers identifiers;
+
+    private JmmAstBuilder(Parser parser, Identifiers identifiers) {
+        super(parser);
+        this.identifiers = identifiers;
+    }
+
+    /**
+     * @param identifiers the identifiers of the compilation, the names of the tree are interned in them
+     */
+    public static JmmNode build(ParseTree tree, Parser parser, Identifiers identifiers) {
+        return new JmmAstBuilder(parser, identifiers).convert((ParserRuleContext) tree);
+    }
+
+    @Override
+    protected JmmNodeImpl newNode(ContextClass contextClass) {
+        var node = new JmmNodeImpl(contextClass.name());
+        node.setHierarchy(contextClass.hierarchy());
+        return node;
+    }
+
+    @Override
+    protected void setPosition(JmmNodeImpl node, Token start, Token end) {
+        node.put(NodePosition.LINE_START.getKey(), Integer.toString(start.getLine()));
+        node.put(NodePosition.COL_START.getKey(), Integer.toString(start.getCharPositionInLine()));
+        node.put(NodePosition.LINE_END.getKey(), Integer.toString(end.getLine()));
+        node.put(NodePosition.COL_END.getKey(), Integer.toString(end.getCharPositionInLine()));
+    }
+
+    @Override
+    protected void putAttribute(JmmNodeImpl node, String name, Object value) {
+        node.putObject(name, value instanceof String string ? identifiers.intern(string) : value);
+    }
+
+    @Override
+    protected void addChild(JmmNodeImpl parent, JmmNodeImpl child) {
+        parent.add(child);
+    }
+
+    @Override
+    protected String getText(Token token) {
+        return identifiers.intern(token.getText());
+    }
+}
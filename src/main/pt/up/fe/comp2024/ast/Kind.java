@@ -4,6 +4,8 @@ import pt.up.fe.comp.jmm.ast.JmmNode;
 import pt.up.fe.specs.util.SpecsStrings;
 
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Set;
 
 public enum Kind {
@@ -12,8 +14,19 @@ public enum Kind {
 
     METHOD_CALL,
 
-    VARIABLE_INT,
-    VARARG,
+    VARIABLE_INT("VARIABLE_INT"),
+    VARARG("VARARG"),
+    BOOL("BOOL"),
+    DOUBLE("DOUBLE"),
+    FLOAT("FLOAT"),
+    STRING("STRING"),
+    CHAR("CHAR"),
+    BYTE("BYTE"),
+    SHORT("SHORT"),
+    LONG("LONG"),
+    VOID("VOID"),
+    ID("ID"),
+    INT("INT"),
 
     NEGATION,
 
@@ -62,14 +75,15 @@ public enum Kind {
 
     IF_STM,
     WHILE_STM,
-    FOR_STMT,
+    FOR_STMT("FOR_STM"),
 
-    BRACKETS,
+    BRACKETS("BRACKETS"),
 
     EXPR_STMT,
 
     BINARY_EXPR_AND,
     ARRAY_ASSIGN,
+    INCREMENT,
 
     VAR_REF_EXPR, MAIN_DECL();
 
@@ -77,6 +91,14 @@ public enum Kind {
     private static final Set<Kind> STATEMENTS = Set.of(ASSIGN_STMT, RETURN_STMT);
     private static final Set<Kind> EXPRESSIONS = Set.of(BINARY_EXPR, INTEGER_LITERAL, VAR_REF_EXPR);
 
+    private static final Map<String, Kind> BY_NODE_NAME = new HashMap<>();
+
+    static {
+        for (Kind k : Kind.values()) {
+            BY_NODE_NAME.putIfAbsent(k.getNodeName(), k);
+        }
+    }
+
     private final String name;
 
     private Kind(String name) {
@@ -89,12 +111,44 @@ public enum Kind {
 
     public static Kind fromString(String kind) {
 
-        for (Kind k : Kind.values()) {
-            if (k.getNodeName().equals(kind)) {
-                return k;
-            }
+        var k = BY_NODE_NAME.get(kind);
+        if (k == null) {
+            throw new RuntimeException("Could not convert string '" + kind + "' to a Kind");
         }
-        throw new RuntimeException("Could not convert string '" + kind + "' to a Kind");
+        return k;
+    }
+
+    /**
+     * The kind of a node, read from the tag of typed nodes instead of looking up its name.
+     *
+     * @param node
+     * @return
+     */
+    public static Kind of(JmmNode node) {
+        if (node instanceof TypedJmmNode typed) {
+            return typed.getTypedNode().getKind();
+        }
+        return fromString(node.getKind());
+    }
+
+    /**
+     * Same as {@link #of(JmmNode)}, for nodes whose kind may not be one of these.
+     *
+     * @param node
+     * @return the kind of the node, or null if there is none with its name
+     */
+    public static Kind ofOrNull(JmmNode node) {
+        if (node instanceof TypedJmmNode typed) {
+            return typed.getTypedNode().getKind();
+        }
+        return fromStringOrNull(node.getKind());
+    }
+
+    /**
+     * @return the kind with the given node name, or null if there is none
+     */
+    public static Kind fromStringOrNull(String kind) {
+        return BY_NODE_NAME.get(kind);
     }
 
     public String getNodeName() {
@@ -127,6 +181,9 @@ public enum Kind {
      * @return
      */
     public boolean check(JmmNode node) {
+        if (node instanceof TypedJmmNode typed) {
+            return typed.getTypedNode().getKind() == this;
+        }
         return node.getKind().equals(getNodeName());
     }
 
@@ -0,0 +1,39 @@
+package pt.up.fe.comp2024.ast;
+
+import pt.up.fe.comp.jmm.ast.JmmNode;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Function;
+
+/**
+ * What a visitor does with the nodes of each kind, such as the visit method that applies to them, indexed by the
+ * ordinal of the {@link Kind} instead of looked up by the name of the kind and of its super kinds for every node.
+ * <p>
+ * The value for a kind is resolved from the first node of that kind, nodes of the same kind have the same hierarchy.
+ * For typed nodes the kind is the tag of the node, so finding the value takes no string operation at all. Nodes of
+ * kinds that are not in {@link Kind} are resolved each time. Values can be looked up by several threads.
+ */
+public class KindDispatch<V> {
+
+    private final AtomicReferenceArray<V> byOrdinal = new AtomicReferenceArray<>(Kind.values().length);
+
+    /**
+     * @param node
+     * @param resolve finds the value for a node whose kind has none yet
+     * @return the value for the kind of the node
+     */
+    public V get(JmmNode node, Function<JmmNode, V> resolve) {
+        var kind = Kind.ofOrNull(node);
+        if (kind == null) {
+            return resolve.apply(node);
+        }
+
+        var value = byOrdinal.get(kind.ordinal());
+        if (value == null) {
+            // any thread resolves the same value, whichever is stored is fine
+            value = resolve.apply(node);
+            byOrdinal.set(kind.ordinal(), value);
+        }
+        return value;
+    }
+}
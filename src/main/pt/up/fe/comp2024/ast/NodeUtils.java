@@ -1,9 +1,32 @@
 package pt.up.fe.comp2024.ast;
 
 import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp.jmm.ast.JmmNodeImpl;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.WeakHashMap;
 
 public class NodeUtils {
 
+    /**
+     * Deeper nodes are printed at this indentation, prefixed with their depth, so that the size of the tree printed for a
+     * very deep expression stays linear.
+     */
+    private static final int MAX_TREE_INDENT = 64;
+
+    /**
+     * Method declaration found above each node that {@link #getEnclosingMethod(JmmNode)} walked through. Both keys and
+     * values are weak, the nodes belong to their trees.
+     */
+    private static final Map<JmmNode, WeakReference<JmmNode>> ENCLOSING_METHODS =
+            Collections.synchronizedMap(new WeakHashMap<>());
+
     public static int getLine(JmmNode node) {
 
         return getIntegerAttribute(node, "lineStart", "-1");
@@ -24,5 +47,154 @@ public class NodeUtils {
         return Boolean.parseBoolean(line);
     }
 
+    /**
+     * @param importDecl
+     * @return the parts of the imported name, such as {@code [foo, bar, A]} for {@code import foo.bar.A;}
+     */
+    public static List<String> getImportParts(JmmNode importDecl) {
+        var value = importDecl.getObject("importValue");
+        if (value instanceof List<?> parts) {
+            return parts.stream().map(Object::toString).toList();
+        }
+
+        // a tree that kept the list only as printed
+        var printed = value.toString();
+        return List.of(printed.substring(1, printed.length() - 1).split(", "));
+    }
+
+    /**
+     * Same as getAncestor(METHOD_DECLARATION), but the nodes on the way are remembered, so that finding the method of
+     * every variable of an expression with thousands of operators takes linear instead of quadratic time. Nodes are
+     * assumed to stay in the same method, moving a subtree to another method must copy it.
+     *
+     * @param node
+     * @return the method declaration the node is in
+     */
+    public static Optional<JmmNode> getEnclosingMethod(JmmNode node) {
+        List<JmmNode> path = new ArrayList<>();
+        JmmNode method = null;
+        for (var current = node.getParent(); current != null; current = current.getParent()) {
+            if (Kind.METHOD_DECLARATION.check(current)) {
+                method = current;
+                break;
+            }
+
+            var known = ENCLOSING_METHODS.get(current);
+            if (known != null && known.get() != null) {
+                method = known.get();
+                break;
+            }
+
+            path.add(current);
+        }
+
+        if (method != null) {
+            var reference = new WeakReference<>(method);
+            for (var ancestor : path) {
+                ENCLOSING_METHODS.put(ancestor, reference);
+            }
+        }
+
+        return Optional.ofNullable(method);
+    }
+
+    /**
+     * Passes that add nodes to a tree create them here, since a tree built by the {@link TypedAstBuilder} only takes
+     * {@link TypedJmmNode} children and any other only takes {@link JmmNodeImpl} ones.
+     *
+     * @param kind
+     * @param tree a node of the tree the new node goes in
+     * @return a new node of the kind, without attributes or children, of the same class as the nodes of the tree
+     */
+    public static JmmNode newNode(Kind kind, JmmNode tree) {
+        if (tree instanceof TypedJmmNode) {
+            return new TypedNode(kind).asJmmNode();
+        }
+        return new JmmNodeImpl(kind.getNodeName());
+    }
+
+    /**
+     * Same as {@link JmmNode#getDescendants(String)}, but walks the tree with an explicit stack instead of nested
+     * streams, which overflow the call stack on deep trees.
+     *
+     * @param node
+     * @param kind
+     * @return the descendants of the node of the given kind, in preorder
+     */
+    public static List<JmmNode> getDescendants(JmmNode node, Kind kind) {
+        List<JmmNode> descendants = new ArrayList<>();
+        var pending = new ArrayDeque<JmmNode>();
+        pushChildren(pending, node);
+        while (!pending.isEmpty()) {
+            var next = pending.pop();
+            if (next.isInstance(kind.getNodeName())) {
+                descendants.add(next);
+            }
+            pushChildren(pending, next);
+        }
+        return descendants;
+    }
+
+    /**
+     * @param node
+     * @return the node and its descendants, in preorder
+     */
+    public static List<JmmNode> getDescendantsAndSelf(JmmNode node) {
+        List<JmmNode> nodes = new ArrayList<>();
+        var pending = new ArrayDeque<JmmNode>();
+        pending.push(node);
+        while (!pending.isEmpty()) {
+            var next = pending.pop();
+            nodes.add(next);
+            pushChildren(pending, next);
+        }
+        return nodes;
+    }
+
+    /**
+     * @param node
+     * @return the number of nodes of the tree rooted at the node
+     */
+    public static int countNodes(JmmNode node) {
+        return getDescendantsAndSelf(node).size();
+    }
+
+    /**
+     * Same format as {@link JmmNode#toTree()}, without recursion. Nodes deeper than {@link #MAX_TREE_INDENT} levels are
+     * not indented further.
+     *
+     * @param root
+     * @return
+     */
+    public static String toTree(JmmNode root) {
+        var tree = new StringBuilder();
+        var pending = new ArrayDeque<JmmNode>();
+        var depths = new ArrayDeque<Integer>();
+        pending.push(root);
+        depths.push(0);
+        while (!pending.isEmpty()) {
+            var node = pending.pop();
+            int depth = depths.pop();
+
+            tree.append("   ".repeat(Math.min(depth, MAX_TREE_INDENT)));
+            if (depth > MAX_TREE_INDENT) {
+                tree.append("[").append(depth).append("] ");
+            }
+            tree.append(node).append("\n");
 
+            var children = node.getChildren();
+            for (int i = children.size() - 1; i >= 0; i--) {
+                pending.push(children.get(i));
+                depths.push(depth + 1);
+            }
+        }
+        return tree.toString();
+    }
+
+    private static void pushChildren(ArrayDeque<JmmNode> pending, JmmNode node) {
+        var children = node.getChildren();
+        for (int i = children.size() - 1; i >= 0; i--) {
+            pending.push(children.get(i));
+        }
+    }
 }
@@ -0,0 +1,171 @@
+package pt.up.fe.comp2024.ast;
+
+import org.antlr.v4.runtime.Parser;
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.tree.TerminalNode;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Converts an ANTLR parse tree into a tree of nodes of type N, with the kinds, hierarchies, attributes and positions
+ * the JmmNode converter of the library produces.
+ * <p>
+ * The tree is walked with an explicit stack, so that deep trees, such as long chains of binary operators, do not
+ * overflow the call stack. The kind, hierarchy and attribute fields of each context class are found through reflection
+ * only once, not for every node.
+ *
+ * @param <N> the type of the nodes that are built
+ */
+abstract class ParseTreeConverter<N> {
+
+    private static final ClassValue<ContextClass> CONTEXT_CLASSES = new ClassValue<>() {
+        @Override
+        protected ContextClass computeValue(Class<?> type) {
+            return ContextClass.of(type);
+        }
+    };
+
+    private final Parser parser;
+
+    protected ParseTreeConverter(Parser parser) {
+        this.parser = parser;
+    }
+
+    /**
+     * Creates the node for a context, without attributes or children.
+     */
+    protected abstract N newNode(ContextClass contextClass);
+
+    protected abstract void setPosition(N node, Token start, Token end);
+
+    protected abstract void putAttribute(N node, String name, Object value);
+
+    protected abstract void addChild(N parent, N child);
+
+    /**
+     * @return the text of a token that is stored in an attribute
+     */
+    protected String getText(Token token) {
+        return token.getText();
+    }
+
+    protected N convert(ParserRuleContext root) {
+        var rootNode = newNode(root);
+
+        // nodes are created in preorder, children are pushed in reverse so that they are added in order
+        var pending = new ArrayDeque<Pending<N>>();
+        pushChildren(pending, root, rootNode);
+        while (!pending.isEmpty()) {
+            var next = pending.pop();
+            var node = newNode(next.context());
+            addChild(next.parent(), node);
+            pushChildren(pending, next.context(), node);
+        }
+
+        return rootNode;
+    }
+
+    private void pushChildren(ArrayDeque<Pending<N>> pending, ParserRuleContext context, N node) {
+        for (int i = context.getChildCount() - 1; i >= 0; i--) {
+            // tokens do not become nodes
+            if (context.getChild(i) instanceof TerminalNode) {
+                continue;
+            }
+            pending.push(new Pending<>((ParserRuleContext) context.getChild(i), node));
+        }
+    }
+
+    private N newNode(ParserRuleContext context) {
+        var contextClass = CONTEXT_CLASSES.get(context.getClass());
+        var node = newNode(contextClass);
+
+        var interval = context.getSourceInterval();
+        setPosition(node, parser.getTokenStream().get(interval.a), parser.getTokenStream().get(interval.b));
+
+        for (var field : contextClass.fields()) {
+            addAttribute(node, field, context);
+        }
+
+        return node;
+    }
+
+    private void addAttribute(N node, Field field, ParserRuleContext context) {
+        Object value;
+        try {
+            value = field.get(context);
+        } catch (IllegalAccessException e) {
+            throw new RuntimeException("Could not access field '" + field.getName() + "' from node " + context);
+        }
+
+        if (field.getType().isAssignableFrom(Token.class)) {
+            // If no token for the given field, skip
+            if (value != null) {
+                putAttribute(node, field.getName(), getText((Token) value));
+            }
+            return;
+        }
+
+        putAttribute(node, field.getName(), processValue(value));
+    }
+
+    private Object processValue(Object value) {
+        if (value instanceof Token token) {
+            return getText(token);
+        }
+
+        if (value instanceof List<?> list) {
+            List<Object> values = new ArrayList<>(list.size());
+            for (var element : list) {
+                values.add(processValue(element));
+            }
+            return values;
+        }
+
+        return value;
+    }
+
+    private record Pending<N>(ParserRuleContext context, N parent) {
+    }
+
+    /**
+     * @param name      the kind name of the nodes of the class
+     * @param kind      the kind of the nodes of the class, or null if there is no kind with that name
+     * @param hierarchy the kind name followed by the names of the super classes, up to ParserRuleContext
+     * @param fields    the public fields that become attributes
+     */
+    record ContextClass(String name, Kind kind, List<String> hierarchy, List<Field> fields) {
+
+        static ContextClass of(Class<?> type) {
+            List<String> hierarchy = new ArrayList<>();
+            List<Field> fields = new ArrayList<>();
+
+            for (Class<?> current = type; !current.equals(ParserRuleContext.class); current = current.getSuperclass()) {
+                hierarchy.add(getKindName(current));
+                for (var field : current.getDeclaredFields()) {
+                    if (Modifier.isPublic(field.getModifiers()) && !Modifier.isStatic(field.getModifiers())) {
+                        fields.add(field);
+                    }
+                }
+            }
+
+            return new ContextClass(hierarchy.get(0), Kind.fromStringOrNull(hierarchy.get(0)),
+                    List.copyOf(hierarchy), List.copyOf(fields));
+        }
+
+        private static String getKindName(Class<?> nodeClass) {
+            String className = nodeClass.getSimpleName();
+
+            // Rules end with context
+            if (!className.endsWith("Context")) {
+                throw new RuntimeException("Expected classname to end with 'Context' " + className);
+            }
+
+            return className.substring(0, className.length() - "Context".length());
+        }
+    }
+}
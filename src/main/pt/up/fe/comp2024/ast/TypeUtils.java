@@ -4,10 +4,17 @@ import pt.up.fe.comp.jmm.analysis.table.Symbol;
 import pt.up.fe.comp.jmm.analysis.table.SymbolTable;
 import pt.up.fe.comp.jmm.analysis.table.Type;
 import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp2024.classpath.MethodInfo;
+import pt.up.fe.comp2024.symboltable.JmmSymbolTable;
 
+import java.util.ArrayList;
+import java.util.EnumSet;
 import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+
+import static pt.up.fe.comp2024.ast.Kind.*;
 
 public class TypeUtils {
 
@@ -35,22 +42,43 @@ public class TypeUtils {
     }
 
 
+    /**
+     * Kinds of the expressions whose type {@link #getExprType} computes, any other node is of type "undefined".
+     */
+    static final Set<Kind> TYPED_KINDS = EnumSet.of(BINARY_EXPR, BINARY_EXPR_AND, VAR_REF_EXPR, INTEGER_LITERAL,
+            IDENTIFIER, NEGATION, PARENTESIS, NEW_CLASS, THIS, METHOD_CALL, ARRAY_DECLARATION, ARRAY_ACCESS,
+            ARRAY_LITERAL, LENGTH, VARARG);
+
     /**
      * Gets the {@link Type} of an arbitrary expression.
+     * <p>
+     * With a {@link JmmSymbolTable}, the type is computed only the first time and then looked up in the table's
+     * {@link ExprTypes}.
      *
      * @param expr
      * @param table
      * @return
      */
     public static Type getExprType(JmmNode expr, SymbolTable table) {
+        if (table instanceof JmmSymbolTable jmmTable) {
+            return jmmTable.getExprTypes().get(expr, table);
+        }
+
+        return computeExprType(expr, table, null);
+    }
+
+    /**
+     * @param methodName the method the expression is in, or null to look it up from the tree
+     */
+    static Type computeExprType(JmmNode expr, SymbolTable table, String methodName) {
         // TODO: Simple implementation that needs to be expanded
 
-        var kind = Kind.fromString(expr.getKind());
+        var kind = Kind.of(expr);
 
         return switch (kind) {
             case BINARY_EXPR -> getBinExprType(expr);
             case BINARY_EXPR_AND -> getBinExprType(expr);
-            case VAR_REF_EXPR -> getVarExprType(expr, table);
+            case VAR_REF_EXPR -> getVarExprType(expr, table, methodName);
             case INTEGER_LITERAL -> new Type(INT_TYPE_NAME, false);
             case IDENTIFIER, NEGATION -> new Type("boolean", false);
             case PARENTESIS -> getExprType(expr.getChild(0), table);
@@ -71,11 +99,7 @@ public class TypeUtils {
     }
 
     public static Boolean importedClass(String className, SymbolTable table) {
-        return table.getImports().stream()
-                .anyMatch(importDecl -> {
-                    String[] segments = importDecl.split("\\.");
-                    return segments[segments.length - 1].equals(className);
-                });
+        return JmmSymbolTable.isImported(table, className);
     }
 
     private static Type getBinExprType(JmmNode binaryExpr) {
@@ -90,21 +114,14 @@ public class TypeUtils {
         };
     }
 
-    private static Type getVarExprType(JmmNode varRefExpr, SymbolTable table) {
+    private static Type getVarExprType(JmmNode varRefExpr, SymbolTable table, String methodName) {
 
         String varName = varRefExpr.get("name");
 
-        var methodNode = varRefExpr.getAncestor(Kind.METHOD_DECLARATION).get();
-        var symbol = table.getLocalVariables(methodNode.get("name")).stream().filter(var -> var.getName().equals(varName)).findAny().orElse(null);
-        if(symbol == null) {
-            symbol = table.getParameters(methodNode.get("name")).stream().filter(var -> var.getName().equals(varName)).findAny().orElse(null);
-        }
-        if(symbol == null){
-            symbol = table.getFields().stream().filter(var -> var.getName().equals(varName)).findAny().orElse(null);
-        }
-        if(symbol == null){
-            //symbol = table.getImports().stream().filter(var -> var.g.equals(varName)).findAny().orElse(null);
+        if (methodName == null) {
+            methodName = JmmSymbolTable.getMethodKey(table, NodeUtils.getEnclosingMethod(varRefExpr).get());
         }
+        var symbol = JmmSymbolTable.resolve(table, methodName, varName).orElse(null);
         if(symbol == null){
             return null;
         }
@@ -137,26 +154,109 @@ public class TypeUtils {
     public static Type getReturnType(JmmNode methodCall, SymbolTable table) {
         String methodName = methodCall.get("value");
         JmmNode x = methodCall.getChild(0);
+
+        var importedType = getImportedReturnType(methodCall, table);
+        if (importedType.isPresent()) {
+            return importedType.get();
+        }
+
         Type classType = getExprType(x, table);
         if(classType==null){
             return null;
         }
         if (Objects.equals(classType.getName(), "this") || Objects.equals(classType.getName(), table.getClassName())) {
-            return table.getReturnType(methodName);
+            return table.getReturnType(getCallTarget(methodCall, table).orElse(methodName));
         } else {
 //            if (!importedClass(classType.getName(), table)) {
 //                return null;
 //            }
-            for (String importDecl : table.getImports()) {
-                String[] segments = importDecl.split("\\.");
-                if (segments[segments.length - 1].equals(classType.getName())) {
-                    return classType;
-                }
-
+            if (JmmSymbolTable.isImported(table, classType.getName())) {
+                return classType;
             }
             return new Type("undefined", false);
         }
 
     }
 
+    /**
+     * The method of the class that a call on an instance of the class invokes, chosen among the overloads of its name
+     * by the types of the arguments.
+     * <p>
+     * With a {@link JmmSymbolTable}, the method is chosen only the first time and then looked up in the table's
+     * {@link ExprTypes}.
+     *
+     * @param methodCall
+     * @param table
+     * @return the key of the method in the table, or empty if the call is not on an instance of the class, the class
+     * does not declare the method, or no single overload accepts the arguments
+     */
+    public static Optional<String> getCallTarget(JmmNode methodCall, SymbolTable table) {
+        if (table instanceof JmmSymbolTable jmmTable) {
+            return jmmTable.getExprTypes().getCallTarget(methodCall, table);
+        }
+        return computeCallTarget(methodCall, table);
+    }
+
+    static Optional<String> computeCallTarget(JmmNode methodCall, SymbolTable table) {
+        String methodName = methodCall.get("value");
+        if (!isCallOnClass(methodCall, table)) {
+            return Optional.empty();
+        }
+        if (!(table instanceof JmmSymbolTable jmmTable)) {
+            return table.getMethods().contains(methodName) ? Optional.of(methodName) : Optional.empty();
+        }
+
+        List<Type> argTypes = new ArrayList<>();
+        for (int i = 1; i < methodCall.getNumChildren(); i++) {
+            argTypes.add(getExprType(methodCall.getJmmChild(i), table));
+        }
+        return jmmTable.resolveMethod(methodName, argTypes);
+    }
+
+    /**
+     * @return true if the receiver of the call is this or another instance of the class
+     */
+    public static boolean isCallOnClass(JmmNode methodCall, SymbolTable table) {
+        var receiverType = getExprType(methodCall.getJmmChild(0), table);
+        return receiverType != null && !receiverType.isArray()
+                && (receiverType.getName().equals("this") || receiverType.getName().equals(table.getClassName()));
+    }
+
+    /**
+     * The return type of a call to a method of an imported class, as declared in the class file, for calls on an
+     * instance of the class as well as for static calls.
+     *
+     * @param methodCall
+     * @param table
+     * @return the type, if the class is in the classpath of the table and its methods with that name, or those of its
+     * closest superclass that has any, all return the same type
+     */
+    public static Optional<Type> getImportedReturnType(JmmNode methodCall, SymbolTable table) {
+        if (!(table instanceof JmmSymbolTable jmmTable) || jmmTable.getClasspath().size() == 0) {
+            return Optional.empty();
+        }
+
+        var receiver = methodCall.getChild(0);
+        var receiverType = getExprType(receiver, table);
+        String className;
+        if (receiverType != null) {
+            className = receiverType.getName();
+        } else if (VAR_REF_EXPR.check(receiver)) {
+            // not a variable, the name of the class
+            className = receiver.get("name");
+        } else {
+            return Optional.empty();
+        }
+
+        var classInfo = jmmTable.findImportedClass(className);
+        if (classInfo.isEmpty()) {
+            return Optional.empty();
+        }
+
+        var returnTypes = jmmTable.getClasspath().findMethods(classInfo.get().name(), methodCall.get("value")).stream()
+                .map(MethodInfo::getReturnType)
+                .distinct()
+                .toList();
+        return returnTypes.size() == 1 ? Optional.of(returnTypes.get(0)) : Optional.empty();
+    }
 }
@@ -0,0 +1,55 @@
+package pt.up.fe.comp2024.ast;
+
+import org.antlr.v4.runtime.Parser;
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.tree.ParseTree;
+
+/**
+ * Builds a {@link TypedNode} tree directly from the ANTLR parse tree, with the same kinds, attributes and positions the
+ * JmmNode converter of the library produces.
+ */
+public class TypedAstBuilder extends ParseTreeConverter<TypedNode> {
+
+    private final Identifiers identifiers;
+
+    private TypedAstBuilder(Parser parser, Identifiers identifiers) {
+        super(parser);
+        this.identifiers = identifiers;
+    }
+
+    /**
+     * @param identifiers the identifiers of the compilation, the names of the tree are interned in them
+     */
+    public static TypedNode build(ParseTree tree, Parser parser, Identifiers identifiers) {
+        return new TypedAstBuilder(parser, identifiers).convert((ParserRuleContext) tree);
+    }
+
+    @Override
+    protected TypedNode newNode(ContextClass contextClass) {
+        if (contextClass.kind() == null) {
+            throw new RuntimeException("No kind for nodes of class " + contextClass.name() + "Context");
+        }
+        return new TypedNode(contextClass.kind(), contextClass.hierarchy());
+    }
+
+    @Override
+    protected void setPosition(TypedNode node, Token start, Token end) {
+        node.setPosition(start.getLine(), start.getCharPositionInLine(), end.getLine(), end.getCharPositionInLine());
+    }
+
+    @Override
+    protected void putAttribute(TypedNode node, String name, Object value) {
+        node.putAttribute(name, value instanceof String string ? identifiers.intern(string) : value);
+    }
+
+    @Override
+    protected void addChild(TypedNode parent, TypedNode child) {
+        parent.addChild(child);
+    }
+
+    @Override
+    protected String getText(Token token) {
+        return identifiers.intern(token.getText());
+    }
+}
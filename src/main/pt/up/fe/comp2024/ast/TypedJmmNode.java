@@ -0,0 +1,205 @@
+package pt.up.fe.comp2024.ast;
+
+import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp.jmm.ast.NodePosition;
+import pt.up.fe.specs.util.SpecsCheck;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * {@link JmmNode} view of a {@link TypedNode}, so that typed trees can go through the existing visitors and passes.
+ * <p>
+ * Changes made through the view are applied to the typed node. Only views of typed nodes can be added as children.
+ */
+public class TypedJmmNode implements JmmNode {
+
+    private static final NodePosition[] POSITIONS = {NodePosition.LINE_START, NodePosition.COL_START,
+            NodePosition.LINE_END, NodePosition.COL_END};
+
+    private final TypedNode node;
+
+    TypedJmmNode(TypedNode node) {
+        this.node = node;
+    }
+
+    public TypedNode getTypedNode() {
+        return node;
+    }
+
+    @Override
+    public String getKind() {
+        return node.getKind().getNodeName();
+    }
+
+    @Override
+    public Collection<String> getHierarchy() {
+        return node.getHierarchy();
+    }
+
+    @Override
+    public Collection<String> getAttributes() {
+        List<String> attributes = new ArrayList<>(node.getAttributeNames());
+        for (var position : POSITIONS) {
+            if (node.getPosition(position) != TypedNode.NO_POSITION) {
+                attributes.add(position.getKey());
+            }
+        }
+        return attributes;
+    }
+
+    @Override
+    public Object putObject(String attribute, Object value) {
+        var position = toPosition(attribute);
+        if (position == null) {
+            return node.putAttribute(attribute, value);
+        }
+
+        int previous = node.getPosition(position);
+        node.setPosition(position, Integer.parseInt(value.toString()));
+        return previous == TypedNode.NO_POSITION ? null : Integer.toString(previous);
+    }
+
+    @Override
+    public Object getObject(String attribute) {
+        var position = toPosition(attribute);
+        Object value;
+        if (position == null) {
+            value = node.getAttribute(attribute);
+        } else {
+            int number = node.getPosition(position);
+            value = number == TypedNode.NO_POSITION ? null : Integer.toString(number);
+        }
+
+        SpecsCheck.checkNotNull(value, () -> "Node " + getKind() + " does not contain attribute '" + attribute + "'");
+
+        return value;
+    }
+
+    private static NodePosition toPosition(String attribute) {
+        for (var position : POSITIONS) {
+            if (position.getKey().equals(attribute)) {
+                return position;
+            }
+        }
+        return null;
+    }
+
+    @Deprecated
+    @Override
+    public JmmNode getJmmParent() {
+        var parent = node.getParent();
+        return parent == null ? null : parent.asJmmNode();
+    }
+
+    @Override
+    public List<JmmNode> getChildren() {
+        List<JmmNode> children = new ArrayList<>(node.getNumChildren());
+        for (int i = 0; i < node.getNumChildren(); i++) {
+            children.add(node.getChild(i).asJmmNode());
+        }
+        return children;
+    }
+
+    @Override
+    public int getNumChildren() {
+        return node.getNumChildren();
+    }
+
+    @Override
+    public JmmNode getJmmChild(int index) {
+        return node.getChild(index).asJmmNode();
+    }
+
+    @Override
+    public JmmNode getChild(int index) {
+        return getJmmChild(index);
+    }
+
+    @Override
+    public void add(JmmNode child, int index) {
+        node.addChild(toTyped(child), index);
+    }
+
+    @Override
+    public void setChild(JmmNode newNode, int index) {
+        var typed = toTyped(newNode);
+        var newNodeParent = typed.getParent();
+        int newNodeIndex = newNodeParent == null ? -1 : newNodeParent.indexOf(typed);
+        if (newNodeParent != null) {
+            typed.setParent(null);
+        }
+
+        var currentChild = node.setChild(index, typed);
+
+        // If new node had a parent, set this node at the old position of the new node
+        if (newNodeParent != null) {
+            newNodeParent.setChild(newNodeIndex, currentChild);
+        }
+    }
+
+    @Override
+    public JmmNode removeJmmChild(int index) {
+        if (index >= node.getNumChildren()) {
+            return null;
+        }
+        return node.removeChild(index).asJmmNode();
+    }
+
+    @Deprecated
+    @Override
+    public int removeJmmChild(JmmNode child) {
+        if (!(child instanceof TypedJmmNode typed)) {
+            return -1;
+        }
+
+        int index = node.indexOf(typed.node);
+        if (index != -1) {
+            node.removeChild(index);
+        }
+        return index;
+    }
+
+    @Override
+    public JmmNode detach() {
+        var parent = node.getParent();
+        if (parent != null) {
+            parent.removeChild(parent.indexOf(node));
+        }
+        return this;
+    }
+
+    @Override
+    public void removeParent() {
+        node.setParent(null);
+    }
+
+    @Override
+    public void setParent(JmmNode parent) {
+        node.setParent(parent == null ? null : toTyped(parent));
+    }
+
+    @Override
+    public JmmNode copyNode() {
+        return node.copyNode().asJmmNode();
+    }
+
+    private TypedNode toTyped(JmmNode jmmNode) {
+        if (!(jmmNode instanceof TypedJmmNode typed)) {
+            throw new RuntimeException(getClass().getName() + " can only be linked to nodes of its class, got "
+                    + jmmNode.getClass().getName());
+        }
+        return typed.node;
+    }
+
+    @Override
+    public String toString() {
+        // same format as JmmNodeImpl, positions are left out
+        var attributes = node.getAttributeNames();
+        return getKind() + (attributes.isEmpty() ? "" : attributes.stream()
+                .map(attr -> attr + ": " + node.getAttribute(attr))
+                .collect(Collectors.joining(", ", " (", ")")));
+    }
+}
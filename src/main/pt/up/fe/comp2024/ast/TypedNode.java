@@ -0,0 +1,295 @@
+package pt.up.fe.comp2024.ast;
+
+import pt.up.fe.comp.jmm.ast.NodePosition;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Compact AST node, tagged with its {@link Kind}.
+ * <p>
+ * Children are kept in an array, positions as ints and the few other attributes in two small parallel arrays with
+ * interned keys, instead of a map of strings per node. The builders intern the strings taken from the source, such as
+ * names, in the {@link Identifiers} of the compilation, so that equal names share a single instance.
+ * <p>
+ * Use {@link #asJmmNode()} to pass the node to code that works with {@link pt.up.fe.comp.jmm.ast.JmmNode}.
+ */
+public final class TypedNode {
+
+    public static final int NO_POSITION = -1;
+
+    private static final TypedNode[] NO_CHILDREN = new TypedNode[0];
+    private static final String[] NO_KEYS = new String[0];
+    private static final Object[] NO_VALUES = new Object[0];
+
+    private final Kind kind;
+    private final List<String> hierarchy;
+
+    private TypedNode parent;
+    private TypedNode[] children = NO_CHILDREN;
+    private int numChildren = 0;
+
+    private String[] keys = NO_KEYS;
+    private Object[] values = NO_VALUES;
+    private int numAttributes = 0;
+
+    private int lineStart = NO_POSITION;
+    private int colStart = NO_POSITION;
+    private int lineEnd = NO_POSITION;
+    private int colEnd = NO_POSITION;
+
+    private TypedJmmNode adapter;
+
+    public TypedNode(Kind kind) {
+        this(kind, List.of(kind.getNodeName()));
+    }
+
+    /**
+     * @param kind
+     * @param hierarchy the node name followed by the names of its super kinds, shared between nodes of the same class
+     */
+    public TypedNode(Kind kind, List<String> hierarchy) {
+        this.kind = kind;
+        this.hierarchy = hierarchy;
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    public List<String> getHierarchy() {
+        return hierarchy;
+    }
+
+    /**
+     * @return the view of this node as a JmmNode, always the same instance
+     */
+    public TypedJmmNode asJmmNode() {
+        if (adapter == null) {
+            adapter = new TypedJmmNode(this);
+        }
+        return adapter;
+    }
+
+    // Children
+
+    public TypedNode getParent() {
+        return parent;
+    }
+
+    public int getNumChildren() {
+        return numChildren;
+    }
+
+    public TypedNode getChild(int index) {
+        if (index >= numChildren) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for " + numChildren + " children");
+        }
+        return children[index];
+    }
+
+    public List<TypedNode> getChildren() {
+        return Collections.unmodifiableList(Arrays.asList(children).subList(0, numChildren));
+    }
+
+    public int indexOf(TypedNode child) {
+        for (int i = 0; i < numChildren; i++) {
+            if (children[i] == child) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public void addChild(TypedNode child) {
+        addChild(child, numChildren);
+    }
+
+    public void addChild(TypedNode child, int index) {
+        if (index < 0 || index > numChildren) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for " + numChildren + " children");
+        }
+        if (numChildren == children.length) {
+            children = Arrays.copyOf(children, Math.max(2, numChildren * 2));
+        }
+        System.arraycopy(children, index, children, index + 1, numChildren - index);
+        children[index] = child;
+        numChildren++;
+        child.parent = this;
+    }
+
+    public TypedNode removeChild(int index) {
+        var child = getChild(index);
+        System.arraycopy(children, index + 1, children, index, numChildren - index - 1);
+        children[--numChildren] = null;
+        child.parent = null;
+        return child;
+    }
+
+    /**
+     * Puts the node at the given index, returning the node that was there.
+     */
+    public TypedNode setChild(int index, TypedNode child) {
+        var previous = getChild(index);
+        previous.parent = null;
+        children[index] = child;
+        child.parent = this;
+        return previous;
+    }
+
+    void setParent(TypedNode parent) {
+        this.parent = parent;
+    }
+
+    /**
+     * Copies the attributes and positions of this node, without parent or children.
+     */
+    public TypedNode copyNode() {
+        var copy = new TypedNode(kind, hierarchy);
+        copy.keys = Arrays.copyOf(keys, numAttributes);
+        copy.values = Arrays.copyOf(values, numAttributes);
+        copy.numAttributes = numAttributes;
+        copy.lineStart = lineStart;
+        copy.colStart = colStart;
+        copy.lineEnd = lineEnd;
+        copy.colEnd = colEnd;
+        return copy;
+    }
+
+    // Attributes
+
+    /**
+     * @return the names of the attributes of the node, without the positions
+     */
+    public List<String> getAttributeNames() {
+        return Collections.unmodifiableList(Arrays.asList(keys).subList(0, numAttributes));
+    }
+
+    /**
+     * @return the value of the attribute, or null if the node does not have it
+     */
+    public Object getAttribute(String key) {
+        int index = indexOfKey(key);
+        return index == -1 ? null : values[index];
+    }
+
+    public String getString(String key) {
+        var value = getAttribute(key);
+        return value == null ? null : value.toString();
+    }
+
+    public boolean getBoolean(String key) {
+        var value = getAttribute(key);
+        return value instanceof Boolean bool ? bool : value != null && Boolean.parseBoolean(value.toString());
+    }
+
+    public boolean hasAttribute(String key) {
+        return indexOfKey(key) != -1;
+    }
+
+    /**
+     * @return the previous value of the attribute, or null if the node did not have it
+     */
+    public Object putAttribute(String key, Object value) {
+        int index = indexOfKey(key);
+        if (index != -1) {
+            var previous = values[index];
+            values[index] = value;
+            return previous;
+        }
+
+        if (numAttributes == keys.length) {
+            int capacity = Math.max(2, numAttributes * 2);
+            keys = Arrays.copyOf(keys, capacity);
+            values = Arrays.copyOf(values, capacity);
+        }
+        keys[numAttributes] = key.intern();
+        values[numAttributes] = value;
+        numAttributes++;
+        return null;
+    }
+
+    private int indexOfKey(String key) {
+        // keys are interned, most lookups use literals and are found by reference
+        for (int i = 0; i < numAttributes; i++) {
+            if (keys[i] == key) {
+                return i;
+            }
+        }
+        for (int i = 0; i < numAttributes; i++) {
+            if (keys[i].equals(key)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // Positions
+
+    public int getLineStart() {
+        return lineStart;
+    }
+
+    public int getColStart() {
+        return colStart;
+    }
+
+    public int getLineEnd() {
+        return lineEnd;
+    }
+
+    public int getColEnd() {
+        return colEnd;
+    }
+
+    public void setPosition(int lineStart, int colStart, int lineEnd, int colEnd) {
+        this.lineStart = lineStart;
+        this.colStart = colStart;
+        this.lineEnd = lineEnd;
+        this.colEnd = colEnd;
+    }
+
+    int getPosition(NodePosition position) {
+        return switch (position) {
+            case LINE_START -> lineStart;
+            case COL_START -> colStart;
+            case LINE_END -> lineEnd;
+            case COL_END -> colEnd;
+            default -> NO_POSITION;
+        };
+    }
+
+    void setPosition(NodePosition position, int value) {
+        switch (position) {
+            case LINE_START -> lineStart = value;
+            case COL_START -> colStart = value;
+            case LINE_END -> lineEnd = value;
+            case COL_END -> colEnd = value;
+            default -> throw new IllegalArgumentException("Position '" + position + "' is not stored in typed nodes");
+        }
+    }
+
+    /**
+     * @return this node and its descendants, in preorder
+     */
+    public List<TypedNode> getDescendantsAndSelf() {
+        List<TypedNode> nodes = new ArrayList<>();
+        List<TypedNode> stack = new ArrayList<>();
+        stack.add(this);
+        while (!stack.isEmpty()) {
+            var node = stack.remove(stack.size() - 1);
+            nodes.add(node);
+            for (int i = node.numChildren - 1; i >= 0; i--) {
+                stack.add(node.children[i]);
+            }
+        }
+        return nodes;
+    }
+
+    @Override
+    public String toString() {
+        return asJmmNode().toString();
+    }
+}
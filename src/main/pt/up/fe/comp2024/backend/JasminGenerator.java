@@ -11,7 +11,9 @@ import pt.up.fe.specs.util.utilities.StringLines;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 import static org.specs.comp.ollir.OperationType.*;
@@ -34,12 +36,20 @@ public class JasminGenerator {
     String code;
 
     Method currentMethod;
+    int comparisonLabels = 0;
     int stackLimit = 0;
     int maxStackLimit = 0;
 
 
     private final FunctionClassMap<TreeNode, String> generators;
 
+    /**
+     * The first import of each simple name, built on the first class type, instead of splitting the imports again for
+     * every type.
+     */
+    private Map<String, String> importsBySimpleName;
+    private String lastUnqualifiedImport;
+
     public JasminGenerator(OllirResult ollirResult) {
         this.ollirResult = ollirResult;
 
@@ -132,6 +142,8 @@ public class JasminGenerator {
             case PRIVATE -> "private ";
             case PROTECTED -> "protected ";
         };
+        if (isFinalClass(classUnit))
+            classType += "final ";
         code.append(".class ").append(classType).append(className).append(NL).append(NL);
 
         String superclass = classUnit.getSuperClass() != null ? classUnit.getSuperClass() : "java/lang/Object";
@@ -185,6 +197,14 @@ public class JasminGenerator {
     }
 
 
+    private boolean isFinalClass(ClassUnit classUnit) {
+        // ClassUnit.isFinalClass() answers whether the class is static, look at the modifiers in the OLLIR code instead
+        var header = Pattern.compile("(?m)^\\s*((?:[a-z]+\\s+)*)" + Pattern.quote(classUnit.getClassName())
+                + "(?:\\s+extends\\s+\\S+)?\\s*\\{");
+        var matcher = header.matcher(ollirResult.getOllirCode());
+        return matcher.find() && matcher.group(1).matches("(?:.*\\s)?final\\s.*");
+    }
+
     private String generateMethod(Method method) {
 
         // set method
@@ -201,7 +221,7 @@ public class JasminGenerator {
         if (method.isFinalMethod())
             methodAccess = "final ";
         if (method.isStaticMethod())
-            methodAccess = "static ";
+            methodAccess += "static ";
 
         var methodName = method.getMethodName();
 
@@ -400,6 +420,18 @@ public class JasminGenerator {
             default -> throw new NotImplementedException(binaryOp.getOperation().getOpType());
         };
 
+        if (op.startsWith("if_icmp")) {
+            // comparisons only branch, turn the outcome into 0 or 1
+            int label = comparisonLabels++;
+            code.append(op).append(" cmp_true_").append(label).append(NL);
+            code.append("iconst_0").append(NL);
+            code.append("goto cmp_end_").append(label).append(NL);
+            code.append("cmp_true_").append(label).append(":").append(NL);
+            code.append("iconst_1").append(NL);
+            code.append("cmp_end_").append(label).append(":").append(NL);
+            return code.toString();
+        }
+
         code.append(op).append(NL);
 
         return code.toString();
@@ -639,23 +671,29 @@ public class JasminGenerator {
 
     private String getClassNameForElementType(ClassType classType) {
         ClassUnit classUnit = ollirResult.getOllirClass();
-        String name = null;
+        String name;
 
         if (classUnit.getClassName().equals(classType.getName())) {
             name = classUnit.getClassName();
         } else {
-            for (String imprt : classUnit.getImports()) {
-                if (!imprt.contains("."))
-                    name = imprt;
-                String[] imprtSplit = imprt.split("\\.");
-                if (imprtSplit[imprtSplit.length - 1].equals(classType.getName())) {
-                    name = imprt;
-                    break;
-                }
-            }
+            name = getImportsBySimpleName().getOrDefault(classType.getName(), lastUnqualifiedImport);
         }
 
         return name.replace('.', '/');
     }
 
-}
\ No newline at end of file
+    private Map<String, String> getImportsBySimpleName() {
+        if (importsBySimpleName == null) {
+            importsBySimpleName = new HashMap<>();
+            for (String imprt : ollirResult.getOllirClass().getImports()) {
+                int dot = imprt.lastIndexOf('.');
+                if (dot == -1) {
+                    lastUnqualifiedImport = imprt;
+                }
+                importsBySimpleName.putIfAbsent(imprt.substring(dot + 1), imprt);
+            }
+        }
+        return importsBySimpleName;
+    }
+
+}
@@ -0,0 +1,169 @@
+package pt.up.fe.comp2024.classpath;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads the name, superclass and methods of a class straight from the bytes of its class file, without loading it.
+ * <p>
+ * The constant pool is only scanned for the offsets of its entries, and the strings the class and its methods refer to
+ * are decoded from those offsets.
+ */
+class ClassFileReader {
+
+    private static final int MAGIC = 0xCAFEBABE;
+
+    private static final int CONSTANT_UTF8 = 1;
+    private static final int CONSTANT_INTEGER = 3;
+    private static final int CONSTANT_FLOAT = 4;
+    private static final int CONSTANT_LONG = 5;
+    private static final int CONSTANT_DOUBLE = 6;
+    private static final int CONSTANT_CLASS = 7;
+    private static final int CONSTANT_STRING = 8;
+    private static final int CONSTANT_FIELDREF = 9;
+    private static final int CONSTANT_METHODREF = 10;
+    private static final int CONSTANT_INTERFACE_METHODREF = 11;
+    private static final int CONSTANT_NAME_AND_TYPE = 12;
+    private static final int CONSTANT_METHOD_HANDLE = 15;
+    private static final int CONSTANT_METHOD_TYPE = 16;
+    private static final int CONSTANT_DYNAMIC = 17;
+    private static final int CONSTANT_INVOKE_DYNAMIC = 18;
+    private static final int CONSTANT_MODULE = 19;
+    private static final int CONSTANT_PACKAGE = 20;
+
+    private final ByteBuffer bytes;
+
+    /**
+     * Position of the first byte after the tag of each constant pool entry.
+     */
+    private int[] offsets;
+
+    private ClassFileReader(ByteBuffer bytes) {
+        this.bytes = bytes;
+    }
+
+    /**
+     * @param bytes the class file, from its current position
+     * @return the class described by the file
+     * @throws RuntimeException if the bytes are not a valid class file
+     */
+    static ClassInfo read(ByteBuffer bytes) {
+        try {
+            return new ClassFileReader(bytes.slice()).read();
+        } catch (IndexOutOfBoundsException | BufferUnderflowException e) {
+            throw new RuntimeException("Truncated class file", e);
+        }
+    }
+
+    private ClassInfo read() {
+        if (bytes.getInt() != MAGIC) {
+            throw new RuntimeException("Not a class file");
+        }
+        // minor and major versions
+        bytes.getInt();
+
+        readConstantPool();
+
+        // access flags
+        bytes.getShort();
+        var name = getClassName(u2());
+        int superIndex = u2();
+        var superName = superIndex == 0 ? null : getClassName(superIndex);
+
+        int interfaces = u2();
+        bytes.position(bytes.position() + 2 * interfaces);
+
+        int fields = u2();
+        for (int i = 0; i < fields; i++) {
+            // access flags, name and descriptor
+            bytes.position(bytes.position() + 6);
+            skipAttributes();
+        }
+
+        int methodCount = u2();
+        List<MethodInfo> methods = new ArrayList<>(methodCount);
+        for (int i = 0; i < methodCount; i++) {
+            int access = u2();
+            var methodName = getUtf8(u2());
+            var descriptor = getUtf8(u2());
+            skipAttributes();
+            methods.add(new MethodInfo(methodName, descriptor, access));
+        }
+
+        return new ClassInfo(name, superName, List.copyOf(methods));
+    }
+
+    private void readConstantPool() {
+        int count = u2();
+        offsets = new int[count];
+
+        // entries start at 1, and longs and doubles take two of them
+        for (int i = 1; i < count; i++) {
+            int tag = bytes.get() & 0xFF;
+            offsets[i] = bytes.position();
+
+            int size = switch (tag) {
+                case CONSTANT_UTF8 -> 2 + (bytes.getShort(bytes.position()) & 0xFFFF);
+                case CONSTANT_CLASS, CONSTANT_STRING, CONSTANT_METHOD_TYPE, CONSTANT_MODULE, CONSTANT_PACKAGE -> 2;
+                case CONSTANT_METHOD_HANDLE -> 3;
+                case CONSTANT_INTEGER, CONSTANT_FLOAT, CONSTANT_FIELDREF, CONSTANT_METHODREF,
+                        CONSTANT_INTERFACE_METHODREF, CONSTANT_NAME_AND_TYPE, CONSTANT_DYNAMIC,
+                        CONSTANT_INVOKE_DYNAMIC -> 4;
+                case CONSTANT_LONG, CONSTANT_DOUBLE -> 8;
+                default -> throw new RuntimeException("Unknown constant pool tag " + tag + " at entry " + i);
+            };
+            bytes.position(bytes.position() + size);
+
+            if (tag == CONSTANT_LONG || tag == CONSTANT_DOUBLE) {
+                i++;
+            }
+        }
+    }
+
+    private void skipAttributes() {
+        int attributes = u2();
+        for (int i = 0; i < attributes; i++) {
+            // name, then the length of the contents
+            bytes.getShort();
+            int length = bytes.getInt();
+            bytes.position(bytes.position() + length);
+        }
+    }
+
+    private int u2() {
+        return bytes.getShort() & 0xFFFF;
+    }
+
+    private String getClassName(int classIndex) {
+        int nameIndex = bytes.getShort(offsets[classIndex]) & 0xFFFF;
+        return getUtf8(nameIndex).replace('/', '.');
+    }
+
+    /**
+     * Decodes the modified UTF-8 of class files, in which no character takes more than three bytes.
+     */
+    private String getUtf8(int index) {
+        int position = offsets[index];
+        int length = bytes.getShort(position) & 0xFFFF;
+        int end = position + 2 + length;
+
+        var string = new StringBuilder(length);
+        for (int i = position + 2; i < end; ) {
+            int first = bytes.get(i) & 0xFF;
+            if (first < 0x80) {
+                string.append((char) first);
+                i++;
+            } else if ((first & 0xE0) == 0xC0) {
+                string.append((char) (((first & 0x1F) << 6) | (bytes.get(i + 1) & 0x3F)));
+                i += 2;
+            } else {
+                string.append((char) (((first & 0x0F) << 12) | ((bytes.get(i + 1) & 0x3F) << 6)
+                        | (bytes.get(i + 2) & 0x3F)));
+                i += 3;
+            }
+        }
+        return string.toString();
+    }
+}
@@ -0,0 +1,26 @@
+package pt.up.fe.comp2024.classpath;
+
+import java.util.List;
+
+/**
+ * A compiled class, with what the compiler needs to know of it.
+ *
+ * @param name      the qualified name, such as {@code foo.bar.A}
+ * @param superName the qualified name of the superclass, null for java.lang.Object
+ * @param methods   the methods declared in the class, in the order of the class file
+ */
+public record ClassInfo(String name, String superName, List<MethodInfo> methods) {
+
+    public String getSimpleName() {
+        return name.substring(name.lastIndexOf('.') + 1);
+    }
+
+    /**
+     * @return the methods declared in the class with the given name, not the inherited ones
+     */
+    public List<MethodInfo> getMethods(String methodName) {
+        return methods.stream()
+                .filter(method -> method.name().equals(methodName))
+                .toList();
+    }
+}
@@ -0,0 +1,260 @@
+package pt.up.fe.comp2024.classpath;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.ZipFile;
+
+/**
+ * The classes of a classpath made of directories of class files and of jars, by qualified name, with their methods and
+ * descriptors, read from the class files without loading them.
+ * <p>
+ * Reading the class files happens once per classpath: the index is kept for the next compilations in the same JVM,
+ * and written to a file in the temporary directory, which later compilations map into memory instead of reading the
+ * classes again. Both are used only while no class file or jar of the classpath has changed.
+ */
+public class ClasspathIndex {
+
+    public static final ClasspathIndex EMPTY = new ClasspathIndex(Map.of());
+
+    private static final int CACHE_MAGIC = 0x4A4D4349;
+    private static final int CACHE_VERSION = 1;
+
+    private static final Map<List<Path>, ClasspathIndex> LOADED = new ConcurrentHashMap<>();
+
+    private final Map<String, ClassInfo> classes;
+
+    // fingerprint of the files the index was read from
+    private long stamp;
+
+    private ClasspathIndex(Map<String, ClassInfo> classes) {
+        this.classes = classes;
+    }
+
+    /**
+     * @param entries directories of class files and jars, entries that do not exist are left out
+     * @return the index of the classes of the entries, from the caches when the files did not change
+     */
+    public static ClasspathIndex load(List<Path> entries) {
+        var absolute = entries.stream().map(entry -> entry.toAbsolutePath().normalize()).toList();
+        long stamp = stamp(absolute);
+
+        var loaded = LOADED.get(absolute);
+        if (loaded != null && loaded.stamp == stamp) {
+            return loaded;
+        }
+
+        var cacheFile = Path.of(System.getProperty("java.io.tmpdir"),
+                "jmm-classpath-" + Long.toHexString(absolute.hashCode() & 0xFFFFFFFFL) + ".idx");
+        var index = readCache(cacheFile, stamp).orElse(null);
+        if (index == null) {
+            index = scan(absolute);
+            index.stamp = stamp;
+            writeCache(index, cacheFile);
+        }
+
+        LOADED.put(absolute, index);
+        return index;
+    }
+
+    /**
+     * Reads every class of the entries, without any cache.
+     */
+    public static ClasspathIndex scan(List<Path> entries) {
+        Map<String, ClassInfo> classes = new HashMap<>();
+
+        for (var entry : entries) {
+            try {
+                if (Files.isDirectory(entry)) {
+                    for (var file : getClassFiles(entry)) {
+                        add(classes, readClassFile(file));
+                    }
+                } else if (Files.isRegularFile(entry)) {
+                    readJar(entry, classes);
+                }
+            } catch (IOException e) {
+                throw new RuntimeException("Could not read classpath entry '" + entry + "'", e);
+            }
+        }
+
+        return new ClasspathIndex(classes);
+    }
+
+    private static void add(Map<String, ClassInfo> classes, ClassInfo classInfo) {
+        // as with the JVM, the first entry of the classpath with a class wins
+        classes.putIfAbsent(classInfo.name(), classInfo);
+    }
+
+    private static List<Path> getClassFiles(Path directory) throws IOException {
+        try (var files = Files.walk(directory)) {
+            return files.filter(ClasspathIndex::isClassFile).sorted().toList();
+        }
+    }
+
+    private static boolean isClassFile(Path file) {
+        var name = file.getFileName().toString();
+        return name.endsWith(".class") && !name.equals("module-info.class") && !name.equals("package-info.class");
+    }
+
+    private static ClassInfo readClassFile(Path file) throws IOException {
+        try (var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            var bytes = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return ClassFileReader.read(bytes);
+        } catch (RuntimeException e) {
+            throw new RuntimeException("Could not read class file '" + file + "'", e);
+        }
+    }
+
+    private static void readJar(Path jar, Map<String, ClassInfo> classes) throws IOException {
+        try (var zip = new ZipFile(jar.toFile())) {
+            var entries = Collections.list(zip.entries());
+            for (var entry : entries) {
+                if (entry.isDirectory() || !isClassFile(Path.of(entry.getName()))) {
+                    continue;
+                }
+
+                try (var input = zip.getInputStream(entry)) {
+                    add(classes, ClassFileReader.read(ByteBuffer.wrap(input.readAllBytes())));
+                } catch (RuntimeException e) {
+                    throw new RuntimeException("Could not read class file '" + entry.getName() + "' of '" + jar + "'", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Hash of the paths, sizes and modification times of the jars and class files of the entries.
+     */
+    static long stamp(List<Path> entries) {
+        long stamp = 17;
+        for (var entry : entries) {
+            try {
+                var files = Files.isDirectory(entry) ? getClassFiles(entry)
+                        : Files.isRegularFile(entry) ? List.of(entry) : List.<Path>of();
+                for (var file : files) {
+                    stamp = stamp * 31 + file.toString().hashCode();
+                    stamp = stamp * 31 + Files.size(file);
+                    stamp = stamp * 31 + Files.getLastModifiedTime(file).toMillis();
+                }
+            } catch (IOException e) {
+                throw new RuntimeException("Could not read classpath entry '" + entry + "'", e);
+            }
+            stamp = stamp * 31 + entry.hashCode();
+        }
+        return stamp;
+    }
+
+    static Optional<ClasspathIndex> readCache(Path cacheFile, long stamp) {
+        if (!Files.isRegularFile(cacheFile)) {
+            return Optional.empty();
+        }
+
+        try (var channel = FileChannel.open(cacheFile, StandardOpenOption.READ)) {
+            var bytes = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (bytes.getInt() != CACHE_MAGIC || bytes.getInt() != CACHE_VERSION || bytes.getLong() != stamp) {
+                return Optional.empty();
+            }
+
+            int classCount = bytes.getInt();
+            Map<String, ClassInfo> classes = new HashMap<>(classCount * 2);
+            for (int i = 0; i < classCount; i++) {
+                var name = readString(bytes);
+                var superName = readString(bytes);
+                int methodCount = bytes.getInt();
+                List<MethodInfo> methods = new ArrayList<>(methodCount);
+                for (int j = 0; j < methodCount; j++) {
+                    methods.add(new MethodInfo(readString(bytes), readString(bytes), bytes.getShort() & 0xFFFF));
+                }
+                classes.put(name, new ClassInfo(name, superName.isEmpty() ? null : superName, List.copyOf(methods)));
+            }
+
+            var index = new ClasspathIndex(classes);
+            index.stamp = stamp;
+            return Optional.of(index);
+        } catch (IOException | RuntimeException e) {
+            // a cache that cannot be read is written again
+            return Optional.empty();
+        }
+    }
+
+    static void writeCache(ClasspathIndex index, Path cacheFile) {
+        var bytes = new ByteArrayOutputStream();
+        try (var output = new DataOutputStream(bytes)) {
+            output.writeInt(CACHE_MAGIC);
+            output.writeInt(CACHE_VERSION);
+            output.writeLong(index.stamp);
+            output.writeInt(index.classes.size());
+            for (var classInfo : index.classes.values()) {
+                writeString(output, classInfo.name());
+                writeString(output, classInfo.superName() == null ? "" : classInfo.superName());
+                output.writeInt(classInfo.methods().size());
+                for (var method : classInfo.methods()) {
+                    writeString(output, method.name());
+                    writeString(output, method.descriptor());
+                    output.writeShort(method.access());
+                }
+            }
+
+            // written whole and then moved, so that a concurrent compilation never reads half of it
+            var temporary = Files.createTempFile(cacheFile.getParent(), cacheFile.getFileName().toString(), ".tmp");
+            Files.write(temporary, bytes.toByteArray());
+            Files.move(temporary, cacheFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            // the cache only saves time, compiling goes on without it
+        }
+    }
+
+    private static void writeString(DataOutputStream output, String string) throws IOException {
+        var bytes = string.getBytes(StandardCharsets.UTF_8);
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    private static String readString(ByteBuffer bytes) {
+        var string = new byte[bytes.getInt()];
+        bytes.get(string);
+        return new String(string, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @param qualifiedName such as {@code foo.bar.A}
+     */
+    public Optional<ClassInfo> find(String qualifiedName) {
+        return Optional.ofNullable(classes.get(qualifiedName));
+    }
+
+    /**
+     * @return the methods with the given name declared in the class or, if it declares none, in the closest of its
+     * superclasses that does
+     */
+    public List<MethodInfo> findMethods(String qualifiedName, String methodName) {
+        for (var current = classes.get(qualifiedName); current != null; current = classes.get(current.superName())) {
+            var methods = current.getMethods(methodName);
+            if (!methods.isEmpty()) {
+                return methods;
+            }
+        }
+        return List.of();
+    }
+
+    /**
+     * @return the number of classes in the index
+     */
+    public int size() {
+        return classes.size();
+    }
+}
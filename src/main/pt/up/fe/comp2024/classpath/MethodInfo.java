@@ -0,0 +1,75 @@
+package pt.up.fe.comp2024.classpath;
+
+import pt.up.fe.comp.jmm.analysis.table.Type;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A method of a compiled class, as declared in its class file.
+ *
+ * @param name
+ * @param descriptor the JVM descriptor, such as {@code (I[Ljava/lang/String;)Z}
+ * @param access     the access flags of the method
+ */
+public record MethodInfo(String name, String descriptor, int access) {
+
+    private static final int ACC_STATIC = 0x0008;
+
+    public boolean isStatic() {
+        return (access & ACC_STATIC) != 0;
+    }
+
+    public Type getReturnType() {
+        return toType(descriptor, descriptor.indexOf(')') + 1);
+    }
+
+    public List<Type> getParameterTypes() {
+        List<Type> types = new ArrayList<>();
+        int i = 1;
+        while (descriptor.charAt(i) != ')') {
+            types.add(toType(descriptor, i));
+            i = skipType(descriptor, i);
+        }
+        return types;
+    }
+
+    /**
+     * Jmm type of the field descriptor that starts at the given index. Classes are named by their simple name, as the
+     * imports of a Jmm program name them.
+     */
+    private static Type toType(String descriptor, int start) {
+        int dimensions = 0;
+        while (descriptor.charAt(start + dimensions) == '[') {
+            dimensions++;
+        }
+
+        int i = start + dimensions;
+        var name = switch (descriptor.charAt(i)) {
+            case 'I' -> "int";
+            case 'Z' -> "boolean";
+            case 'V' -> "void";
+            case 'B' -> "byte";
+            case 'C' -> "char";
+            case 'S' -> "short";
+            case 'J' -> "long";
+            case 'F' -> "float";
+            case 'D' -> "double";
+            case 'L' -> {
+                var className = descriptor.substring(i + 1, descriptor.indexOf(';', i));
+                yield className.substring(className.lastIndexOf('/') + 1);
+            }
+            default -> throw new RuntimeException("Invalid descriptor '" + descriptor + "'");
+        };
+
+        return new Type(name, dimensions > 0);
+    }
+
+    private static int skipType(String descriptor, int start) {
+        int i = start;
+        while (descriptor.charAt(i) == '[') {
+            i++;
+        }
+        return descriptor.charAt(i) == 'L' ? descriptor.indexOf(';', i) + 1 : i + 1;
+    }
+}
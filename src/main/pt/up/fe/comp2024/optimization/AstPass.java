@@ -0,0 +1,20 @@
+package pt.up.fe.comp2024.optimization;
+
+import pt.up.fe.comp.jmm.analysis.table.SymbolTable;
+import pt.up.fe.comp.jmm.ast.JmmNode;
+
+/**
+ * Represents an optimization pass over the AST.
+ */
+public interface AstPass {
+
+    /**
+     * Optimizes the given AST in place.
+     *
+     * @param root  the root node of the AST
+     * @param table the symbol table
+     * @return true if the AST was changed, false otherwise
+     */
+    boolean apply(JmmNode root, SymbolTable table);
+
+}
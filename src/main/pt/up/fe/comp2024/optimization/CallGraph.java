@@ -0,0 +1,76 @@
+package pt.up.fe.comp2024.optimization;
+
+import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp2024.ast.NodeUtils;
+
+import java.util.*;
+
+import static pt.up.fe.comp2024.ast.Kind.*;
+
+/**
+ * Call graph between the methods of the class, built from the method calls in the AST.
+ * <p>
+ * Calls are resolved by name only, so a call to a method of another class with the same name as a method of this one
+ * is also counted as a call to it. This is conservative: it may keep methods alive, but never loses a call.
+ */
+public class CallGraph {
+
+    private final Map<String, Set<String>> callees = new LinkedHashMap<>();
+
+    public CallGraph(JmmNode root) {
+        var methods = NodeUtils.getDescendants(root, METHOD_DECLARATION);
+        for (var method : methods) {
+            callees.put(method.get("name"), new LinkedHashSet<>());
+        }
+
+        for (var method : methods) {
+            var calls = callees.get(method.get("name"));
+            for (var call : NodeUtils.getDescendants(method, METHOD_CALL)) {
+                String callee = call.get("value");
+                if (callees.containsKey(callee)) {
+                    calls.add(callee);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the names of the methods declared in the class
+     */
+    public Set<String> getMethods() {
+        return Collections.unmodifiableSet(callees.keySet());
+    }
+
+    /**
+     * @param method
+     * @return the methods of the class that the given method may call
+     */
+    public Set<String> getCallees(String method) {
+        return Collections.unmodifiableSet(callees.getOrDefault(method, Set.of()));
+    }
+
+    /**
+     * @param roots
+     * @return the methods that may be executed when starting from any of the given methods, including the roots
+     */
+    public Set<String> getReachable(Collection<String> roots) {
+        Set<String> reachable = new LinkedHashSet<>();
+        Deque<String> worklist = new ArrayDeque<>();
+
+        for (String root : roots) {
+            if (callees.containsKey(root) && reachable.add(root)) {
+                worklist.add(root);
+            }
+        }
+
+        while (!worklist.isEmpty()) {
+            for (String callee : callees.get(worklist.poll())) {
+                if (reachable.add(callee)) {
+                    worklist.add(callee);
+                }
+            }
+        }
+
+        return reachable;
+    }
+}
@@ -4,13 +4,68 @@ import pt.up.fe.comp.jmm.analysis.JmmSemanticsResult;
 import pt.up.fe.comp.jmm.ollir.JmmOptimization;
 import pt.up.fe.comp.jmm.ollir.OllirResult;
 import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp2024.CompilerConfig;
+import pt.up.fe.comp2024.optimization.passes.CommonSubexpressionElimination;
+import pt.up.fe.comp2024.optimization.passes.DeadMemberElimination;
+import pt.up.fe.comp2024.optimization.passes.LoopUnrolling;
+import pt.up.fe.comp2024.optimization.passes.PartialEvaluation;
+import pt.up.fe.comp2024.optimization.passes.StaticBinding;
 import pt.up.fe.comp2024.symboltable.JmmSymbolTable;
+import pt.up.fe.comp2024.symboltable.JmmSymbolTableBuilder;
 
 
 import java.util.Collections;
+import java.util.List;
 
 public class JmmOptimizationImpl implements JmmOptimization {
 
+    private static final int WHOLE_CLASS_LEVEL = 2;
+
+    private final List<AstPass> astPasses;
+    private final List<AstPass> wholeClassPasses;
+    private final List<OllirPass> ollirPasses;
+
+    public JmmOptimizationImpl() {
+
+        this.astPasses = List.of(new LoopUnrolling());
+        this.wholeClassPasses = List.of(new DeadMemberElimination());
+        this.ollirPasses = List.of(new PartialEvaluation(), new CommonSubexpressionElimination(),
+                new StaticBinding());
+
+    }
+
+    @Override
+    public JmmSemanticsResult optimize(JmmSemanticsResult semanticsResult) {
+
+        int level = CompilerConfig.getOptimizationLevel(semanticsResult.getConfig());
+        if (level < 1) {
+            return semanticsResult;
+        }
+
+        var root = semanticsResult.getRootNode();
+        boolean changed = false;
+        for (var astPass : astPasses) {
+            changed |= astPass.apply(root, semanticsResult.getSymbolTable());
+        }
+
+        if (level >= WHOLE_CLASS_LEVEL) {
+            for (var astPass : wholeClassPasses) {
+                changed |= astPass.apply(root, semanticsResult.getSymbolTable());
+            }
+        }
+
+        if (!changed) {
+            return semanticsResult;
+        }
+
+        // removed methods and fields must not be listed in the symbol table anymore
+        var table = JmmSymbolTableBuilder.build(root);
+        if (semanticsResult.getSymbolTable() instanceof JmmSymbolTable previous) {
+            table.setClasspath(previous.getClasspath());
+        }
+        return new JmmSemanticsResult(root, table, semanticsResult.getReports(), semanticsResult.getConfig());
+    }
+
     @Override
     public OllirResult toOllir(JmmSemanticsResult semanticsResult) {
 
@@ -24,8 +79,23 @@ public class JmmOptimizationImpl implements JmmOptimization {
     @Override
     public OllirResult optimize(OllirResult ollirResult) {
 
-        //TODO: Do your OLLIR-based optimizations here
+        if (!CompilerConfig.getOptimize(ollirResult.getConfig())) {
+            return ollirResult;
+        }
 
-        return ollirResult;
+        var ollirCode = ollirResult.getOllirCode();
+        for (var ollirPass : ollirPasses) {
+            ollirCode = ollirPass.apply(ollirCode, ollirResult.getSymbolTable());
+        }
+
+        if (ollirCode.equals(ollirResult.getOllirCode())) {
+            return ollirResult;
+        }
+
+        // reports were already collected by the previous result, the root node is no longer needed
+        var semanticsResult = new JmmSemanticsResult((JmmNode) null, ollirResult.getSymbolTable(),
+                ollirResult.getReports(), ollirResult.getConfig());
+
+        return new OllirResult(semanticsResult, ollirCode, Collections.emptyList());
     }
 }
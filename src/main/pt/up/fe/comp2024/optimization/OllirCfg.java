@@ -0,0 +1,285 @@
+package pt.up.fe.comp2024.optimization;
+
+import java.util.*;
+import java.util.function.UnaryOperator;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Control-flow graph of the body of an OLLIR method, built directly from the OLLIR text.
+ * <p>
+ * The body is split into basic blocks (a label starts a block, a goto, branch or return ends it) and the immediate
+ * dominator of each block is computed, so passes can walk the dominator tree.
+ */
+public class OllirCfg {
+
+    private static final Pattern METHOD_HEADER = Pattern.compile("^\\.method\\b.*\\{\\s*$");
+    private static final Pattern LABEL = Pattern.compile("^([A-Za-z_$][\\w$]*)\\s*:$");
+    private static final Pattern GOTO = Pattern.compile("^goto\\s+([\\w$]+)\\s*;$");
+    private static final Pattern BRANCH = Pattern.compile("^if\\s*\\(.*\\)\\s*goto\\s+([\\w$]+)\\s*;$");
+
+    private final List<String> lines;
+    private final List<Block> blocks;
+    private final int[] idom;
+
+    public OllirCfg(List<String> lines) {
+        this.lines = lines;
+        this.blocks = buildBlocks(lines);
+        this.idom = computeDominators();
+    }
+
+    public List<String> getLines() {
+        return lines;
+    }
+
+    public List<Block> getBlocks() {
+        return blocks;
+    }
+
+    /**
+     * @param block index of a block
+     * @return index of the immediate dominator of the block, -1 for the entry block and unreachable blocks
+     */
+    public int getImmediateDominator(int block) {
+        return idom[block];
+    }
+
+    /**
+     * @return for each block, the blocks it immediately dominates
+     */
+    public List<List<Integer>> getDominatorTree() {
+        List<List<Integer>> children = new ArrayList<>();
+        for (int i = 0; i < blocks.size(); i++) {
+            children.add(new ArrayList<>());
+        }
+        for (int i = 0; i < blocks.size(); i++) {
+            if (idom[i] >= 0) {
+                children.get(idom[i]).add(i);
+            }
+        }
+        return children;
+    }
+
+    /**
+     * @return true if the block can be reached from the entry of the method
+     */
+    public boolean isReachable(int block) {
+        return block == 0 || idom[block] >= 0;
+    }
+
+    public static boolean isLabel(String line) {
+        return LABEL.matcher(line).matches();
+    }
+
+    public static Optional<String> getJumpTarget(String line) {
+        Matcher matcher = GOTO.matcher(line);
+        if (matcher.matches()) {
+            return Optional.of(matcher.group(1));
+        }
+        matcher = BRANCH.matcher(line);
+        if (matcher.matches()) {
+            return Optional.of(matcher.group(1));
+        }
+        return Optional.empty();
+    }
+
+    private static boolean endsBlock(String line) {
+        return GOTO.matcher(line).matches() || BRANCH.matcher(line).matches() || line.startsWith("ret");
+    }
+
+    private static List<Block> buildBlocks(List<String> lines) {
+        List<Block> blocks = new ArrayList<>();
+        Map<String, Integer> labelToBlock = new HashMap<>();
+
+        int start = 0;
+        for (int i = 0; i < lines.size(); i++) {
+            String line = lines.get(i);
+            Matcher label = LABEL.matcher(line);
+            if (label.matches() && i > start) {
+                blocks.add(new Block(start, i));
+                start = i;
+            }
+            if (label.matches()) {
+                labelToBlock.put(label.group(1), blocks.size());
+            }
+            if (endsBlock(line)) {
+                blocks.add(new Block(start, i + 1));
+                start = i + 1;
+            }
+        }
+        if (start < lines.size() || blocks.isEmpty()) {
+            blocks.add(new Block(start, lines.size()));
+        }
+
+        for (int b = 0; b < blocks.size(); b++) {
+            var block = blocks.get(b);
+            String last = block.end > block.start ? lines.get(block.end - 1) : "";
+
+            getJumpTarget(last).map(labelToBlock::get).ifPresent(target -> connect(blocks, block, target));
+
+            boolean fallsThrough = !GOTO.matcher(last).matches() && !last.startsWith("ret");
+            if (fallsThrough && b + 1 < blocks.size()) {
+                connect(blocks, block, b + 1);
+            }
+        }
+
+        return blocks;
+    }
+
+    private static void connect(List<Block> blocks, Block from, int to) {
+        int fromIndex = blocks.indexOf(from);
+        if (!from.successors.contains(to)) {
+            from.successors.add(to);
+            blocks.get(to).predecessors.add(fromIndex);
+        }
+    }
+
+    private int[] computeDominators() {
+        int n = blocks.size();
+
+        // reverse post-order from the entry block
+        List<Integer> postOrder = new ArrayList<>();
+        boolean[] visited = new boolean[n];
+        Deque<int[]> stack = new ArrayDeque<>();
+        stack.push(new int[]{0, 0});
+        visited[0] = true;
+        while (!stack.isEmpty()) {
+            int[] top = stack.peek();
+            var succs = blocks.get(top[0]).successors;
+            if (top[1] < succs.size()) {
+                int next = succs.get(top[1]++);
+                if (!visited[next]) {
+                    visited[next] = true;
+                    stack.push(new int[]{next, 0});
+                }
+            } else {
+                postOrder.add(stack.pop()[0]);
+            }
+        }
+
+        int[] rpoNumber = new int[n];
+        Arrays.fill(rpoNumber, -1);
+        for (int i = 0; i < postOrder.size(); i++) {
+            rpoNumber[postOrder.get(i)] = postOrder.size() - 1 - i;
+        }
+
+        // Cooper, Harvey and Kennedy's iterative algorithm
+        int[] doms = new int[n];
+        Arrays.fill(doms, -1);
+        doms[0] = 0;
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int i = postOrder.size() - 1; i >= 0; i--) {
+                int b = postOrder.get(i);
+                if (b == 0) {
+                    continue;
+                }
+                int newIdom = -1;
+                for (int pred : blocks.get(b).predecessors) {
+                    if (doms[pred] == -1) {
+                        continue;
+                    }
+                    newIdom = newIdom == -1 ? pred : intersect(doms, rpoNumber, pred, newIdom);
+                }
+                if (newIdom != doms[b]) {
+                    doms[b] = newIdom;
+                    changed = true;
+                }
+            }
+        }
+
+        doms[0] = -1;
+        return doms;
+    }
+
+    private static int intersect(int[] doms, int[] rpoNumber, int a, int b) {
+        while (a != b) {
+            while (rpoNumber[a] > rpoNumber[b]) {
+                a = doms[a];
+            }
+            while (rpoNumber[b] > rpoNumber[a]) {
+                b = doms[b];
+            }
+        }
+        return a;
+    }
+
+    /**
+     * Applies the given rewriter to the body of every method in the OLLIR code. Bodies are given one trimmed
+     * instruction per line, without the method header and the closing bracket.
+     *
+     * @param ollirCode
+     * @param rewriter
+     * @return the rewritten OLLIR code
+     */
+    public static String mapMethodBodies(String ollirCode, UnaryOperator<List<String>> rewriter) {
+        StringBuilder code = new StringBuilder();
+        List<String> body = null;
+
+        for (String rawLine : ollirCode.split("\n", -1)) {
+            String line = rawLine.trim();
+
+            if (body == null) {
+                code.append(rawLine).append("\n");
+                if (METHOD_HEADER.matcher(line).matches()) {
+                    body = new ArrayList<>();
+                }
+                continue;
+            }
+
+            if (line.equals("}")) {
+                for (String bodyLine : rewriter.apply(body)) {
+                    code.append(bodyLine).append("\n");
+                }
+                code.append(rawLine).append("\n");
+                body = null;
+                continue;
+            }
+
+            if (!line.isEmpty()) {
+                body.add(line);
+            }
+        }
+
+        // split() keeps the text after the last new line, which already had one appended
+        code.setLength(code.length() - 1);
+
+        return code.toString();
+    }
+
+    public static class Block {
+
+        private final int start;
+        private final int end;
+        private final List<Integer> successors = new ArrayList<>();
+        private final List<Integer> predecessors = new ArrayList<>();
+
+        public Block(int start, int end) {
+            this.start = start;
+            this.end = end;
+        }
+
+        /**
+         * @return index of the first line of the block
+         */
+        public int getStart() {
+            return start;
+        }
+
+        /**
+         * @return index after the last line of the block
+         */
+        public int getEnd() {
+            return end;
+        }
+
+        public List<Integer> getSuccessors() {
+            return successors;
+        }
+
+        public List<Integer> getPredecessors() {
+            return predecessors;
+        }
+    }
+}
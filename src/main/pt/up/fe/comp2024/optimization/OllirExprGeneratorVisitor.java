@@ -2,19 +2,29 @@ package pt.up.fe.comp2024.optimization;
 
 import pt.up.fe.comp.jmm.analysis.table.SymbolTable;
 import pt.up.fe.comp.jmm.analysis.table.Type;
+import pt.up.fe.comp.jmm.ast.AJmmVisitor;
 import pt.up.fe.comp.jmm.ast.JmmNode;
-import pt.up.fe.comp.jmm.ast.PreorderJmmVisitor;
+import pt.up.fe.comp2024.ast.KindDispatch;
 import pt.up.fe.comp2024.ast.TypeUtils;
+import pt.up.fe.comp2024.symboltable.JmmSymbolTable;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.function.BiFunction;
 
 import static pt.up.fe.comp2024.ast.Kind.*;
 
 /**
  * Generates OLLIR code from JmmNodes that are expressions.
  */
-public class OllirExprGeneratorVisitor extends PreorderJmmVisitor<Void, OllirExprResult> {
+public class OllirExprGeneratorVisitor extends AJmmVisitor<Void, OllirExprResult> {
 
     private static final String SPACE = " ";
     private static final String ASSIGN = ":=";
+    private static final Set<String> COMPOUND_ASSIGN = Set.of("+=", "-=", "*=", "/=");
     private final String END_STMT = ";\n";
 
     private final SymbolTable table;
@@ -23,6 +33,20 @@ public class OllirExprGeneratorVisitor extends PreorderJmmVisitor<Void, OllirExp
         this.table = table;
     }
 
+    // no initializer, visits are added by the super constructor, before the fields of this class are initialized
+    private KindDispatch<BiFunction<JmmNode, Void, OllirExprResult>> visits;
+
+    /**
+     * Same visit method as the one found through the hierarchy of the node, looked up by the ordinal of its kind.
+     */
+    @Override
+    protected BiFunction<JmmNode, Void, OllirExprResult> getVisit(JmmNode node) {
+        if (visits == null) {
+            visits = new KindDispatch<>();
+        }
+        return visits.get(node, super::getVisit);
+    }
+
     @Override
     protected void buildVisitor() {
         addVisit(VAR_REF_EXPR, this::visitVarRef);
@@ -44,6 +68,7 @@ public class OllirExprGeneratorVisitor extends PreorderJmmVisitor<Void, OllirExp
         addVisit(ARRAY_ACCESS, this::visitArrayAccess);
         addVisit(ARRAY_ASSIGN, this::visitArrayAssignmentStm);
         addVisit(BINARY_EXPR_AND, this::visitBinExprAnd);
+        addVisit(PARENTESIS, this::visitParentesis);
         addVisit("This", this::visitThis);
         setDefaultVisit(this::defaultVisit);
     }
@@ -57,20 +82,59 @@ public class OllirExprGeneratorVisitor extends PreorderJmmVisitor<Void, OllirExp
 
     private OllirExprResult visitBinExpr(JmmNode node, Void unused) {
 
-        var lhs = visit(node.getJmmChild(0));
-        var rhs = OllirExprResult.EMPTY;
-        if (node.getNumChildren() > 1) {
-            rhs = visit(node.getJmmChild(1));
+        // Generated code can nest thousands of operations, on either side and inside parentheses. The operations are
+        // walked in postorder with an explicit stack, and the code of every operation is appended to a single builder,
+        // so that deep expressions neither overflow the stack nor copy the code of their operands again at each level
+        StringBuilder computation = new StringBuilder();
+        Deque<String> operandCodes = new ArrayDeque<>();
+        Deque<JmmNode> pending = new ArrayDeque<>();
+        Set<JmmNode> expanded = Collections.newSetFromMap(new IdentityHashMap<>());
+        pending.push(node);
+
+        while (!pending.isEmpty()) {
+            var current = pending.pop();
+
+            // operands that are not operations are generated as usual
+            if (!BINARY_EXPR.check(current)) {
+                var operand = visit(current);
+                computation.append(operand.getComputation());
+                operandCodes.push(operand.getCode());
+                continue;
+            }
+
+            // first the operands, then the operation itself
+            if (expanded.add(current)) {
+                pending.push(current);
+                for (int i = current.getNumChildren() - 1; i >= 0; i--) {
+                    pending.push(skipParentheses(current.getJmmChild(i)));
+                }
+                continue;
+            }
+
+            String rhsCode = current.getNumChildren() > 1 ? operandCodes.pop() : OllirExprResult.EMPTY.getCode();
+            String lhsCode = operandCodes.pop();
+            operandCodes.push(appendBinExpr(current, lhsCode, rhsCode, computation));
         }
 
-        StringBuilder computation = new StringBuilder();
+        return new OllirExprResult(operandCodes.pop(), computation);
+    }
 
-        // code to compute the children
-        computation.append(lhs.getComputation());
-        computation.append(rhs.getComputation());
+    private static JmmNode skipParentheses(JmmNode node) {
+        while (PARENTESIS.check(node)) {
+            node = node.getJmmChild(0);
+        }
+        return node;
+    }
+
+    /**
+     * Appends the code that computes a binary expression, given the code of its operands, after the code that computes
+     * them.
+     *
+     * @return the code of the result
+     */
+    private String appendBinExpr(JmmNode node, String lhsCode, String rhsCode, StringBuilder computation) {
 
         // Generate temporary variables for complex expressions if necessary
-        String lhsCode = lhs.getCode();
         if (lhsCode.contains("invokevirtual") || lhsCode.contains("invokestatic")) {
             String lhsTemp = OptUtils.getTemp() + OptUtils.toOllirType(node.getJmmChild(0));
             computation.append(lhsTemp).append(SPACE)
@@ -79,11 +143,10 @@ public class OllirExprGeneratorVisitor extends PreorderJmmVisitor<Void, OllirExp
             lhsCode = lhsTemp;
         }
 
-        String rhsCode = rhs.getCode();
         if (rhsCode.contains("invokevirtual") || rhsCode.contains("invokestatic")) {
-            String rhsTemp = OptUtils.getTemp() + OptUtils.toOllirType(table.getReturnType(node.getJmmChild(1).get("value")));
+            String rhsTemp = OptUtils.getTemp() + OptUtils.toOllirType(table.getReturnType(getCalledMethod(node.getJmmChild(1))));
             computation.append(rhsTemp).append(SPACE)
-                    .append(ASSIGN).append(OptUtils.toOllirType(table.getReturnType(node.getJmmChild(1).get("value")))).append(SPACE)
+                    .append(ASSIGN).append(OptUtils.toOllirType(table.getReturnType(getCalledMethod(node.getJmmChild(1))))).append(SPACE)
                     .append(rhsCode);
             rhsCode = rhsTemp;
         }
@@ -99,7 +162,12 @@ public class OllirExprGeneratorVisitor extends PreorderJmmVisitor<Void, OllirExp
                 .append(node.get("op")).append(OptUtils.toOllirType(resType)).append(SPACE)
                 .append(rhsCode).append(END_STMT);
 
-        return new OllirExprResult(code, computation);
+        return code;
+    }
+
+    private OllirExprResult visitParentesis(JmmNode node, Void unused) {
+        // parentheses only group, the code is the code of the inner expression
+        return visit(node.getJmmChild(0));
     }
 
     private OllirExprResult visitBinExprAnd(JmmNode node, Void unused) {
@@ -121,9 +189,9 @@ public class OllirExprGeneratorVisitor extends PreorderJmmVisitor<Void, OllirExp
 
         String rhsCode = rhs.getCode();
         if (rhsCode.contains("invokevirtual") || rhsCode.contains("invokestatic")) {
-            String rhsTemp = OptUtils.getTemp() + OptUtils.toOllirType(table.getReturnType(node.getJmmChild(1).get("value")));
+            String rhsTemp = OptUtils.getTemp() + OptUtils.toOllirType(table.getReturnType(getCalledMethod(node.getJmmChild(1))));
             computation.append(rhsTemp).append(SPACE)
-                    .append(ASSIGN).append(OptUtils.toOllirType(table.getReturnType(node.getJmmChild(1).get("value")))).append(SPACE)
+                    .append(ASSIGN).append(OptUtils.toOllirType(table.getReturnType(getCalledMethod(node.getJmmChild(1))))).append(SPACE)
                     .append(rhsCode);
             rhsCode = rhsTemp;
         }
@@ -136,7 +204,7 @@ public class OllirExprGeneratorVisitor extends PreorderJmmVisitor<Void, OllirExp
         ollirCode.append("goto ").append(OptUtils.getAndEnd()).append(";\n");
         ollirCode.append(OptUtils.getCurrentAndTrue()).append(":\n");
         ollirCode.append(computation);
-        ollirCode.append(resultTemp).append(SPACE).append(ASSIGN).append(OptUtils.toOllirType(table.getReturnType(node.getJmmChild(1).get("value")))).append(SPACE).append(rhsCode).append(END_STMT);
+        ollirCode.append(resultTemp).append(SPACE).append(ASSIGN).append(OptUtils.toOllirType(table.getReturnType(getCalledMethod(node.getJmmChild(1))))).append(SPACE).append(rhsCode).append(END_STMT);
         ollirCode.append(OptUtils.getCurrentAndEnd()).append(SPACE).append(":\n");
 
         return new OllirExprResult(resultTemp, ollirCode.toString());
@@ -145,10 +213,11 @@ public class OllirExprGeneratorVisitor extends PreorderJmmVisitor<Void, OllirExp
     private OllirExprResult visitAssignStmt(JmmNode node, Void unused) {
         var lhs = visit(node.getJmmChild(0));
         var rhs = OllirExprResult.EMPTY;
+        Type thisType = TypeUtils.getExprType(node.getJmmChild(0), table);
         String lhsCode = lhs.getCode();
         if (node.getNumChildren() > 1) {
             if (node.getJmmChild(1).getKind().equals("NewClass")) {
-                lhsCode = OptUtils.getTemp() + OptUtils.toOllirType(TypeUtils.getExprType(node.getJmmChild(0), table));
+                lhsCode = OptUtils.getTemp() + OptUtils.toOllirType(thisType);
                 rhs = visit(node.getJmmChild(1));
             } else {
                 rhs = visit(node.getJmmChild(1));
@@ -173,14 +242,13 @@ public class OllirExprGeneratorVisitor extends PreorderJmmVisitor<Void, OllirExp
 
         String rhsCode = rhs.getCode();
         if (rhsCode.contains("invokevirtual") || rhsCode.contains("invokestatic")) {
-            String rhsTemp = OptUtils.getTemp() + OptUtils.toOllirType(TypeUtils.getExprType(node.getJmmChild(0), table));
+            String rhsTemp = OptUtils.getTemp() + OptUtils.toOllirType(thisType);
             computation.append(rhsTemp).append(SPACE)
-                    .append(ASSIGN).append(OptUtils.toOllirType(TypeUtils.getExprType(node.getJmmChild(0), table))).append(SPACE)
+                    .append(ASSIGN).append(OptUtils.toOllirType(thisType)).append(SPACE)
                     .append(rhsCode);
             rhsCode = rhsTemp;
         }
 
-        Type thisType = TypeUtils.getExprType(node.getJmmChild(0), table);
         String typeString = OptUtils.toOllirType(thisType);
 
         StringBuilder code = new StringBuilder();
@@ -234,28 +302,61 @@ public class OllirExprGeneratorVisitor extends PreorderJmmVisitor<Void, OllirExp
 
         code.append(", \"").append(functionName).append("\"");
 
+        // the method of the class the call invokes, its vararg takes the last arguments gathered into an array
+        var target = TypeUtils.getCallTarget(node, table);
+        int varargIndex = target.map(this::getVarargIndex).orElse(-1);
+        if (varargIndex != -1 && passesArray(node, varargIndex)) {
+            varargIndex = -1;
+        }
+        StringBuilder varargs = new StringBuilder();
+        String varargsArray = null;
+        if (varargIndex != -1) {
+            varargsArray = OptUtils.getTemp("varargs") + ".array.i32";
+            varargs.append(varargsArray).append(SPACE).append(ASSIGN).append(".array.i32 new(array, ")
+                    .append(node.getNumChildren() - 1 - varargIndex).append(".i32).array.i32").append(END_STMT);
+        }
+
         // Compute arguments
+        StringBuilder argComputation = new StringBuilder();
         for (int i = 1; i < node.getNumChildren(); i++) {
-            code.append(", ");
             JmmNode argNode = node.getJmmChild(i);
             var argResult = visit(argNode);
 
-            // Generate temporary variables for complex arguments if necessary
+            // Generate temporary variables for complex arguments if necessary, after the code that computes them
+            argComputation.append(argResult.getComputation());
             String argCode = argResult.getCode();
             if (argCode.contains("invokevirtual") || argCode.contains("invokestatic")) {
-                String argTemp = OptUtils.getTemp() + OptUtils.toOllirType(argNode);
-                computation.append(argTemp).append(SPACE)
-                        .append(ASSIGN).append(OptUtils.toOllirType(argNode)).append(SPACE)
-                        .append(argCode).append(END_STMT);
+                String argType = getArgOllirType(argNode);
+                String argTemp = OptUtils.getTemp() + argType;
+                argComputation.append(argTemp).append(SPACE)
+                        .append(ASSIGN).append(argType).append(SPACE)
+                        .append(argCode);
+                if (!argCode.endsWith(END_STMT)) {
+                    argComputation.append(END_STMT);
+                }
                 argCode = argTemp;
             }
-            code.insert(0, argResult.getComputation());
-            code.append(argCode);
+
+            if (varargIndex != -1 && i - 1 >= varargIndex) {
+                varargs.append(varargsArray, 0, varargsArray.indexOf('.'))
+                        .append("[").append(i - 1 - varargIndex).append(".i32].i32 ")
+                        .append(ASSIGN).append(".i32 ").append(argCode).append(END_STMT);
+                continue;
+            }
+            code.append(", ").append(argCode);
+        }
+        if (varargIndex != -1) {
+            code.append(", ").append(varargsArray);
         }
 
-        // Determine the return type
-        Type returnType = TypeUtils.getExprType(node.getParent().getJmmChild(0), table);
-        if (returnType != null) {
+        // Determine the return type, declared in the class file for methods of imported classes and in the table for
+        // the overload the call invokes
+        var importedType = TypeUtils.getImportedReturnType(node, table);
+        Type returnType = importedType.orElseGet(() -> target.map(table::getReturnType)
+                .orElseGet(() -> TypeUtils.getExprType(node.getParent().getJmmChild(0), table)));
+        if (importedType.isPresent() && returnType.getName().equals("void")) {
+            code.append(").V");
+        } else if (returnType != null) {
             code.append(")").append(OptUtils.toOllirType(returnType));
         } else {
             code.append(").V");
@@ -263,10 +364,10 @@ public class OllirExprGeneratorVisitor extends PreorderJmmVisitor<Void, OllirExp
 
         code.append(END_STMT);
 
-        // Prepend the computation for receiver and arguments
-        computation.append(code);
+        // the receiver and the arguments are computed first, then the vararg array is filled
+        computation.append(argComputation).append(varargs);
 
-        return new OllirExprResult(computation.toString());
+        return new OllirExprResult(code.toString(), computation);
     }
 
 
@@ -331,15 +432,19 @@ public class OllirExprGeneratorVisitor extends PreorderJmmVisitor<Void, OllirExp
 
         if (node.getJmmChild(1).getKind().equals("BRACKETS")) {
             if (node.getNumChildren() == 3) {
+                // nested statements take labels of their own, keep the ones of this if
+                String thenLabel = OptUtils.getIfLabel();
+                String endLabel = OptUtils.getEndIfLabel();
+
                 code.append("if(");
                 code.append(visit(node.getJmmChild(0)).getCode());
-                code.append(") goto ").append(OptUtils.getIfLabel()).append(";\n");
-                code.append(visit(node.getJmmChild(2).getJmmChild(0)).getCode());
-                code.append("goto ").append(OptUtils.getEndIfLabel()).append(";\n");
+                code.append(") goto ").append(thenLabel).append(";\n");
+                code.append(statementCode(node.getJmmChild(2)));
+                code.append("goto ").append(endLabel).append(";\n");
 
-                code.append(OptUtils.getCurrentIfLabel()).append(":\n");
-                code.append(visit(node.getJmmChild(1).getJmmChild(0)).getCode());
-                code.append(OptUtils.getCurrentEndIfLabel()).append(":\n");
+                code.append(thenLabel).append(":\n");
+                code.append(statementCode(node.getJmmChild(1)));
+                code.append(endLabel).append(":\n");
 
             } else {
                 code.append("if(");
@@ -356,41 +461,93 @@ public class OllirExprGeneratorVisitor extends PreorderJmmVisitor<Void, OllirExp
 
     private OllirExprResult visitBrackets(JmmNode node, Void unused) {
         StringBuilder code = new StringBuilder();
-        code.append(visit(node.getJmmChild(0)).getCode());
+        for (var child : node.getChildren()) {
+            code.append(statementCode(child));
+        }
         return new OllirExprResult(code.toString());
     }
 
     private OllirExprResult visitWhileStmt(JmmNode node, Void unused) {
         StringBuilder code = new StringBuilder();
-        code.append(OptUtils.getWhileCondLabel()).append(":\n");
+
+        // nested statements take labels of their own, keep the ones of this loop
+        String condLabel = OptUtils.getWhileCondLabel();
+        String loopLabel = OptUtils.getWhileLoopLabel();
+        String endLabel = OptUtils.getWhileEndLabel();
+
+        code.append(condLabel).append(":\n");
         var aux2 = visit(node.getJmmChild(0));
         code.append(aux2.getComputation());
         code.append("if(");
         code.append(aux2.getCode());
-        code.append(") goto ").append(OptUtils.getWhileLoopLabel()).append(";\n");
-        code.append("goto ").append(OptUtils.getWhileEndLabel()).append(";\n");
-
-        code.append(OptUtils.getCurrentWhileLoopLabel()).append(":\n");
-        if (node.getJmmChild(1).getKind().equals("BRACKETS")) {
-            code.append(visit(node.getJmmChild(1).getJmmChild(0)).getCode());
-        } else {
-            code.append(visit(node.getJmmChild(1)).getCode());
-        }
-        code.append("goto ").append(OptUtils.getCurrentWhileLoopLabel()).append(";\n");
+        code.append(") goto ").append(loopLabel).append(";\n");
+        code.append("goto ").append(endLabel).append(";\n");
 
+        code.append(loopLabel).append(":\n");
+        code.append(statementCode(node.getJmmChild(1)));
+        code.append("goto ").append(condLabel).append(";\n");
+        code.append(endLabel).append(":\n");
 
         return new OllirExprResult(code.toString());
     }
 
     private OllirExprResult visitForStmt(JmmNode node, Void unused) {
         StringBuilder code = new StringBuilder();
-        code.append(visit(node.getJmmChild(0)).getCode());
-        code.append(visit(node.getJmmChild(1)).getCode());
-        code.append(visit(node.getJmmChild(2)).getCode());
-        code.append(visit(node.getJmmChild(3)).getCode());
+
+        String condLabel = OptUtils.getWhileCondLabel();
+        String loopLabel = OptUtils.getWhileLoopLabel();
+        String endLabel = OptUtils.getWhileEndLabel();
+
+        code.append(statementCode(node.getJmmChild(0)));
+
+        code.append(condLabel).append(":\n");
+        var cond = visit(node.getJmmChild(1));
+        code.append(cond.getComputation());
+        code.append("if(").append(cond.getCode()).append(") goto ").append(loopLabel).append(";\n");
+        code.append("goto ").append(endLabel).append(";\n");
+
+        code.append(loopLabel).append(":\n");
+        code.append(statementCode(node.getJmmChild(3)));
+        code.append(updateCode(node.getJmmChild(2)));
+        code.append("goto ").append(condLabel).append(";\n");
+        code.append(endLabel).append(":\n");
+
         return new OllirExprResult(code.toString());
     }
 
+    /**
+     * Code of a statement nested in another one.
+     */
+    private String statementCode(JmmNode stmt) {
+        var result = visit(stmt);
+
+        // the computation of an assignment already ends with the assignment itself
+        return ASSIGN_STMT.check(stmt) ? result.getComputation() : result.getCode();
+    }
+
+    /**
+     * Code of the update expression of a for, such as i++ or i += 2.
+     */
+    private String updateCode(JmmNode update) {
+        if (INCREMENT.check(update)) {
+            String var = update.get("value") + ".i32";
+            String op = update.get("op").equals("++") ? "+" : "-";
+            return var + SPACE + ASSIGN + ".i32 " + var + SPACE + op + ".i32 1.i32" + END_STMT;
+        }
+
+        if (BINARY_EXPR.check(update) && COMPOUND_ASSIGN.contains(update.get("op"))
+                && VAR_REF_EXPR.check(update.getJmmChild(0))) {
+            var var = visit(update.getJmmChild(0));
+            var value = visit(update.getJmmChild(1));
+            String op = update.get("op").substring(0, 1);
+            return value.getComputation() + var.getCode() + SPACE + ASSIGN + ".i32 " + var.getCode() + SPACE + op
+                    + ".i32 " + value.getCode() + END_STMT;
+        }
+
+        var result = visit(update);
+        return result.getComputation();
+    }
+
     private OllirExprResult visitIdentifier(JmmNode node, Void unused) {
         StringBuilder code = new StringBuilder();
         if (node.get("value").equals("true")) {
@@ -415,6 +572,7 @@ public class OllirExprGeneratorVisitor extends PreorderJmmVisitor<Void, OllirExp
     private OllirExprResult visitExprStmt(JmmNode node, Void unused) {
         StringBuilder code = new StringBuilder();
         var aux = visit(node.getJmmChild(0));
+        code.append(aux.getComputation());
         code.append(aux.getCode());
         return new OllirExprResult(code.toString());
     }
@@ -489,6 +647,45 @@ public class OllirExprGeneratorVisitor extends PreorderJmmVisitor<Void, OllirExp
         return new OllirExprResult(code.toString());
     }
 
+    /**
+     * @return the key of the method of the class a call invokes, or its name if it is not one of them
+     */
+    private String getCalledMethod(JmmNode methodCall) {
+        return TypeUtils.getCallTarget(methodCall, table).orElse(methodCall.get("value"));
+    }
+
+    /**
+     * @return the OLLIR type of an argument of a call, the return type of the method when it is a call itself
+     */
+    private String getArgOllirType(JmmNode argNode) {
+        if (METHOD_CALL.check(argNode)) {
+            var type = TypeUtils.getExprType(argNode, table);
+            if (type != null) {
+                return OptUtils.toOllirType(type);
+            }
+        }
+        return OptUtils.toOllirType(argNode);
+    }
+
+    /**
+     * @return the index of the vararg among the parameters of the method, or -1 if it has none
+     */
+    private int getVarargIndex(String method) {
+        var params = table.getParameters(method);
+        return params != null && JmmSymbolTable.isVararg(params) ? params.size() - 1 : -1;
+    }
+
+    /**
+     * @return true if the call passes an array as the vararg, which then is the last argument
+     */
+    private boolean passesArray(JmmNode methodCall, int varargIndex) {
+        if (methodCall.getNumChildren() - 1 != varargIndex + 1) {
+            return false;
+        }
+        var lastArgType = TypeUtils.getExprType(methodCall.getJmmChild(methodCall.getNumChildren() - 1), table);
+        return lastArgType != null && lastArgType.isArray();
+    }
+
     private boolean checkIfImport(String name) {
         for (var importID : table.getImports()) {
             if (importID.equals(name)) {
@@ -5,11 +5,14 @@ import pt.up.fe.comp.jmm.analysis.table.Type;
 import pt.up.fe.comp.jmm.ast.AJmmVisitor;
 import pt.up.fe.comp.jmm.ast.JmmNode;
 import pt.up.fe.comp2024.ast.Kind;
+import pt.up.fe.comp2024.ast.KindDispatch;
 import pt.up.fe.comp2024.ast.NodeUtils;
+import pt.up.fe.comp2024.symboltable.JmmSymbolTable;
 import pt.up.fe.comp2024.ast.TypeUtils;
 import pt.up.fe.specs.util.SpecsCheck;
 
 import java.util.List;
+import java.util.function.BiFunction;
 
 import static pt.up.fe.comp2024.ast.Kind.*;
 
@@ -35,6 +38,20 @@ public class OllirGeneratorVisitor extends AJmmVisitor<Void, String> {
         exprVisitor = new OllirExprGeneratorVisitor(table);
     }
 
+    // no initializer, visits are added by the super constructor, before the fields of this class are initialized
+    private KindDispatch<BiFunction<JmmNode, Void, String>> visits;
+
+    /**
+     * Same visit method as the one found through the hierarchy of the node, looked up by the ordinal of its kind.
+     */
+    @Override
+    protected BiFunction<JmmNode, Void, String> getVisit(JmmNode node) {
+        if (visits == null) {
+            visits = new KindDispatch<>();
+        }
+        return visits.get(node, super::getVisit);
+    }
+
 
     @Override
     protected void buildVisitor() {
@@ -51,9 +68,7 @@ public class OllirGeneratorVisitor extends AJmmVisitor<Void, String> {
 
     private String visitImportDecl(JmmNode node, Void unused) {
         StringBuilder code = new StringBuilder();
-        String importList = node.get("importValue");
-        String importStr = importList.substring(1, importList.length() - 1);
-        String formatado = String.join(".", importStr.split(", "));
+        String formatado = String.join(".", NodeUtils.getImportParts(node));
 
         return code.append("import ").append(formatado).append(END_STMT).toString();
     }
@@ -76,8 +91,9 @@ public class OllirGeneratorVisitor extends AJmmVisitor<Void, String> {
 
     private String visitReturn(JmmNode node, Void unused) {
 
-        String methodName = node.getAncestor(METHOD_DECLARATION).map(method -> method.get("name")).orElseThrow();
-        Type retType = table.getReturnType(methodName);
+        var methodDecl = node.getAncestor(METHOD_DECLARATION).orElseThrow();
+        String methodName = methodDecl.get("name");
+        Type retType = table.getReturnType(JmmSymbolTable.getMethodKey(table, methodDecl));
 
         StringBuilder code = new StringBuilder();
 
@@ -88,6 +104,16 @@ public class OllirGeneratorVisitor extends AJmmVisitor<Void, String> {
         }
 
         code.append(expr.getComputation());
+
+        String exprCode = expr.getCode();
+        if (exprCode.contains("invoke")) {
+            // a call is not a valid operand of ret, its value goes through a temporary
+            String ollirType = OptUtils.toOllirType(retType);
+            String temp = OptUtils.getTemp() + ollirType;
+            code.append(temp).append(SPACE).append(ASSIGN).append(ollirType).append(SPACE).append(exprCode);
+            exprCode = temp;
+        }
+
         code.append("ret");
         if(methodName.equals("main")){
             code.append(" args.array.String");
@@ -122,6 +148,9 @@ public class OllirGeneratorVisitor extends AJmmVisitor<Void, String> {
                 } else if (retType.getName().equals("boolean")) {
                     code.append(".bool");
                 }
+            } else {
+                // compound expressions were computed into a temporary above
+                code.append(exprCode);
             }
         }
 
@@ -142,10 +171,10 @@ public class OllirGeneratorVisitor extends AJmmVisitor<Void, String> {
     }
 
     private String visitMethodDecl(JmmNode node, Void unused) {
-        String currentMethod = node.get("name");
+        String currentMethod = JmmSymbolTable.getMethodKey(table, node);
         StringBuilder code = new StringBuilder(".method ");
 
-        if (currentMethod.equals("main")) {
+        if (node.get("name").equals("main")) {
             code.append("public ");
         }
 
@@ -217,7 +246,7 @@ public class OllirGeneratorVisitor extends AJmmVisitor<Void, String> {
             if (child.getKind().equals("IfStm")) {
                 var x = exprVisitor.visit(child);
                 code.append(x.getCode());
-            } else if (child.getKind().equals("WhileStm")) {
+            } else if (child.getKind().equals("WhileStm") || child.getKind().equals("FOR_STM")) {
                 var x = exprVisitor.visit(child);
                 code.append(x.getCode());
             } else if (child.getKind().equals("ArrayAssign")) {
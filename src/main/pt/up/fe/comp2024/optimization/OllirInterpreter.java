@@ -0,0 +1,170 @@
+package pt.up.fe.comp2024.optimization;
+
+import org.specs.comp.ollir.*;
+
+import java.util.*;
+
+/**
+ * Interprets pure OLLIR methods over int and boolean values.
+ * <p>
+ * Every executed instruction consumes one unit of fuel, so evaluation of methods that loop for too long, or forever,
+ * is abandoned instead of stalling the compiler.
+ */
+public class OllirInterpreter {
+
+    private static final int MAX_DEPTH = 256;
+
+    private final ClassUnit classUnit;
+    private int fuel;
+
+    public OllirInterpreter(ClassUnit classUnit, int fuel) {
+        this.classUnit = classUnit;
+        this.fuel = fuel;
+    }
+
+    /**
+     * Evaluates a method of the class.
+     *
+     * @param methodName
+     * @param args       the values of the arguments, booleans as 0 or 1
+     * @return the value returned by the method, or empty if it could not be evaluated
+     */
+    public Optional<Integer> invoke(String methodName, List<Integer> args) {
+        try {
+            return Optional.of(call(methodName, args, 0));
+        } catch (EvaluationAbortedException | ArithmeticException e) {
+            return Optional.empty();
+        }
+    }
+
+    private int call(String methodName, List<Integer> args, int depth) {
+        if (depth > MAX_DEPTH) {
+            throw new EvaluationAbortedException("Call depth exceeded");
+        }
+
+        var method = classUnit.getMethods().stream()
+                .filter(m -> m.getMethodName().equals(methodName))
+                .findFirst()
+                .orElseThrow(() -> new EvaluationAbortedException("Unknown method " + methodName));
+
+        if (method.getParams().size() != args.size()) {
+            throw new EvaluationAbortedException("Wrong number of arguments for " + methodName);
+        }
+
+        Map<String, Integer> frame = new HashMap<>();
+        for (int i = 0; i < args.size(); i++) {
+            frame.put(((Operand) method.getParam(i)).getName(), args.get(i));
+        }
+
+        var instructions = method.getInstructions();
+        int pc = 0;
+        while (pc < instructions.size()) {
+            if (--fuel < 0) {
+                throw new EvaluationAbortedException("Out of fuel");
+            }
+
+            var inst = instructions.get(pc);
+            pc++;
+
+            if (inst instanceof AssignInstruction assign) {
+                if (assign.getDest() instanceof ArrayOperand || !(assign.getDest() instanceof Operand dest)) {
+                    throw new EvaluationAbortedException("Unsupported destination");
+                }
+                frame.put(dest.getName(), evaluate(assign.getRhs(), frame, depth));
+            } else if (inst instanceof GotoInstruction gotoInst) {
+                pc = jump(method, gotoInst.getLabel());
+            } else if (inst instanceof CondBranchInstruction branch) {
+                if (evaluate(branch.getCondition(), frame, depth) != 0) {
+                    pc = jump(method, branch.getLabel());
+                }
+            } else if (inst instanceof ReturnInstruction ret) {
+                if (!ret.hasReturnValue() || ret.getOperand() == null) {
+                    throw new EvaluationAbortedException("Method does not return a value");
+                }
+                return value(ret.getOperand(), frame);
+            } else {
+                evaluate(inst, frame, depth);
+            }
+        }
+
+        throw new EvaluationAbortedException("Method ended without returning");
+    }
+
+    private int jump(Method method, String label) {
+        var target = method.getLabels().get(label);
+        if (target == null) {
+            throw new EvaluationAbortedException("Unknown label " + label);
+        }
+        return method.getInstructions().indexOf(target);
+    }
+
+    private int evaluate(Instruction inst, Map<String, Integer> frame, int depth) {
+        if (inst instanceof SingleOpInstruction singleOp) {
+            return value(singleOp.getSingleOperand(), frame);
+        }
+
+        if (inst instanceof UnaryOpInstruction unaryOp) {
+            int operand = value(unaryOp.getOperand(), frame);
+            return switch (unaryOp.getOperation().getOpType()) {
+                case NOTB, NOT -> operand == 0 ? 1 : 0;
+                case SUB -> -operand;
+                default -> throw new EvaluationAbortedException("Unsupported unary operation");
+            };
+        }
+
+        if (inst instanceof BinaryOpInstruction binaryOp) {
+            int lhs = value(binaryOp.getLeftOperand(), frame);
+            int rhs = value(binaryOp.getRightOperand(), frame);
+            return switch (binaryOp.getOperation().getOpType()) {
+                case ADD -> lhs + rhs;
+                case SUB -> lhs - rhs;
+                case MUL -> lhs * rhs;
+                case DIV -> lhs / rhs;
+                case LTH -> lhs < rhs ? 1 : 0;
+                case GTH -> lhs > rhs ? 1 : 0;
+                case LTE -> lhs <= rhs ? 1 : 0;
+                case GTE -> lhs >= rhs ? 1 : 0;
+                case EQ -> lhs == rhs ? 1 : 0;
+                case NEQ -> lhs != rhs ? 1 : 0;
+                case ANDB, AND -> (lhs != 0 && rhs != 0) ? 1 : 0;
+                case ORB, OR -> (lhs != 0 || rhs != 0) ? 1 : 0;
+                default -> throw new EvaluationAbortedException("Unsupported binary operation");
+            };
+        }
+
+        if (inst instanceof CallInstruction call && call.getInvocationType() == CallType.invokevirtual
+                && call.getMethodName() instanceof LiteralElement name) {
+            List<Integer> args = new ArrayList<>();
+            for (var arg : call.getArguments()) {
+                args.add(value(arg, frame));
+            }
+            return call(name.getLiteral().replace("\"", ""), args, depth + 1);
+        }
+
+        throw new EvaluationAbortedException("Unsupported instruction " + inst.getInstType());
+    }
+
+    private int value(Element element, Map<String, Integer> frame) {
+        if (element instanceof LiteralElement literal) {
+            return Integer.parseInt(literal.getLiteral());
+        }
+
+        if (element instanceof Operand operand && !(element instanceof ArrayOperand)) {
+            var value = frame.get(operand.getName());
+            if (value == null) {
+                throw new EvaluationAbortedException("Read of unassigned variable " + operand.getName());
+            }
+            return value;
+        }
+
+        throw new EvaluationAbortedException("Unsupported operand");
+    }
+
+    private static class EvaluationAbortedException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        EvaluationAbortedException(String message) {
+            super(message);
+        }
+    }
+}
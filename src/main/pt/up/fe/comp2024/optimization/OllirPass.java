@@ -0,0 +1,19 @@
+package pt.up.fe.comp2024.optimization;
+
+import pt.up.fe.comp.jmm.analysis.table.SymbolTable;
+
+/**
+ * Represents an optimization pass over OLLIR code.
+ */
+public interface OllirPass {
+
+    /**
+     * Optimizes the given OLLIR code.
+     *
+     * @param ollirCode the OLLIR code of a whole class
+     * @param table     the symbol table
+     * @return the optimized OLLIR code, or the same code if nothing changed
+     */
+    String apply(String ollirCode, SymbolTable table);
+
+}
@@ -0,0 +1,304 @@
+package pt.up.fe.comp2024.optimization.passes;
+
+import pt.up.fe.comp.jmm.analysis.table.SymbolTable;
+import pt.up.fe.comp2024.optimization.OllirCfg;
+import pt.up.fe.comp2024.optimization.OllirPass;
+
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Reuses the temporary that already holds the value of a binary operation, an array load or an array length, instead
+ * of computing it again.
+ * <p>
+ * Available expressions are propagated along the dominator tree of each method. An expression is killed by an
+ * assignment to any of its operands, array loads are also killed by array stores and calls, and expressions that read
+ * fields are killed by calls and field stores.
+ */
+public class CommonSubexpressionElimination implements OllirPass {
+
+    private static final Pattern FIELD = Pattern.compile("^\\.field\\b.*?\\s([\\w$]+)((?:\\.[\\w$]+)+)\\s*;$");
+    private static final Pattern ASSIGN = Pattern.compile("^([\\w$]+)((?:\\.[\\w$]+)+)\\s*:=\\s*((?:\\.[\\w$]+)+)\\s+(.*?)\\s*;$");
+    private static final Pattern ARRAY_STORE = Pattern.compile("^[\\w$]+(?:\\.[\\w$]+)*\\[.*]\\S*\\s*:=.*$");
+    private static final Pattern BINARY_OP = Pattern.compile("^(\\S+)\\s+(\\+|-|\\*|/|<|>|<=|>=|==|!=|&&|\\|\\|)((?:\\.[\\w$]+)+)\\s+(\\S+)$");
+    private static final Pattern ARRAY_LOAD = Pattern.compile("^([\\w$]+)((?:\\.[\\w$]+)+)\\[(\\S+)]((?:\\.[\\w$]+)+)$");
+    private static final Pattern ARRAY_LENGTH = Pattern.compile("^arraylength\\((\\S+)\\)((?:\\.[\\w$]+)+)$");
+    private static final Pattern TEMP = Pattern.compile("^tmp\\d+$");
+    private static final Pattern TEMP_USE = Pattern.compile("(?<![\\w$])(tmp\\d+)(?=\\.)");
+    private static final Set<String> COMMUTATIVE = Set.of("+", "*", "==", "!=", "&&", "||");
+
+    @Override
+    public String apply(String ollirCode, SymbolTable table) {
+        Set<String> fields = new HashSet<>();
+        for (String line : ollirCode.split("\n")) {
+            Matcher field = FIELD.matcher(line.trim());
+            if (field.matches()) {
+                fields.add(field.group(1));
+            }
+        }
+
+        return OllirCfg.mapMethodBodies(ollirCode, body -> new MethodCse(body, fields).run());
+    }
+
+    /**
+     * A pure expression already computed into a temporary.
+     */
+    private record Available(String operand, Set<String> deps, boolean readsArray) {
+    }
+
+    /**
+     * What a block (or a region of blocks) may overwrite.
+     */
+    private static class Kills {
+        private final Set<String> names = new HashSet<>();
+        private boolean arrays;
+        private boolean fields;
+        private boolean all;
+
+        void addAll(Kills other) {
+            names.addAll(other.names);
+            arrays |= other.arrays;
+            fields |= other.fields;
+            all |= other.all;
+        }
+
+        boolean kills(Available available, Set<String> fieldNames) {
+            if (all || (arrays && available.readsArray())) {
+                return true;
+            }
+            for (String dep : available.deps()) {
+                if (names.contains(dep) || (fields && fieldNames.contains(dep))) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    private static class MethodCse {
+
+        private final OllirCfg cfg;
+        private final List<String> lines;
+        private final Set<String> fields;
+        private final String[] rewritten;
+        private final Map<String, Integer> defCount = new HashMap<>();
+        private final Map<String, Set<Integer>> useBlocks = new HashMap<>();
+        private final Kills[] regionKills;
+
+        MethodCse(List<String> lines, Set<String> fields) {
+            this.cfg = new OllirCfg(lines);
+            this.lines = lines;
+            this.fields = fields;
+            this.rewritten = lines.toArray(new String[0]);
+
+            var blocks = cfg.getBlocks();
+            Kills[] blockKills = new Kills[blocks.size()];
+            for (int b = 0; b < blocks.size(); b++) {
+                blockKills[b] = new Kills();
+                for (int i = blocks.get(b).getStart(); i < blocks.get(b).getEnd(); i++) {
+                    String line = lines.get(i);
+                    addKills(line, blockKills[b]);
+                    countTemps(line, b);
+                }
+            }
+
+            this.regionKills = new Kills[blocks.size()];
+            computeRegionKills(0, cfg.getDominatorTree(), blockKills);
+        }
+
+        List<String> run() {
+            var domTree = cfg.getDominatorTree();
+            visit(0, new LinkedHashMap<>(), domTree);
+
+            for (int b = 1; b < cfg.getBlocks().size(); b++) {
+                if (!cfg.isReachable(b)) {
+                    processBlock(b, new LinkedHashMap<>());
+                }
+            }
+
+            List<String> result = new ArrayList<>();
+            for (String line : rewritten) {
+                if (line != null) {
+                    result.add(line);
+                }
+            }
+            return result;
+        }
+
+        private Kills computeRegionKills(int block, List<List<Integer>> domTree, Kills[] blockKills) {
+            var region = new Kills();
+            for (int child : domTree.get(block)) {
+                region.addAll(blockKills[child]);
+                region.addAll(computeRegionKills(child, domTree, blockKills));
+            }
+            regionKills[block] = region;
+            return region;
+        }
+
+        private void visit(int block, Map<String, Available> inherited, List<List<Integer>> domTree) {
+            var available = processBlock(block, inherited);
+
+            // whatever the blocks dominated by this one may overwrite is no longer safe to reuse inside them
+            available.values().removeIf(value -> regionKills[block].kills(value, fields));
+
+            for (int child : domTree.get(block)) {
+                visit(child, new LinkedHashMap<>(available), domTree);
+            }
+        }
+
+        private Map<String, Available> processBlock(int blockIndex, Map<String, Available> available) {
+            var block = cfg.getBlocks().get(blockIndex);
+            Map<String, String> renames = new HashMap<>();
+
+            for (int i = block.getStart(); i < block.getEnd(); i++) {
+                String line = rename(lines.get(i), renames);
+                rewritten[i] = line;
+
+                Matcher assign = ASSIGN.matcher(line);
+                if (!assign.matches()) {
+                    var kills = new Kills();
+                    addKills(line, kills);
+                    available.values().removeIf(value -> kills.kills(value, fields));
+                    continue;
+                }
+
+                String dest = assign.group(1);
+                String destOperand = dest + assign.group(2);
+                String assignType = assign.group(3);
+                String rhs = assign.group(4);
+
+                if (rhs.contains("invoke")) {
+                    available.values().removeIf(value -> value.readsArray() || !Collections.disjoint(value.deps(), fields));
+                }
+
+                var expr = toExpression(assignType, rhs);
+                var previous = expr == null ? null : available.get(expr.key());
+
+                if (previous != null) {
+                    if (isLocalTemp(dest, blockIndex)) {
+                        // every use of the new temporary is below, in this block
+                        renames.put(dest, previous.operand().substring(0, previous.operand().indexOf('.')));
+                        rewritten[i] = null;
+                        continue;
+                    }
+                    rewritten[i] = destOperand + " :=" + assignType + " " + previous.operand() + ";";
+                }
+
+                String killed = dest;
+                available.values().removeIf(value -> value.deps().contains(killed));
+
+                if (previous == null && expr != null && isSingleDefTemp(dest) && !expr.deps().contains(dest)) {
+                    available.put(expr.key(), new Available(destOperand, expr.deps(), expr.readsArray()));
+                }
+            }
+
+            return available;
+        }
+
+        private void addKills(String line, Kills kills) {
+            if (ARRAY_STORE.matcher(line).matches()) {
+                kills.arrays = true;
+            }
+            if (line.contains("invoke")) {
+                kills.arrays = true;
+                kills.fields = true;
+            }
+            if (line.startsWith("putfield")) {
+                kills.fields = true;
+            }
+
+            Matcher assign = ASSIGN.matcher(line);
+            if (assign.matches()) {
+                kills.names.add(assign.group(1));
+            } else if (line.contains(":=") && !ARRAY_STORE.matcher(line).matches()) {
+                // unknown kind of assignment, be conservative
+                kills.all = true;
+            }
+        }
+
+        private void countTemps(String line, int block) {
+            Matcher assign = ASSIGN.matcher(line);
+            String dest = assign.matches() ? assign.group(1) : null;
+            if (dest != null) {
+                defCount.merge(dest, 1, Integer::sum);
+            }
+
+            Matcher temps = TEMP_USE.matcher(line);
+            boolean first = true;
+            while (temps.find()) {
+                // the destination of an assignment is not a use
+                if (first && dest != null && temps.start() == 0) {
+                    first = false;
+                    continue;
+                }
+                first = false;
+                useBlocks.computeIfAbsent(temps.group(1), k -> new HashSet<>()).add(block);
+            }
+        }
+
+        private boolean isSingleDefTemp(String name) {
+            return TEMP.matcher(name).matches() && defCount.getOrDefault(name, 0) == 1;
+        }
+
+        private boolean isLocalTemp(String name, int block) {
+            var blocks = useBlocks.getOrDefault(name, Set.of());
+            return isSingleDefTemp(name) && blocks.stream().allMatch(b -> b == block);
+        }
+
+        private String rename(String line, Map<String, String> renames) {
+            for (var entry : renames.entrySet()) {
+                line = line.replaceAll("(?<![\\w$])" + Pattern.quote(entry.getKey()) + "(?=\\.)", entry.getValue());
+            }
+            return line;
+        }
+
+        private Expression toExpression(String assignType, String rhs) {
+            rhs = rhs.trim();
+
+            Matcher binary = BINARY_OP.matcher(rhs);
+            if (binary.matches()) {
+                String lhs = binary.group(1);
+                String op = binary.group(2) + binary.group(3);
+                String right = binary.group(4);
+                if (COMMUTATIVE.contains(binary.group(2)) && lhs.compareTo(right) > 0) {
+                    String tmp = lhs;
+                    lhs = right;
+                    right = tmp;
+                }
+                return new Expression(assignType + "|" + lhs + " " + op + " " + right,
+                        operandNames(lhs, right), false);
+            }
+
+            Matcher load = ARRAY_LOAD.matcher(rhs);
+            if (load.matches()) {
+                return new Expression(assignType + "|" + rhs, operandNames(load.group(1), load.group(3)), true);
+            }
+
+            Matcher length = ARRAY_LENGTH.matcher(rhs);
+            if (length.matches()) {
+                return new Expression(assignType + "|" + rhs, operandNames(length.group(1)), false);
+            }
+
+            return null;
+        }
+
+        private Set<String> operandNames(String... operands) {
+            Set<String> names = new HashSet<>();
+            for (String operand : operands) {
+                if (operand.isEmpty() || Character.isDigit(operand.charAt(0)) || operand.charAt(0) == '-') {
+                    continue;
+                }
+                int dot = operand.indexOf('.');
+                String name = dot == -1 ? operand : operand.substring(0, dot);
+                if (!name.equals("this")) {
+                    names.add(name);
+                }
+            }
+            return names;
+        }
+    }
+
+    private record Expression(String key, Set<String> deps, boolean readsArray) {
+    }
+}
@@ -0,0 +1,68 @@
+package pt.up.fe.comp2024.optimization.passes;
+
+import pt.up.fe.comp.jmm.analysis.table.SymbolTable;
+import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp2024.ast.NodeUtils;
+import pt.up.fe.comp2024.optimization.AstPass;
+import pt.up.fe.comp2024.optimization.CallGraph;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static pt.up.fe.comp2024.ast.Kind.*;
+
+/**
+ * Removes the methods that cannot be reached from main or from a public method, and then the fields that are no longer
+ * referenced by any of the remaining methods.
+ */
+public class DeadMemberElimination implements AstPass {
+
+    @Override
+    public boolean apply(JmmNode root, SymbolTable table) {
+        var classDecl = root.getChildren(CLASS_DECLARATION).stream().findFirst().orElse(null);
+        if (classDecl == null) {
+            return false;
+        }
+
+        var methods = classDecl.getChildren(METHOD_DECLARATION);
+        List<String> roots = new ArrayList<>();
+        for (var method : methods) {
+            if (method.get("name").equals("main") || method.getOptional("isPublic").isPresent()) {
+                roots.add(method.get("name"));
+            }
+        }
+
+        var reachable = new CallGraph(root).getReachable(roots);
+
+        List<JmmNode> dead = new ArrayList<>();
+        Set<String> usedNames = new HashSet<>();
+        for (var method : methods) {
+            if (!reachable.contains(method.get("name"))) {
+                dead.add(method);
+                continue;
+            }
+            // a field may be shadowed by a local with the same name, counting it as used is the safe choice
+            for (var ref : NodeUtils.getDescendants(method, VAR_REF_EXPR)) {
+                usedNames.add(ref.get("name"));
+            }
+            for (var store : NodeUtils.getDescendants(method, ARRAY_ASSIGN)) {
+                usedNames.add(store.get("var"));
+            }
+            for (var increment : NodeUtils.getDescendants(method, INCREMENT)) {
+                usedNames.add(increment.get("value"));
+            }
+        }
+
+        for (var field : classDecl.getChildren(VAR_DECL)) {
+            if (!usedNames.contains(field.get("name"))) {
+                dead.add(field);
+            }
+        }
+
+        dead.forEach(JmmNode::detach);
+
+        return !dead.isEmpty();
+    }
+}
@@ -0,0 +1,362 @@
+package pt.up.fe.comp2024.optimization.passes;
+
+import pt.up.fe.comp.jmm.analysis.table.SymbolTable;
+import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp2024.ast.NodeUtils;
+import pt.up.fe.comp2024.optimization.AstPass;
+import pt.up.fe.comp2024.symboltable.JmmSymbolTable;
+import pt.up.fe.comp2024.symboltable.ResolvedSymbol;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static pt.up.fe.comp2024.ast.Kind.*;
+
+/**
+ * Unrolls counted loops whose trip count is known at compile time.
+ * <p>
+ * A counted loop starts by assigning a constant to a local, only continues while the local compares with a constant,
+ * and ends each iteration by adding a constant to it, either as the last statement of a while or as the update of a
+ * for. Loops that run at most {@link #FULL_UNROLL_LIMIT} times are replaced by a copy of the body per iteration, with
+ * the counter replaced by its value. Longer loops run {@link #UNROLL_FACTOR} iterations per pass, followed by the
+ * remaining iterations.
+ * <p>
+ * Unrolling stops when the estimated size of the method would reach {@link #HUGE_METHOD_LIMIT}, the size above which
+ * HotSpot no longer compiles a method.
+ */
+public class LoopUnrolling implements AstPass {
+
+    private static final int FULL_UNROLL_LIMIT = 8;
+    private static final int UNROLL_FACTOR = 4;
+    private static final int MAX_TRIP_COUNT = 1 << 16;
+    private static final int HUGE_METHOD_LIMIT = 8000;
+    // rough number of bytecode bytes generated per AST node
+    private static final int BYTES_PER_NODE = 3;
+
+    private static final Set<String> COMPARISONS = Set.of("<", "<=", ">", ">=", "!=");
+    private static final Set<String> COMPOUND_STEP = Set.of("+=", "-=");
+
+    @Override
+    public boolean apply(JmmNode root, SymbolTable table) {
+        boolean changed = false;
+
+        for (var method : NodeUtils.getDescendants(root, METHOD_DECLARATION)) {
+            List<JmmNode> containers = new ArrayList<>();
+            containers.add(method);
+            containers.addAll(NodeUtils.getDescendants(method, BRACKETS));
+
+            // inner loops first, so that outer loops account for the growth of their bodies
+            for (int i = containers.size() - 1; i >= 0; i--) {
+                changed |= unrollIn(containers.get(i), method, table);
+            }
+        }
+
+        return changed;
+    }
+
+    private boolean unrollIn(JmmNode container, JmmNode method, SymbolTable table) {
+        boolean changed = false;
+
+        for (int i = 0; i < container.getNumChildren(); i++) {
+            var stmt = container.getJmmChild(i);
+
+            CountedLoop loop = null;
+            if (WHILE_STM.check(stmt) && i > 0) {
+                loop = matchWhile(container.getJmmChild(i - 1), stmt, method, table);
+            } else if (FOR_STMT.check(stmt)) {
+                loop = matchFor(stmt, method, table);
+            }
+
+            if (loop == null) {
+                continue;
+            }
+
+            var replacement = unroll(loop, size(method));
+            if (replacement == null) {
+                continue;
+            }
+
+            stmt.detach();
+            // statements of a method must be direct children, so nested blocks are flattened
+            var flat = replacement.stream()
+                    .flatMap(node -> BRACKETS.check(node) ? node.getChildren().stream() : Stream.of(node))
+                    .toList();
+            for (int j = 0; j < flat.size(); j++) {
+                container.add(flat.get(j), i + j);
+            }
+            i += flat.size() - 1;
+            changed = true;
+        }
+
+        return changed;
+    }
+
+    /**
+     * A loop of the form {@code counter = start; while (counter op bound) { body; counter = counter + step; }}.
+     *
+     * @param init      the statement that initializes the counter, kept in place
+     * @param body      the statements of one iteration, without the update of the counter
+     * @param update    the statement that updates the counter
+     * @param tripCount the number of iterations
+     */
+    private record CountedLoop(JmmNode init, String counter, long start, long step, long tripCount, List<JmmNode> body,
+                               JmmNode update) {
+    }
+
+    private CountedLoop matchWhile(JmmNode init, JmmNode loop, JmmNode method, SymbolTable table) {
+        var counter = initializedCounter(init, method, table);
+        if (counter == null || !BRACKETS.check(loop.getJmmChild(1)) || loop.getJmmChild(1).getNumChildren() == 0) {
+            return null;
+        }
+
+        var stmts = loop.getJmmChild(1).getChildren();
+        var update = stmts.get(stmts.size() - 1);
+        var step = assignedStep(update, counter);
+        if (step == null) {
+            return null;
+        }
+
+        var body = stmts.subList(0, stmts.size() - 1);
+        return counted(init, counter, step, loop.getJmmChild(0), body, update);
+    }
+
+    private CountedLoop matchFor(JmmNode loop, JmmNode method, SymbolTable table) {
+        var init = loop.getJmmChild(0);
+        var counter = initializedCounter(init, method, table);
+        if (counter == null) {
+            return null;
+        }
+
+        var update = loop.getJmmChild(2);
+        Long step = null;
+        if (INCREMENT.check(update) && update.get("value").equals(counter)) {
+            step = update.get("op").equals("++") ? 1L : -1L;
+        } else if (BINARY_EXPR.check(update) && COMPOUND_STEP.contains(update.get("op"))) {
+            var constant = constantOf(update.getJmmChild(1));
+            if (isRef(update.getJmmChild(0), counter) && constant != null) {
+                step = update.get("op").equals("+=") ? constant : -constant;
+            }
+        }
+
+        if (step == null) {
+            return null;
+        }
+
+        var bodyStmt = loop.getJmmChild(3);
+        List<JmmNode> body = BRACKETS.check(bodyStmt) ? bodyStmt.getChildren() : List.of(bodyStmt);
+
+        var stepUpdate = assignment(loop, counter, binary(loop, "+", ref(loop, counter), literal(loop, step)));
+        return counted(init, counter, step, loop.getJmmChild(1), body, stepUpdate);
+    }
+
+    private CountedLoop counted(JmmNode init, String counter, long step, JmmNode cond, List<JmmNode> body,
+                                JmmNode update) {
+        if (step == 0 || !BINARY_EXPR.check(cond)) {
+            return null;
+        }
+
+        // the counter must not change anywhere but in its update
+        for (var stmt : body) {
+            if (assigns(stmt, counter)) {
+                return null;
+            }
+        }
+
+        String op = cond.get("op");
+        Long bound = constantOf(cond.getJmmChild(1));
+        if (!COMPARISONS.contains(op) || !isRef(cond.getJmmChild(0), counter) || bound == null) {
+            return null;
+        }
+
+        long start = constantOf(init.getJmmChild(1));
+        long tripCount = 0;
+        for (long value = start; compare(op, value, bound); value += step) {
+            if (++tripCount > MAX_TRIP_COUNT || Math.abs(value) > Integer.MAX_VALUE) {
+                return null;
+            }
+        }
+
+        return new CountedLoop(init, counter, start, step, tripCount, body, update);
+    }
+
+    /**
+     * @return the statements that replace the loop, or null if the loop should stay as it is
+     */
+    private List<JmmNode> unroll(CountedLoop loop, int methodSize) {
+        int bodySize = loop.body().stream().mapToInt(this::size).sum();
+        int updateSize = size(loop.update());
+        int budget = HUGE_METHOD_LIMIT / BYTES_PER_NODE - methodSize;
+
+        List<JmmNode> stmts = new ArrayList<>();
+
+        // the initialization of a for is part of the loop, the one of a while stays before it
+        if (FOR_STMT.check(loop.init().getParent())) {
+            stmts.add(loop.init().copy());
+        }
+
+        if (loop.tripCount() <= FULL_UNROLL_LIMIT) {
+            if ((loop.tripCount() - 1) * bodySize > budget) {
+                return null;
+            }
+            addIterations(stmts, loop, loop.start(), loop.tripCount());
+            return stmts;
+        }
+
+        long rounds = loop.tripCount() / UNROLL_FACTOR;
+        long remainder = loop.tripCount() % UNROLL_FACTOR;
+        if ((UNROLL_FACTOR - 1) * (bodySize + updateSize) + remainder * bodySize > budget) {
+            return null;
+        }
+
+        // each pass of the new loop runs several iterations, reading the counter as before
+        var tree = loop.init();
+        var unrolledBody = NodeUtils.newNode(BRACKETS, tree);
+        for (int i = 0; i < UNROLL_FACTOR; i++) {
+            loop.body().forEach(stmt -> unrolledBody.add(stmt.copy()));
+            unrolledBody.add(loop.update().copy());
+        }
+
+        long end = loop.start() + rounds * UNROLL_FACTOR * loop.step();
+        var cond = binary(tree, loop.step() > 0 ? "<" : ">", ref(tree, loop.counter()), literal(tree, end));
+
+        var whileStmt = NodeUtils.newNode(WHILE_STM, tree);
+        whileStmt.add(cond);
+        whileStmt.add(unrolledBody);
+        stmts.add(whileStmt);
+
+        addIterations(stmts, loop, end, remainder);
+        return stmts;
+    }
+
+    /**
+     * Adds a copy of the body for each of the given iterations, with the counter replaced by its value, and the final
+     * assignment of the counter.
+     */
+    private void addIterations(List<JmmNode> stmts, CountedLoop loop, long from, long count) {
+        for (long i = 0; i < count; i++) {
+            long value = from + i * loop.step();
+            for (var stmt : loop.body()) {
+                var copy = stmt.copy();
+                replaceCounter(copy, loop.counter(), value);
+                stmts.add(copy);
+            }
+        }
+
+        var tree = loop.init();
+        stmts.add(assignment(tree, loop.counter(), literal(tree, from + count * loop.step())));
+    }
+
+    private void replaceCounter(JmmNode node, String counter, long value) {
+        for (var child : node.getChildren()) {
+            if (isRef(child, counter)) {
+                child.replace(literal(child, value));
+            } else {
+                replaceCounter(child, counter, value);
+            }
+        }
+    }
+
+    private String initializedCounter(JmmNode init, JmmNode method, SymbolTable table) {
+        if (!ASSIGN_STMT.check(init) || !VAR_REF_EXPR.check(init.getJmmChild(0))
+                || constantOf(init.getJmmChild(1)) == null) {
+            return null;
+        }
+
+        String name = init.getJmmChild(0).get("name");
+        String methodName = JmmSymbolTable.getMethodKey(table, method);
+
+        // fields may change in any call, only locals and parameters can be counters
+        return JmmSymbolTable.resolve(table, methodName, name)
+                .filter(symbol -> !symbol.isField())
+                .map(ResolvedSymbol::getType)
+                .filter(type -> type.getName().equals("int") && !type.isArray())
+                .isPresent() ? name : null;
+    }
+
+    private Long assignedStep(JmmNode update, String counter) {
+        if (!ASSIGN_STMT.check(update) || !isRef(update.getJmmChild(0), counter)
+                || !BINARY_EXPR.check(update.getJmmChild(1))) {
+            return null;
+        }
+
+        var value = update.getJmmChild(1);
+        String op = value.get("op");
+        if (op.equals("+") && isRef(value.getJmmChild(0), counter)) {
+            return constantOf(value.getJmmChild(1));
+        }
+        if (op.equals("+") && isRef(value.getJmmChild(1), counter)) {
+            return constantOf(value.getJmmChild(0));
+        }
+        if (op.equals("-") && isRef(value.getJmmChild(0), counter)) {
+            var constant = constantOf(value.getJmmChild(1));
+            return constant == null ? null : -constant;
+        }
+        return null;
+    }
+
+    private boolean assigns(JmmNode stmt, String counter) {
+        return NodeUtils.getDescendantsAndSelf(stmt).stream().anyMatch(node ->
+                (ASSIGN_STMT.check(node) && isRef(node.getJmmChild(0), counter))
+                        || (INCREMENT.check(node) && node.get("value").equals(counter))
+                        || (BINARY_EXPR.check(node) && COMPOUND_STEP.contains(node.get("op"))
+                        && isRef(node.getJmmChild(0), counter)));
+    }
+
+    private boolean compare(String op, long value, long bound) {
+        return switch (op) {
+            case "<" -> value < bound;
+            case "<=" -> value <= bound;
+            case ">" -> value > bound;
+            case ">=" -> value >= bound;
+            case "!=" -> value != bound;
+            default -> throw new IllegalArgumentException("Not a comparison: " + op);
+        };
+    }
+
+    private Long constantOf(JmmNode node) {
+        return INTEGER_LITERAL.check(node) ? Long.parseLong(node.get("value")) : null;
+    }
+
+    private boolean isRef(JmmNode node, String name) {
+        return VAR_REF_EXPR.check(node) && node.get("name").equals(name);
+    }
+
+    private int size(JmmNode node) {
+        return NodeUtils.countNodes(node);
+    }
+
+    // the new nodes are of the same class as the nodes of the tree they go in, typed or not
+
+    private JmmNode ref(JmmNode tree, String name) {
+        var ref = NodeUtils.newNode(VAR_REF_EXPR, tree);
+        ref.put("name", name);
+        return ref;
+    }
+
+    private JmmNode literal(JmmNode tree, long value) {
+        if (value < 0) {
+            // there are no negative literals
+            return binary(tree, "-", literal(tree, 0), literal(tree, -value));
+        }
+        var literal = NodeUtils.newNode(INTEGER_LITERAL, tree);
+        literal.put("value", Long.toString(value));
+        return literal;
+    }
+
+    private JmmNode binary(JmmNode tree, String op, JmmNode lhs, JmmNode rhs) {
+        var binary = NodeUtils.newNode(BINARY_EXPR, tree);
+        binary.put("op", op);
+        binary.add(lhs);
+        binary.add(rhs);
+        return binary;
+    }
+
+    private JmmNode assignment(JmmNode tree, String name, JmmNode value) {
+        var assign = NodeUtils.newNode(ASSIGN_STMT, tree);
+        assign.add(ref(tree, name));
+        assign.add(value);
+        return assign;
+    }
+}
@@ -0,0 +1,216 @@
+package pt.up.fe.comp2024.optimization.passes;
+
+import org.specs.comp.ollir.*;
+import pt.up.fe.comp.jmm.analysis.table.SymbolTable;
+import pt.up.fe.comp.jmm.ollir.OllirUtils;
+import pt.up.fe.comp2024.optimization.OllirCfg;
+import pt.up.fe.comp2024.optimization.OllirInterpreter;
+import pt.up.fe.comp2024.optimization.OllirPass;
+import pt.up.fe.comp2024.symboltable.JmmSymbolTable;
+
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Evaluates at compile time the calls to pure methods of the class whose arguments are all constants, replacing each
+ * call by the value it returns.
+ * <p>
+ * A method is pure if it only takes and returns ints and booleans, does not touch fields, arrays or objects and only
+ * calls other pure methods of the class. Evaluations that run out of fuel are left untouched.
+ */
+public class PartialEvaluation implements OllirPass {
+
+    private static final int FUEL = 100_000;
+
+    private static final Pattern CALL = Pattern.compile(
+            "^([\\w$]+(?:\\.[\\w$]+)+)\\s*:=(\\.i32|\\.bool)\\s+invokevirtual\\(([\\w$]+)(?:\\.([\\w$]+))?,\\s*\"([\\w$]+)\"((?:,\\s*\\d+\\.(?:i32|bool))*)\\)(\\.i32|\\.bool)\\s*;$");
+    private static final Pattern ARGUMENT = Pattern.compile("(\\d+)\\.(?:i32|bool)");
+    private static final Pattern NEW_OBJECT = Pattern.compile("^([\\w$]+)\\.([\\w$]+)\\s*:=\\s*\\.[\\w$]+\\s+new\\(([\\w$]+)\\)\\.[\\w$]+\\s*;$");
+    private static final Pattern COPY = Pattern.compile("^([\\w$]+)\\.([\\w$]+)\\s*:=\\s*\\.[\\w$]+\\s+([\\w$]+)\\.[\\w$]+\\s*;$");
+    private static final Pattern DEFINITION = Pattern.compile("^([\\w$]+)(?:\\.[\\w$]+)+\\s*:=.*$");
+
+    @Override
+    public String apply(String ollirCode, SymbolTable table) {
+        if (table == null) {
+            return ollirCode;
+        }
+
+        ClassUnit classUnit;
+        try {
+            classUnit = OllirUtils.parse(ollirCode);
+        } catch (RuntimeException e) {
+            // code this pass cannot understand is left as it is
+            return ollirCode;
+        }
+
+        var pureMethods = findPureMethods(classUnit, table);
+        if (pureMethods.isEmpty()) {
+            return ollirCode;
+        }
+
+        Map<String, Optional<Integer>> results = new HashMap<>();
+        String className = classUnit.getClassName();
+
+        return OllirCfg.mapMethodBodies(ollirCode, body -> {
+            var receivers = findReceivers(body, className);
+            List<String> rewritten = new ArrayList<>(body.size());
+
+            for (String line : body) {
+                Matcher call = CALL.matcher(line);
+                if (!call.matches() || !call.group(2).equals(call.group(7)) || !pureMethods.contains(call.group(5))
+                        || !receivers.contains(call.group(3))) {
+                    rewritten.add(line);
+                    continue;
+                }
+
+                List<Integer> args = new ArrayList<>();
+                Matcher argument = ARGUMENT.matcher(call.group(6));
+                while (argument.find()) {
+                    args.add(Integer.parseInt(argument.group(1)));
+                }
+
+                String method = call.group(5);
+                var result = results.computeIfAbsent(method + args,
+                        key -> new OllirInterpreter(classUnit, FUEL).invoke(method, args));
+
+                if (result.isEmpty() || result.get() == Integer.MIN_VALUE) {
+                    rewritten.add(line);
+                    continue;
+                }
+
+                rewritten.add(call.group(1) + " :=" + call.group(2) + " " + toLiteral(result.get(), call.group(2)) + ";");
+            }
+
+            return rewritten;
+        });
+    }
+
+    private Set<String> findPureMethods(ClassUnit classUnit, SymbolTable table) {
+        Map<String, Set<String>> callees = new HashMap<>();
+
+        for (var method : classUnit.getMethods()) {
+            String name = method.getMethodName();
+            // calls name the method only, which would not tell overloads apart
+            if (method.isConstructMethod() || method.isStaticMethod() || !table.getMethods().contains(name)
+                    || JmmSymbolTable.isOverloaded(table, name) || !hasPureSignature(name, table)) {
+                continue;
+            }
+
+            Set<String> calls = new HashSet<>();
+            boolean pure = method.getInstructions().stream()
+                    .allMatch(inst -> isPure(inst, classUnit.getClassName(), calls));
+            if (pure) {
+                callees.put(name, calls);
+            }
+        }
+
+        // a method is only pure if everything it calls is pure as well
+        boolean changed = true;
+        while (changed) {
+            changed = callees.values().removeIf(calls -> !callees.keySet().containsAll(calls));
+        }
+
+        return callees.keySet();
+    }
+
+    private boolean hasPureSignature(String method, SymbolTable table) {
+        var returnType = table.getReturnType(method);
+        return isValueType(returnType) && table.getParameters(method).stream()
+                .allMatch(param -> isValueType(param.getType()));
+    }
+
+    private boolean isValueType(pt.up.fe.comp.jmm.analysis.table.Type type) {
+        return type != null && !type.isArray() && (type.getName().equals("int") || type.getName().equals("boolean"));
+    }
+
+    private boolean isPure(Instruction inst, String className, Set<String> calls) {
+        if (inst instanceof AssignInstruction assign) {
+            return isValue(assign.getDest()) && isPure(assign.getRhs(), className, calls);
+        }
+        if (inst instanceof CallInstruction call) {
+            if (call.getInvocationType() != CallType.invokevirtual
+                    || !(call.getCaller().getType() instanceof ClassType callerType)
+                    || !callerType.getName().equals(className)
+                    || !(call.getMethodName() instanceof LiteralElement name)
+                    || !call.getArguments().stream().allMatch(this::isValue)) {
+                return false;
+            }
+            calls.add(name.getLiteral().replace("\"", ""));
+            return true;
+        }
+        if (inst instanceof BinaryOpInstruction binaryOp) {
+            return isValue(binaryOp.getLeftOperand()) && isValue(binaryOp.getRightOperand());
+        }
+        if (inst instanceof UnaryOpInstruction unaryOp) {
+            return isValue(unaryOp.getOperand());
+        }
+        if (inst instanceof SingleOpInstruction singleOp) {
+            return isValue(singleOp.getSingleOperand());
+        }
+        if (inst instanceof CondBranchInstruction branch) {
+            return isPure(branch.getCondition(), className, calls);
+        }
+        if (inst instanceof ReturnInstruction ret) {
+            return ret.hasReturnValue() && isValue(ret.getOperand());
+        }
+        return inst instanceof GotoInstruction;
+    }
+
+    private boolean isValue(Element element) {
+        if (element == null || element instanceof ArrayOperand) {
+            return false;
+        }
+        var type = element.getType().getTypeOfElement();
+        return type == ElementType.INT32 || type == ElementType.BOOLEAN;
+    }
+
+    /**
+     * Names that surely hold an instance of the class, so that calling a method on them cannot fail.
+     */
+    private Set<String> findReceivers(List<String> body, String className) {
+        Map<String, List<String>> definitions = new HashMap<>();
+        for (String line : body) {
+            Matcher definition = DEFINITION.matcher(line);
+            if (definition.matches()) {
+                definitions.computeIfAbsent(definition.group(1), k -> new ArrayList<>()).add(line);
+            }
+        }
+
+        Set<String> receivers = new HashSet<>();
+        receivers.add("this");
+
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (var entry : definitions.entrySet()) {
+                if (!receivers.contains(entry.getKey())
+                        && entry.getValue().stream().allMatch(line -> isNewInstance(line, className, receivers))) {
+                    receivers.add(entry.getKey());
+                    changed = true;
+                }
+            }
+        }
+
+        return receivers;
+    }
+
+    private boolean isNewInstance(String line, String className, Set<String> receivers) {
+        Matcher newObject = NEW_OBJECT.matcher(line);
+        if (newObject.matches()) {
+            return newObject.group(3).equals(className);
+        }
+        Matcher copy = COPY.matcher(line);
+        return copy.matches() && copy.group(2).equals(className) && receivers.contains(copy.group(3));
+    }
+
+    private String toLiteral(int value, String type) {
+        if (type.equals(".bool")) {
+            return (value != 0 ? "1" : "0") + type;
+        }
+        if (value < 0) {
+            return "0" + type + " -" + type + " " + (-value) + type;
+        }
+        return value + type;
+    }
+}
@@ -0,0 +1,170 @@
+package pt.up.fe.comp2024.optimization.passes;
+
+import pt.up.fe.comp.jmm.analysis.table.SymbolTable;
+import pt.up.fe.comp2024.optimization.OllirPass;
+import pt.up.fe.comp2024.symboltable.JmmSymbolTable;
+
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Binds calls on methods of the class statically, since the class is the whole program and nothing can override them.
+ * <p>
+ * The class and its instance methods are marked final. Non-public methods that never use this, directly or through
+ * the methods they call, are turned into static methods and called with invokestatic. Methods of a class that
+ * extends another one are never made static, as they may override a method of the superclass.
+ */
+public class StaticBinding implements OllirPass {
+
+    private static final Pattern CLASS_HEADER = Pattern.compile("^((?:[a-z]+\\s+)*)([\\w$]+)(\\s+extends\\s+[\\w$.]+)?\\s*\\{$");
+    private static final Pattern METHOD_HEADER = Pattern.compile("^\\.method\\s+((?:(?:public|private|protected|static|final)\\s+)*)([\\w$<>]+)\\(.*$");
+    private static final Pattern FIELD = Pattern.compile("^\\.field\\b.*?\\s([\\w$]+)((?:\\.[\\w$]+)+)\\s*;$");
+    private static final Pattern THIS = Pattern.compile("(?<![\\w$])this(?![\\w$])");
+
+    @Override
+    public String apply(String ollirCode, SymbolTable table) {
+        if (table == null) {
+            return ollirCode;
+        }
+
+        String className = table.getClassName();
+        List<String> lines = new ArrayList<>(Arrays.asList(ollirCode.split("\n", -1)));
+
+        Set<String> fields = new HashSet<>();
+        Map<String, Integer> headers = new LinkedHashMap<>();
+        Map<String, List<String>> bodies = new HashMap<>();
+        int classHeader = -1;
+
+        for (int i = 0; i < lines.size(); i++) {
+            String line = lines.get(i).trim();
+
+            Matcher field = FIELD.matcher(line);
+            if (field.matches()) {
+                fields.add(field.group(1));
+                continue;
+            }
+
+            Matcher method = METHOD_HEADER.matcher(line);
+            if (method.matches()) {
+                headers.put(method.group(2), i);
+                List<String> body = new ArrayList<>();
+                for (int j = i + 1; j < lines.size() && !lines.get(j).trim().equals("}"); j++) {
+                    body.add(lines.get(j).trim());
+                }
+                bodies.put(method.group(2), body);
+                continue;
+            }
+
+            if (classHeader == -1 && !line.startsWith("import") && CLASS_HEADER.matcher(line).matches()) {
+                classHeader = i;
+            }
+        }
+
+        if (classHeader == -1) {
+            return ollirCode;
+        }
+
+        var staticMethods = findStaticCandidates(headers, bodies, lines, fields, className, table);
+
+        lines.set(classHeader, addModifier(lines.get(classHeader), "final"));
+
+        for (var entry : headers.entrySet()) {
+            int index = entry.getValue();
+            String modifiers = modifiers(lines.get(index));
+            if (modifiers.contains("static")) {
+                continue;
+            }
+            lines.set(index, staticMethods.contains(entry.getKey())
+                    ? addMethodModifier(lines.get(index), "static")
+                    : addMethodModifier(lines.get(index), "final"));
+        }
+
+        if (!staticMethods.isEmpty()) {
+            var call = Pattern.compile("invokevirtual\\((?:this(?:\\." + Pattern.quote(className) + ")?|[\\w$]+\\."
+                    + Pattern.quote(className) + ")\\s*,\\s*\"([\\w$]+)\"");
+            for (int i = 0; i < lines.size(); i++) {
+                Matcher matcher = call.matcher(lines.get(i));
+                StringBuilder rewritten = new StringBuilder();
+                while (matcher.find()) {
+                    String replacement = staticMethods.contains(matcher.group(1))
+                            ? "invokestatic(" + className + ", \"" + matcher.group(1) + "\""
+                            : matcher.group();
+                    matcher.appendReplacement(rewritten, Matcher.quoteReplacement(replacement));
+                }
+                matcher.appendTail(rewritten);
+                lines.set(i, rewritten.toString());
+            }
+        }
+
+        return String.join("\n", lines);
+    }
+
+    private Set<String> findStaticCandidates(Map<String, Integer> headers, Map<String, List<String>> bodies,
+                                             List<String> lines, Set<String> fields, String className,
+                                             SymbolTable table) {
+        Set<String> candidates = new HashSet<>();
+
+        // without knowing the methods of the superclass, any method could be an override
+        if (table.getSuper() != null && !table.getSuper().isEmpty()) {
+            return candidates;
+        }
+
+        for (var entry : headers.entrySet()) {
+            String modifiers = modifiers(lines.get(entry.getValue()));
+            // overloads share their name in the calls, one of them cannot be bound apart from the others
+            if (!modifiers.contains("public") && !modifiers.contains("static")
+                    && !JmmSymbolTable.isOverloaded(table, entry.getKey())
+                    && bodies.get(entry.getKey()).stream().noneMatch(line -> usesField(line, fields))) {
+                candidates.add(entry.getKey());
+            }
+        }
+
+        // calls on this to other candidates are the only uses of this that can go away
+        var thisCall = Pattern.compile("invokevirtual\\(this(?:\\." + Pattern.quote(className) + ")?\\s*,\\s*\"([\\w$]+)\"");
+        boolean changed = true;
+        while (changed) {
+            changed = candidates.removeIf(method -> bodies.get(method).stream().anyMatch(line -> {
+                Matcher call = thisCall.matcher(line);
+                StringBuilder rest = new StringBuilder();
+                while (call.find()) {
+                    if (!candidates.contains(call.group(1))) {
+                        return true;
+                    }
+                    call.appendReplacement(rest, "");
+                }
+                call.appendTail(rest);
+                return THIS.matcher(rest).find();
+            }));
+        }
+
+        return candidates;
+    }
+
+    private boolean usesField(String line, Set<String> fields) {
+        for (String field : fields) {
+            if (Pattern.compile("(?<![\\w$])" + Pattern.quote(field) + "\\.").matcher(line).find()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private String modifiers(String methodHeader) {
+        Matcher method = METHOD_HEADER.matcher(methodHeader.trim());
+        return method.matches() ? method.group(1) : "";
+    }
+
+    private String addModifier(String classHeader, String modifier) {
+        return classHeader.matches("^\\s*(?:[a-z]+\\s+)*" + modifier + "\\s.*") ? classHeader : modifier + " " + classHeader;
+    }
+
+    private String addMethodModifier(String methodHeader, String modifier) {
+        Matcher method = METHOD_HEADER.matcher(methodHeader.trim());
+        if (!method.matches() || method.group(1).contains(modifier)) {
+            return methodHeader;
+        }
+        int nameStart = methodHeader.indexOf(method.group(2) + "(");
+        return methodHeader.substring(0, nameStart) + modifier + " " + methodHeader.substring(nameStart);
+    }
+}
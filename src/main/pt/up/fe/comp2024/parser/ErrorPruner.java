@@ -0,0 +1,113 @@
+package pt.up.fe.comp2024.parser;
+
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.tree.ErrorNode;
+import pt.up.fe.comp2024.JavammParser;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+/**
+ * Removes the parts of a parse tree that error recovery left malformed, so that the rest can still become an AST.
+ * <p>
+ * A context is malformed when its rule failed, or when the parser skipped or conjured tokens inside it. Imports, fields
+ * and methods that contain a malformed context are removed whole, the other members are kept as they are. When the
+ * program or class declaration itself is malformed, nothing of the tree can be trusted.
+ */
+class ErrorPruner {
+
+    private ErrorPruner() {
+    }
+
+    /**
+     * @param root the tree built by a parse with the default error strategy
+     * @return true if the tree is usable after the malformed members were removed
+     */
+    static boolean prune(ParserRuleContext root) {
+        Set<ParserRuleContext> malformed = Collections.newSetFromMap(new IdentityHashMap<>());
+
+        var pending = new ArrayDeque<ParserRuleContext>();
+        pending.push(root);
+        while (!pending.isEmpty()) {
+            var context = pending.pop();
+
+            if (isTopLevel(context)) {
+                // tokens skipped between members do not change the declaration, failures and conjured tokens do
+                if (context.exception != null || hasConjuredToken(context)) {
+                    return false;
+                }
+            } else if (isMalformed(context)) {
+                malformed.add(getMember(context));
+                // the whole member goes away, there is no need to look further inside it
+                continue;
+            }
+
+            for (int i = 0; i < context.getChildCount(); i++) {
+                if (context.getChild(i) instanceof ParserRuleContext child) {
+                    pending.push(child);
+                }
+            }
+        }
+
+        for (var member : malformed) {
+            member.getParent().children.remove(member);
+        }
+
+        return true;
+    }
+
+    private static boolean isTopLevel(ParserRuleContext context) {
+        return context instanceof JavammParser.ProgramContext || context instanceof JavammParser.ClassDeclContext;
+    }
+
+    private static boolean isMalformed(ParserRuleContext context) {
+        if (context.exception != null) {
+            return true;
+        }
+
+        for (int i = 0; i < context.getChildCount(); i++) {
+            if (context.getChild(i) instanceof ErrorNode) {
+                return true;
+            }
+        }
+        return hasConjuredToken(context);
+    }
+
+    private static boolean hasConjuredToken(ParserRuleContext context) {
+        // tokens inserted by the recovery are not part of the input, they become error nodes when matched on their own
+        for (int i = 0; i < context.getChildCount(); i++) {
+            if (context.getChild(i) instanceof ErrorNode error && error.getSymbol().getTokenIndex() == -1) {
+                return true;
+            }
+        }
+
+        // but not when matched as one of a set, such as the name of the class, which is only stored in its label
+        for (var field : context.getClass().getFields()) {
+            if (!Token.class.isAssignableFrom(field.getType())) {
+                continue;
+            }
+            try {
+                if (field.get(context) instanceof Token token && token.getTokenIndex() == -1) {
+                    return true;
+                }
+            } catch (IllegalAccessException e) {
+                throw new RuntimeException("Could not access field '" + field.getName() + "' from node " + context);
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The import, field or method that contains the context.
+     */
+    private static ParserRuleContext getMember(ParserRuleContext context) {
+        var member = context;
+        while (!isTopLevel(member.getParent())) {
+            member = member.getParent();
+        }
+        return member;
+    }
+}
@@ -0,0 +1,301 @@
+package pt.up.fe.comp2024.parser;
+
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.IntStream;
+import org.antlr.v4.runtime.LexerNoViableAltException;
+import org.antlr.v4.runtime.Token;
+import pt.up.fe.comp2024.JavammLexer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Hand-written lexer for the Javamm token set, a drop-in replacement for the generated {@link JavammLexer}.
+ * <p>
+ * Each character is classified through a lookup table and the token is scanned directly, instead of simulating the
+ * lexer ATN of the grammar. Keywords and operators are taken from the literal names of the generated vocabulary, so
+ * the tokens get the same types, and the rules of the grammar are followed exactly: the longest match wins, a keyword
+ * wins over an ID of the same length, a comment without its terminator is not a comment, and characters that start no
+ * token are reported to the error listeners with the message and position ANTLR gives them.
+ * <p>
+ * The input must allow looking ahead and seeking back, as the streams over a whole String or file do.
+ */
+public class FastJavammLexer extends JavammLexer {
+
+    private static final byte OTHER = 0;
+    private static final byte WHITESPACE = 1;
+    private static final byte ID_START = 2;
+    private static final byte ZERO = 3;
+    private static final byte DIGIT = 4;
+    private static final byte OPERATOR = 5;
+
+    private static final int TABLE_SIZE = 128;
+
+    /**
+     * Class of each ASCII character, every other character starts no token.
+     */
+    private static final byte[] CHAR_CLASSES = new byte[TABLE_SIZE];
+
+    private static final boolean[] ID_PARTS = new boolean[TABLE_SIZE];
+
+    /**
+     * Keywords and operators by their first character, operators with the longest first.
+     */
+    private static final Literal[][] KEYWORDS = new Literal[TABLE_SIZE][];
+    private static final Literal[][] OPERATORS = new Literal[TABLE_SIZE][];
+
+    static {
+        for (char c : " \t\n\r\f".toCharArray()) {
+            CHAR_CLASSES[c] = WHITESPACE;
+        }
+        for (int c = 0; c < TABLE_SIZE; c++) {
+            if (Character.isLetter(c) || c == '_' || c == '$') {
+                CHAR_CLASSES[c] = ID_START;
+                ID_PARTS[c] = true;
+            } else if (c >= '0' && c <= '9') {
+                CHAR_CLASSES[c] = c == '0' ? ZERO : DIGIT;
+                ID_PARTS[c] = true;
+            }
+        }
+
+        List<List<Literal>> keywords = new ArrayList<>();
+        List<List<Literal>> operators = new ArrayList<>();
+        for (int c = 0; c < TABLE_SIZE; c++) {
+            keywords.add(new ArrayList<>());
+            operators.add(new ArrayList<>());
+        }
+
+        for (int type = Token.MIN_USER_TOKEN_TYPE; type <= VOCABULARY.getMaxTokenType(); type++) {
+            var literalName = VOCABULARY.getLiteralName(type);
+            if (literalName == null) {
+                continue;
+            }
+
+            // literal names are quoted
+            var literal = new Literal(literalName.substring(1, literalName.length() - 1).toCharArray(), type);
+            char first = literal.text()[0];
+            if (CHAR_CLASSES[first] == ID_START) {
+                keywords.get(first).add(literal);
+            } else {
+                operators.get(first).add(literal);
+                if (CHAR_CLASSES[first] == OTHER) {
+                    CHAR_CLASSES[first] = OPERATOR;
+                }
+            }
+        }
+
+        for (int c = 0; c < TABLE_SIZE; c++) {
+            KEYWORDS[c] = keywords.get(c).toArray(Literal[]::new);
+            operators.get(c).sort(Comparator.comparingInt((Literal literal) -> literal.text().length).reversed());
+            OPERATORS[c] = operators.get(c).toArray(Literal[]::new);
+        }
+    }
+
+    private int line = 1;
+    private int charPositionInLine = 0;
+
+    // characters of the identifier being scanned, to look it up among the keywords
+    private char[] word = new char[64];
+
+    public FastJavammLexer(CharStream input) {
+        super(input);
+    }
+
+    @Override
+    public Token nextToken() {
+        while (true) {
+            _tokenStartCharIndex = _input.index();
+            _tokenStartLine = line;
+            _tokenStartCharPositionInLine = charPositionInLine;
+
+            int c = _input.LA(1);
+            if (c == IntStream.EOF) {
+                return emitEOF();
+            }
+
+            switch (c < TABLE_SIZE ? CHAR_CLASSES[c] : OTHER) {
+                case WHITESPACE -> {
+                    do {
+                        consume();
+                        c = _input.LA(1);
+                    } while (c >= 0 && c < TABLE_SIZE && CHAR_CLASSES[c] == WHITESPACE);
+                }
+                case ID_START -> {
+                    return newToken(scanIdentifier());
+                }
+                case ZERO -> {
+                    // a number starting with 0 is only the 0
+                    consume();
+                    return newToken(INT);
+                }
+                case DIGIT -> {
+                    do {
+                        consume();
+                        c = _input.LA(1);
+                    } while (c >= '0' && c <= '9');
+                    return newToken(INT);
+                }
+                case OPERATOR -> {
+                    if (c != '/' || !skipComment()) {
+                        var token = scanOperator(c);
+                        if (token != null) {
+                            return token;
+                        }
+                    }
+                }
+                default -> reportError(0);
+            }
+        }
+    }
+
+    private int scanIdentifier() {
+        int length = 0;
+        int c = _input.LA(1);
+        do {
+            if (length == word.length) {
+                word = Arrays.copyOf(word, length * 2);
+            }
+            word[length++] = (char) c;
+            consume();
+            c = _input.LA(1);
+        } while (c >= 0 && c < TABLE_SIZE && ID_PARTS[c]);
+
+        for (var keyword : KEYWORDS[word[0]]) {
+            if (keyword.text().length == length && Arrays.equals(keyword.text(), 0, length, word, 0, length)) {
+                return keyword.type();
+            }
+        }
+        return ID;
+    }
+
+    /**
+     * @return the longest operator at the current position, or null if none matches, in which case the error is
+     * reported and the characters skipped
+     */
+    private Token scanOperator(int first) {
+        int matched = 0;
+        for (var operator : OPERATORS[first]) {
+            int length = matchLength(operator.text());
+            if (length == operator.text().length) {
+                for (int i = 0; i < length; i++) {
+                    consume();
+                }
+                return newToken(operator.type());
+            }
+            matched = Math.max(matched, length);
+        }
+
+        reportError(matched);
+        return null;
+    }
+
+    private int matchLength(char[] text) {
+        int length = 0;
+        while (length < text.length && _input.LA(length + 1) == text[length]) {
+            length++;
+        }
+        return length;
+    }
+
+    /**
+     * Skips a comment starting at the current position. A comment that does not end, a line comment included, is not a
+     * comment and nothing is skipped.
+     *
+     * @return true if a comment was skipped
+     */
+    private boolean skipComment() {
+        int second = _input.LA(2);
+        if (second != '/' && second != '*') {
+            return false;
+        }
+
+        int startIndex = _input.index();
+        consume();
+        consume();
+
+        int c;
+        while ((c = _input.LA(1)) != IntStream.EOF) {
+            consume();
+            if (second == '/' ? c == '\n' : c == '*' && _input.LA(1) == '/') {
+                if (second == '*') {
+                    consume();
+                }
+                return true;
+            }
+        }
+
+        _input.seek(startIndex);
+        line = _tokenStartLine;
+        charPositionInLine = _tokenStartCharPositionInLine;
+        return false;
+    }
+
+    /**
+     * Reports that no token starts at the current position, the way the generated lexer does: the message shows the
+     * characters up to the first one that cannot be matched, and that character is skipped as well.
+     *
+     * @param matched number of characters that match the beginning of some token
+     */
+    private void reportError(int matched) {
+        for (int i = 0; i < matched; i++) {
+            consume();
+        }
+        notifyListeners(new LexerNoViableAltException(this, _input, _tokenStartCharIndex, null));
+        if (_input.LA(1) != IntStream.EOF) {
+            consume();
+        }
+    }
+
+    private void consume() {
+        if (_input.LA(1) == '\n') {
+            line++;
+            charPositionInLine = 0;
+        } else {
+            charPositionInLine++;
+        }
+        _input.consume();
+    }
+
+    private Token newToken(int type) {
+        return _factory.create(_tokenFactorySourcePair, type, null, Token.DEFAULT_CHANNEL, _tokenStartCharIndex,
+                _input.index() - 1, _tokenStartLine, _tokenStartCharPositionInLine);
+    }
+
+    @Override
+    public Token emitEOF() {
+        return _factory.create(_tokenFactorySourcePair, Token.EOF, null, Token.DEFAULT_CHANNEL, _input.index(),
+                _input.index() - 1, line, charPositionInLine);
+    }
+
+    @Override
+    public void reset() {
+        super.reset();
+        line = 1;
+        charPositionInLine = 0;
+    }
+
+    @Override
+    public int getLine() {
+        return line;
+    }
+
+    @Override
+    public int getCharPositionInLine() {
+        return charPositionInLine;
+    }
+
+    @Override
+    public void setLine(int line) {
+        this.line = line;
+    }
+
+    @Override
+    public void setCharPositionInLine(int charPositionInLine) {
+        this.charPositionInLine = charPositionInLine;
+    }
+
+    private record Literal(char[] text, int type) {
+    }
+}
@@ -0,0 +1,224 @@
+package pt.up.fe.comp2024.parser;
+
+import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp.jmm.ast.NodePosition;
+import pt.up.fe.comp.jmm.parser.JmmParserResult;
+import pt.up.fe.comp2024.ast.Identifiers;
+import pt.up.fe.comp2024.ast.Kind;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Parses a program again after an edit, reusing the tree of the previous parse.
+ * <p>
+ * When the edit falls inside a single method or field declaration, only the text of that declaration is lexed and
+ * parsed again. Its new subtree replaces the old one, and the positions of the nodes that come after the edit are
+ * shifted. Every other edit, or one that leaves the declaration unparsable, falls back to a parse of the whole program,
+ * which also reports the errors.
+ * <p>
+ * The tree of the previous result is updated in place and must not be used afterwards.
+ */
+public class IncrementalJmmParser {
+
+    private static final Map<Kind, String> MEMBER_RULES = Map.of(
+            Kind.METHOD_DECLARATION, "methodDecl",
+            Kind.VAR_DECL, "varDeclaration");
+
+    private final JmmParserImpl parser;
+
+    public IncrementalJmmParser() {
+        this(new JmmParserImpl());
+    }
+
+    public IncrementalJmmParser(JmmParserImpl parser) {
+        this.parser = parser;
+    }
+
+    /**
+     * @param previous     result of parsing previousCode
+     * @param previousCode the code before the edit
+     * @param edit
+     * @return the result of parsing the edited code
+     */
+    public JmmParserResult reparse(JmmParserResult previous, String previousCode, TextEdit edit) {
+        String code = edit.apply(previousCode);
+        var config = previous.getConfig();
+
+        if (previous.getRootNode() == null) {
+            return parser.parse(code, config);
+        }
+
+        return reparseMember(previous.getRootNode(), previousCode, code, edit, config)
+                .orElseGet(() -> parser.parse(code, config));
+    }
+
+    private Optional<JmmParserResult> reparseMember(JmmNode root, String previousCode, String code, TextEdit edit,
+                                                    Map<String, String> config) {
+
+        var lines = new LineIndex(previousCode);
+        var editStart = lines.position(edit.offset());
+        var editEnd = lines.position(edit.end());
+
+        var member = findMember(root, editStart, editEnd);
+        if (member.isEmpty()) {
+            return Optional.empty();
+        }
+
+        var node = member.get();
+        int start = lines.offset(getStart(node));
+        // members end with a single character token, '}' or ';'
+        int end = lines.offset(getEnd(node)) + 1 + edit.text().length() - edit.length();
+        var memberStart = getStart(node);
+
+        var result = parser.parseFragment(code.substring(start, end), MEMBER_RULES.get(Kind.of(node)),
+                memberStart.line(), memberStart.column(), Identifiers.of(root), config);
+        if (result.getRootNode() == null || !Kind.of(node).check(result.getRootNode())) {
+            return Optional.empty();
+        }
+
+        var shift = new Shift(editEnd, editStart, edit.text());
+        for (var following : following(node)) {
+            shift.apply(following);
+        }
+
+        node.replace(result.getRootNode());
+
+        return Optional.of(new JmmParserResult(root, result.getReports(), config));
+    }
+
+    /**
+     * The method or field declaration that contains the whole edited range, excluding its last character.
+     */
+    private Optional<JmmNode> findMember(JmmNode root, Position editStart, Position editEnd) {
+        return root.getChildren(Kind.CLASS_DECLARATION).stream()
+                .flatMap(classDecl -> classDecl.getChildren().stream())
+                .filter(member -> MEMBER_RULES.keySet().stream().anyMatch(kind -> kind.check(member)))
+                .filter(member -> getStart(member).compareTo(editStart) <= 0 && editEnd.compareTo(getEnd(member)) <= 0)
+                .findFirst();
+    }
+
+    /**
+     * Nodes whose positions may come after the member: the member's ancestors, the nodes that follow it and their
+     * descendants.
+     */
+    private List<JmmNode> following(JmmNode member) {
+        List<JmmNode> nodes = new ArrayList<>();
+        for (JmmNode node = member; node.getParent() != null; node = node.getParent()) {
+            var parent = node.getParent();
+            nodes.add(parent);
+            var siblings = parent.getChildren();
+            for (int i = siblings.indexOf(node) + 1; i < siblings.size(); i++) {
+                nodes.add(siblings.get(i));
+                nodes.addAll(siblings.get(i).getDescendants());
+            }
+        }
+        return nodes;
+    }
+
+    private static Position getStart(JmmNode node) {
+        return new Position(Integer.parseInt(node.get(NodePosition.LINE_START.getKey())),
+                Integer.parseInt(node.get(NodePosition.COL_START.getKey())));
+    }
+
+    private static Position getEnd(JmmNode node) {
+        return new Position(Integer.parseInt(node.get(NodePosition.LINE_END.getKey())),
+                Integer.parseInt(node.get(NodePosition.COL_END.getKey())));
+    }
+
+    /**
+     * Line and column as given by ANTLR, lines start at 1 and columns at 0.
+     */
+    private record Position(int line, int column) implements Comparable<Position> {
+
+        @Override
+        public int compareTo(Position other) {
+            return line != other.line ? Integer.compare(line, other.line) : Integer.compare(column, other.column);
+        }
+    }
+
+    /**
+     * Moves the positions at or after the end of the replaced range to where they are after the edit.
+     */
+    private static class Shift {
+
+        private final Position editEnd;
+        private final int lineDelta;
+        private final int endLine;
+        private final int endColumn;
+
+        Shift(Position editEnd, Position editStart, String text) {
+            this.editEnd = editEnd;
+
+            int newLines = (int) text.chars().filter(c -> c == '\n').count();
+            int lastLine = text.lastIndexOf('\n');
+
+            // where the character right after the edit ends up
+            this.endLine = editStart.line() + newLines;
+            this.endColumn = lastLine == -1 ? editStart.column() + text.length() : text.length() - lastLine - 1;
+            this.lineDelta = endLine - editEnd.line();
+        }
+
+        void apply(JmmNode node) {
+            move(node, NodePosition.LINE_START, NodePosition.COL_START);
+            move(node, NodePosition.LINE_END, NodePosition.COL_END);
+        }
+
+        private void move(JmmNode node, NodePosition lineKey, NodePosition columnKey) {
+            var line = node.getOptional(lineKey.getKey());
+            var column = node.getOptional(columnKey.getKey());
+            if (line.isEmpty() || column.isEmpty()) {
+                return;
+            }
+
+            var position = new Position(Integer.parseInt(line.get()), Integer.parseInt(column.get()));
+            if (position.compareTo(editEnd) < 0) {
+                return;
+            }
+
+            if (position.line() == editEnd.line()) {
+                node.put(lineKey.getKey(), Integer.toString(endLine));
+                node.put(columnKey.getKey(), Integer.toString(endColumn + position.column() - editEnd.column()));
+            } else {
+                node.put(lineKey.getKey(), Integer.toString(position.line() + lineDelta));
+            }
+        }
+    }
+
+    /**
+     * Start offsets of the lines of a source.
+     */
+    private static class LineIndex {
+
+        private final List<Integer> starts = new ArrayList<>();
+
+        LineIndex(String code) {
+            starts.add(0);
+            for (int i = 0; i < code.length(); i++) {
+                if (code.charAt(i) == '\n') {
+                    starts.add(i + 1);
+                }
+            }
+        }
+
+        Position position(int offset) {
+            int low = 0;
+            int high = starts.size() - 1;
+            while (low < high) {
+                int middle = (low + high + 1) >>> 1;
+                if (starts.get(middle) <= offset) {
+                    low = middle;
+                } else {
+                    high = middle - 1;
+                }
+            }
+            return new Position(low + 1, offset - starts.get(low));
+        }
+
+        int offset(Position position) {
+            return starts.get(position.line() - 1) + position.column();
+        }
+    }
+}
@@ -1,14 +1,36 @@
 package pt.up.fe.comp2024.parser;
 
 import org.antlr.v4.runtime.ANTLRInputStream;
+import org.antlr.v4.runtime.BailErrorStrategy;
+import org.antlr.v4.runtime.CharStream;
 import org.antlr.v4.runtime.CommonTokenStream;
-import pt.up.fe.comp.jmm.ast.antlr.AntlrParser;
+import org.antlr.v4.runtime.DefaultErrorStrategy;
+import org.antlr.v4.runtime.Lexer;
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.atn.ATNState;
+import org.antlr.v4.runtime.atn.PredictionMode;
+import org.antlr.v4.runtime.misc.ParseCancellationException;
+import org.antlr.v4.runtime.tree.ParseTree;
+import pt.up.fe.comp.jmm.ast.antlr.JmmErrorListener;
 import pt.up.fe.comp.jmm.parser.JmmParser;
 import pt.up.fe.comp.jmm.parser.JmmParserResult;
 import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp.jmm.report.ReportType;
 import pt.up.fe.comp.jmm.report.Stage;
+import pt.up.fe.comp2024.CompilerConfig;
+import pt.up.fe.comp2024.JavammLexer;
+import pt.up.fe.comp2024.JavammParser;
+import pt.up.fe.comp2024.ast.Identifiers;
+import pt.up.fe.comp2024.ast.JmmAstBuilder;
+import pt.up.fe.comp2024.ast.TypedAstBuilder;
+import pt.up.fe.comp2024.utils.DeepStack;
+import pt.up.fe.specs.util.SpecsIo;
+import pt.up.fe.specs.util.SpecsSystem;
 
-import java.util.Collections;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Map;
 
 /**
@@ -26,6 +48,37 @@ import java.util.Map;
 
 public class JmmParserImpl implements JmmParser {
 
+    private static final String WARM_UP_CORPUS = "pt/up/fe/comp2024/parser/warmup.jmm";
+    private static final int WARM_UP_ITERATIONS = 5;
+
+    /**
+     * One lexer and parser per thread, reset for every compilation instead of being created again.
+     * <p>
+     * The DFA and the prediction context cache of the generated parser are static, so they are shared by every
+     * instance and stay warm for as long as the process lives.
+     */
+    private static final ThreadLocal<PooledParser> PARSERS = ThreadLocal.withInitial(PooledParser::new);
+
+    /**
+     * Primes the shared DFA by parsing the bundled corpus, so that the first real compilation is not the slowest one.
+     */
+    public static void warmUp() {
+        warmUp(WARM_UP_ITERATIONS);
+    }
+
+    /**
+     * Primes the shared DFA by parsing the bundled corpus the given number of times.
+     *
+     * @param iterations
+     */
+    public static void warmUp(int iterations) {
+        var corpus = SpecsIo.getResource(WARM_UP_CORPUS);
+        var parser = new JmmParserImpl();
+        for (int i = 0; i < iterations; i++) {
+            parser.parse(corpus, Map.of());
+        }
+    }
+
     @Override
     public String getDefaultRule() {
         return "program";
@@ -33,24 +86,215 @@ public class JmmParserImpl implements JmmParser {
 
     @Override
     public JmmParserResult parse(String jmmCode, String startingRule, Map<String, String> config) {
+        // Convert code string into a character stream
+        return parse(new ANTLRInputStream(jmmCode), startingRule, config);
+    }
 
+    /**
+     * Parses a source file, reading it through a memory mapping instead of loading it into a String first.
+     *
+     * @param jmmFile
+     * @param config
+     * @return
+     */
+    public JmmParserResult parse(File jmmFile, Map<String, String> config) {
+        return parse(jmmFile, getDefaultRule(), config);
+    }
+
+    public JmmParserResult parse(File jmmFile, String startingRule, Map<String, String> config) {
+        CharStream input;
         try {
-            // Convert code string into a character stream
-            var input = new ANTLRInputStream(jmmCode);
-            // Transform characters into tokens using the lexer
-            var lex = new pt.up.fe.comp2024.JavammLexer(input);
-            // Wrap lexer around a token stream
-            var tokens = new CommonTokenStream(lex);
-            // Transforms tokens into a parse tree
-            var parser = new pt.up.fe.comp2024.JavammParser(tokens);
+            input = MappedCharStream.map(jmmFile);
+        } catch (IOException e) {
+            return JmmParserResult.newError(Report.newError(Stage.SYNTATIC, -1, -1,
+                    "Could not read file '" + jmmFile + "'", e), config);
+        }
+
+        return parse(input, startingRule, config);
+    }
 
+    private JmmParserResult parse(CharStream input, String startingRule, Map<String, String> config) {
+
+        var identifiers = new Identifiers();
+        var pooled = acquire();
+        try {
+            // Stage 1: SLL prediction is enough for most valid programs, give up at the first syntax error
+            var sllParser = pooled.reset(input, config);
+            sllParser.getInterpreter().setPredictionMode(PredictionMode.SLL);
+            sllParser.setErrorHandler(new BailErrorStrategy());
+
+            try {
+                return parseRule(pooled.lexer, sllParser, startingRule, identifiers, config);
+            } catch (RuntimeException e) {
+                if (!isParseCancellation(e)) {
+                    throw e;
+                }
+            }
+
+            // Stage 2: full LL with the default error strategy, either the program is valid but needs full context, or
+            // the errors have to be reported. The tokens are read again so that lexical errors are reported as well
+            var llParser = pooled.reset(input, config);
+            llParser.getInterpreter().setPredictionMode(PredictionMode.LL);
+            llParser.setErrorHandler(new DefaultErrorStrategy());
 
             // Convert ANTLR CST to JmmNode AST
-            return AntlrParser.parse(lex, parser, startingRule, config);
+            return parseRule(pooled.lexer, llParser, startingRule, identifiers, config);
 
         } catch (Exception e) {
+            // ANTLR descends into nested expressions recursively, parse programs nested too deep for this thread again
+            // on a larger stack
+            if (DeepStack.isStackOverflow(e) && !DeepStack.isDeepStack()) {
+                return DeepStack.call(() -> parse(input, startingRule, config));
+            }
+
             // There was an uncaught exception during parsing, create an error JmmParserResult without root node
             return JmmParserResult.newError(Report.newError(Stage.SYNTATIC, -1, -1, "Exception during parsing", e), config);
+        } finally {
+            pooled.release();
+        }
+    }
+
+    /**
+     * Parses a piece of a program that starts at the given position of the file, so that the nodes get the same
+     * positions they would have in a parse of the whole file.
+     * <p>
+     * Only the SLL stage is tried, and the fragment must be consumed up to its end. Any problem is reported as an error,
+     * leaving the caller to fall back to a full parse that reports it properly.
+     *
+     * @param identifiers the identifiers of the tree the fragment goes in
+     */
+    JmmParserResult parseFragment(String code, String rule, int line, int column, Identifiers identifiers,
+                                  Map<String, String> config) {
+
+        var pooled = acquire();
+        try {
+            var parser = pooled.reset(new ANTLRInputStream(code), config);
+            pooled.lexer.setLine(line);
+            pooled.lexer.setCharPositionInLine(column);
+            parser.getInterpreter().setPredictionMode(PredictionMode.SLL);
+            parser.setErrorHandler(new BailErrorStrategy());
+
+            var result = parseRule(pooled.lexer, parser, rule, identifiers, config);
+            if (result.getRootNode() != null && parser.getCurrentToken().getType() != Token.EOF) {
+                return JmmParserResult.newError(Report.newError(Stage.SYNTATIC, line, column,
+                        "Fragment does not end at a " + rule, null), config);
+            }
+            return result;
+
+        } catch (RuntimeException e) {
+            return JmmParserResult.newError(Report.newError(Stage.SYNTATIC, line, column,
+                    "Exception during parsing", e), config);
+        } finally {
+            pooled.release();
+        }
+    }
+
+    /**
+     * Same as AntlrParser.parse, but the parse tree is converted without recursion, into typed nodes unless the config
+     * asks for JmmNodeImpl ones, see {@link CompilerConfig#getTypedAst}. The grammar declares no ignoreList, so there
+     * are no nodes to clean afterwards.
+     * <p>
+     * When the config enables error recovery, a parse with errors still returns a root node, the partial tree of the
+     * members that parsed cleanly, next to the reports of every error.
+     * <p>
+     * The names of the tree are interned in the identifiers, which are attached to the root, see
+     * {@link Identifiers#of}.
+     */
+    private static JmmParserResult parseRule(Lexer lexer, JavammParser parser, String rule, Identifiers identifiers,
+                                             Map<String, String> config) {
+        lexer.removeErrorListeners();
+        var lexerListener = new JmmErrorListener(Stage.LEXICAL);
+        lexer.addErrorListener(lexerListener);
+
+        parser.removeErrorListeners();
+        var parserListener = new JmmErrorListener(Stage.SYNTATIC);
+        parser.addErrorListener(parserListener);
+
+        var tree = (ParseTree) SpecsSystem.invoke(parser, rule);
+
+        var reports = new ArrayList<Report>();
+        reports.addAll(lexerListener.getReports());
+        reports.addAll(parserListener.getReports());
+
+        // with error recovery, the members the errors left malformed are dropped and the rest of the tree is kept
+        if (reports.stream().anyMatch(report -> report.getType() == ReportType.ERROR)
+                && !(CompilerConfig.getErrorRecovery(config) && ErrorPruner.prune((ParserRuleContext) tree))) {
+            return new JmmParserResult(null, reports, config);
+        }
+
+        var root = CompilerConfig.getTypedAst(config) ? TypedAstBuilder.build(tree, parser, identifiers).asJmmNode()
+                : JmmAstBuilder.build(tree, parser, identifiers);
+        Identifiers.attach(root, identifiers);
+
+        return new JmmParserResult(root, reports, config);
+    }
+
+    /**
+     * @return the number of tokens read by the last parse that finished on the calling thread
+     */
+    static int getLastTokenCount() {
+        return PARSERS.get().lastTokenCount;
+    }
+
+    private static PooledParser acquire() {
+        var pooled = PARSERS.get();
+        // a parse started while another one is running on the same thread gets a parser of its own
+        if (pooled.inUse) {
+            pooled = new PooledParser();
+        }
+        pooled.inUse = true;
+        return pooled;
+    }
+
+    private static boolean isParseCancellation(Throwable e) {
+        // the rule is invoked through reflection, so the cancellation arrives wrapped
+        for (var cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ParseCancellationException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static class PooledParser {
+
+        private final JavammLexer generatedLexer;
+        private final JavammLexer fastLexer;
+        private final JavammParser parser;
+        private JavammLexer lexer;
+        private boolean inUse;
+        private int lastTokenCount;
+
+        PooledParser() {
+            // Transform characters into tokens using the lexer
+            generatedLexer = new JavammLexer(new ANTLRInputStream(""));
+            fastLexer = new FastJavammLexer(new ANTLRInputStream(""));
+            lexer = generatedLexer;
+            // Transforms tokens into a parse tree
+            parser = new JavammParser(new CommonTokenStream(lexer));
+        }
+
+        JavammParser reset(CharStream input, Map<String, String> config) {
+            lexer = CompilerConfig.getFastLexer(config) ? fastLexer : generatedLexer;
+            return reset(input);
+        }
+
+        JavammParser reset(CharStream input) {
+            input.seek(0);
+            lexer.setInputStream(input);
+            // Wrap lexer around a new token stream, the buffer of the old one does not forget it already reached EOF
+            parser.setTokenStream(new CommonTokenStream(lexer));
+            // reset does not clear the ATN state, the root context would get the state the last parse stopped at as
+            // its invoking state and error recovery would follow it
+            parser.setState(ATNState.INVALID_STATE_NUMBER);
+            return parser;
+        }
+
+        void release() {
+            lastTokenCount = parser.getTokenStream().size();
+            // do not keep the last program alive until the next compilation on this thread
+            reset(new ANTLRInputStream(""));
+            inUse = false;
         }
     }
 }
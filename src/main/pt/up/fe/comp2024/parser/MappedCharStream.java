@@ -0,0 +1,172 @@
+package pt.up.fe.comp2024.parser;
+
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.IntStream;
+import org.antlr.v4.runtime.misc.Interval;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Character stream over a memory-mapped source file, so that the lexer reads the file without first copying it into a
+ * String.
+ * <p>
+ * Files that are pure ASCII, which is the common case for Jmm code, are read straight from the mapping, one byte per
+ * character. Any other file is decoded once as UTF-8.
+ */
+public class MappedCharStream implements CharStream {
+
+    private static final long NON_ASCII_MASK = 0x8080808080808080L;
+
+    private final String name;
+
+    // exactly one of these holds the characters
+    private final ByteBuffer bytes;
+    private final char[] chars;
+
+    private final int n;
+    private int p = 0;
+
+    private MappedCharStream(String name, ByteBuffer bytes, char[] chars, int size) {
+        this.name = name;
+        this.bytes = bytes;
+        this.chars = chars;
+        this.n = size;
+    }
+
+    /**
+     * Maps the given file into memory.
+     *
+     * @param file
+     * @return a stream positioned at the first character of the file
+     */
+    public static MappedCharStream map(File file) throws IOException {
+        try (var channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("File '" + file + "' is too large to be parsed (" + size + " bytes)");
+            }
+
+            // the mapping stays valid after the channel is closed
+            ByteBuffer bytes = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+
+            if (isAscii(bytes)) {
+                return new MappedCharStream(file.getPath(), bytes, null, bytes.limit());
+            }
+
+            CharBuffer decoded = StandardCharsets.UTF_8.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE)
+                    .decode(bytes);
+            char[] chars = new char[decoded.remaining()];
+            decoded.get(chars);
+            return new MappedCharStream(file.getPath(), null, chars, chars.length);
+        }
+    }
+
+    private static boolean isAscii(ByteBuffer bytes) {
+        int limit = bytes.limit();
+        int i = 0;
+
+        // eight bytes at a time, any byte with the high bit set is not ASCII
+        for (; i + Long.BYTES <= limit; i += Long.BYTES) {
+            if ((bytes.getLong(i) & NON_ASCII_MASK) != 0) {
+                return false;
+            }
+        }
+        for (; i < limit; i++) {
+            if (bytes.get(i) < 0) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private int charAt(int index) {
+        return bytes != null ? bytes.get(index) : chars[index];
+    }
+
+    @Override
+    public void consume() {
+        if (p >= n) {
+            throw new IllegalStateException("cannot consume EOF");
+        }
+        p++;
+    }
+
+    @Override
+    public int LA(int i) {
+        if (i == 0) {
+            return 0; // undefined
+        }
+        if (i < 0) {
+            i++; // e.g., translate LA(-1) to use offset i=0; then data[p+0-1]
+            if ((p + i - 1) < 0) {
+                return IntStream.EOF; // invalid; no char before first char
+            }
+        }
+        if ((p + i - 1) >= n) {
+            return IntStream.EOF;
+        }
+        return charAt(p + i - 1);
+    }
+
+    @Override
+    public int mark() {
+        // the whole file is available, nothing has to be buffered
+        return -1;
+    }
+
+    @Override
+    public void release(int marker) {
+    }
+
+    @Override
+    public int index() {
+        return p;
+    }
+
+    @Override
+    public void seek(int index) {
+        p = Math.max(0, Math.min(index, n));
+    }
+
+    @Override
+    public int size() {
+        return n;
+    }
+
+    @Override
+    public String getText(Interval interval) {
+        int start = interval.a;
+        int stop = Math.min(interval.b, n - 1);
+        if (start >= n || stop < start) {
+            return "";
+        }
+
+        if (chars != null) {
+            return new String(chars, start, stop - start + 1);
+        }
+
+        byte[] text = new byte[stop - start + 1];
+        bytes.get(start, text);
+        return new String(text, StandardCharsets.US_ASCII);
+    }
+
+    @Override
+    public String getSourceName() {
+        return name == null || name.isEmpty() ? IntStream.UNKNOWN_SOURCE_NAME : name;
+    }
+
+    @Override
+    public String toString() {
+        return getText(Interval.of(0, n - 1));
+    }
+}
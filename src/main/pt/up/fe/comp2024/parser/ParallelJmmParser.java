@@ -0,0 +1,186 @@
+package pt.up.fe.comp2024.parser;
+
+import pt.up.fe.comp.jmm.parser.JmmParserResult;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Parses many independent compilation units concurrently.
+ * <p>
+ * Each worker thread keeps its own lexer and parser, see {@link JmmParserImpl}, while the DFA and the vocabulary of the
+ * generated parser are static and shared by all of them, so what one thread learns speeds up the others. Results are
+ * returned in the order the units were submitted, whatever order they finish in.
+ * <p>
+ * After each call, {@link #getThreadStats()} tells how many files and tokens each worker parsed and how fast.
+ */
+public class ParallelJmmParser implements AutoCloseable {
+
+    private static final AtomicInteger POOL_NUMBER = new AtomicInteger();
+
+    private final ExecutorService executor;
+    private final int threads;
+    private final Map<String, ThreadStats> stats = new ConcurrentHashMap<>();
+
+    public ParallelJmmParser() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    public ParallelJmmParser(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Expected at least one thread, got " + threads);
+        }
+
+        this.threads = threads;
+        int pool = POOL_NUMBER.incrementAndGet();
+        var threadNumber = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(threads, task -> {
+            var thread = new Thread(task, "jmm-parser-" + pool + "-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * @param files
+     * @param config
+     * @return the result of parsing each file, in the order of the files
+     */
+    public List<JmmParserResult> parseFiles(List<File> files, Map<String, String> config) {
+        return parseAll(files, file -> new JmmParserImpl().parse(file, config));
+    }
+
+    /**
+     * @param sources the code of each compilation unit
+     * @param config
+     * @return the result of parsing each source, in the order of the sources
+     */
+    public List<JmmParserResult> parseSources(List<String> sources, Map<String, String> config) {
+        return parseAll(sources, code -> new JmmParserImpl().parse(code, config));
+    }
+
+    private <T> List<JmmParserResult> parseAll(List<T> units, Function<T, JmmParserResult> parse) {
+        stats.clear();
+
+        List<Future<JmmParserResult>> futures = new ArrayList<>(units.size());
+        for (var unit : units) {
+            futures.add(executor.submit(() -> {
+                long start = System.nanoTime();
+                var result = parse.apply(unit);
+                long time = System.nanoTime() - start;
+
+                var threadName = Thread.currentThread().getName();
+                stats.computeIfAbsent(threadName, ThreadStats::new)
+                        .add(JmmParserImpl.getLastTokenCount(), time);
+                return result;
+            }));
+        }
+
+        List<JmmParserResult> results = new ArrayList<>(units.size());
+        for (var future : futures) {
+            try {
+                results.add(future.get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                futures.forEach(pending -> pending.cancel(true));
+                throw new RuntimeException("Interrupted while waiting for the parsers", e);
+            } catch (ExecutionException e) {
+                throw new RuntimeException("Exception while parsing in parallel", e.getCause());
+            }
+        }
+
+        return results;
+    }
+
+    /**
+     * @return the statistics of the workers that took part in the last call, sorted by thread name
+     */
+    public List<ThreadStats> getThreadStats() {
+        return stats.values().stream()
+                .sorted(Comparator.comparing(ThreadStats::getThreadName))
+                .toList();
+    }
+
+    /**
+     * @return a line per worker of the last call, with its files and tokens per second
+     */
+    public String formatStats() {
+        return getThreadStats().stream()
+                .map(ThreadStats::toString)
+                .collect(Collectors.joining("\n"));
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Work done by one worker thread, only updated by that thread.
+     */
+    public static class ThreadStats {
+
+        private final String threadName;
+        private int files;
+        private long tokens;
+        private long nanos;
+
+        ThreadStats(String threadName) {
+            this.threadName = threadName;
+        }
+
+        void add(int tokens, long nanos) {
+            this.files++;
+            this.tokens += tokens;
+            this.nanos += nanos;
+        }
+
+        public String getThreadName() {
+            return threadName;
+        }
+
+        public int getFiles() {
+            return files;
+        }
+
+        public long getTokens() {
+            return tokens;
+        }
+
+        /**
+         * @return the time the thread spent parsing, in nanoseconds
+         */
+        public long getNanos() {
+            return nanos;
+        }
+
+        public double getFilesPerSecond() {
+            return nanos == 0 ? 0 : files * 1e9 / nanos;
+        }
+
+        public double getTokensPerSecond() {
+            return nanos == 0 ? 0 : tokens * 1e9 / nanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s: %d files, %d tokens in %.1f ms, %.1f files/s, %.0f tokens/s", threadName, files,
+                    tokens, nanos / 1e6, getFilesPerSecond(), getTokensPerSecond());
+        }
+    }
+}
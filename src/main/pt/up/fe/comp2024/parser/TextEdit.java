@@ -0,0 +1,32 @@
+package pt.up.fe.comp2024.parser;
+
+/**
+ * Replacement of the characters in [offset, offset + length) of a source by a new text.
+ *
+ * @param offset index of the first replaced character
+ * @param length number of replaced characters, 0 for an insertion
+ * @param text   the new text, empty for a deletion
+ */
+public record TextEdit(int offset, int length, String text) {
+
+    public TextEdit {
+        if (offset < 0 || length < 0) {
+            throw new IllegalArgumentException("Invalid edit range [" + offset + ", " + (offset + length) + ")");
+        }
+        if (text == null) {
+            text = "";
+        }
+    }
+
+    public int end() {
+        return offset + length;
+    }
+
+    public String apply(String code) {
+        if (end() > code.length()) {
+            throw new IllegalArgumentException("Edit range [" + offset + ", " + end() + ") is outside of the code ("
+                    + code.length() + " characters)");
+        }
+        return code.substring(0, offset) + text + code.substring(end());
+    }
+}
@@ -3,39 +3,455 @@ package pt.up.fe.comp2024.symboltable;
 import pt.up.fe.comp.jmm.analysis.table.Symbol;
 import pt.up.fe.comp.jmm.analysis.table.SymbolTable;
 import pt.up.fe.comp.jmm.analysis.table.Type;
+import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp2024.ast.ExprTypes;
+import pt.up.fe.comp2024.ast.Identifiers;
+import pt.up.fe.comp2024.classpath.ClassInfo;
+import pt.up.fe.comp2024.classpath.ClasspathIndex;
+import pt.up.fe.comp2024.symboltable.ResolvedSymbol.Origin;
+import pt.up.fe.specs.util.SpecsCheck;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
 
+/**
+ * Symbol table of a class, keyed inside by the ids the {@link Identifiers} of its compilation give to the names of the
+ * class. Resolving a name inside a method looks up its id once, the scopes are indexed by id, and a name the class does
+ * not have is known to be undeclared after the first lookup.
+ * <p>
+ * Methods are keyed as {@link MethodSignature} describes, so that each overload has its own entry, and calls are
+ * resolved to one of them with {@link #resolveMethod(String, List)}.
+ */
 public class JmmSymbolTable implements SymbolTable {
 
+    private final Identifiers identifiers;
+
     private final String className;
 
     private final List<String> imports;
+    private final BitSet importedIds = new BitSet();
 
     private final List<String> methods;
-    private final Map<String, Type> returnTypes;
-    private final Map<String, List<Symbol>> params;
-    private final Map<String, List<Symbol>> locals;
-    private List<? extends Symbol> fields;
+    private final List<Symbol> fields;
     private String superClass;
 
-    public JmmSymbolTable(String className,
+    /**
+     * The entry of each method by the id of its name, null for the other ids.
+     */
+    private MethodEntry[] methodEntries;
+    private final Scope fieldScope;
+
+    /**
+     * The method of the last resolved name, the names of a method are resolved in a row with the same key.
+     */
+    private volatile LastMethod lastMethod;
+
+    /**
+     * The keys of the overloads of each name the class declares several methods with, in declaration order.
+     */
+    private final Map<String, List<String>> overloads = new HashMap<>();
+
+    private final ExprTypes exprTypes = new ExprTypes();
+
+    private Map<String, String> importPaths = Map.of();
+    private ClasspathIndex classpath = ClasspathIndex.EMPTY;
+
+    /**
+     * @param identifiers the identifiers of the compilation, the names of the tree the table is built from are
+     *                    interned in them
+     * @param methods     the name of each method, repeated for overloads
+     * @param returnTypes the return type of each method, by the keys {@link MethodSignature} describes, in the order
+     *                    the methods are declared
+     */
+    public JmmSymbolTable(Identifiers identifiers,
+                          String className,
                           List<String> methods,
                           List<String> imports,
                           Map<String, Type> returnTypes,
                           Map<String, List<Symbol>> params,
                           Map<String, List<Symbol>> locals, String superClass, List<Symbol> fields) {
-        this.className = className;
+        this.identifiers = identifiers;
+        this.className = identifiers.intern(className);
         this.imports = imports;
-        this.methods = methods;
-        this.returnTypes = returnTypes;
-        this.params = params;
-        this.locals = locals;
+        for (var imported : imports) {
+            importedIds.set(identifiers.getId(imported.substring(imported.lastIndexOf('.') + 1)));
+        }
+        // the lists are handed out on every lookup, wrap them once
+        this.methods = Collections.unmodifiableList(methods.stream().map(identifiers::intern).toList());
         this.superClass=superClass;
-        this.fields = fields;
+        this.fields = Collections.unmodifiableList(fields);
+
+        this.fieldScope = new Scope(List.of(new ScopePart(this.fields, Origin.FIELD)), identifiers);
+
+        this.methodEntries = new MethodEntry[0];
+        Set<String> keys = new LinkedHashSet<>(returnTypes.keySet());
+        keys.addAll(params.keySet());
+        keys.addAll(locals.keySet());
+        for (var key : keys) {
+            var name = MethodSignature.getName(key);
+            if (!key.equals(name)) {
+                overloads.computeIfAbsent(identifiers.intern(name), overloaded -> new ArrayList<>())
+                        .add(identifiers.intern(key));
+            }
+        }
+        for (var key : keys) {
+            putMethod(key, returnTypes.get(key), params.get(key), locals.get(key));
+        }
+    }
+
+    private void putMethod(String key, Type returnType, List<Symbol> params, List<Symbol> locals) {
+        var entry = new MethodEntry(returnType, unmodifiable(params), unmodifiable(locals),
+                buildScope(params, locals));
+        putEntry(key, entry);
+
+        // the name alone stands for the first overload
+        var name = MethodSignature.getName(key);
+        var sameName = overloads.get(name);
+        if (sameName != null && sameName.get(0).equals(key)) {
+            putEntry(name, entry);
+        }
+    }
+
+    private void putEntry(String key, MethodEntry entry) {
+        int id = identifiers.getId(key);
+        if (id >= methodEntries.length) {
+            methodEntries = Arrays.copyOf(methodEntries, identifiers.size());
+        }
+        methodEntries[id] = entry;
+    }
+
+    private Scope buildScope(List<Symbol> params, List<Symbol> locals) {
+        // fields are found in the field scope, they are not copied into every method
+        return new Scope(List.of(new ScopePart(locals, Origin.LOCAL), new ScopePart(params, Origin.PARAM)),
+                identifiers);
+    }
+
+    private static List<Symbol> unmodifiable(List<Symbol> symbols) {
+        return symbols == null ? null : Collections.unmodifiableList(symbols);
+    }
+
+    /**
+     * Replaces the return type, parameters and locals of a method of the class, after an edit of that method only.
+     *
+     * @param methodSignature the key of a method already in the table, which the edit did not change
+     * @param returnType
+     * @param params
+     * @param locals
+     */
+    public void updateMethod(String methodSignature, Type returnType, List<Symbol> params, List<Symbol> locals) {
+        SpecsCheck.checkArgument(getEntry(methodSignature) != null, () -> "Unknown method '" + methodSignature + "'");
+
+        putMethod(methodSignature, returnType, params, locals);
+        lastMethod = null;
+    }
+
+    /**
+     * @return true if the class declares several methods with the name
+     */
+    public boolean isOverloaded(String name) {
+        return overloads.containsKey(name);
+    }
+
+    /**
+     * Same as {@link #isOverloaded(String)}, for tables that are not a JmmSymbolTable, which list overloaded names once
+     * per method as well.
+     */
+    public static boolean isOverloaded(SymbolTable table, String name) {
+        if (table instanceof JmmSymbolTable jmmTable) {
+            return jmmTable.isOverloaded(name);
+        }
+        return Collections.frequency(table.getMethods(), name) > 1;
+    }
+
+    /**
+     * @return the keys of the methods with the name, in the order they are declared, empty if there is none
+     */
+    public List<String> getOverloads(String name) {
+        var sameName = overloads.get(name);
+        if (sameName != null) {
+            return Collections.unmodifiableList(sameName);
+        }
+        return getEntry(name) == null ? List.of() : List.of(name);
+    }
+
+    /**
+     * @param table
+     * @param methodDecl
+     * @return the key of the declared method in the table
+     */
+    public static String getMethodKey(SymbolTable table, JmmNode methodDecl) {
+        var name = methodDecl.get("name");
+        return isOverloaded(table, name) ? MethodSignature.of(methodDecl) : name;
+    }
+
+    /**
+     * Chooses the method that a call with arguments of the given types invokes, as Java does: of the overloads that
+     * accept the arguments as they are, or else of those that accept them with the last ones gathered into their
+     * vararg, the most specific one.
+     * <p>
+     * A method that is not overloaded is chosen whatever the arguments, whether they fit is left to the analysis.
+     *
+     * @param name
+     * @param argTypes the types of the arguments, null for the ones whose type is unknown, which any parameter accepts
+     * @return the key of the method, or empty if no overload, or several equally specific ones, accept the arguments
+     */
+    public Optional<String> resolveMethod(String name, List<Type> argTypes) {
+        var candidates = getOverloads(name);
+        if (candidates.size() <= 1) {
+            return candidates.stream().findFirst();
+        }
+
+        var chosen = mostSpecific(candidates.stream()
+                .filter(key -> acceptsAsIs(getParameters(key), argTypes))
+                .toList(), argTypes.size(), false);
+        if (chosen.isEmpty()) {
+            chosen = mostSpecific(candidates.stream()
+                    .filter(key -> acceptsGathered(getParameters(key), argTypes))
+                    .toList(), argTypes.size(), true);
+        }
+        return chosen;
+    }
+
+    private boolean acceptsAsIs(List<Symbol> params, List<Type> argTypes) {
+        if (params.size() != argTypes.size()) {
+            return false;
+        }
+        for (int i = 0; i < params.size(); i++) {
+            if (!accepts(params.get(i).getType(), argTypes.get(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean acceptsGathered(List<Symbol> params, List<Type> argTypes) {
+        if (params.isEmpty() || !isVararg(params) || argTypes.size() < params.size() - 1) {
+            return false;
+        }
+        var expanded = expand(params, argTypes.size());
+        for (int i = 0; i < argTypes.size(); i++) {
+            if (!accepts(expanded.get(i), argTypes.get(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
 
+    /**
+     * @return true if the method has a vararg, which is always its last parameter
+     */
+    public static boolean isVararg(List<Symbol> params) {
+        return !params.isEmpty() && MethodSignature.isVararg(params.get(params.size() - 1).getType());
+    }
+
+    /**
+     * @return the types of the parameters for the given number of arguments, the type of the elements of the vararg
+     * repeated for the last ones
+     */
+    private static List<Type> expand(List<Symbol> params, int numArgs) {
+        List<Type> types = new ArrayList<>();
+        for (int i = 0; i < numArgs; i++) {
+            if (isVararg(params) && i >= params.size() - 1) {
+                types.add(new Type(params.get(params.size() - 1).getType().getName(), false));
+            } else {
+                types.add(params.get(i).getType());
+            }
+        }
+        return types;
+    }
+
+    private Optional<String> mostSpecific(List<String> applicable, int numArgs, boolean gathered) {
+        if (applicable.size() <= 1) {
+            return applicable.stream().findFirst();
+        }
+
+        // the one whose parameters every other overload accepts, in the same way it accepted the arguments
+        String chosen = null;
+        for (var key : applicable) {
+            var params = gathered ? expand(getParameters(key), numArgs)
+                    : getParameters(key).stream().map(Symbol::getType).toList();
+            boolean moreSpecific = applicable.stream()
+                    .filter(other -> !other.equals(key))
+                    .allMatch(other -> gathered ? acceptsGathered(getParameters(other), params)
+                            : acceptsAsIs(getParameters(other), params));
+            if (moreSpecific) {
+                if (chosen != null) {
+                    return Optional.empty();
+                }
+                chosen = key;
+            }
+        }
+        return Optional.ofNullable(chosen);
+    }
+
+    /**
+     * @return true if a parameter of the given type accepts an argument of the other
+     */
+    private boolean accepts(Type paramType, Type argType) {
+        if (argType == null || paramType.equals(argType)) {
+            return true;
+        }
+        if (paramType.isArray() || argType.isArray() || isPrimitive(paramType) || isPrimitive(argType)) {
+            return false;
+        }
+        // an instance of the class is one of its superclass, the hierarchy of imported classes is not known
+        return argType.getName().equals(className) && paramType.getName().equals(superClass)
+                || isImported(argType.getName());
+    }
+
+    private static boolean isPrimitive(Type type) {
+        return type.getName().equals("int") || type.getName().equals("boolean");
+    }
+
+    /**
+     * @return the identifiers of the compilation, whose ids the table is keyed by
+     */
+    public Identifiers getIdentifiers() {
+        return identifiers;
+    }
+
+    private MethodEntry getEntry(String methodSignature) {
+        return getEntry(identifiers.find(methodSignature));
+    }
+
+    private MethodEntry getEntry(int methodId) {
+        return methodId >= 0 && methodId < methodEntries.length ? methodEntries[methodId] : null;
+    }
+
+    /**
+     * Resolves a variable name used inside a method: a local variable, else a parameter, else a field.
+     *
+     * @param methodSignature
+     * @param name
+     * @return the symbol the name refers to, or empty if it is not declared
+     */
+    public Optional<ResolvedSymbol> resolve(String methodSignature, String name) {
+        int nameId = identifiers.find(name);
+        if (nameId == Identifiers.NO_ID) {
+            // a name the class does not have, no scope has it
+            return Optional.empty();
+        }
+
+        // the key is the same instance while the names of a method are resolved, it is not looked up again
+        var last = lastMethod;
+        if (last == null || last.signature() != methodSignature) {
+            last = new LastMethod(methodSignature, getEntry(methodSignature));
+            lastMethod = last;
+        }
+        return resolve(last.entry(), nameId);
+    }
+
+    /**
+     * Same as {@link #resolve(String, String)}, with the ids of the names in the {@link #getIdentifiers() identifiers}
+     * of this table.
+     */
+    public Optional<ResolvedSymbol> resolve(int methodId, int nameId) {
+        return resolve(getEntry(methodId), nameId);
+    }
+
+    private Optional<ResolvedSymbol> resolve(MethodEntry entry, int nameId) {
+        var symbol = entry == null ? null : entry.scope.get(nameId);
+        return Optional.ofNullable(symbol != null ? symbol : fieldScope.get(nameId));
+    }
+
+    /**
+     * Same as {@link #resolve(String, String)}, searching the lists of tables that are not a JmmSymbolTable.
+     */
+    public static Optional<ResolvedSymbol> resolve(SymbolTable table, String methodSignature, String name) {
+        if (table instanceof JmmSymbolTable jmmTable) {
+            return jmmTable.resolve(methodSignature, name);
+        }
+
+        var local = find(table.getLocalVariables(methodSignature), name, Origin.LOCAL);
+        if (local.isPresent()) {
+            return local;
+        }
+        var param = find(table.getParameters(methodSignature), name, Origin.PARAM);
+        if (param.isPresent()) {
+            return param;
+        }
+        return find(table.getFields(), name, Origin.FIELD);
+    }
+
+    private static Optional<ResolvedSymbol> find(List<Symbol> symbols, String name, Origin origin) {
+        if (symbols == null) {
+            return Optional.empty();
+        }
+        return symbols.stream()
+                .filter(symbol -> symbol.getName().equals(name))
+                .findFirst()
+                .map(symbol -> new ResolvedSymbol(symbol, origin));
+    }
+
+    /**
+     * @param simpleName the name of a class, as the program uses it
+     * @return true if the class is imported
+     */
+    public boolean isImported(String simpleName) {
+        int id = identifiers.find(simpleName);
+        return id != Identifiers.NO_ID && importedIds.get(id);
+    }
+
+    /**
+     * Same as {@link #isImported(String)}, searching the imports of tables that are not a JmmSymbolTable.
+     */
+    public static boolean isImported(SymbolTable table, String simpleName) {
+        if (table instanceof JmmSymbolTable jmmTable) {
+            return jmmTable.isImported(simpleName);
+        }
+
+        for (var imported : table.getImports()) {
+            if (imported.substring(imported.lastIndexOf('.') + 1).equals(simpleName)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    void setImportPaths(Map<String, String> importPaths) {
+        this.importPaths = importPaths;
+    }
+
+    /**
+     * @param simpleName the name of an imported class, as the program uses it
+     * @return the qualified name of the class, such as {@code foo.bar.A}
+     */
+    public Optional<String> getImportPath(String simpleName) {
+        return Optional.ofNullable(importPaths.get(simpleName));
+    }
+
+    public void setClasspath(ClasspathIndex classpath) {
+        this.classpath = classpath;
+    }
+
+    /**
+     * @return the compiled classes the imports are resolved against, empty unless set
+     */
+    public ClasspathIndex getClasspath() {
+        return classpath;
+    }
+
+    /**
+     * @param simpleName the name of an imported class, as the program uses it
+     * @return the compiled class of the import, if it was found in the classpath
+     */
+    public Optional<ClassInfo> findImportedClass(String simpleName) {
+        return getImportPath(simpleName).flatMap(classpath::find);
+    }
+
+    /**
+     * @return the types of the expressions of the tree this table was built from
+     */
+    public ExprTypes getExprTypes() {
+        return exprTypes;
     }
 
     @Override
@@ -55,27 +471,83 @@ public class JmmSymbolTable implements SymbolTable {
 
     @Override
     public List<Symbol> getFields() {
-        return Collections.unmodifiableList(fields);
-
+        return fields;
     }
 
     @Override
     public List<String> getMethods() {
-        return Collections.unmodifiableList(methods);
+        return methods;
     }
 
     @Override
     public Type getReturnType(String methodSignature) {
-        return returnTypes.get(methodSignature);
+        var entry = getEntry(methodSignature);
+        return entry == null ? null : entry.returnType;
     }
 
     @Override
     public List<Symbol> getParameters(String methodSignature) {
-        return Collections.unmodifiableList(params.get(methodSignature));
+        var entry = getEntry(methodSignature);
+        return entry == null ? null : entry.params;
     }
 
     @Override
     public List<Symbol> getLocalVariables(String methodSignature) {
-        return Collections.unmodifiableList(locals.get(methodSignature));
+        var entry = getEntry(methodSignature);
+        return entry == null ? null : entry.locals;
+    }
+
+    private record MethodEntry(Type returnType, List<Symbol> params, List<Symbol> locals, Scope scope) {
+    }
+
+    private record ScopePart(List<Symbol> symbols, Origin origin) {
+    }
+
+    private record LastMethod(String signature, MethodEntry entry) {
+    }
+
+    /**
+     * Variables visible in a scope, as the symbols they resolve to indexed by the id of their name. The array spans
+     * from the smallest to the largest id of the scope, the names of a method are mostly seen together and get close
+     * ids.
+     */
+    private static class Scope {
+
+        private static final ResolvedSymbol[] NO_SYMBOLS = new ResolvedSymbol[0];
+
+        private final int firstId;
+        private final ResolvedSymbol[] symbols;
+
+        /**
+         * @param parts the symbols of the scope, an earlier declaration of a name hides the later ones
+         */
+        Scope(List<ScopePart> parts, Identifiers identifiers) {
+            Map<Integer, ResolvedSymbol> byId = new HashMap<>();
+            for (var part : parts) {
+                if (part.symbols() == null) {
+                    continue;
+                }
+                for (var symbol : part.symbols()) {
+                    byId.putIfAbsent(identifiers.getId(symbol.getName()), new ResolvedSymbol(symbol, part.origin()));
+                }
+            }
+
+            if (byId.isEmpty()) {
+                firstId = 0;
+                symbols = NO_SYMBOLS;
+                return;
+            }
+
+            firstId = Collections.min(byId.keySet());
+            symbols = new ResolvedSymbol[Collections.max(byId.keySet()) - firstId + 1];
+            for (var entry : byId.entrySet()) {
+                symbols[entry.getKey() - firstId] = entry.getValue();
+            }
+        }
+
+        ResolvedSymbol get(int id) {
+            int index = id - firstId;
+            return index >= 0 && index < symbols.length ? symbols[index] : null;
+        }
     }
 }
@@ -3,7 +3,9 @@ package pt.up.fe.comp2024.symboltable;
 import pt.up.fe.comp.jmm.analysis.table.Symbol;
 import pt.up.fe.comp.jmm.analysis.table.Type;
 import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp2024.ast.Identifiers;
 import pt.up.fe.comp2024.ast.Kind;
+import pt.up.fe.comp2024.ast.NodeUtils;
 import pt.up.fe.specs.util.SpecsCheck;
 import java.util.*;
 import static pt.up.fe.comp2024.ast.Kind.*;
@@ -20,19 +22,46 @@ import java.util.HashMap;
 
 public class JmmSymbolTableBuilder {
 
+    /**
+     * Same as {@link #build(JmmNode, Identifiers)}, with the identifiers the parser interned the names of the tree in.
+     */
     public static JmmSymbolTable build(JmmNode root) {
+        return build(root, Identifiers.of(root));
+    }
+
+    /**
+     * @param root
+     * @param identifiers the identifiers of the compilation, the table is keyed by their ids
+     */
+    public static JmmSymbolTable build(JmmNode root, Identifiers identifiers) {
         var classDecl = root.getChildren(Kind.CLASS_DECLARATION).get(0);
         SpecsCheck.checkArgument(Kind.CLASS_DECLARATION.check(classDecl), () -> "Expected a class declaration: " + classDecl);
         String className = classDecl.get("name");
         var imports = buildImports(root);
         var methods = buildMethods(classDecl);
-        var returnTypes = buildReturnTypes(classDecl);
-        var params = buildParams(classDecl);
-        var locals = buildLocals(classDecl);
+        var overloaded = findOverloaded(methods);
+        var returnTypes = buildReturnTypes(classDecl, overloaded);
+        var params = buildParams(classDecl, overloaded);
+        var locals = buildLocals(classDecl, overloaded);
         String superClass = classDecl.getOptional("sname").orElse(null);
         List<Symbol> fields = buildFields(classDecl); // Convert ExtendedSymbol to Symbol
 
-        return new JmmSymbolTable(className, methods, imports, returnTypes, params, locals, superClass, fields);
+        var table = new JmmSymbolTable(identifiers, className, methods, imports, returnTypes, params, locals, superClass,
+                fields);
+        table.setImportPaths(buildImportPaths(root));
+        return table;
+    }
+
+    /**
+     * Updates the entries of a method in a table built from a previous version of the same class.
+     *
+     * @param table
+     * @param methodDecl the new declaration of a method with the same name, and the same parameter types if the name is
+     *                   overloaded
+     */
+    public static void updateMethod(JmmSymbolTable table, JmmNode methodDecl) {
+        table.updateMethod(JmmSymbolTable.getMethodKey(table, methodDecl), getReturnType(methodDecl),
+                getParamsList(methodDecl), getLocalsList(methodDecl));
     }
 
     private static List<String> buildImports(JmmNode root) {
@@ -43,17 +72,22 @@ public class JmmSymbolTableBuilder {
         return imports;
     }
 
-    private static String dealWithImport(JmmNode importNode) {
-        String importList = importNode.get("importValue");
-        String[] imports = importList.split(", ");
-        String lastImport = imports[imports.length - 1]; // Obtém o último elemento
-        if (lastImport.startsWith("[")) { // Verifica se o último elemento começa com '[A'
-            lastImport = lastImport.substring(1); // Remove os dois primeiros caracteres ('[A')
-        }
-        if (lastImport.endsWith("]")) { // Verifica se o último elemento termina com ']'
-            lastImport = lastImport.substring(0, lastImport.length() - 1); // Remove o último caractere (']')
+    /**
+     * @return the qualified name of each imported class, by the simple name the program uses
+     */
+    private static Map<String, String> buildImportPaths(JmmNode root) {
+        Map<String, String> paths = new HashMap<>();
+        for (var importNode : root.getChildren("ImportDeclaration")) {
+            var parts = NodeUtils.getImportParts(importNode);
+            paths.put(parts.get(parts.size() - 1), String.join(".", parts));
         }
-        return lastImport;
+        return paths;
+    }
+
+    private static String dealWithImport(JmmNode importNode) {
+        // the program uses imported classes by their simple name
+        var parts = NodeUtils.getImportParts(importNode);
+        return parts.get(parts.size() - 1);
     }
 
 
@@ -63,39 +97,65 @@ public class JmmSymbolTableBuilder {
                 .toList();
     }
 
-    private static Map<String, Type> buildReturnTypes(JmmNode classDecl) {
-        Map<String, Type> map = new HashMap<>();
+    private static Set<String> findOverloaded(List<String> methods) {
+        Set<String> seen = new HashSet<>();
+        Set<String> overloaded = new HashSet<>();
+        for (var method : methods) {
+            if (!seen.add(method)) {
+                overloaded.add(method);
+            }
+        }
+        return overloaded;
+    }
+
+    /**
+     * @return the key of the method in the table, its signature if the name is overloaded
+     */
+    private static String getKey(JmmNode method, Set<String> overloaded) {
+        String name = method.get("name");
+        return overloaded.contains(name) ? MethodSignature.of(method) : name;
+    }
+
+    private static Map<String, Type> buildReturnTypes(JmmNode classDecl, Set<String> overloaded) {
+        // in declaration order, the first overload is the one the name alone stands for
+        Map<String, Type> map = new LinkedHashMap<>();
         for (var method : classDecl.getChildren(Kind.METHOD_DECLARATION)) {
-            String methName = method.get("name");
-            JmmNode retType = method.getChildren(Kind.TYPE).get(0);
-            map.put(methName, getType(retType));
+            map.put(getKey(method, overloaded), getReturnType(method));
         }
         return map;
     }
 
+    private static Type getReturnType(JmmNode method) {
+        JmmNode retType = method.getChildren(Kind.TYPE).get(0);
+        return getType(retType);
+    }
+
     private static Type getType(JmmNode node) {
         boolean isArray = node.getObject("isArray", Boolean.class);
         return new Type(node.get("value"), isArray);
     }
 
-    private static Map<String, List<Symbol>> buildParams(JmmNode classDecl) {
+    private static Map<String, List<Symbol>> buildParams(JmmNode classDecl, Set<String> overloaded) {
         Map<String, List<Symbol>> params = new HashMap<>();
         for (var methodDecl : classDecl.getChildren(Kind.METHOD_DECLARATION)) {
-            List<Symbol> paramList = new ArrayList<>();
-            for (var param : methodDecl.getChildren("Param")) {
-                String name = param.get("name");
-                Type type = getType(param.getChildren(Kind.TYPE).get(0));
-                paramList.add(new Symbol(type, name));
-            }
-            params.put(methodDecl.get("name"), paramList);
+            params.put(getKey(methodDecl, overloaded), getParamsList(methodDecl));
         }
         return params;
     }
 
-    private static Map<String, List<Symbol>> buildLocals(JmmNode classDecl) {
+    private static List<Symbol> getParamsList(JmmNode methodDecl) {
+        List<Symbol> paramList = new ArrayList<>();
+        for (var param : methodDecl.getChildren("Param")) {
+            String name = param.get("name");
+            paramList.add(new Symbol(MethodSignature.getParamType(param), name));
+        }
+        return paramList;
+    }
+
+    private static Map<String, List<Symbol>> buildLocals(JmmNode classDecl, Set<String> overloaded) {
         Map<String, List<Symbol>> map = new HashMap<>();
         classDecl.getChildren(Kind.METHOD_DECLARATION).stream()
-                .forEach(method -> map.put(method.get("name"), getLocalsList(method)));
+                .forEach(method -> map.put(getKey(method, overloaded), getLocalsList(method)));
         return map;
     }
 
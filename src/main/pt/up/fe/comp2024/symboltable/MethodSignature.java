@@ -0,0 +1,89 @@
+package pt.up.fe.comp2024.symboltable;
+
+import pt.up.fe.comp.jmm.analysis.table.Symbol;
+import pt.up.fe.comp.jmm.analysis.table.Type;
+import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp2024.ast.Kind;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Keys of the methods of a class in the {@link JmmSymbolTable}.
+ * <p>
+ * A method is keyed by its name, as the {@link pt.up.fe.comp.jmm.analysis.table.SymbolTable} interface expects, unless
+ * the class declares several methods with that name. Each of these overloads is keyed by its signature instead, the
+ * name followed by the types of the parameters, such as {@code quicksort(int[],int,int)}, and the name alone stands for
+ * the first overload declared.
+ */
+public class MethodSignature {
+
+    /**
+     * Attribute of the type of a vararg parameter, whose type is otherwise the same as an array.
+     */
+    public static final String VARARG = "vararg";
+
+    private MethodSignature() {
+    }
+
+    /**
+     * @return the signature of a method with the given parameters, such as {@code f(int,boolean[],int...)}
+     */
+    public static String of(String name, List<Symbol> params) {
+        return params.stream()
+                .map(param -> toString(param.getType()))
+                .collect(Collectors.joining(",", name + "(", ")"));
+    }
+
+    /**
+     * @param methodDecl
+     * @return the signature of the declared method
+     */
+    public static String of(JmmNode methodDecl) {
+        return getParamTypes(methodDecl).stream()
+                .map(MethodSignature::toString)
+                .collect(Collectors.joining(",", methodDecl.get("name") + "(", ")"));
+    }
+
+    /**
+     * @param methodDecl
+     * @return the types of the parameters of the declared method, which are equal for a vararg and an array as they
+     * are in Java
+     */
+    public static List<Type> getParamTypes(JmmNode methodDecl) {
+        return methodDecl.getChildren(Kind.PARAM_DECLARATION).stream()
+                .map(MethodSignature::getParamType)
+                .toList();
+    }
+
+    /**
+     * @return the name of the method of a key, which is either a name or a signature
+     */
+    public static String getName(String key) {
+        int paren = key.indexOf('(');
+        return paren == -1 ? key : key.substring(0, paren);
+    }
+
+    /**
+     * @return the type of a parameter declaration, with the attribute {@link #VARARG} for a vararg parameter
+     */
+    public static Type getParamType(JmmNode param) {
+        var typeNode = param.getChildren(Kind.TYPE).get(0);
+        var type = new Type(typeNode.get("value"), typeNode.getObject("isArray", Boolean.class));
+        if (Kind.VARARG.check(typeNode)) {
+            type.putObject(VARARG, true);
+        }
+        return type;
+    }
+
+    public static boolean isVararg(Type type) {
+        return type.hasAttribute(VARARG);
+    }
+
+    private static String toString(Type type) {
+        if (isVararg(type)) {
+            return type.getName() + "...";
+        }
+        return type.isArray() ? type.getName() + "[]" : type.getName();
+    }
+}
@@ -0,0 +1,31 @@
+package pt.up.fe.comp2024.symboltable;
+
+import pt.up.fe.comp.jmm.analysis.table.Symbol;
+import pt.up.fe.comp.jmm.analysis.table.Type;
+
+/**
+ * A variable name resolved inside a method, with the scope it was found in.
+ *
+ * @param symbol
+ * @param origin
+ */
+public record ResolvedSymbol(Symbol symbol, Origin origin) {
+
+    public enum Origin {
+        LOCAL,
+        PARAM,
+        FIELD
+    }
+
+    public String getName() {
+        return symbol.getName();
+    }
+
+    public Type getType() {
+        return symbol.getType();
+    }
+
+    public boolean isField() {
+        return origin == Origin.FIELD;
+    }
+}
@@ -0,0 +1,99 @@
+package pt.up.fe.comp2024.utils;
+
+import java.util.function.Supplier;
+
+/**
+ * Runs work that recurses as deep as the program it compiles on a thread with a large stack, so that machine-generated
+ * sources, such as expressions nested thousands of parentheses deep, compile without tuning -Xss.
+ * <p>
+ * The stack is only reserved when the thread starts, memory is committed as the stack actually grows.
+ */
+public class DeepStack {
+
+    public static final long STACK_SIZE = 1L << 30;
+
+    private static final String THREAD_NAME = "jmm-deep-stack";
+
+    /**
+     * @return true if the current thread already runs on a large stack
+     */
+    public static boolean isDeepStack() {
+        return Thread.currentThread() instanceof DeepStackThread;
+    }
+
+    public static void run(Runnable task) {
+        call(() -> {
+            task.run();
+            return null;
+        });
+    }
+
+    /**
+     * Calls the task on a thread with a large stack and waits for its result. Exceptions thrown by the task are thrown
+     * again in the calling thread.
+     *
+     * @param task
+     * @return the result of the task
+     */
+    public static <T> T call(Supplier<T> task) {
+        if (isDeepStack()) {
+            return task.get();
+        }
+
+        var thread = new DeepStackThread<>(task);
+        thread.start();
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            thread.interrupt();
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for " + THREAD_NAME, e);
+        }
+
+        if (thread.error instanceof RuntimeException runtimeException) {
+            throw runtimeException;
+        }
+        if (thread.error instanceof Error error) {
+            throw error;
+        }
+        if (thread.error != null) {
+            throw new RuntimeException(thread.error);
+        }
+
+        return thread.result;
+    }
+
+    /**
+     * @param e
+     * @return true if the exception is, or was caused by, a stack overflow
+     */
+    public static boolean isStackOverflow(Throwable e) {
+        for (var cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof StackOverflowError) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static class DeepStackThread<T> extends Thread {
+
+        private final Supplier<T> task;
+        private T result;
+        private Throwable error;
+
+        DeepStackThread(Supplier<T> task) {
+            super(null, null, THREAD_NAME, STACK_SIZE);
+            this.task = task;
+        }
+
+        @Override
+        public void run() {
+            try {
+                result = task.get();
+            } catch (Throwable e) {
+                error = e;
+            }
+        }
+    }
+}
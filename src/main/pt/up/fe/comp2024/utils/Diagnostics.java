@@ -0,0 +1,152 @@
+package pt.up.fe.comp2024.utils;
+
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp2024.CompilerConfig;
+
+import java.io.PrintStream;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Channel of the messages the compiler writes about its own work, apart from the code it prints.
+ * <p>
+ * Each message has a level and is written only when that level is enabled, by default none is. Messages are given as
+ * suppliers, so that a disabled message costs the comparison of the levels and nothing is formatted or printed. The
+ * lines go to standard error, either as text or, for tools that read them, as one JSON object per line.
+ */
+public class Diagnostics {
+
+    public enum Level {
+        OFF,
+        ERROR,
+        WARN,
+        INFO,
+        DEBUG;
+
+        private String getName() {
+            return name().toLowerCase();
+        }
+    }
+
+    private static volatile int enabledLevel = Level.OFF.ordinal();
+    private static volatile boolean json = false;
+    private static volatile PrintStream out = System.err;
+
+    private Diagnostics() {
+    }
+
+    /**
+     * Enables the level and the format of the options of a compilation, see {@link CompilerConfig#getDiagnostics} and
+     * {@link CompilerConfig#getJsonDiagnostics}. The statistics of the passes, see
+     * {@link CompilerConfig#getPassStats}, are written at the info level, which they enable.
+     */
+    public static void configure(Map<String, String> config) {
+        var level = CompilerConfig.getDiagnostics(config);
+        if (CompilerConfig.getPassStats(config) && level.compareTo(Level.INFO) < 0) {
+            level = Level.INFO;
+        }
+        setLevel(level);
+        setJson(CompilerConfig.getJsonDiagnostics(config));
+    }
+
+    /**
+     * Enables the messages of the level and of the levels above it.
+     */
+    public static void setLevel(Level level) {
+        enabledLevel = level.ordinal();
+    }
+
+    /**
+     * @param json true to write each message as a JSON object on a line of its own
+     */
+    public static void setJson(boolean json) {
+        Diagnostics.json = json;
+    }
+
+    public static void setOutput(PrintStream out) {
+        Diagnostics.out = out;
+    }
+
+    public static boolean isEnabled(Level level) {
+        return level != Level.OFF && level.ordinal() <= enabledLevel;
+    }
+
+    public static void error(Supplier<String> message) {
+        log(Level.ERROR, message);
+    }
+
+    public static void warn(Supplier<String> message) {
+        log(Level.WARN, message);
+    }
+
+    public static void info(Supplier<String> message) {
+        log(Level.INFO, message);
+    }
+
+    public static void debug(Supplier<String> message) {
+        log(Level.DEBUG, message);
+    }
+
+    /**
+     * Writes the message if the level is enabled, the supplier is not called otherwise.
+     */
+    public static void log(Level level, Supplier<String> message) {
+        if (!isEnabled(level)) {
+            return;
+        }
+
+        var text = message.get();
+        if (json) {
+            out.println("{\"level\":" + quote(level.getName()) + ",\"message\":" + quote(text) + "}");
+        } else {
+            out.println("[" + level.getName() + "] " + text);
+        }
+    }
+
+    /**
+     * Writes each report on a line of its own if the level is enabled.
+     */
+    public static void reports(Level level, List<Report> reports) {
+        if (!isEnabled(level)) {
+            return;
+        }
+
+        for (var report : reports) {
+            if (json) {
+                out.println("{\"level\":" + quote(level.getName()) + ",\"report\":" + ReportUtils.toJson(report) + "}");
+            } else {
+                out.println("[" + level.getName() + "] " + report);
+            }
+        }
+    }
+
+    /**
+     * @return the text as a JSON string, in quotes and with the characters JSON does not allow in strings escaped
+     */
+    static String quote(String text) {
+        if (text == null) {
+            return "null";
+        }
+
+        var quoted = new StringBuilder(text.length() + 2).append('"');
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '"' -> quoted.append("\\\"");
+                case '\\' -> quoted.append("\\\\");
+                case '\n' -> quoted.append("\\n");
+                case '\r' -> quoted.append("\\r");
+                case '\t' -> quoted.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        quoted.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        quoted.append(c);
+                    }
+                }
+            }
+        }
+        return quoted.append('"').toString();
+    }
+}
@@ -39,6 +39,21 @@ public class ReportUtils {
                 null);
     }
 
+    /**
+     * Unlike {@link Report#toJson()}, which is pretty-printed, the object takes a single line.
+     *
+     * @param report
+     * @return the report as a JSON object, with its type, stage, position and message
+     */
+    public static String toJson(Report report) {
+
+        return "{\"type\":" + Diagnostics.quote(report.getType().name())
+                + ",\"stage\":" + Diagnostics.quote(report.getStage().name())
+                + ",\"line\":" + report.getLine()
+                + ",\"column\":" + report.getColumn()
+                + ",\"message\":" + Diagnostics.quote(report.getMessage()) + "}";
+    }
+
     /**
      * Returns true if there are any ERROR reports.
      *
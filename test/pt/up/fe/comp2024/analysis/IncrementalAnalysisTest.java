@@ -0,0 +1,121 @@
+package pt.up.fe.comp2024.analysis;
+
+import org.junit.Test;
+import pt.up.fe.comp.jmm.analysis.JmmSemanticsResult;
+import pt.up.fe.comp.jmm.parser.JmmParserResult;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp2024.parser.JmmParserImpl;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class IncrementalAnalysisTest {
+
+    private static final String CODE = """
+            import io;
+            class A {
+                int field;
+                public int f(int a) {
+                    int x;
+                    x = a + 1;
+                    return x;
+                }
+                public int g(int a) {
+                    int y;
+                    y = this.f(a);
+                    return y;
+                }
+                public int h(int a) {
+                    return z;
+                }
+            }
+            """;
+
+    private static JmmParserResult parse(String code) {
+        return new JmmParserImpl().parse(code, Map.of());
+    }
+
+    private static List<String> sorted(List<Report> reports) {
+        return reports.stream().map(Report::toString).sorted().toList();
+    }
+
+    /**
+     * Analyses the code from scratch and incrementally, and checks that both give the same reports.
+     */
+    private static JmmSemanticsResult analyze(IncrementalAnalysis analysis, String code) {
+        var expected = new JmmAnalysisImpl().semanticAnalysis(parse(code));
+        var result = analysis.semanticAnalysis(parse(code));
+
+        assertEquals(sorted(expected.getReports()), sorted(result.getReports()));
+        return result;
+    }
+
+    @Test
+    public void firstAnalysisAnalysesEveryMethod() {
+        var analysis = new IncrementalAnalysis();
+        var result = analyze(analysis, CODE);
+
+        assertEquals(3, analysis.getAnalysedMethods());
+        // a wrong return type and an undeclared variable
+        assertEquals(2, result.getReports().size());
+    }
+
+    @Test
+    public void sameProgramKeepsReports() {
+        var analysis = new IncrementalAnalysis();
+        var first = analyze(analysis, CODE);
+        var second = analyze(analysis, CODE);
+
+        assertEquals(0, analysis.getAnalysedMethods());
+        assertEquals(first.getReports().toString(), second.getReports().toString());
+        assertSame(first.getSymbolTable(), second.getSymbolTable());
+    }
+
+    @Test
+    public void editedMethodIsAnalysedAlone() {
+        var analysis = new IncrementalAnalysis();
+        analyze(analysis, CODE);
+        analyze(analysis, CODE.replace("x = a + 1;", "x = a + true;"));
+
+        assertEquals(1, analysis.getAnalysedMethods());
+    }
+
+    @Test
+    public void reportsMoveWithTheirMethod() {
+        var analysis = new IncrementalAnalysis();
+        analyze(analysis, CODE);
+        var result = analyze(analysis, CODE.replace("int x;", "int x;\n        int w;\n"));
+
+        assertEquals(1, analysis.getAnalysedMethods());
+        assertEquals(17, result.getReports().get(0).getLine());
+
+        // the table was updated in place
+        assertEquals(List.of("x", "w"), result.getSymbolTable().getLocalVariables("f").stream()
+                .map(symbol -> symbol.getName())
+                .toList());
+    }
+
+    @Test
+    public void callersOfChangedSignatureAreAnalysed() {
+        var analysis = new IncrementalAnalysis();
+        analyze(analysis, CODE);
+        analyze(analysis, CODE.replace("public int f(int a)", "public int f(boolean a)"));
+
+        assertEquals(2, analysis.getAnalysedMethods());
+    }
+
+    @Test
+    public void classChangesAnalyseEverything() {
+        var analysis = new IncrementalAnalysis();
+        var first = analyze(analysis, CODE);
+        var second = analyze(analysis, CODE.replace("int field;", "int field;\n    boolean other;"));
+
+        assertEquals(3, analysis.getAnalysedMethods());
+        assertNotSame(first.getSymbolTable(), second.getSymbolTable());
+
+        analyze(analysis, CODE.replace("public int h(int a)", "public int k(int a)"));
+        assertEquals(3, analysis.getAnalysedMethods());
+    }
+}
@@ -0,0 +1,371 @@
+package pt.up.fe.comp2024.analysis;
+
+import org.junit.Test;
+import pt.up.fe.comp.TestUtils;
+import pt.up.fe.comp.jmm.analysis.table.SymbolTable;
+import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp.jmm.report.Stage;
+import pt.up.fe.comp2024.CompilerConfig;
+import pt.up.fe.comp2024.analysis.passes.UndeclaredVariable;
+import pt.up.fe.comp2024.ast.Kind;
+import pt.up.fe.comp2024.parser.JmmParserImpl;
+import pt.up.fe.comp2024.stress.DeepExpressionGenerator;
+import pt.up.fe.comp2024.symboltable.JmmSymbolTableBuilder;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.*;
+
+public class PassManagerTest {
+
+    private static final String CODE = """
+            class A {
+                public int f(int a) {
+                    int b;
+                    b = a + 1;
+                    return b * 2;
+                }
+            }
+            """;
+
+    private static JmmNode parse(String code) {
+        var result = new JmmParserImpl().parse(code, Map.of());
+        TestUtils.noErrors(result.getReports());
+        return result.getRootNode();
+    }
+
+    /**
+     * Records the nodes it visits, in a log shared with other passes.
+     */
+    private abstract static class RecordingPass extends AnalysisVisitor {
+
+        private List<String> log = new ArrayList<>();
+
+        RecordingPass log(List<String> log) {
+            this.log = log;
+            return this;
+        }
+
+        protected Void record(JmmNode node, SymbolTable table) {
+            log.add(getName() + ":" + node.getKind());
+            return null;
+        }
+    }
+
+    private static class VarRefs extends RecordingPass {
+        @Override
+        public void buildVisitor() {
+            addVisit(Kind.VAR_REF_EXPR, this::record);
+        }
+    }
+
+    private static class BinaryExprs extends RecordingPass {
+        @Override
+        public void buildVisitor() {
+            addVisit(Kind.BINARY_EXPR, this::record);
+        }
+    }
+
+    private static class Literals extends RecordingPass {
+        @Override
+        public void buildVisitor() {
+            addVisit(Kind.INTEGER_LITERAL, this::record);
+        }
+
+        @Override
+        public Set<Class<? extends AnalysisPass>> getDependencies() {
+            return Set.of(VarRefs.class);
+        }
+    }
+
+    private static class Failing extends RecordingPass {
+        @Override
+        public void buildVisitor() {
+            addVisit(Kind.BINARY_EXPR, (node, table) -> {
+                throw new IllegalStateException("failing pass");
+            });
+        }
+    }
+
+    private static class Reporting extends RecordingPass {
+        @Override
+        public void buildVisitor() {
+            addVisit(Kind.RETURN_STMT, (node, table) -> {
+                addReport(Report.newError(Stage.SEMANTIC, 5, 8, "reported", null));
+                return null;
+            });
+        }
+    }
+
+    private static class Alone implements AnalysisPass {
+        private int runs = 0;
+
+        @Override
+        public List<Report> analyze(JmmNode root, SymbolTable table) {
+            runs++;
+            return List.of();
+        }
+    }
+
+    @Test
+    public void fusesIndependentPasses() {
+        var root = parse(CODE);
+        List<String> log = new ArrayList<>();
+        var manager = new PassManager(List.of(new VarRefs().log(log), new BinaryExprs().log(log)));
+
+        assertEquals(List.of(List.of("VarRefs", "BinaryExprs")), manager.getTraversals());
+        assertTrue(manager.run(root, JmmSymbolTableBuilder.build(root)).isEmpty());
+
+        // one preorder walk, each node given to the passes that visit its kind
+        assertEquals(List.of("VarRefs:VarRefExpr", "BinaryExprs:BinaryExpr", "VarRefs:VarRefExpr",
+                "BinaryExprs:BinaryExpr", "VarRefs:VarRefExpr"), log);
+
+        var stats = manager.getStats();
+        assertEquals(2, stats.size());
+        assertEquals(3, stats.get(0).getVisits());
+        assertEquals(2, stats.get(1).getVisits());
+        assertEquals(0, stats.get(1).getTraversal());
+    }
+
+    @Test
+    public void dependenciesStartNewTraversal() {
+        var root = parse(CODE);
+        List<String> log = new ArrayList<>();
+        var alone = new Alone();
+        var manager = new PassManager(List.of(new Literals().log(log), new VarRefs().log(log),
+                new BinaryExprs().log(log), alone));
+
+        assertEquals(List.of(List.of("VarRefs"), List.of("Literals", "BinaryExprs"), List.of("Alone")),
+                manager.getTraversals());
+        manager.run(root, JmmSymbolTableBuilder.build(root));
+
+        assertEquals(List.of("VarRefs:VarRefExpr", "VarRefs:VarRefExpr", "VarRefs:VarRefExpr",
+                "BinaryExprs:BinaryExpr", "Literals:IntegerLiteral", "BinaryExprs:BinaryExpr",
+                "Literals:IntegerLiteral"), log);
+        assertEquals(1, alone.runs);
+        assertEquals(List.of("VarRefs", "Literals", "BinaryExprs", "Alone"),
+                manager.getStats().stream().map(PassManager.PassStats::getPass).toList());
+        assertTrue(manager.formatStats().contains("Literals: traversal 1, 2 nodes"));
+    }
+
+    @Test
+    public void stopsAfterTraversalWithReports() {
+        var root = parse(CODE);
+        List<String> log = new ArrayList<>();
+        var manager = new PassManager(List.of(new Reporting().log(log), new VarRefs().log(log),
+                new Literals().log(log)));
+
+        var reports = manager.run(root, JmmSymbolTableBuilder.build(root));
+
+        assertEquals(1, reports.size());
+        assertEquals("reported", reports.get(0).getMessage());
+        // the pass that shared the traversal ran, the one after it did not
+        assertEquals(3, log.size());
+        assertEquals(2, manager.getStats().size());
+    }
+
+    @Test
+    public void failingPassDoesNotStopOthers() {
+        var root = parse(CODE);
+        List<String> log = new ArrayList<>();
+        var manager = new PassManager(List.of(new Failing().log(log), new VarRefs().log(log)));
+
+        var reports = manager.run(root, JmmSymbolTableBuilder.build(root));
+
+        assertEquals(1, reports.size());
+        assertTrue(reports.get(0).getMessage().contains("Failing"));
+        assertEquals(3, log.size());
+        assertEquals(1, manager.getStats().get(0).getVisits());
+    }
+
+    @Test
+    public void rejectsMissingAndCyclicDependencies() {
+        try {
+            new PassManager(List.of(new Literals()));
+            fail("Expected a missing dependency");
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().contains("VarRefs"));
+        }
+
+        var first = new AnalysisPass() {
+            @Override
+            public List<Report> analyze(JmmNode root, SymbolTable table) {
+                return List.of();
+            }
+
+            @Override
+            public Set<Class<? extends AnalysisPass>> getDependencies() {
+                return Set.of(Alone.class);
+            }
+        };
+        var second = new Alone() {
+            @Override
+            public Set<Class<? extends AnalysisPass>> getDependencies() {
+                return Set.of(first.getClass());
+            }
+        };
+        try {
+            new PassManager(List.of(first, second));
+            fail("Expected a cycle");
+        } catch (IllegalArgumentException e) {
+            // the anonymous pass does not count as an Alone
+            assertTrue(e.getMessage().contains("not registered"));
+        }
+    }
+
+    @Test
+    public void sameReportsAsVisitingAlone() {
+        var code = """
+                class A {
+                    public int f(int a) {
+                        boolean b;
+                        b = a + true;
+                        return c;
+                    }
+                }
+                """;
+        var root = parse(code);
+        var table = JmmSymbolTableBuilder.build(root);
+
+        var alone = new UndeclaredVariable().analyze(root, table);
+        var fused = new PassManager(List.of(new UndeclaredVariable())).run(root, table);
+
+        assertFalse(alone.isEmpty());
+        assertEquals(alone.toString(), fused.toString());
+    }
+
+    @Test
+    public void parallelMethodsGiveSameReports() {
+        var root = parse(DeepExpressionGenerator.wideClass(200));
+        var table = JmmSymbolTableBuilder.build(root);
+        table.getExprTypes().annotate(root, table);
+
+        var sequential = new PassManager(List.of(new UndeclaredVariable()));
+        List<Report> expected = new ArrayList<>(sequential.run(root, table));
+        expected.sort(Comparator.comparingInt(Report::getLine).thenComparingInt(Report::getColumn));
+
+        var pool = new ForkJoinPool(4);
+        try {
+            // the same reports in the same order, however the tasks are scheduled
+            for (int i = 0; i < 5; i++) {
+                var parallel = new PassManager(List.of(new UndeclaredVariable()));
+                parallel.setPool(pool);
+                assertEquals(expected.toString(), parallel.run(root, table).toString());
+                assertEquals(sequential.getStats().get(0).getVisits(), parallel.getStats().get(0).getVisits());
+            }
+        } finally {
+            pool.shutdown();
+        }
+
+        // a mismatched assignment, a wrong return type and an undeclared variable in every tenth method
+        assertEquals(60, expected.size());
+    }
+
+    @Test
+    public void passesThatCannotBeSplitRunInOrder() {
+        var root = parse(CODE);
+        List<String> log = new ArrayList<>();
+        var manager = new PassManager(List.of(new VarRefs().log(log), new BinaryExprs().log(log)));
+        var pool = new ForkJoinPool(4);
+        try {
+            manager.setPool(pool);
+            manager.run(root, JmmSymbolTableBuilder.build(root));
+        } finally {
+            pool.shutdown();
+        }
+
+        assertEquals(List.of("VarRefs:VarRefExpr", "BinaryExprs:BinaryExpr", "VarRefs:VarRefExpr",
+                "BinaryExprs:BinaryExpr", "VarRefs:VarRefExpr"), log);
+    }
+
+    @Test
+    public void parallelAnalysisFromConfig() {
+        var code = DeepExpressionGenerator.wideClass(50);
+        var sequential = new JmmAnalysisImpl().semanticAnalysis(new JmmParserImpl().parse(code, Map.of()));
+        var parallel = new JmmAnalysisImpl().semanticAnalysis(new JmmParserImpl().parse(code,
+                Map.of("parallelAnalysis", "3")));
+
+        assertEquals(TestUtils.getNumErrors(sequential.getReports()), TestUtils.getNumErrors(parallel.getReports()));
+        assertEquals(15, TestUtils.getNumErrors(parallel.getReports()));
+    }
+
+    @Test
+    public void rejectsInvalidThreadCounts() {
+        assertEquals(4, CompilerConfig.getAnalysisThreads(Map.of("parallelAnalysis", "4")));
+
+        for (var threads : List.of("abc", "0", "-4")) {
+            try {
+                CompilerConfig.getAnalysisThreads(Map.of("parallelAnalysis", threads));
+                fail("Expected '" + threads + "' to be rejected");
+            } catch (IllegalArgumentException e) {
+                assertTrue(e.getMessage(), e.getMessage().startsWith("Option '-p' expects a number of threads"));
+                assertTrue(e.getMessage(), e.getMessage().endsWith("got '" + threads + "'"));
+            }
+        }
+    }
+
+    @Test
+    public void stopsAtMaxErrors() {
+        var root = parse(DeepExpressionGenerator.wideClass(200));
+        var table = JmmSymbolTableBuilder.build(root);
+        table.getExprTypes().annotate(root, table);
+
+        var all = new PassManager(List.of(new UndeclaredVariable()));
+        var expected = all.run(root, table);
+
+        var limited = new PassManager(List.of(new UndeclaredVariable()));
+        limited.setMaxErrors(5);
+        var reports = limited.run(root, table);
+
+        // the first errors, found without walking the rest of the class
+        assertEquals(expected.subList(0, 5).toString(), reports.toString());
+        assertTrue(limited.getStats().get(0).getVisits() < all.getStats().get(0).getVisits() / 2);
+    }
+
+    @Test
+    public void parallelMethodsStopAtMaxErrors() {
+        var root = parse(DeepExpressionGenerator.wideClass(200));
+        var table = JmmSymbolTableBuilder.build(root);
+        table.getExprTypes().annotate(root, table);
+
+        var pool = new ForkJoinPool(4);
+        try {
+            var manager = new PassManager(List.of(new UndeclaredVariable()));
+            manager.setPool(pool);
+            manager.setMaxErrors(5);
+
+            assertEquals(5, TestUtils.getNumErrors(manager.run(root, table)));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void maxErrorsFromConfig() {
+        var code = DeepExpressionGenerator.wideClass(50);
+        var result = new JmmAnalysisImpl().semanticAnalysis(new JmmParserImpl().parse(code,
+                CompilerConfig.parseArgs(new String[]{"-i=" + writeTemp(code), "-max-errors=2"})));
+
+        assertEquals(2, TestUtils.getNumErrors(result.getReports()));
+    }
+
+    private static String writeTemp(String code) {
+        try {
+            var file = Files.createTempFile("maxErrors", ".jmm");
+            file.toFile().deleteOnExit();
+            Files.writeString(file, code);
+            return file.toString();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
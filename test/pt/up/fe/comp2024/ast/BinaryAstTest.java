@@ -0,0 +1,145 @@
+package pt.up.fe.comp2024.ast;
+
+import org.junit.Test;
+import pt.up.fe.comp.TestUtils;
+import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp.jmm.ast.JmmNodeImpl;
+import pt.up.fe.comp.jmm.parser.JmmParserResult;
+import pt.up.fe.comp2024.analysis.JmmAnalysisImpl;
+import pt.up.fe.comp2024.parser.JmmParserImpl;
+import pt.up.fe.comp2024.stress.DeepExpressionGenerator;
+import pt.up.fe.specs.util.SpecsIo;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class BinaryAstTest {
+
+    private static final String CORPUS = SpecsIo.getResource("pt/up/fe/comp2024/parser/warmup.jmm");
+
+    /**
+     * Kinds, hierarchies, attributes and positions of the tree, with attributes in a fixed order.
+     */
+    private static String dump(JmmNode node) {
+        var code = new StringBuilder();
+        for (var current : NodeUtils.getDescendantsAndSelf(node)) {
+            code.append(current.getKind()).append(current.getHierarchy()).append(current.getAttributes().stream()
+                    .sorted()
+                    .map(attr -> attr + "=" + current.getObject(attr))
+                    .toList()).append(current.getNumChildren()).append("\n");
+        }
+        return code.toString();
+    }
+
+    @Test
+    public void roundTripsParsedProgram() {
+        var root = new JmmParserImpl().parse(CORPUS, Map.of("typedAst", "false")).getRootNode();
+
+        var bytes = BinaryAst.write(root);
+        var read = BinaryAst.read(bytes);
+
+        assertTrue(read instanceof JmmNodeImpl);
+        assertEquals(dump(root), dump(read));
+        // names are written once, positions as small differences
+        assertTrue(bytes.length < root.toTree().length() / 2);
+    }
+
+    @Test
+    public void roundTripsTypedTree() {
+        var root = new JmmParserImpl().parse(CORPUS, Map.of("typedAst", "true")).getRootNode();
+
+        var read = BinaryAst.read(BinaryAst.write(root));
+
+        assertTrue(read instanceof TypedJmmNode);
+        assertEquals(dump(root), dump(read));
+    }
+
+    @Test
+    public void analysesTreeReadBack() {
+        var code = SpecsIo.getResource("pt/up/fe/comp/cp2/apps/HelloWorld.jmm");
+        var root = BinaryAst.read(BinaryAst.write(new JmmParserImpl().parse(code, Map.of()).getRootNode()));
+
+        var result = new JmmAnalysisImpl().semanticAnalysis(new JmmParserResult(root, List.of(), Map.of()));
+        TestUtils.noErrors(result.getReports());
+    }
+
+    @Test
+    public void roundTripsAttributeValues() {
+        var root = new JmmNodeImpl("Custom");
+        root.putObject("list", List.of("a", List.of("b"), 3));
+        root.putObject("flag", true);
+        root.putObject("count", -42);
+        root.put("lineStart", "not a line");
+        var child = new JmmNodeImpl(Kind.VAR_REF_EXPR.getNodeName());
+        child.put("name", "x\u00e7");
+        child.put("colEnd", "7");
+        root.add(child);
+
+        var read = BinaryAst.read(BinaryAst.write(root));
+
+        assertEquals(dump(root), dump(read));
+        assertEquals(-42, read.getObject("count"));
+        assertEquals("7", read.getChild(0).get("colEnd"));
+        assertFalse(read.getChild(0).hasAttribute("lineStart"));
+    }
+
+    @Test
+    public void roundTripsDeepTree() {
+        var root = new JmmParserImpl().parse(DeepExpressionGenerator.operatorChain(100_000), Map.of()).getRootNode();
+
+        var read = BinaryAst.read(BinaryAst.write(root));
+
+        assertEquals(NodeUtils.toTree(root), NodeUtils.toTree(read));
+    }
+
+    @Test
+    public void readsMappedFile() throws Exception {
+        var root = new JmmParserImpl().parse(CORPUS, Map.of()).getRootNode();
+        var file = File.createTempFile("jmm", ".ast");
+        file.deleteOnExit();
+
+        BinaryAst.write(root, file.toPath());
+
+        assertEquals(dump(root), dump(BinaryAst.read(file.toPath())));
+    }
+
+    @Test
+    public void readsFromBufferPosition() {
+        var bytes = BinaryAst.write(new JmmParserImpl().parse(CORPUS, Map.of()).getRootNode());
+        var buffer = ByteBuffer.allocateDirect(bytes.length + 3);
+        buffer.put(new byte[3]).put(bytes).flip().position(3);
+
+        assertEquals(dump(BinaryAst.read(bytes)), dump(BinaryAst.read(buffer)));
+        assertEquals(3, buffer.position());
+    }
+
+    @Test
+    public void rejectsCorruptedData() {
+        var bytes = BinaryAst.write(new JmmParserImpl().parse(CORPUS, Map.of()).getRootNode());
+
+        var corrupted = Arrays.copyOf(bytes, bytes.length);
+        corrupted[bytes.length / 2] ^= 1;
+        assertRejected(corrupted, "checksum");
+
+        var otherVersion = Arrays.copyOf(bytes, bytes.length);
+        otherVersion[5]++;
+        assertRejected(otherVersion, "version");
+
+        assertRejected(Arrays.copyOf(bytes, 8), "bytes");
+        assertRejected("not an ast at all".getBytes(), "magic");
+    }
+
+    private static void assertRejected(byte[] bytes, String reason) {
+        try {
+            BinaryAst.read(bytes);
+            fail("Expected the binary AST to be rejected");
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains(reason));
+        }
+    }
+}
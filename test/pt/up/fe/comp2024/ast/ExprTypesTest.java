@@ -0,0 +1,135 @@
+package pt.up.fe.comp2024.ast;
+
+import org.junit.Test;
+import pt.up.fe.comp.TestUtils;
+import pt.up.fe.comp.jmm.analysis.table.Type;
+import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp2024.analysis.JmmAnalysisImpl;
+import pt.up.fe.comp2024.optimization.JmmOptimizationImpl;
+import pt.up.fe.comp2024.parser.JmmParserImpl;
+import pt.up.fe.comp2024.stress.DeepExpressionGenerator;
+import pt.up.fe.comp2024.symboltable.JmmSymbolTable;
+import pt.up.fe.comp2024.symboltable.JmmSymbolTableBuilder;
+
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class ExprTypesTest {
+
+    private static final String CODE = """
+            import io;
+            class A {
+                int[] values;
+
+                public int f(int a, boolean b) {
+                    int i;
+                    A other;
+                    other = new A();
+                    i = other.g(a) + (values[0] * a);
+                    b = b && i < values.length;
+                    return i;
+                }
+
+                public int g(int x) {
+                    return x;
+                }
+            }
+            """;
+
+    private static JmmNode parse(String code) {
+        var result = new JmmParserImpl().parse(code, Map.of());
+        TestUtils.noErrors(result.getReports());
+        return result.getRootNode();
+    }
+
+    private static Iterable<JmmNode> expressions(JmmNode root) {
+        return NodeUtils.getDescendantsAndSelf(root).stream()
+                .filter(node -> TypeUtils.TYPED_KINDS.contains(Kind.of(node)))
+                .toList();
+    }
+
+    @Test
+    public void annotatesSameTypesAsComputed() {
+        var root = parse(CODE);
+        var table = JmmSymbolTableBuilder.build(root);
+        table.getExprTypes().annotate(root, table);
+
+        int count = 0;
+        for (var expr : expressions(root)) {
+            assertEquals(expr.toString(), TypeUtils.computeExprType(expr, table, null),
+                    TypeUtils.getExprType(expr, table));
+            count++;
+        }
+        assertEquals(count, table.getExprTypes().size());
+    }
+
+    @Test
+    public void typesAreComputedOnce() {
+        var root = parse(CODE);
+        var table = JmmSymbolTableBuilder.build(root);
+
+        for (var expr : expressions(root)) {
+            var type = TypeUtils.getExprType(expr, table);
+            assertSame(type, TypeUtils.getExprType(expr, table));
+        }
+
+        var methodCall = root.getDescendants(Kind.METHOD_CALL).get(0);
+        assertEquals(new Type("int", false), TypeUtils.getExprType(methodCall, table));
+    }
+
+    @Test
+    public void undeclaredVariablesHaveNoType() {
+        var root = parse("class A { public int f() { return x; } }");
+        var table = JmmSymbolTableBuilder.build(root);
+        table.getExprTypes().annotate(root, table);
+
+        var x = root.getDescendants(Kind.VAR_REF_EXPR).get(0);
+        assertNull(TypeUtils.getExprType(x, table));
+        assertEquals(1, table.getExprTypes().size());
+    }
+
+    @Test
+    public void analysisAndCodeGenerationShareTypes() {
+        var code = """
+                class A {
+                    public int f(int a) {
+                        int i;
+                        A other;
+                        other = new A();
+                        i = other.g(a) + (a * 2);
+                        return i;
+                    }
+
+                    public int g(int x) {
+                        return x;
+                    }
+                }
+                """;
+        var semanticsResult = new JmmAnalysisImpl().semanticAnalysis(new JmmParserImpl().parse(code, Map.of()));
+        TestUtils.noErrors(semanticsResult.getReports());
+
+        var table = (JmmSymbolTable) semanticsResult.getSymbolTable();
+        int typed = table.getExprTypes().size();
+        assertTrue(typed > 0);
+
+        var ollirResult = new JmmOptimizationImpl().toOllir(semanticsResult);
+        TestUtils.noErrors(ollirResult.getReports());
+        assertSame(table, ollirResult.getSymbolTable());
+        // code generation found every expression type in the table
+        for (var expr : expressions(semanticsResult.getRootNode())) {
+            assertNotNull(expr.toString(), table.getExprTypes().get(expr, table));
+        }
+        assertEquals(typed, table.getExprTypes().size());
+    }
+
+    @Test
+    public void annotatesDeepExpressions() {
+        var root = parse(DeepExpressionGenerator.rightNestedParentheses(20_000));
+        var table = JmmSymbolTableBuilder.build(root);
+        table.getExprTypes().annotate(root, table);
+
+        var returned = NodeUtils.getDescendants(root, Kind.RETURN_STMT).get(0).getChild(0);
+        assertEquals(new Type("int", false), TypeUtils.getExprType(returned, table));
+    }
+}
@@ -0,0 +1,63 @@
+package pt.up.fe.comp2024.ast;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.*;
+
+public class IdentifiersTest {
+
+    @Test
+    public void givesDenseIdsInOrder() {
+        var identifiers = new Identifiers();
+
+        assertEquals(0, identifiers.getId("a"));
+        assertEquals(1, identifiers.getId("b"));
+        assertEquals(0, identifiers.getId(new String("a")));
+        assertEquals(2, identifiers.size());
+        assertEquals("b", identifiers.getName(1));
+        assertEquals(Identifiers.NO_ID, identifiers.find("c"));
+        assertEquals(2, identifiers.size());
+    }
+
+    @Test
+    public void internsToFirstInstance() {
+        var identifiers = new Identifiers();
+        var first = new String("name");
+
+        assertSame(first, identifiers.intern(first));
+        assertSame(first, identifiers.intern(new String("name")));
+        assertNull(identifiers.intern(null));
+    }
+
+    @Test
+    public void addsFromSeveralThreads() throws Exception {
+        var identifiers = new Identifiers();
+        int names = 10_000;
+
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            tasks.add(() -> {
+                for (int i = 0; i < names; i++) {
+                    var name = "v" + i;
+                    assertEquals(name, identifiers.getName(identifiers.getId(name)));
+                }
+                return null;
+            });
+        }
+        var executor = Executors.newFixedThreadPool(4);
+        try {
+            for (var future : executor.invokeAll(tasks)) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        assertEquals(names, identifiers.size());
+    }
+}
@@ -0,0 +1,92 @@
+package pt.up.fe.comp2024.ast;
+
+import org.junit.Test;
+import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp.jmm.ast.PreorderJmmVisitor;
+import pt.up.fe.comp2024.parser.JmmParserImpl;
+import pt.up.fe.comp2024.stress.DeepExpressionGenerator;
+import pt.up.fe.specs.util.SpecsIo;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class IterativePreorderJmmVisitorTest {
+
+    /**
+     * Records the order of the visits and computes the height of each subtree through the reduce.
+     */
+    private static class Recorder {
+
+        private final List<String> visits = new ArrayList<>();
+
+        void build(PreorderJmmVisitor<Void, Integer> visitor) {
+            visitor.setDefaultVisit((node, unused) -> {
+                visits.add(node.getKind());
+                return 1;
+            });
+            visitor.setReduce((nodeResult, childrenResults) ->
+                    nodeResult + childrenResults.stream().mapToInt(Integer::intValue).max().orElse(0));
+        }
+    }
+
+    private static class Recursive extends PreorderJmmVisitor<Void, Integer> {
+
+        private final Recorder recorder = new Recorder();
+
+        Recursive() {
+            // buildVisitor runs in the super constructor, before the recorder exists
+            recorder.build(this);
+        }
+
+        @Override
+        protected void buildVisitor() {
+        }
+    }
+
+    private static class Iterative extends IterativePreorderJmmVisitor<Void, Integer> {
+
+        private final Recorder recorder = new Recorder();
+
+        Iterative() {
+            // buildVisitor runs in the super constructor, before the recorder exists
+            recorder.build(this);
+        }
+
+        @Override
+        protected void buildVisitor() {
+        }
+    }
+
+    @Test
+    public void visitsInSameOrderAsPreorderVisitor() {
+        var root = parse(SpecsIo.getResource("pt/up/fe/comp2024/parser/warmup.jmm"));
+
+        var recursive = new Recursive();
+        var iterative = new Iterative();
+        int recursiveHeight = recursive.visit(root);
+        int iterativeHeight = iterative.visit(root);
+
+        assertEquals(recursive.recorder.visits, iterative.recorder.visits);
+        assertEquals(recursiveHeight, iterativeHeight);
+    }
+
+    @Test
+    public void visitsDeepTree() {
+        int terms = 100_000;
+        var root = parse(DeepExpressionGenerator.operatorChain(terms));
+
+        var iterative = new Iterative();
+        int height = iterative.visit(root);
+
+        assertEquals(NodeUtils.countNodes(root), iterative.recorder.visits.size());
+        // products bind tighter, the chain has a level per addition and subtraction
+        assertTrue(height > terms / 2);
+    }
+
+    private static JmmNode parse(String code) {
+        return new JmmParserImpl().parse(code, Map.of()).getRootNode();
+    }
+}
@@ -0,0 +1,193 @@
+package pt.up.fe.comp2024.ast;
+
+import org.junit.Test;
+import pt.up.fe.comp.TestUtils;
+import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp2024.parser.JmmParserImpl;
+import pt.up.fe.comp2024.symboltable.JmmSymbolTableBuilder;
+import pt.up.fe.specs.util.SpecsIo;
+
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class TypedNodeTest {
+
+    private static final Map<String, String> TYPED = Map.of("typedAst", "true");
+    private static final Map<String, String> IMPL = Map.of("typedAst", "false");
+
+    private static final String CODE = """
+            import io;
+            import a.b.C;
+            class A extends C {
+                int[] values;
+                boolean ready;
+
+                public int f(int a, int... rest) {
+                    int i;
+                    i = 0;
+                    while (i < a && !ready) {
+                        values[i] = this.g(i) * 2 + rest.length;
+                        i++;
+                    }
+                    return values[0];
+                }
+
+                int g(int x) { return x; }
+
+                public static void main(String[] args) {
+                    io.println(new A().f(1, 2, 3));
+                }
+            }
+            """;
+
+    /**
+     * Kinds, hierarchies, attributes and positions of the tree, with attributes in a fixed order.
+     */
+    private static String dump(JmmNode node) {
+        var code = new StringBuilder();
+        code.append(node.getHierarchy()).append(node.getAttributes().stream()
+                .sorted()
+                .map(attr -> attr + "=" + node.getObject(attr))
+                .toList()).append("\n");
+        node.getChildren().forEach(child -> code.append(dump(child)));
+        return code.toString();
+    }
+
+    @Test
+    public void buildsSameTreeAsConverter() {
+        var expected = new JmmParserImpl().parse(CODE, IMPL).getRootNode();
+        var typed = new JmmParserImpl().parse(CODE, TYPED).getRootNode();
+
+        assertTrue(typed instanceof TypedJmmNode);
+        assertEquals(dump(expected), dump(typed));
+    }
+
+    @Test
+    public void buildsSameTreeForTestPrograms() {
+        for (var file : new String[]{"pt/up/fe/comp/cp2/apps/Simple.jmm", "pt/up/fe/comp/cp2/apps/HelloWorld.jmm"}) {
+            var code = SpecsIo.getResource(file);
+            var expected = new JmmParserImpl().parse(code, IMPL).getRootNode();
+            var typed = new JmmParserImpl().parse(code, TYPED).getRootNode();
+            assertEquals(file, dump(expected), dump(typed));
+        }
+    }
+
+    @Test
+    public void kindsComeFromTheTag() {
+        var root = new JmmParserImpl().parse(CODE, TYPED).getRootNode();
+
+        for (var node : root.getDescendants()) {
+            var typed = ((TypedJmmNode) node).getTypedNode();
+            assertSame(typed.getKind(), Kind.of(node));
+            assertTrue(typed.getKind().check(node));
+            assertSame(Kind.fromString(node.getKind()), typed.getKind());
+        }
+
+        // names from the source are shared
+        var names = root.getDescendants(Kind.VAR_REF_EXPR).stream()
+                .map(ref -> ref.get("name"))
+                .filter(name -> name.equals("i"))
+                .toList();
+        assertTrue(names.size() > 1);
+        names.forEach(name -> assertSame(names.get(0), name));
+    }
+
+    @Test
+    public void symbolTableFromTypedTree() {
+        var expected = JmmSymbolTableBuilder.build(new JmmParserImpl().parse(CODE, IMPL).getRootNode());
+        var typed = JmmSymbolTableBuilder.build(new JmmParserImpl().parse(CODE, TYPED).getRootNode());
+
+        assertEquals(expected.getClassName(), typed.getClassName());
+        assertEquals(expected.getSuper(), typed.getSuper());
+        assertEquals(expected.getImports(), typed.getImports());
+        assertEquals(expected.getFields(), typed.getFields());
+        assertEquals(expected.getMethods(), typed.getMethods());
+        for (var method : expected.getMethods()) {
+            assertEquals(expected.getParameters(method), typed.getParameters(method));
+            assertEquals(expected.getLocalVariables(method), typed.getLocalVariables(method));
+            assertEquals(expected.getReturnType(method), typed.getReturnType(method));
+        }
+    }
+
+    @Test
+    public void editsThroughAdapter() {
+        var root = new JmmParserImpl().parse(CODE, TYPED).getRootNode();
+        var classDecl = root.getChildren(Kind.CLASS_DECLARATION).get(0);
+        int numChildren = classDecl.getNumChildren();
+
+        var g = classDecl.getChildren(Kind.METHOD_DECLARATION).get(1);
+        assertEquals("g", g.get("name"));
+
+        var copy = g.copy();
+        copy.put("name", "h");
+        classDecl.add(copy);
+        assertEquals(numChildren + 1, classDecl.getNumChildren());
+        assertSame(classDecl, copy.getParent());
+        assertEquals(dump(g).replace("name=g", "name=h"), dump(copy));
+
+        g.detach();
+        assertNull(g.getParent());
+        assertEquals(numChildren, classDecl.getNumChildren());
+        assertFalse(classDecl.getChildren().contains(g));
+
+        copy.put("lineStart", "42");
+        assertEquals("42", copy.get("lineStart"));
+        assertEquals(42, ((TypedJmmNode) copy).getTypedNode().getLineStart());
+    }
+
+    /**
+     * Records the kinds of the nodes it visits, expressions through the visit of their super kind.
+     */
+    private static class KindLog extends IterativePreorderJmmVisitor<StringBuilder, Void> {
+        @Override
+        protected void buildVisitor() {
+            addVisit(Kind.VAR_REF_EXPR, this::log);
+            addVisit(Kind.METHOD_DECLARATION, this::log);
+            addVisit("Expression", (node, log) -> {
+                log.append("Expr:");
+                return log(node, log);
+            });
+            setDefaultVisit((node, log) -> null);
+        }
+
+        private Void log(JmmNode node, StringBuilder log) {
+            log.append(node.getKind()).append("\n");
+            return null;
+        }
+    }
+
+    @Test
+    public void visitsDispatchOnTheKind() {
+        var expected = new StringBuilder();
+        new KindLog().visit(new JmmParserImpl().parse(CODE, IMPL).getRootNode(), expected);
+        var typed = new StringBuilder();
+        new KindLog().visit(new JmmParserImpl().parse(CODE, TYPED).getRootNode(), typed);
+
+        assertTrue(expected.toString().contains("Expr:BinaryExpr"));
+        assertEquals(expected.toString(), typed.toString());
+    }
+
+    @Test
+    public void newNodesMatchTheTree() {
+        var typedRoot = new JmmParserImpl().parse(CODE, TYPED).getRootNode();
+        var root = new JmmParserImpl().parse(CODE, IMPL).getRootNode();
+
+        var typedNode = NodeUtils.newNode(Kind.INTEGER_LITERAL, typedRoot);
+        assertTrue(typedNode instanceof TypedJmmNode);
+        assertSame(Kind.INTEGER_LITERAL, Kind.of(typedNode));
+        typedRoot.add(typedNode);
+        assertSame(typedRoot, typedNode.getParent());
+
+        var node = NodeUtils.newNode(Kind.INTEGER_LITERAL, root);
+        assertFalse(node instanceof TypedJmmNode);
+        assertEquals(Kind.INTEGER_LITERAL.getNodeName(), node.getKind());
+    }
+
+    @Test
+    public void compilesTypedTree() {
+        var code = SpecsIo.getResource("pt/up/fe/comp/cp2/apps/HelloWorld.jmm");
+        var result = TestUtils.optimize(code, TYPED);
+        TestUtils.noErrors(result.getReports());
+    }
+}
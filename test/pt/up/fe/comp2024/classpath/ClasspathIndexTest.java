@@ -0,0 +1,145 @@
+package pt.up.fe.comp2024.classpath;
+
+import org.junit.Test;
+import pt.up.fe.comp.TestUtils;
+import pt.up.fe.comp.jmm.analysis.table.Type;
+import pt.up.fe.comp2024.analysis.JmmAnalysisImpl;
+import pt.up.fe.comp2024.parser.JmmParserImpl;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.Assert.*;
+
+public class ClasspathIndexTest {
+
+    private static final Path COMPILED = Path.of("libs-jmm/compiled");
+
+    private static String signatures(ClasspathIndex index, String className, String methodName) {
+        return index.findMethods(className, methodName).stream()
+                .map(method -> method.name() + method.descriptor() + (method.isStatic() ? " static" : ""))
+                .toList()
+                .toString();
+    }
+
+    @Test
+    public void readsMethodsFromClassFiles() {
+        var index = ClasspathIndex.scan(List.of(COMPILED));
+
+        assertTrue(index.find("io").isPresent());
+        assertEquals("foo.bar.A", index.find("foo.bar.A").get().name());
+        assertEquals("inheritanceAB.A", index.find("inheritanceAB.B").get().superName());
+        assertEquals("java.lang.Object", index.find("io").get().superName());
+
+        assertEquals("[read()I static]", signatures(index, "io", "read"));
+        assertEquals(5, index.findMethods("io", "println").size());
+        assertEquals("[foo()Ljava/lang/String; static]", signatures(index, "foo.bar.A", "foo"));
+    }
+
+    @Test
+    public void findsInheritedMethods() {
+        var index = ClasspathIndex.scan(List.of(COMPILED, Path.of("build/classes/java/main")));
+
+        assertEquals("[a()I]", signatures(index, "inheritanceAB.B", "a"));
+        // declared in a superclass only, read from class files of a recent Java version
+        assertEquals("[getVisitedKinds()Ljava/util/Set;]",
+                signatures(index, "pt.up.fe.comp2024.analysis.passes.UndeclaredVariable", "getVisitedKinds"));
+        assertEquals("[<init>()V]", signatures(index, "inheritanceAB.B", "<init>"));
+        assertTrue(index.findMethods("inheritanceAB.B", "missing").isEmpty());
+    }
+
+    @Test
+    public void convertsDescriptors() {
+        var method = new MethodInfo("m", "([I[[Ljava/lang/String;Z)Lfoo/Bar;", 0x0009);
+
+        assertTrue(method.isStatic());
+        assertEquals(List.of(new Type("int", true), new Type("String", true), new Type("boolean", false)),
+                method.getParameterTypes());
+        assertEquals(new Type("Bar", false), method.getReturnType());
+        assertEquals(new Type("void", false), new MethodInfo("v", "()V", 0).getReturnType());
+    }
+
+    @Test
+    public void readsJars() throws IOException {
+        var jar = Files.createTempFile("classpath-index", ".jar");
+        try (var output = new ZipOutputStream(Files.newOutputStream(jar))) {
+            for (var name : List.of("io.class", "foo/bar/A.class")) {
+                output.putNextEntry(new ZipEntry(name));
+                output.write(Files.readAllBytes(COMPILED.resolve(name)));
+                output.closeEntry();
+            }
+        }
+
+        try {
+            var index = ClasspathIndex.scan(List.of(jar));
+            assertEquals(2, index.size());
+            assertEquals(signatures(ClasspathIndex.scan(List.of(COMPILED)), "foo.bar.A", "fooInt"),
+                    signatures(index, "foo.bar.A", "fooInt"));
+        } finally {
+            Files.delete(jar);
+        }
+    }
+
+    @Test
+    public void cachesUntilClassesChange() throws IOException {
+        var directory = Files.createTempDirectory("classpath-index");
+        var classFile = directory.resolve("io.class");
+        Files.copy(COMPILED.resolve("io.class"), classFile);
+
+        try {
+            var first = ClasspathIndex.load(List.of(directory));
+            assertSame(first, ClasspathIndex.load(List.of(directory)));
+
+            // what a later compilation reads instead of the class files
+            var cacheFile = directory.resolve("index.idx");
+            long stamp = ClasspathIndex.stamp(List.of(directory.toAbsolutePath().normalize()));
+            ClasspathIndex.writeCache(first, cacheFile);
+            var cached = ClasspathIndex.readCache(cacheFile, stamp).orElseThrow();
+            assertEquals(signatures(first, "io", "println"), signatures(cached, "io", "println"));
+            assertTrue(ClasspathIndex.readCache(cacheFile, stamp + 1).isEmpty());
+
+            Files.setLastModifiedTime(classFile, FileTime.fromMillis(Files.getLastModifiedTime(classFile).toMillis()
+                    + 10_000));
+            assertNotSame(first, ClasspathIndex.load(List.of(directory)));
+        } finally {
+            try (var files = Files.list(directory)) {
+                for (var file : files.toList()) {
+                    Files.delete(file);
+                }
+            }
+            Files.delete(directory);
+        }
+    }
+
+    @Test
+    public void analysisUsesDeclaredReturnTypes() {
+        var code = """
+                import io;
+                import foo.bar.A;
+                class C {
+                    public int f() {
+                        int a;
+                        boolean b;
+                        a = io.read();
+                        a = A.fooInt();
+                        b = io.read();
+                        return a;
+                    }
+                }
+                """;
+        var result = new JmmAnalysisImpl().semanticAnalysis(new JmmParserImpl().parse(code, Map.of()));
+        assertEquals(1, TestUtils.getNumErrors(result.getReports()));
+        assertEquals(9, result.getReports().get(0).getLine());
+
+        // without the classes, calls on imported classes are not checked
+        var unchecked = new JmmAnalysisImpl().semanticAnalysis(new JmmParserImpl().parse(code,
+                Map.of("classpath", "")));
+        TestUtils.noErrors(unchecked.getReports());
+    }
+}
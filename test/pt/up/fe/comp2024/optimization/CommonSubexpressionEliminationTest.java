@@ -0,0 +1,129 @@
+package pt.up.fe.comp2024.optimization;
+
+import org.junit.Test;
+import pt.up.fe.comp.jmm.ollir.OllirUtils;
+import pt.up.fe.comp2024.optimization.passes.CommonSubexpressionElimination;
+
+import static org.junit.Assert.*;
+
+public class CommonSubexpressionEliminationTest {
+
+    private static String method(String body) {
+        return """
+                A {
+                .field public f.i32;
+                .method public m(a.array.i32, i.i32, n.i32).i32 {
+                """ + body + """
+                }
+                .construct A().V {
+                invokespecial(this, "<init>").V;
+                }
+                }
+                """;
+    }
+
+    private static String cse(String body) {
+        var optimized = new CommonSubexpressionElimination().apply(method(body), null);
+        // optimized code must still be valid OLLIR
+        OllirUtils.parse(optimized);
+        return optimized;
+    }
+
+    @Test
+    public void reusesArrayLoadInSameBlock() {
+        var code = cse("""
+                tmp0.i32 :=.i32 a.array.i32[i.i32].i32;
+                tmp1.i32 :=.i32 a.array.i32[i.i32].i32;
+                tmp2.i32 :=.i32 tmp0.i32 +.i32 tmp1.i32;
+                ret.i32 tmp2.i32;
+                """);
+
+        assertFalse(code.contains("tmp1"));
+        assertTrue(code.contains("tmp2.i32 :=.i32 tmp0.i32 +.i32 tmp0.i32;"));
+    }
+
+    @Test
+    public void reusesCommutedOperation() {
+        var code = cse("""
+                tmp0.i32 :=.i32 i.i32 +.i32 n.i32;
+                tmp1.i32 :=.i32 n.i32 +.i32 i.i32;
+                tmp2.i32 :=.i32 tmp0.i32 *.i32 tmp1.i32;
+                ret.i32 tmp2.i32;
+                """);
+
+        assertFalse(code.contains("tmp1"));
+    }
+
+    @Test
+    public void assignmentKillsExpression() {
+        var code = cse("""
+                tmp0.i32 :=.i32 i.i32 +.i32 n.i32;
+                i.i32 :=.i32 tmp0.i32;
+                tmp1.i32 :=.i32 i.i32 +.i32 n.i32;
+                ret.i32 tmp1.i32;
+                """);
+
+        assertTrue(code.contains("tmp1.i32 :=.i32 i.i32 +.i32 n.i32;"));
+    }
+
+    @Test
+    public void arrayStoreAndCallKillArrayLoads() {
+        var code = cse("""
+                tmp0.i32 :=.i32 a.array.i32[i.i32].i32;
+                a.array.i32[n.i32].i32 :=.i32 0.i32;
+                tmp1.i32 :=.i32 a.array.i32[i.i32].i32;
+                invokestatic(io, "println", tmp1.i32).V;
+                tmp2.i32 :=.i32 a.array.i32[i.i32].i32;
+                tmp3.i32 :=.i32 arraylength(a.array.i32).i32;
+                tmp4.i32 :=.i32 arraylength(a.array.i32).i32;
+                tmp5.i32 :=.i32 tmp0.i32 +.i32 tmp1.i32;
+                tmp6.i32 :=.i32 tmp2.i32 +.i32 tmp3.i32;
+                tmp7.i32 :=.i32 tmp5.i32 +.i32 tmp6.i32;
+                tmp8.i32 :=.i32 tmp7.i32 +.i32 tmp4.i32;
+                ret.i32 tmp8.i32;
+                """);
+
+        assertTrue(code.contains("tmp1.i32 :=.i32 a.array.i32[i.i32].i32;"));
+        assertTrue(code.contains("tmp2.i32 :=.i32 a.array.i32[i.i32].i32;"));
+        // array lengths cannot change
+        assertFalse(code.contains("tmp4"));
+    }
+
+    @Test
+    public void reusesDominatingExpressionInBranches() {
+        var code = cse("""
+                tmp0.i32 :=.i32 i.i32 *.i32 n.i32;
+                tmp1.bool :=.bool i.i32 <.bool n.i32;
+                if (tmp1.bool) goto then0;
+                tmp2.i32 :=.i32 i.i32 *.i32 n.i32;
+                ret.i32 tmp2.i32;
+                then0:
+                tmp3.i32 :=.i32 i.i32 *.i32 n.i32;
+                ret.i32 tmp3.i32;
+                """);
+
+        assertFalse(code.contains("tmp2"));
+        assertFalse(code.contains("tmp3"));
+        assertTrue(code.contains("ret.i32 tmp0.i32;"));
+    }
+
+    @Test
+    public void doesNotReuseAcrossLoopThatRedefinesOperand() {
+        var code = cse("""
+                tmp0.i32 :=.i32 i.i32 *.i32 n.i32;
+                cond0:
+                tmp1.bool :=.bool i.i32 <.bool n.i32;
+                if (tmp1.bool) goto body0;
+                goto end0;
+                body0:
+                tmp2.i32 :=.i32 i.i32 *.i32 n.i32;
+                tmp3.i32 :=.i32 i.i32 +.i32 1.i32;
+                i.i32 :=.i32 tmp3.i32;
+                goto cond0;
+                end0:
+                ret.i32 tmp0.i32;
+                """);
+
+        assertTrue(code.contains("tmp2.i32 :=.i32 i.i32 *.i32 n.i32;"));
+    }
+}
@@ -0,0 +1,63 @@
+package pt.up.fe.comp2024.optimization;
+
+import org.junit.Test;
+import pt.up.fe.comp.TestUtils;
+
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class DeadMemberEliminationTest {
+
+    private static final String CODE = """
+            class A {
+                int used;
+                int unused;
+                public int run() {
+                    used = this.helper(2);
+                    return used;
+                }
+                int helper(int a) {
+                    return this.inner(a);
+                }
+                int inner(int a) {
+                    return a;
+                }
+                int dead(int a) {
+                    return this.deader(a);
+                }
+                int deader(int a) {
+                    unused = a;
+                    return a;
+                }
+                public static void main(String[] args) {
+                }
+            }
+            """;
+
+    private static String optimize(String level) {
+        var result = TestUtils.optimize(CODE, Map.of("optimize", level));
+        TestUtils.noErrors(result);
+        return result.getOllirCode();
+    }
+
+    @Test
+    public void removesUnreachableMethodsAndUnusedFields() {
+        var code = optimize("2");
+
+        assertTrue(code.contains(" helper("));
+        assertTrue(code.contains(" inner("));
+        assertTrue(code.contains("used.i32"));
+        assertFalse(code.contains(" dead("));
+        assertFalse(code.contains(" deader("));
+        assertFalse(code.contains("unused"));
+    }
+
+    @Test
+    public void keepsEverythingBelowLevelTwo() {
+        var code = optimize("true");
+
+        assertTrue(code.contains(" dead("));
+        assertTrue(code.contains("unused"));
+    }
+}
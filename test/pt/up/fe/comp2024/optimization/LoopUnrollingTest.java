@@ -0,0 +1,98 @@
+package pt.up.fe.comp2024.optimization;
+
+import org.junit.Test;
+import pt.up.fe.comp.TestUtils;
+
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class LoopUnrollingTest {
+
+    private static final String CODE = """
+            import io;
+            class A {
+                public int small(int[] a) {
+                    int i;
+                    int s;
+                    s = 0;
+                    i = 0;
+                    while (i < 3) {
+                        s = s + a[i];
+                        i = i + 1;
+                    }
+                    return s;
+                }
+                public int large(int n) {
+                    int i;
+                    int s;
+                    s = 0;
+                    for (i = 10; i > 0; i--) {
+                        s = s + i * n;
+                    }
+                    io.println(s + i);
+                    return s;
+                }
+                public static void main(String[] args) {
+                    A a;
+                    int x;
+                    a = new A();
+                    x = a.large(2);
+                }
+            }
+            """;
+
+    private static String optimize() {
+        var result = TestUtils.optimize(CODE, Map.of("optimize", "true"));
+        TestUtils.noErrors(result);
+        return result.getOllirCode();
+    }
+
+    @Test
+    public void fullyUnrollsShortLoops() {
+        var small = method(optimize(), "small");
+
+        assertFalse(small.contains("goto"));
+        assertTrue(small.contains("[2.i32]"));
+        assertTrue(small.contains("i.i32 :=.i32 3.i32;"));
+    }
+
+    @Test
+    public void partiallyUnrollsLongLoops() {
+        var large = method(optimize(), "large");
+
+        // ten iterations, two passes of four and the two remaining ones after the loop
+        assertTrue(large.contains(">.bool 2.i32"));
+        assertTrue(large.contains("2.i32 *.i32 n.i32"));
+        assertTrue(large.contains("1.i32 *.i32 n.i32"));
+        assertTrue(large.contains("i.i32 :=.i32 0.i32;"));
+    }
+
+    @Test
+    public void unrolledCodeComputesTheSameValues() {
+        var result = TestUtils.backend(CODE, Map.of("optimize", "true"));
+        TestUtils.noErrors(result);
+
+        assertEquals("110", result.run().trim());
+    }
+
+    @Test
+    public void unrollsTypedTrees() {
+        // the nodes the unrolling adds must be typed nodes as well
+        for (var level : new String[]{"true", "2"}) {
+            var config = Map.of("typedAst", "true", "optimize", level);
+            var ollirResult = TestUtils.optimize(CODE, config);
+            TestUtils.noErrors(ollirResult);
+            assertFalse(method(ollirResult.getOllirCode(), "small").contains("goto"));
+
+            var result = TestUtils.backend(CODE, config);
+            TestUtils.noErrors(result);
+            assertEquals("110", result.run().trim());
+        }
+    }
+
+    private static String method(String code, String name) {
+        int start = code.indexOf(" " + name + "(");
+        return code.substring(start, code.indexOf("\n}", start));
+    }
+}
@@ -0,0 +1,67 @@
+package pt.up.fe.comp2024.optimization;
+
+import org.junit.Test;
+import pt.up.fe.comp.TestUtils;
+
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class PartialEvaluationTest {
+
+    private static final String CODE = """
+            import io;
+            class A {
+                int f;
+                public int sq(int b) {
+                    return b * b;
+                }
+                public int twice(int b) {
+                    int r;
+                    r = this.sq(b);
+                    return r + r;
+                }
+                public int get(int b) {
+                    return f;
+                }
+                public int run(int n) {
+                    int x;
+                    int y;
+                    int z;
+                    x = this.twice(3);
+                    y = this.get(1);
+                    z = this.sq(n);
+                    return x;
+                }
+                public static void main(String[] args) {
+                }
+            }
+            """;
+
+    private static String optimize(String optimize) {
+        var result = TestUtils.optimize(CODE, Map.of("optimize", optimize));
+        TestUtils.noErrors(result);
+        return result.getOllirCode();
+    }
+
+    @Test
+    public void evaluatesPureCallsWithConstantArguments() {
+        var code = optimize("true");
+
+        assertFalse(code.contains("\"twice\", 3.i32"));
+        assertTrue(code.contains(":=.i32 18.i32;"));
+    }
+
+    @Test
+    public void keepsImpureAndNonConstantCalls() {
+        var code = optimize("true");
+
+        assertTrue(code.contains("\"get\", 1.i32"));
+        assertTrue(code.contains("\"sq\", n.i32"));
+    }
+
+    @Test
+    public void disabledWithoutOptimizeFlag() {
+        assertTrue(optimize("false").contains("\"twice\", 3.i32"));
+    }
+}
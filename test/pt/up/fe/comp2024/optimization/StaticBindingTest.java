@@ -0,0 +1,79 @@
+package pt.up.fe.comp2024.optimization;
+
+import org.junit.Test;
+import pt.up.fe.comp.TestUtils;
+import pt.up.fe.comp2024.optimization.passes.StaticBinding;
+import pt.up.fe.comp2024.symboltable.JmmSymbolTableBuilder;
+
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class StaticBindingTest {
+
+    private static final String CODE = """
+            import io;
+            class A {
+                int f;
+                public int run(int n) {
+                    int r;
+                    r = this.helper(n);
+                    io.println(r);
+                    return r;
+                }
+                int helper(int a) {
+                    int r;
+                    r = this.inner(a);
+                    return r + 1;
+                }
+                int inner(int a) {
+                    return a * 2;
+                }
+                int store(int a) {
+                    f = a;
+                    return a;
+                }
+                public static void main(String[] args) {
+                    A a;
+                    int x;
+                    a = new A();
+                    x = a.run(5);
+                }
+            }
+            """;
+
+    @Test
+    public void promotesMethodsThatDoNotUseThis() {
+        var result = TestUtils.optimize(CODE, Map.of("optimize", "true"));
+        TestUtils.noErrors(result);
+        var code = result.getOllirCode();
+
+        assertTrue(code.contains("final A {"));
+        assertTrue(code.contains(".method static helper("));
+        assertTrue(code.contains(".method static inner("));
+        assertTrue(code.contains("invokestatic(A, \"helper\""));
+        assertTrue(code.contains("invokestatic(A, \"inner\""));
+        assertTrue(code.contains(".method public final run("));
+        assertTrue(code.contains(".method final store("));
+    }
+
+    @Test
+    public void staticallyBoundCodeRuns() {
+        var result = TestUtils.backend(CODE, Map.of("optimize", "true"));
+        TestUtils.noErrors(result);
+
+        assertTrue(result.getJasminCode().contains(".class public final A"));
+        assertEquals("11", result.run().trim());
+    }
+
+    @Test
+    public void keepsVirtualCallsWhenClassExtendsAnother() {
+        var ollirCode = TestUtils.optimize(CODE).getOllirCode();
+        var root = TestUtils.parse(CODE.replace("class A {", "class A extends B {")).getRootNode();
+
+        var code = new StaticBinding().apply(ollirCode, JmmSymbolTableBuilder.build(root));
+
+        assertFalse(code.contains("invokestatic(A"));
+        assertTrue(code.contains(".method final helper("));
+    }
+}
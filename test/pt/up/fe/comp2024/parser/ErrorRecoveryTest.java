@@ -0,0 +1,109 @@
+package pt.up.fe.comp2024.parser;
+
+import org.junit.Test;
+import pt.up.fe.comp.TestUtils;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp.jmm.report.ReportType;
+import pt.up.fe.comp.jmm.report.Stage;
+import pt.up.fe.comp2024.analysis.JmmAnalysisImpl;
+import pt.up.fe.comp2024.ast.Kind;
+import pt.up.fe.specs.util.SpecsIo;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class ErrorRecoveryTest {
+
+    private static final Map<String, String> RECOVER = Map.of("errorRecovery", "true");
+
+    private static final String CODE = """
+            import io;
+            class A {
+                int x;
+                public int f(int a) {
+                    int b;
+                    b = a + ;
+                    return b;
+                }
+                public int g(int a) {
+                    return a * 2;
+                }
+                public int h(int a) {
+                    a = (a + 1;
+                    return a
+                }
+                public int k(int a) {
+                    return true;
+                }
+            }
+            """;
+
+    private static List<String> methodNames(Map<String, String> config) {
+        var root = new JmmParserImpl().parse(CODE, config).getRootNode();
+        return root.getDescendants(Kind.METHOD_DECLARATION).stream()
+                .map(method -> method.get("name"))
+                .toList();
+    }
+
+    private static List<Integer> errorLines(List<Report> reports, Stage stage) {
+        return reports.stream()
+                .filter(report -> report.getType() == ReportType.ERROR && report.getStage() == stage)
+                .map(Report::getLine)
+                .toList();
+    }
+
+    @Test
+    public void reportsEverySyntaxError() {
+        var result = new JmmParserImpl().parse(CODE, RECOVER);
+
+        assertEquals(List.of(6, 13, 15), errorLines(result.getReports(), Stage.SYNTATIC));
+        result.getReports().forEach(report -> assertTrue(report.getColumn() >= 0));
+    }
+
+    @Test
+    public void keepsMembersThatParsed() {
+        assertEquals(List.of("g", "k"), methodNames(RECOVER));
+        assertEquals(List.of("g", "k"), methodNames(Map.of("errorRecovery", "true", "typedAst", "true")));
+
+        var root = new JmmParserImpl().parse(CODE, RECOVER).getRootNode();
+        assertEquals(1, root.getDescendants(Kind.IMPORT_DECL).size());
+        assertEquals(1, root.getDescendants(Kind.CLASS_DECLARATION).get(0).getChildren(Kind.VAR_DECL).size());
+    }
+
+    @Test
+    public void analysesPartialTree() {
+        var parserResult = new JmmParserImpl().parse(CODE, RECOVER);
+        var semanticsResult = new JmmAnalysisImpl().semanticAnalysis(parserResult);
+
+        assertEquals(List.of(6, 13, 15), errorLines(semanticsResult.getReports(), Stage.SYNTATIC));
+        assertTrue(errorLines(semanticsResult.getReports(), Stage.SEMANTIC).contains(17));
+    }
+
+    @Test
+    public void noTreeWithoutRecovery() {
+        var result = new JmmParserImpl().parse(CODE, Map.of());
+
+        assertNull(result.getRootNode());
+        assertEquals(List.of(6, 13, 15), errorLines(result.getReports(), Stage.SYNTATIC));
+    }
+
+    @Test
+    public void noTreeWhenClassIsMalformed() {
+        var result = new JmmParserImpl().parse("class { public int f() { return 1; } }", RECOVER);
+
+        assertNull(result.getRootNode());
+        assertTrue(TestUtils.getNumErrors(result.getReports()) > 0);
+    }
+
+    @Test
+    public void validProgramsAreUnchanged() {
+        var code = SpecsIo.getResource("pt/up/fe/comp/cp2/apps/Simple.jmm");
+        var expected = new JmmParserImpl().parse(code, Map.of());
+        var result = new JmmParserImpl().parse(code, RECOVER);
+
+        TestUtils.noErrors(result.getReports());
+        assertEquals(expected.getRootNode().toTree(), result.getRootNode().toTree());
+    }
+}
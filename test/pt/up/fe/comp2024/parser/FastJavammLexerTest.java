@@ -0,0 +1,147 @@
+package pt.up.fe.comp2024.parser;
+
+import org.antlr.v4.runtime.ANTLRInputStream;
+import org.antlr.v4.runtime.BaseErrorListener;
+import org.antlr.v4.runtime.Lexer;
+import org.antlr.v4.runtime.RecognitionException;
+import org.antlr.v4.runtime.Recognizer;
+import org.antlr.v4.runtime.Token;
+import org.junit.Test;
+import pt.up.fe.comp.TestUtils;
+import pt.up.fe.comp2024.JavammLexer;
+import pt.up.fe.comp2024.stress.DeepExpressionGenerator;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+public class FastJavammLexerTest {
+
+    private static final Map<String, String> FAST = Map.of("fastLexer", "true");
+
+    /**
+     * Inputs on the edges of the rules of the grammar.
+     */
+    private static final String[] EDGE_CASES = {
+            "",
+            "   \t\r\n\f  ",
+            "classy class class1 $_a9 _ $ String main length lengths",
+            "0 00 0123 1a 12abc 9 007",
+            ". .. ... .... , ! != = == < <= > >= += -= *= /= ++ -- +++ ---",
+            "a && b & c &",
+            "&&&",
+            "a /* comment */ b /** / * */ c",
+            "a // comment\nb",
+            "a // comment without newline",
+            "a /* comment without end",
+            "a /*/ b",
+            "a /**/ b",
+            "x / y /= z",
+            "fun\u00e7\u00e3o # @ ` \\ ~ | ^ ?",
+            "a\n#\n  @@\r\nb",
+            "&\n&",
+            "int a;\r\nint b;\r\n",
+    };
+
+    private static List<String> tokens(Function<ANTLRInputStream, Lexer> factory, String code) {
+        var lexer = factory.apply(new ANTLRInputStream(code));
+        lexer.removeErrorListeners();
+
+        List<String> tokens = new ArrayList<>();
+        lexer.addErrorListener(new BaseErrorListener() {
+            @Override
+            public void syntaxError(Recognizer<?, ?> recognizer, Object offendingSymbol, int line,
+                                    int charPositionInLine, String msg, RecognitionException e) {
+                tokens.add("error " + line + ":" + charPositionInLine + " " + msg);
+            }
+        });
+
+        Token token;
+        do {
+            token = lexer.nextToken();
+            tokens.add(token.getType() + " '" + token.getText() + "' " + token.getStartIndex() + "-"
+                    + token.getStopIndex() + " " + token.getLine() + ":" + token.getCharPositionInLine() + " "
+                    + token.getChannel());
+        } while (token.getType() != Token.EOF);
+
+        return tokens;
+    }
+
+    private static void assertSameTokens(String code) {
+        assertEquals(code, tokens(JavammLexer::new, code), tokens(FastJavammLexer::new, code));
+    }
+
+    @Test
+    public void sameTokensOnEdgeCases() {
+        for (var code : EDGE_CASES) {
+            assertSameTokens(code);
+        }
+    }
+
+    @Test
+    public void sameTokensOnTestPrograms() throws IOException {
+        List<Path> files;
+        try (var paths = Files.walk(Path.of("test"))) {
+            files = paths.filter(path -> path.toString().endsWith(".jmm")).collect(Collectors.toList());
+        }
+
+        assertFalse(files.isEmpty());
+        for (var file : files) {
+            assertSameTokens(Files.readString(file));
+        }
+    }
+
+    @Test
+    public void sameTokensOnRandomInput() {
+        var random = new Random(42);
+        var pieces = new ArrayList<String>();
+        for (int type = 1; type <= JavammLexer.VOCABULARY.getMaxTokenType(); type++) {
+            var literal = JavammLexer.VOCABULARY.getLiteralName(type);
+            if (literal != null) {
+                pieces.add(literal.substring(1, literal.length() - 1));
+            }
+        }
+        pieces.addAll(List.of("a", "b1", "$", "_", "0", "12", " ", "\n", "\t", "/*", "*/", "//", "&", "#", "\u00e7"));
+
+        for (int i = 0; i < 500; i++) {
+            var code = new StringBuilder();
+            int length = random.nextInt(40);
+            for (int j = 0; j < length; j++) {
+                code.append(pieces.get(random.nextInt(pieces.size())));
+                // pieces are glued together most of the time, so that they also form longer tokens
+                if (random.nextInt(4) == 0) {
+                    code.append(' ');
+                }
+            }
+            assertSameTokens(code.toString());
+        }
+    }
+
+    @Test
+    public void parsesWithFastLexer() {
+        var code = DeepExpressionGenerator.operatorChain(200);
+        var expected = new JmmParserImpl().parse(code, Map.of());
+        var result = new JmmParserImpl().parse(code, FAST);
+
+        TestUtils.noErrors(result.getReports());
+        assertEquals(expected.getRootNode().toTree(), result.getRootNode().toTree());
+    }
+
+    @Test
+    public void reportsLexicalErrorsWithFastLexer() {
+        var code = "class A { int a# ; }";
+        var expected = new JmmParserImpl().parse(code, Map.of());
+        var result = new JmmParserImpl().parse(code, FAST);
+
+        assertNull(result.getRootNode());
+        assertEquals(expected.getReports().toString(), result.getReports().toString());
+    }
+}
@@ -0,0 +1,116 @@
+package pt.up.fe.comp2024.parser;
+
+import org.junit.Test;
+import pt.up.fe.comp.TestUtils;
+import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp.jmm.parser.JmmParserResult;
+
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class IncrementalJmmParserTest {
+
+    private static final String CODE = """
+            import io;
+            class A {
+                int field;
+
+                public int f(int a) {
+                    return a + 1;
+                }
+
+                public int g(int b) { return b * 2; }
+
+                public int h(int c) {
+                    return c;
+                }
+            }
+            """;
+
+    private static String positions(JmmNode node) {
+        var code = new StringBuilder();
+        code.append(node.getKind()).append(node.getAttributes().stream()
+                .filter(attr -> !attr.equals("hierarchy"))
+                .sorted()
+                .map(attr -> attr + "=" + node.getObject(attr))
+                .toList()).append("\n");
+        node.getChildren().forEach(child -> code.append(positions(child)));
+        return code.toString();
+    }
+
+    private static void assertSameAsFullParse(String code, JmmParserResult result) {
+        TestUtils.noErrors(result.getReports());
+        var full = new JmmParserImpl().parse(code, Map.of());
+        assertEquals(positions(full.getRootNode()), positions(result.getRootNode()));
+    }
+
+    private static int offsetAfter(String code, String text) {
+        return code.indexOf(text) + text.length();
+    }
+
+    @Test
+    public void reparsesOnlyTheEditedMethod() {
+        var previous = new JmmParserImpl().parse(CODE, Map.of());
+        var classDecl = previous.getRootNode().getJmmChild(1);
+        var g = classDecl.getJmmChild(2);
+        var h = classDecl.getJmmChild(3);
+
+        // a new line in f moves everything after it
+        var edit = new TextEdit(CODE.indexOf("return a + 1;"), 0, "a = a * 3;\n        ");
+        var result = new IncrementalJmmParser().reparse(previous, CODE, edit);
+
+        assertSameAsFullParse(edit.apply(CODE), result);
+        assertSame(g, result.getRootNode().getJmmChild(1).getJmmChild(2));
+        assertSame(h, result.getRootNode().getJmmChild(1).getJmmChild(3));
+    }
+
+    @Test
+    public void shiftsColumnsOnTheSameLine() {
+        var code = "class A { public int f(int a) { return a; } public int g() { return 1; } }";
+        var previous = new JmmParserImpl().parse(code, Map.of());
+        var g = previous.getRootNode().getJmmChild(0).getJmmChild(1);
+
+        var edit = new TextEdit(offsetAfter(code, "return a"), 0, " + 100");
+        var result = new IncrementalJmmParser().reparse(previous, code, edit);
+
+        assertSameAsFullParse(edit.apply(code), result);
+        assertSame(g, result.getRootNode().getJmmChild(0).getJmmChild(1));
+    }
+
+    @Test
+    public void reparsesEditedField() {
+        var previous = new JmmParserImpl().parse(CODE, Map.of());
+        var edit = new TextEdit(CODE.indexOf("field"), "field".length(), "count");
+
+        var result = new IncrementalJmmParser().reparse(previous, CODE, edit);
+
+        assertSameAsFullParse(edit.apply(CODE), result);
+        assertEquals("count", result.getRootNode().getJmmChild(1).getJmmChild(0).get("name"));
+    }
+
+    @Test
+    public void fallsBackToFullParse() {
+        var parser = new IncrementalJmmParser();
+
+        // the edit spans two methods
+        var previous = new JmmParserImpl().parse(CODE, Map.of());
+        var start = CODE.indexOf("return a + 1;");
+        var edit = new TextEdit(start, CODE.indexOf("return b * 2;") - start, "return 0; } public int g(int b) { ");
+        assertSameAsFullParse(edit.apply(CODE), parser.reparse(previous, CODE, edit));
+
+        // the edited method no longer parses on its own
+        previous = new JmmParserImpl().parse(CODE, Map.of());
+        edit = new TextEdit(offsetAfter(CODE, "return a + 1;"), 0, " } public int k() { return 0;");
+        var result = parser.reparse(previous, CODE, edit);
+        assertSameAsFullParse(edit.apply(CODE), result);
+        assertEquals(5, result.getRootNode().getJmmChild(1).getNumChildren());
+
+        // errors are reported by the full parse
+        previous = new JmmParserImpl().parse(CODE, Map.of());
+        edit = new TextEdit(offsetAfter(CODE, "return a + 1"), 0, " +");
+        result = parser.reparse(previous, CODE, edit);
+        assertNull(result.getRootNode());
+        assertFalse(result.getReports().isEmpty());
+    }
+}
@@ -0,0 +1,123 @@
+package pt.up.fe.comp2024.parser;
+
+import org.antlr.v4.runtime.ANTLRInputStream;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.junit.Test;
+import pt.up.fe.comp.TestUtils;
+import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp.jmm.ast.antlr.AntlrParser;
+import pt.up.fe.comp.jmm.report.ReportType;
+import pt.up.fe.comp2024.JavammLexer;
+import pt.up.fe.comp2024.JavammParser;
+import pt.up.fe.specs.util.SpecsIo;
+
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class JmmParserImplTest {
+
+    @Test
+    public void parsesValidProgram() {
+        var result = new JmmParserImpl().parse("""
+                class A {
+                    public int f(int a) {
+                        return a * (a + 1) - a / 2;
+                    }
+                }
+                """, Map.of());
+
+        TestUtils.noErrors(result.getReports());
+        assertNotNull(result.getRootNode());
+        assertEquals(1, result.getRootNode().getDescendants("ReturnStmt").size());
+    }
+
+    @Test
+    public void reportsSyntaxErrorsOfFullParse() {
+        var result = new JmmParserImpl().parse("""
+                class A {
+                    public int f(int a) {
+                        return a * ;
+                    }
+                }
+                """, Map.of());
+
+        assertNull(result.getRootNode());
+        var errors = result.getReports().stream().filter(report -> report.getType() == ReportType.ERROR).toList();
+        assertFalse(errors.isEmpty());
+        // errors come from the error listener, not from the bail out of the first stage
+        assertEquals(3, errors.get(0).getLine());
+    }
+
+    @Test
+    public void reusesParserAfterFailedParse() {
+        var parser = new JmmParserImpl();
+        var code = """
+                class A {
+                    public int f(int a) {
+                        return a + 1;
+                    }
+                }
+                """;
+
+        var first = parser.parse(code, Map.of());
+        assertNull(parser.parse("class A { public int f( { }", Map.of()).getRootNode());
+        var second = parser.parse(code, Map.of());
+
+        TestUtils.noErrors(second.getReports());
+        assertEquals(first.getRootNode().toTree(), second.getRootNode().toTree());
+    }
+
+    @Test
+    public void recoversFromErrorsWithReusedParser() {
+        var parser = new JmmParserImpl();
+        var corpus = SpecsIo.getResource("pt/up/fe/comp2024/parser/warmup.jmm");
+        var code = """
+                class A {
+                    public int f(int a) {
+                        return a * ;
+                    }
+                }
+                """;
+
+        for (int i = 0; i < 3; i++) {
+            parser.parse(corpus, Map.of());
+            var errors = parser.parse(code, Map.of()).getReports().stream()
+                    .filter(report -> report.getType() == ReportType.ERROR)
+                    .toList();
+            assertEquals(3, errors.get(0).getLine());
+        }
+    }
+
+    @Test
+    public void warmUpParsesBundledCorpus() {
+        JmmParserImpl.warmUp(1);
+
+        var corpus = SpecsIo.getResource("pt/up/fe/comp2024/parser/warmup.jmm");
+        var result = new JmmParserImpl().parse(corpus, Map.of());
+        TestUtils.noErrors(result.getReports());
+    }
+
+    @Test
+    public void buildsSameTreeAsLibraryConverter() {
+        var corpus = SpecsIo.getResource("pt/up/fe/comp2024/parser/warmup.jmm");
+        var lexer = new JavammLexer(new ANTLRInputStream(corpus));
+        var expected = AntlrParser.parse(lexer, new JavammParser(new CommonTokenStream(lexer)), "program", Map.of());
+        var result = new JmmParserImpl().parse(corpus, Map.of());
+
+        assertEquals(dump(expected.getRootNode()), dump(result.getRootNode()));
+    }
+
+    /**
+     * Kinds, hierarchies, attributes and positions of the tree, with attributes in a fixed order.
+     */
+    private static String dump(JmmNode node) {
+        var code = new StringBuilder();
+        code.append(node.getHierarchy()).append(node.getAttributes().stream()
+                .sorted()
+                .map(attr -> attr + "=" + node.getObject(attr))
+                .toList()).append("\n");
+        node.getChildren().forEach(child -> code.append(dump(child)));
+        return code.toString();
+    }
+}
@@ -0,0 +1,78 @@
+package pt.up.fe.comp2024.parser;
+
+import org.antlr.v4.runtime.IntStream;
+import org.antlr.v4.runtime.misc.Interval;
+import org.junit.Test;
+import pt.up.fe.comp.TestUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class MappedCharStreamTest {
+
+    private static final String CODE = """
+            import io;
+            class A {
+                public int f(int a) {
+                    return a * (a + 1);
+                }
+            }
+            """;
+
+    private static File write(String code) throws IOException {
+        var file = Files.createTempFile("mapped", ".jmm");
+        file.toFile().deleteOnExit();
+        Files.writeString(file, code, StandardCharsets.UTF_8);
+        return file.toFile();
+    }
+
+    @Test
+    public void parsesAsciiFile() throws IOException {
+        var parser = new JmmParserImpl();
+        var fromFile = parser.parse(write(CODE), Map.of());
+        var fromString = parser.parse(CODE, Map.of());
+
+        TestUtils.noErrors(fromFile.getReports());
+        assertEquals(fromString.getRootNode().toTree(), fromFile.getRootNode().toTree());
+    }
+
+    @Test
+    public void decodesUtf8File() throws IOException {
+        var code = "// fun\u00e7\u00e3o n\u00e3o ASCII\n" + CODE;
+        var stream = MappedCharStream.map(write(code));
+
+        assertEquals(code.length(), stream.size());
+        assertEquals("fun\u00e7\u00e3o", stream.getText(Interval.of(3, 8)));
+
+        var result = new JmmParserImpl().parse(write(code), Map.of());
+        TestUtils.noErrors(result.getReports());
+    }
+
+    @Test
+    public void behavesLikeAntlrInputStream() throws IOException {
+        var stream = MappedCharStream.map(write("ab"));
+
+        assertEquals(IntStream.EOF, stream.LA(-1));
+        assertEquals('a', stream.LA(1));
+        stream.consume();
+        assertEquals('a', stream.LA(-1));
+        assertEquals('b', stream.LA(1));
+        stream.consume();
+        assertEquals(IntStream.EOF, stream.LA(1));
+        try {
+            stream.consume();
+            fail("Consumed EOF");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+
+        stream.seek(0);
+        assertEquals(0, stream.index());
+        assertEquals("ab", stream.getText(Interval.of(0, 10)));
+    }
+}
@@ -0,0 +1,87 @@
+package pt.up.fe.comp2024.parser;
+
+import org.junit.Test;
+import pt.up.fe.comp.TestUtils;
+import pt.up.fe.comp2024.stress.DeepExpressionGenerator;
+import pt.up.fe.specs.util.SpecsIo;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class ParallelJmmParserTest {
+
+    private static List<String> sources() {
+        List<String> sources = new ArrayList<>();
+        for (int i = 0; i < 24; i++) {
+            // units of different sizes, so that they finish out of order
+            sources.add(DeepExpressionGenerator.operatorChain(1 + (i * 37) % 500));
+            sources.add(SpecsIo.getResource("pt/up/fe/comp/cp2/apps/HelloWorld.jmm"));
+        }
+        sources.add("class A { public int f( { }");
+        return sources;
+    }
+
+    @Test
+    public void returnsResultsInSubmissionOrder() {
+        var sources = sources();
+
+        try (var parser = new ParallelJmmParser(4)) {
+            var results = parser.parseSources(sources, Map.of());
+
+            assertEquals(sources.size(), results.size());
+            for (int i = 0; i < sources.size(); i++) {
+                var expected = new JmmParserImpl().parse(sources.get(i), Map.of());
+                var result = results.get(i);
+                if (expected.getRootNode() == null) {
+                    assertNull(result.getRootNode());
+                    assertFalse(result.getReports().isEmpty());
+                } else {
+                    assertEquals(expected.getRootNode().toTree(), result.getRootNode().toTree());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void reportsWorkPerThread() {
+        var sources = sources();
+
+        try (var parser = new ParallelJmmParser(3)) {
+            parser.parseSources(sources, Map.of());
+
+            var stats = parser.getThreadStats();
+            assertTrue(stats.size() <= 3);
+            assertEquals(sources.size(), stats.stream().mapToInt(ParallelJmmParser.ThreadStats::getFiles).sum());
+            for (var thread : stats) {
+                assertTrue(thread.getTokens() > 0);
+                assertTrue(thread.getTokensPerSecond() > 0);
+                assertTrue(thread.getFilesPerSecond() > 0);
+            }
+            assertEquals(stats.size(), parser.formatStats().lines().count());
+
+            // statistics are of the last call only
+            parser.parseSources(List.of("class A { }"), Map.of());
+            assertEquals(1, parser.getThreadStats().size());
+            assertEquals(1, parser.getThreadStats().get(0).getFiles());
+            // class, A, braces and EOF
+            assertEquals(5, parser.getThreadStats().get(0).getTokens());
+        }
+    }
+
+    @Test
+    public void parsesFiles() {
+        var file = new File("test/pt/up/fe/comp/cp2/apps/Simple.jmm");
+
+        try (var parser = new ParallelJmmParser(2)) {
+            var results = parser.parseFiles(List.of(file, new File("missing.jmm"), file), Map.of());
+
+            TestUtils.noErrors(results.get(0).getReports());
+            assertNull(results.get(1).getRootNode());
+            assertEquals(results.get(0).getRootNode().toTree(), results.get(2).getRootNode().toTree());
+        }
+    }
+}
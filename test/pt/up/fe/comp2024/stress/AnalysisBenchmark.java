@@ -0,0 +1,74 @@
+package pt.up.fe.comp2024.stress;
+
+import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp2024.analysis.PassManager;
+import pt.up.fe.comp2024.analysis.passes.UndeclaredVariable;
+import pt.up.fe.comp2024.parser.JmmParserImpl;
+import pt.up.fe.comp2024.symboltable.JmmSymbolTable;
+import pt.up.fe.comp2024.symboltable.JmmSymbolTableBuilder;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Compares the semantic analysis of a class with thousands of methods done one method after the other with the same
+ * analysis done in parallel, for several numbers of threads.
+ * <p>
+ * The tree is parsed and typed once, each round runs the passes with a new pass manager. Run with
+ * {@code gradle analysisBenchmark}.
+ */
+public class AnalysisBenchmark {
+
+    private static final int METHODS = 5_000;
+    private static final int WARM_UP_ROUNDS = 5;
+    private static final int ROUNDS = 10;
+
+    public static void main(String[] args) {
+        var root = new JmmParserImpl().parse(DeepExpressionGenerator.wideClass(METHODS), Map.of()).getRootNode();
+        var table = JmmSymbolTableBuilder.build(root);
+        table.getExprTypes().annotate(root, table);
+
+        System.out.printf("class of %d methods, %d processors%n", METHODS, Runtime.getRuntime().availableProcessors());
+        System.out.printf("%10s %10s %10s %10s%n", "threads", "reports", "best ms", "speedup");
+
+        long sequential = run(root, table, 1, 0);
+        // at least up to 4 threads, to show the cost of the tasks on machines with fewer processors
+        int maxThreads = Math.max(4, Runtime.getRuntime().availableProcessors());
+        for (int threads = 2; threads <= maxThreads; threads *= 2) {
+            run(root, table, threads, sequential);
+        }
+    }
+
+    private static long run(JmmNode root, JmmSymbolTable table, int threads, long sequential) {
+        var pool = threads == 1 ? null : new ForkJoinPool(threads);
+
+        try {
+            for (int i = 0; i < WARM_UP_ROUNDS; i++) {
+                analyze(root, table, pool);
+            }
+
+            long best = Long.MAX_VALUE;
+            int reports = 0;
+            for (int i = 0; i < ROUNDS; i++) {
+                long start = System.nanoTime();
+                reports = analyze(root, table, pool);
+                best = Math.min(best, System.nanoTime() - start);
+            }
+
+            System.out.printf("%10d %10d %10.2f %10.2f%n", threads, reports, best / 1_000_000.0,
+                    sequential == 0 ? 1.0 : (double) sequential / best);
+            return best;
+        } finally {
+            if (pool != null) {
+                pool.shutdown();
+            }
+        }
+    }
+
+    private static int analyze(JmmNode root, JmmSymbolTable table, ForkJoinPool pool) {
+        var manager = new PassManager(List.of(new UndeclaredVariable()));
+        manager.setPool(pool);
+        return manager.run(root, table).size();
+    }
+}
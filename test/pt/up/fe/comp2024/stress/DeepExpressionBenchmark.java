@@ -0,0 +1,66 @@
+package pt.up.fe.comp2024.stress;
+
+import pt.up.fe.comp.TestUtils;
+import pt.up.fe.comp.jmm.parser.JmmParserResult;
+import pt.up.fe.comp2024.analysis.JmmAnalysisImpl;
+import pt.up.fe.comp2024.optimization.JmmOptimizationImpl;
+import pt.up.fe.comp2024.parser.JmmParserImpl;
+import pt.up.fe.comp2024.utils.DeepStack;
+
+import java.util.Map;
+import java.util.function.IntFunction;
+
+/**
+ * Compiles generated programs of growing size and prints the time of each stage, to check that the time grows linearly
+ * with the size of the expression.
+ * <p>
+ * Run with {@code gradle deepExpressionBenchmark}.
+ */
+public class DeepExpressionBenchmark {
+
+    private static final int[] SIZES = {12_500, 25_000, 50_000, 100_000};
+    private static final int WARM_UP_SIZE = 5_000;
+
+    public static void main(String[] args) {
+        DeepStack.run(() -> {
+            run("operator chain", DeepExpressionGenerator::operatorChain);
+            run("left nested parentheses", DeepExpressionGenerator::leftNestedParentheses);
+            run("right nested parentheses", DeepExpressionGenerator::rightNestedParentheses);
+        });
+    }
+
+    private static void run(String name, IntFunction<String> generator) {
+        System.out.println(name);
+        System.out.printf("%10s %10s %10s %10s %10s %12s%n", "size", "parse ms", "analysis ms", "ollir ms", "total ms",
+                "ns per term");
+
+        compile(generator.apply(WARM_UP_SIZE), new long[3]);
+
+        for (int size : SIZES) {
+            var times = new long[3];
+            compile(generator.apply(size), times);
+            long total = times[0] + times[1] + times[2];
+            System.out.printf("%10d %10d %10d %10d %10d %12d%n", size, times[0] / 1_000_000, times[1] / 1_000_000,
+                    times[2] / 1_000_000, total / 1_000_000, total / size);
+        }
+        System.out.println();
+    }
+
+    private static void compile(String code, long[] times) {
+        long start = System.nanoTime();
+        JmmParserResult parserResult = new JmmParserImpl().parse(code, Map.of());
+        TestUtils.noErrors(parserResult.getReports());
+        times[0] = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        var semanticsResult = new JmmAnalysisImpl().semanticAnalysis(parserResult);
+        TestUtils.noErrors(semanticsResult.getReports());
+        times[1] = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        var optimization = new JmmOptimizationImpl();
+        var ollirResult = optimization.optimize(optimization.toOllir(optimization.optimize(semanticsResult)));
+        TestUtils.noErrors(ollirResult.getReports());
+        times[2] = System.nanoTime() - start;
+    }
+}
@@ -0,0 +1,106 @@
+package pt.up.fe.comp2024.stress;
+
+/**
+ * Generates programs with pathological expressions, the kind of code other tools generate: long chains of binary
+ * operators and expressions nested in many levels of parentheses.
+ * <p>
+ * Every program is a class with a method {@code f(int a)} that assigns the expression to a local and returns it.
+ */
+public class DeepExpressionGenerator {
+
+    private static final String[] OPERATORS = {"+", "-", "*"};
+
+    /**
+     * a + 1 - a * 2 + a ..., which the parser turns into a tree as deep as the number of terms.
+     *
+     * @param terms
+     * @return
+     */
+    public static String operatorChain(int terms) {
+        var expression = new StringBuilder(term(0));
+        for (int i = 1; i < terms; i++) {
+            expression.append(" ").append(OPERATORS[i % OPERATORS.length]).append(" ").append(term(i));
+        }
+        return program(expression.toString());
+    }
+
+    /**
+     * (((a + 1) + a) + 1)..., a chain where every operation is also wrapped in parentheses.
+     *
+     * @param depth
+     * @return
+     */
+    public static String leftNestedParentheses(int depth) {
+        var expression = new StringBuilder(depth * 6);
+        expression.append("(".repeat(depth)).append(term(0));
+        for (int i = 1; i <= depth; i++) {
+            expression.append(" + ").append(term(i)).append(")");
+        }
+        return program(expression.toString());
+    }
+
+    /**
+     * a + (1 + (a + (1 + ...))), which the parser can only handle by descending once per level.
+     *
+     * @param depth
+     * @return
+     */
+    public static String rightNestedParentheses(int depth) {
+        var expression = new StringBuilder(depth * 6);
+        for (int i = 0; i < depth; i++) {
+            expression.append(term(i)).append(" + (");
+        }
+        expression.append(term(depth)).append(")".repeat(depth));
+        return program(expression.toString());
+    }
+
+    public static String program(String expression) {
+        return """
+                class Deep {
+                    public int f(int a) {
+                        int r;
+                        r = %s;
+                        return r;
+                    }
+                    public static void main(String[] args) {
+                    }
+                }
+                """.formatted(expression);
+    }
+
+    /**
+     * A class with many small methods, each with locals, a loop and a branch. Every tenth method also assigns a boolean
+     * to an int and returns an undeclared variable, so that the analysis has errors to report in all of the class.
+     *
+     * @param methods
+     * @return
+     */
+    public static String wideClass(int methods) {
+        var code = new StringBuilder("class Wide {\n");
+        for (int i = 0; i < methods; i++) {
+            boolean withErrors = i % 10 == 9;
+            code.append("""
+                        public int m%d(int a, boolean b) {
+                            int x;
+                            int y;
+                            x = a + %d;
+                            y = x * 2;
+                            while (x < y) {
+                                x = x + 1;
+                            }
+                            if (b) {
+                                x = x - y;
+                            } else {
+                                x = %s;
+                            }
+                            return %s;
+                        }
+                    """.formatted(i, i, withErrors ? "b" : "y", withErrors ? "z" : "x"));
+        }
+        return code.append("}\n").toString();
+    }
+
+    private static String term(int index) {
+        return index % 2 == 0 ? "a" : Integer.toString(index % 7 + 1);
+    }
+}
@@ -0,0 +1,71 @@
+package pt.up.fe.comp2024.stress;
+
+import org.junit.Test;
+import pt.up.fe.comp.TestUtils;
+import pt.up.fe.comp2024.ast.Kind;
+import pt.up.fe.comp2024.ast.NodeUtils;
+import pt.up.fe.comp2024.parser.JmmParserImpl;
+import pt.up.fe.comp2024.utils.DeepStack;
+
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class DeepExpressionTest {
+
+    @Test
+    public void compilesLongOperatorChain() {
+        int terms = 100_000;
+        var result = TestUtils.optimize(DeepExpressionGenerator.operatorChain(terms));
+        TestUtils.noErrors(result.getReports());
+
+        // at most one assignment per operation, every operand is visited once
+        long assignments = result.getOllirCode().lines().filter(line -> line.contains(":=.i32")).count();
+        assertTrue(assignments > terms / 2);
+        assertTrue(assignments <= terms);
+    }
+
+    @Test
+    public void parsesDeepNestingOnLargerStack() {
+        int depth = 20_000;
+        var result = new JmmParserImpl().parse(DeepExpressionGenerator.rightNestedParentheses(depth), Map.of());
+        TestUtils.noErrors(result.getReports());
+
+        var root = result.getRootNode();
+        assertEquals(depth, NodeUtils.getDescendants(root, Kind.PARENTESIS).size());
+        assertEquals(depth, NodeUtils.getDescendants(root, Kind.BINARY_EXPR).size());
+    }
+
+    @Test
+    public void compilesNestedParentheses() {
+        for (var code : new String[]{DeepExpressionGenerator.leftNestedParentheses(5_000),
+                DeepExpressionGenerator.rightNestedParentheses(5_000)}) {
+            var result = DeepStack.call(() -> TestUtils.optimize(code));
+            TestUtils.noErrors(result.getReports());
+        }
+    }
+
+    @Test
+    public void keepsOperandsOfParentheses() {
+        var result = TestUtils.optimize(DeepExpressionGenerator.program("(a + 1) * a"));
+        TestUtils.noErrors(result.getReports());
+
+        var code = result.getOllirCode();
+        assertTrue(code, code.contains("a.i32 +.i32 1.i32"));
+        assertTrue(code, code.contains(".i32 *.i32 a.i32"));
+    }
+
+    @Test
+    public void printsDeepTreeWithBoundedIndentation() {
+        int terms = 10_000;
+        var root = new JmmParserImpl().parse(DeepExpressionGenerator.operatorChain(terms), Map.of()).getRootNode();
+
+        var tree = NodeUtils.toTree(root);
+        assertEquals(NodeUtils.countNodes(root), tree.lines().count());
+        assertTrue(tree.lines().allMatch(line -> line.length() < 300));
+
+        // shallow trees are printed as toTree prints them
+        var shallow = new JmmParserImpl().parse(DeepExpressionGenerator.operatorChain(20), Map.of()).getRootNode();
+        assertEquals(shallow.toTree(), NodeUtils.toTree(shallow));
+    }
+}
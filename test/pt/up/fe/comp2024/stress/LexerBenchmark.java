@@ -0,0 +1,77 @@
+package pt.up.fe.comp2024.stress;
+
+import org.antlr.v4.runtime.ANTLRInputStream;
+import org.antlr.v4.runtime.Lexer;
+import org.antlr.v4.runtime.Token;
+import pt.up.fe.comp2024.JavammLexer;
+import pt.up.fe.comp2024.parser.FastJavammLexer;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.function.Function;
+
+/**
+ * Compares the generated lexer with the hand-written one, reading every token of a corpus made of the test programs
+ * and of generated expressions.
+ * <p>
+ * Each lexer is warmed up first, then the best of several rounds is printed. Run with {@code gradle lexerBenchmark}.
+ */
+public class LexerBenchmark {
+
+    private static final int CORPUS_COPIES = 20;
+    private static final int WARM_UP_ROUNDS = 10;
+    private static final int ROUNDS = 10;
+
+    public static void main(String[] args) throws IOException {
+        var corpus = corpus();
+        System.out.printf("corpus of %d characters%n", corpus.length());
+        System.out.printf("%10s %10s %10s %12s %12s%n", "lexer", "tokens", "best ms", "ns per char", "Mtokens/s");
+
+        run("generated", JavammLexer::new, corpus);
+        run("fast", FastJavammLexer::new, corpus);
+    }
+
+    private static String corpus() throws IOException {
+        var code = new StringBuilder();
+        try (var paths = Files.walk(Path.of("test"))) {
+            for (var file : paths.filter(path -> path.toString().endsWith(".jmm")).toList()) {
+                code.append(Files.readString(file)).append('\n');
+            }
+        }
+        code.append(DeepExpressionGenerator.operatorChain(10_000));
+
+        return code.toString().repeat(CORPUS_COPIES);
+    }
+
+    private static void run(String name, Function<ANTLRInputStream, Lexer> factory, String corpus) {
+        var input = new ANTLRInputStream(corpus);
+
+        for (int i = 0; i < WARM_UP_ROUNDS; i++) {
+            countTokens(factory, input);
+        }
+
+        long best = Long.MAX_VALUE;
+        int tokens = 0;
+        for (int i = 0; i < ROUNDS; i++) {
+            long start = System.nanoTime();
+            tokens = countTokens(factory, input);
+            best = Math.min(best, System.nanoTime() - start);
+        }
+
+        System.out.printf("%10s %10d %10d %12.2f %12.2f%n", name, tokens, best / 1_000_000,
+                (double) best / corpus.length(), tokens * 1000.0 / best);
+    }
+
+    private static int countTokens(Function<ANTLRInputStream, Lexer> factory, ANTLRInputStream input) {
+        input.seek(0);
+        var lexer = factory.apply(input);
+        lexer.removeErrorListeners();
+
+        int tokens = 0;
+        while (lexer.nextToken().getType() != Token.EOF) {
+            tokens++;
+        }
+        return tokens;
+    }
+}
@@ -0,0 +1,165 @@
+package pt.up.fe.comp2024.symboltable;
+
+import org.junit.Test;
+import pt.up.fe.comp.TestUtils;
+import pt.up.fe.comp.jmm.analysis.table.Symbol;
+import pt.up.fe.comp.jmm.analysis.table.SymbolTable;
+import pt.up.fe.comp.jmm.analysis.table.Type;
+import pt.up.fe.comp2024.analysis.JmmAnalysisImpl;
+import pt.up.fe.comp2024.ast.Identifiers;
+import pt.up.fe.comp2024.ast.Kind;
+import pt.up.fe.comp2024.parser.JmmParserImpl;
+import pt.up.fe.comp2024.symboltable.ResolvedSymbol.Origin;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.Assert.*;
+
+public class JmmSymbolTableTest {
+
+    private static final String CODE = """
+            class A {
+                int x;
+                boolean y;
+                int[] z;
+
+                public int f(boolean x, int y) {
+                    int[] x;
+                    return y;
+                }
+
+                public int g(int z) {
+                    return z;
+                }
+            }
+            """;
+
+    private static JmmSymbolTable table() {
+        return JmmSymbolTableBuilder.build(new JmmParserImpl().parse(CODE, Map.of()).getRootNode());
+    }
+
+    @Test
+    public void localsHideParametersHideFields() {
+        var table = table();
+
+        var x = table.resolve("f", "x").orElseThrow();
+        assertEquals(Origin.LOCAL, x.origin());
+        assertEquals(new Type("int", true), x.getType());
+
+        var y = table.resolve("f", "y").orElseThrow();
+        assertEquals(Origin.PARAM, y.origin());
+        assertEquals(new Type("int", false), y.getType());
+
+        var z = table.resolve("f", "z").orElseThrow();
+        assertEquals(Origin.FIELD, z.origin());
+        assertTrue(z.isField());
+
+        assertEquals(Origin.PARAM, table.resolve("g", "z").orElseThrow().origin());
+        assertEquals(Optional.empty(), table.resolve("g", "w"));
+    }
+
+    @Test
+    public void unknownMethodSeesOnlyFields() {
+        var table = table();
+
+        assertEquals(Origin.FIELD, table.resolve("h", "y").orElseThrow().origin());
+        assertEquals(Optional.empty(), table.resolve("h", "w"));
+    }
+
+    @Test
+    public void resolvesInOtherTables() {
+        var jmmTable = table();
+        SymbolTable other = new SymbolTable() {
+            public List<String> getImports() { return jmmTable.getImports(); }
+            public String getClassName() { return jmmTable.getClassName(); }
+            public String getSuper() { return jmmTable.getSuper(); }
+            public List<Symbol> getFields() { return jmmTable.getFields(); }
+            public List<String> getMethods() { return jmmTable.getMethods(); }
+            public Type getReturnType(String method) { return jmmTable.getReturnType(method); }
+            public List<Symbol> getParameters(String method) { return jmmTable.getParameters(method); }
+            public List<Symbol> getLocalVariables(String method) { return jmmTable.getLocalVariables(method); }
+        };
+
+        for (var method : List.of("f", "g", "h")) {
+            for (var name : List.of("x", "y", "z", "w")) {
+                assertEquals(method + "." + name, jmmTable.resolve(method, name),
+                        JmmSymbolTable.resolve(other, method, name));
+            }
+        }
+    }
+
+    @Test
+    public void listsAreShared() {
+        var table = table();
+
+        assertSame(table.getFields(), table.getFields());
+        assertSame(table.getLocalVariables("f"), table.getLocalVariables("f"));
+        try {
+            table.getParameters("f").add(new Symbol(new Type("int", false), "w"));
+            fail("Expected the parameters to be unmodifiable");
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void resolvesByIds() {
+        var table = table();
+        var identifiers = table.getIdentifiers();
+
+        int f = identifiers.find("f");
+        assertEquals(table.resolve("f", "x"), table.resolve(f, identifiers.find("x")));
+        assertEquals(table.resolve("f", "z"), table.resolve(f, identifiers.find("z")));
+        assertEquals(Identifiers.NO_ID, identifiers.find("w"));
+        assertEquals(Optional.empty(), table.resolve(f, Identifiers.NO_ID));
+    }
+
+    @Test
+    public void sharesTheIdentifiersOfTheParser() {
+        for (var config : List.of(Map.of("typedAst", "false"), Map.of("typedAst", "true"))) {
+            var root = new JmmParserImpl().parse(CODE, config).getRootNode();
+            var table = JmmSymbolTableBuilder.build(root);
+
+            assertSame(Identifiers.of(root), table.getIdentifiers());
+            // names of the tree are the instances the table keys
+            var classDecl = root.getChildren(Kind.CLASS_DECLARATION).get(0);
+            var method = classDecl.getChildren(Kind.METHOD_DECLARATION).get(0);
+            var identifiers = table.getIdentifiers();
+            assertSame(identifiers.getName(identifiers.find("f")), method.get("name"));
+            assertSame(table.getClassName(), classDecl.get("name"));
+            assertEquals(Origin.LOCAL, table.resolve(method.get("name"), "x").orElseThrow().origin());
+        }
+    }
+
+    @Test
+    public void findsImportsBySimpleName() {
+        var code = "import foo.bar.B;\nimport C;\n" + CODE;
+        var table = JmmSymbolTableBuilder.build(new JmmParserImpl().parse(code, Map.of()).getRootNode());
+
+        assertEquals(List.of("B", "C"), table.getImports());
+        assertTrue(table.isImported("B"));
+        assertTrue(table.isImported("C"));
+        assertFalse(table.isImported("bar"));
+        assertFalse(table.isImported("A"));
+        assertEquals(Optional.of("foo.bar.B"), table.getImportPath("B"));
+    }
+
+    @Test
+    public void analysesMethodWithManyLocals() {
+        int count = 20_000;
+        var code = new StringBuilder("class A {\n    public int f(int a) {\n");
+        for (int i = 0; i < count; i++) {
+            code.append("        int v").append(i).append(";\n");
+        }
+        for (int i = 0; i < count; i++) {
+            code.append("        v").append(i).append(" = a;\n");
+        }
+        code.append("        return v").append(count - 1).append(";\n    }\n}\n");
+
+        var parserResult = new JmmParserImpl().parse(code.toString(), Map.of());
+        TestUtils.noErrors(parserResult.getReports());
+        TestUtils.noErrors(new JmmAnalysisImpl().semanticAnalysis(parserResult).getReports());
+    }
+}
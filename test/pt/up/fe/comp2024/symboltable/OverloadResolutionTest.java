@@ -0,0 +1,160 @@
+package pt.up.fe.comp2024.symboltable;
+
+import org.junit.Test;
+import pt.up.fe.comp.TestUtils;
+import pt.up.fe.comp.jmm.analysis.table.Type;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp2024.parser.JmmParserImpl;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.Assert.*;
+
+public class OverloadResolutionTest {
+
+    private static final Type INT = new Type("int", false);
+    private static final Type INT_ARRAY = new Type("int", true);
+    private static final Type BOOLEAN = new Type("boolean", false);
+
+    private static final String CODE = """
+            import io;
+            class A {
+                public int f(int a) {
+                    return a;
+                }
+
+                public int f(int a, int b) {
+                    int c;
+                    c = a + b;
+                    return c;
+                }
+
+                public boolean f(boolean a) {
+                    return a;
+                }
+
+                public int g(int a, int... rest) {
+                    return rest.length;
+                }
+
+                public int g(int a, int b) {
+                    return 2;
+                }
+
+                public int h(int[] a) {
+                    return a.length;
+                }
+
+                public static void main(String[] args) {
+                    A a;
+                    a = new A();
+                    io.println(a.f(1));
+                    io.println(a.f(1, 2));
+                    io.println(a.g(1, 2));
+                    io.println(a.g(1, 2, 3));
+                    io.println(a.g(1));
+                }
+            }
+            """;
+
+    private static JmmSymbolTable table() {
+        return JmmSymbolTableBuilder.build(new JmmParserImpl().parse(CODE, Map.of()).getRootNode());
+    }
+
+    private static List<Type> args(Type... types) {
+        return Arrays.asList(types);
+    }
+
+    @Test
+    public void keysOverloadsBySignature() {
+        var table = table();
+
+        assertEquals(List.of("f(int)", "f(int,int)", "f(boolean)"), table.getOverloads("f"));
+        assertEquals(List.of("g(int,int...)", "g(int,int)"), table.getOverloads("g"));
+        assertEquals(List.of("h"), table.getOverloads("h"));
+        assertTrue(table.isOverloaded("f"));
+        assertFalse(table.isOverloaded("h"));
+
+        assertEquals(BOOLEAN, table.getReturnType("f(boolean)"));
+        assertEquals(2, table.getParameters("f(int,int)").size());
+        assertEquals(ResolvedSymbol.Origin.LOCAL, table.resolve("f(int,int)", "c").orElseThrow().origin());
+        assertEquals(Optional.empty(), table.resolve("f(int)", "c"));
+
+        // the name alone is the first overload
+        assertEquals(table.getParameters("f(int)"), table.getParameters("f"));
+    }
+
+    @Test
+    public void resolvesByArgumentTypes() {
+        var table = table();
+
+        assertEquals(Optional.of("f(int)"), table.resolveMethod("f", args(INT)));
+        assertEquals(Optional.of("f(boolean)"), table.resolveMethod("f", args(BOOLEAN)));
+        assertEquals(Optional.of("f(int,int)"), table.resolveMethod("f", args(INT, INT)));
+        assertEquals(Optional.empty(), table.resolveMethod("f", args(INT_ARRAY)));
+        assertEquals(Optional.empty(), table.resolveMethod("f", args(INT, INT, INT)));
+        assertEquals(Optional.empty(), table.resolveMethod("e", args()));
+    }
+
+    @Test
+    public void prefersFixedArityToVarargs() {
+        var table = table();
+
+        assertEquals(Optional.of("g(int,int)"), table.resolveMethod("g", args(INT, INT)));
+        assertEquals(Optional.of("g(int,int...)"), table.resolveMethod("g", args(INT)));
+        assertEquals(Optional.of("g(int,int...)"), table.resolveMethod("g", args(INT, INT, INT)));
+        assertEquals(Optional.of("g(int,int...)"), table.resolveMethod("g", args(INT, INT_ARRAY)));
+    }
+
+    @Test
+    public void unknownArgumentsMakeCallsAmbiguous() {
+        var table = table();
+
+        // both overloads with one parameter accept an argument of unknown type
+        assertEquals(Optional.empty(), table.resolveMethod("f", args((Type) null)));
+        assertEquals(Optional.of("f(int,int)"), table.resolveMethod("f", args(null, INT)));
+    }
+
+    @Test
+    public void methodsThatAreNotOverloadedAreAlwaysChosen() {
+        var table = table();
+
+        assertEquals(Optional.of("h"), table.resolveMethod("h", args(BOOLEAN)));
+    }
+
+    @Test
+    public void runsEachOverload() {
+        var result = TestUtils.backend(CODE);
+        TestUtils.noErrors(result.getReports());
+
+        assertEquals(List.of("1", "3", "2", "2", "0"), result.run().trim().lines().toList());
+    }
+
+    @Test
+    public void reportsDuplicatesAndCallsWithoutOverload() {
+        var code = """
+                class A {
+                    public int f(int a) {
+                        return a;
+                    }
+
+                    public int f(int a) {
+                        return a;
+                    }
+
+                    public int f(int a, int b) {
+                        return this.f(true, a);
+                    }
+                }
+                """;
+        var reports = TestUtils.analyse(code).getReports();
+
+        var messages = reports.stream().map(Report::getMessage).toList();
+        assertTrue(messages.toString(), messages.contains("Duplicate method declaration: f"));
+        assertTrue(messages.toString(), messages.stream().anyMatch(message -> message.startsWith("No single overload")));
+        assertEquals(messages.toString(), 2, TestUtils.getNumErrors(reports));
+    }
+}
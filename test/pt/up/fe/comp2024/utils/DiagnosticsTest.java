@@ -0,0 +1,122 @@
+package pt.up.fe.comp2024.utils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import pt.up.fe.comp.TestUtils;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp.jmm.report.Stage;
+import pt.up.fe.comp2024.CompilerConfig;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class DiagnosticsTest {
+
+    private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+    @Before
+    public void captureOutput() {
+        Diagnostics.setOutput(new PrintStream(bytes, true, StandardCharsets.UTF_8));
+    }
+
+    @After
+    public void restoreDefaults() {
+        Diagnostics.setLevel(Diagnostics.Level.OFF);
+        Diagnostics.setJson(false);
+        Diagnostics.setOutput(System.err);
+    }
+
+    private String output() {
+        return bytes.toString(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void disabledMessagesAreNotFormatted() {
+        Diagnostics.setLevel(Diagnostics.Level.WARN);
+
+        Diagnostics.debug(() -> {
+            throw new AssertionError("formatted a disabled message");
+        });
+        Diagnostics.info(() -> {
+            throw new AssertionError("formatted a disabled message");
+        });
+        Diagnostics.warn(() -> "shown");
+
+        assertEquals("[warn] shown" + System.lineSeparator(), output());
+    }
+
+    @Test
+    public void offDisablesEveryLevel() {
+        for (var level : Diagnostics.Level.values()) {
+            assertFalse(level.toString(), Diagnostics.isEnabled(level));
+        }
+
+        Diagnostics.setLevel(Diagnostics.Level.DEBUG);
+        assertFalse(Diagnostics.isEnabled(Diagnostics.Level.OFF));
+        assertTrue(Diagnostics.isEnabled(Diagnostics.Level.ERROR));
+        assertTrue(Diagnostics.isEnabled(Diagnostics.Level.DEBUG));
+    }
+
+    @Test
+    public void writesJsonLines() {
+        Diagnostics.setLevel(Diagnostics.Level.INFO);
+        Diagnostics.setJson(true);
+
+        Diagnostics.info(() -> "a \"quoted\"\nmessage");
+        Diagnostics.reports(Diagnostics.Level.INFO, List.of(Report.newError(Stage.SEMANTIC, 3, 4, "Bad\tcall", null)));
+
+        var lines = output().lines().toList();
+        assertEquals(List.of(
+                "{\"level\":\"info\",\"message\":\"a \\\"quoted\\\"\\nmessage\"}",
+                "{\"level\":\"info\",\"report\":{\"type\":\"ERROR\",\"stage\":\"SEMANTIC\",\"line\":3,\"column\":4,"
+                        + "\"message\":\"Bad\\tcall\"}}"), lines);
+    }
+
+    @Test
+    public void readsLevelFromOptions() {
+        assertEquals(Diagnostics.Level.OFF, CompilerConfig.getDiagnostics(Map.of()));
+        assertEquals(Diagnostics.Level.DEBUG, CompilerConfig.getDiagnostics(Map.of("diagnostics", "true")));
+        assertEquals(Diagnostics.Level.WARN, CompilerConfig.getDiagnostics(Map.of("diagnostics", "warn")));
+        assertEquals(Diagnostics.Level.INFO, CompilerConfig.getDiagnostics(Map.of("diagnostics", "INFO")));
+        assertEquals(Diagnostics.Level.OFF, CompilerConfig.getDiagnostics(Map.of("diagnostics", "off")));
+    }
+
+    @Test
+    public void rejectsUnknownLevels() {
+        try {
+            CompilerConfig.getDiagnostics(Map.of("diagnostics", "verbose"));
+            fail("Expected an unknown level");
+        } catch (IllegalArgumentException e) {
+            assertEquals("Option '-d' expects one of off, error, warn, info, debug, got 'verbose'", e.getMessage());
+        }
+    }
+
+    @Test
+    public void analysisWritesNothingByDefault() {
+        TestUtils.analyse("""
+                import io;
+                class A {
+                    public int f() {
+                        return b;
+                    }
+                }
+                """);
+
+        assertEquals("", output());
+
+        Diagnostics.setLevel(Diagnostics.Level.DEBUG);
+        TestUtils.analyse("""
+                import io;
+                class A {
+                }
+                """);
+
+        assertEquals("[debug] Import of class io" + System.lineSeparator(), output());
+    }
+}